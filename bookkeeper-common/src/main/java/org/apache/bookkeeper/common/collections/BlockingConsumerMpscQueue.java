@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.common.collections;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.jctools.queues.MessagePassingQueue;
+
+/**
+ * Lock-free blocking queue for multiple producers and a single consumer.
+ *
+ * <p>Unlike {@link BlockingMpscQueue}, which busy-spins, the consumer parks when the queue is empty and is unparked
+ * by the producers. Producers never take a lock: they only check whether the consumer is parked after inserting an
+ * item. The consumer drains all the available items in a single call, through {@link #takeAll(Object[])} and
+ * {@link #pollAll(Object[], long, TimeUnit)}.
+ *
+ * <p>When the queue is full, producers briefly park and retry.
+ */
+public class BlockingConsumerMpscQueue<T> extends BlockingMpscQueue<T> {
+
+    // Number of spin loops before parking the consumer
+    private static final int CONSUMER_SPIN_LOOPS = 100;
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private volatile Thread waitingConsumer;
+
+    // Only accessed by the consumer thread
+    private final ArrayFiller<T> filler = new ArrayFiller<>();
+
+    public BlockingConsumerMpscQueue(int size) {
+        super(size);
+    }
+
+    @Override
+    public boolean offer(T e) {
+        if (super.offer(e)) {
+            signalConsumer();
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public void put(T e) throws InterruptedException {
+        while (!offer(e)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+        }
+    }
+
+    @Override
+    public boolean offer(T e, long timeout, TimeUnit unit) throws InterruptedException {
+        long absoluteEndTime = System.nanoTime() + unit.toNanos(timeout);
+
+        while (!offer(e)) {
+            if (System.nanoTime() > absoluteEndTime) {
+                return false;
+            }
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+        }
+
+        return true;
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        while (true) {
+            T item = poll();
+            if (item != null) {
+                return item;
+            }
+            awaitItems(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long absoluteEndTime = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            T item = poll();
+            if (item != null) {
+                return item;
+            }
+
+            long remaining = absoluteEndTime - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            awaitItems(remaining);
+        }
+    }
+
+    @Override
+    public int takeAll(T[] array) throws InterruptedException {
+        while (true) {
+            int items = drainTo(array);
+            if (items > 0) {
+                return items;
+            }
+            awaitItems(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public int pollAll(T[] array, long timeout, TimeUnit unit) throws InterruptedException {
+        long absoluteEndTime = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            int items = drainTo(array);
+            if (items > 0) {
+                return items;
+            }
+
+            long remaining = absoluteEndTime - System.nanoTime();
+            if (remaining <= 0) {
+                return 0;
+            }
+            awaitItems(remaining);
+        }
+    }
+
+    private int drainTo(T[] array) {
+        filler.array = array;
+        filler.count = 0;
+        drain(filler, array.length);
+        filler.array = null;
+        return filler.count;
+    }
+
+    private void signalConsumer() {
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Wait until the queue is not empty, the timeout expires or the thread is interrupted.
+     */
+    private void awaitItems(long timeoutNanos) throws InterruptedException {
+        for (int i = 0; i < CONSUMER_SPIN_LOOPS; i++) {
+            if (!isEmpty()) {
+                return;
+            }
+            BusyWait.onSpinWait();
+        }
+
+        waitingConsumer = Thread.currentThread();
+        try {
+            // Check again after publishing the waiting thread, so that a concurrent producer either sees
+            // the consumer waiting or the consumer sees the new item
+            if (isEmpty()) {
+                if (timeoutNanos == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, timeoutNanos);
+                }
+            }
+        } finally {
+            waitingConsumer = null;
+        }
+
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private static final class ArrayFiller<T> implements MessagePassingQueue.Consumer<T> {
+        T[] array;
+        int count;
+
+        @Override
+        public void accept(T item) {
+            array[count++] = item;
+        }
+    }
+}
@@ -67,6 +67,25 @@ public class MemoryLimitController {
         }
     }
 
+    /**
+     * Reserve memory over the limit, up to twice the limit. The caller is expected to apply back-pressure in some
+     * other way, until {@link #isMemoryLimitExceeded()} returns false.
+     *
+     * @return false if the memory used is already over twice the limit
+     */
+    public boolean tryForceReserveMemory(long size) {
+        while (true) {
+            long current = currentUsage.get();
+            if (memoryLimit > 0 && current > 2 * memoryLimit) {
+                return false;
+            }
+
+            if (currentUsage.compareAndSet(current, current + size)) {
+                return true;
+            }
+        }
+    }
+
     public void releaseMemory(long size) {
         long newUsage = currentUsage.addAndGet(-size);
         if (newUsage + size > memoryLimit && newUsage <= memoryLimit) {
@@ -83,4 +102,8 @@ public class MemoryLimitController {
     public long currentUsage() {
         return currentUsage.get();
     }
+
+    public boolean isMemoryLimitExceeded() {
+        return memoryLimit > 0 && currentUsage.get() > memoryLimit;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.bookkeeper.common.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link BlockingConsumerMpscQueue}.
+ */
+public class BlockingConsumerMpscQueueTest {
+
+    @Test
+    public void basicTest() throws Exception {
+        final int size = 16;
+        BlockingConsumerMpscQueue<Integer> queue = new BlockingConsumerMpscQueue<>(size);
+
+        for (int i = 0; i < size; i++) {
+            queue.put(i);
+            assertEquals(size - i - 1, queue.remainingCapacity());
+        }
+
+        assertEquals(size, queue.size());
+        assertFalse(queue.offer(1, 100, TimeUnit.MILLISECONDS));
+
+        for (int i = 0; i < size; i++) {
+            assertEquals(i, queue.take().intValue());
+        }
+
+        assertEquals(0, queue.size());
+        assertNull(queue.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testTakeAll() throws Exception {
+        BlockingConsumerMpscQueue<Integer> queue = new BlockingConsumerMpscQueue<>(16);
+        for (int i = 0; i < 10; i++) {
+            queue.put(i);
+        }
+
+        Integer[] array = new Integer[4];
+        assertEquals(4, queue.takeAll(array));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, array[i].intValue());
+        }
+
+        array = new Integer[16];
+        assertEquals(6, queue.takeAll(array));
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i + 4, array[i].intValue());
+        }
+
+        assertEquals(0, queue.pollAll(array, 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testConsumerWakeUp() throws Exception {
+        BlockingConsumerMpscQueue<Integer> queue = new BlockingConsumerMpscQueue<>(16);
+        CountDownLatch consumerStarted = new CountDownLatch(1);
+        AtomicInteger received = new AtomicInteger(-1);
+
+        Thread consumer = new Thread(() -> {
+            consumerStarted.countDown();
+            try {
+                received.set(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        consumerStarted.await();
+        // Let the consumer park
+        Thread.sleep(100);
+
+        queue.put(5);
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(consumer.isAlive());
+        assertEquals(5, received.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testMultipleProducers() throws Exception {
+        final int numProducers = 8;
+        final int itemsPerProducer = 100_000;
+        BlockingConsumerMpscQueue<Integer> queue = new BlockingConsumerMpscQueue<>(1024);
+
+        Thread[] producers = new Thread[numProducers];
+        for (int p = 0; p < numProducers; p++) {
+            final int producer = p;
+            producers[p] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < itemsPerProducer; i++) {
+                        queue.put(producer * itemsPerProducer + i);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            producers[p].start();
+        }
+
+        // Items from each producer are received in order
+        int[] lastReceived = new int[numProducers];
+        Arrays.fill(lastReceived, -1);
+        Integer[] array = new Integer[256];
+        int total = 0;
+        while (total < numProducers * itemsPerProducer) {
+            int items = queue.takeAll(array);
+            for (int i = 0; i < items; i++) {
+                int producer = array[i] / itemsPerProducer;
+                int item = array[i] % itemsPerProducer;
+                assertTrue(item > lastReceived[producer]);
+                lastReceived[producer] = item;
+            }
+            total += items;
+        }
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
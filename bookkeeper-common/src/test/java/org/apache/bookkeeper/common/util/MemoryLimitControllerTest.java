@@ -64,6 +64,28 @@ public class MemoryLimitControllerTest {
         assertEquals(101, mlc.currentUsage());
     }
 
+    @Test
+    public void testForceReserve() throws Exception {
+        MemoryLimitController mlc = new MemoryLimitController(100);
+
+        mlc.reserveMemory(101);
+        assertTrue(mlc.isMemoryLimitExceeded());
+        assertFalse(mlc.tryReserveMemory(1));
+
+        assertTrue(mlc.tryForceReserveMemory(10));
+        assertEquals(111, mlc.currentUsage());
+        assertTrue(mlc.isMemoryLimitExceeded());
+
+        // the forced reservations stop at twice the limit
+        assertTrue(mlc.tryForceReserveMemory(90));
+        assertFalse(mlc.tryForceReserveMemory(1));
+        assertEquals(201, mlc.currentUsage());
+
+        mlc.releaseMemory(101);
+        assertFalse(mlc.isMemoryLimitExceeded());
+        assertTrue(mlc.tryReserveMemory(1));
+    }
+
     @Test
     public void testBlocking() throws Exception {
         MemoryLimitController mlc = new MemoryLimitController(100);
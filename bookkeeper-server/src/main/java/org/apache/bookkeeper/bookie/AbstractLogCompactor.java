@@ -45,8 +45,17 @@ public abstract class AbstractLogCompactor {
     protected final LogRemovalListener logRemovalListener;
 
     public AbstractLogCompactor(ServerConfiguration conf, LogRemovalListener logRemovalListener) {
+        this(conf, logRemovalListener, new Throttler(conf));
+    }
+
+    /**
+     * Create a compactor which shares its throttler, so that the compactors running in parallel
+     * share the same compaction rate.
+     */
+    public AbstractLogCompactor(ServerConfiguration conf, LogRemovalListener logRemovalListener,
+                                Throttler throttler) {
         this.conf = conf;
-        this.throttler = new Throttler(conf);
+        this.throttler = throttler;
         this.logRemovalListener = logRemovalListener;
     }
 
@@ -76,18 +85,23 @@ public abstract class AbstractLogCompactor {
                 ? conf.getCompactionRateByBytes() : conf.getCompactionRateByEntries());
         }
 
-        // acquire. if bybytes: bytes of this entry; if byentries: 1.
-        boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
-            return rateLimiter.tryAcquire(this.isThrottleByBytes ? permits : 1, timeout, unit);
+        // acquire. if bybytes: bytes of these entries; if byentries: number of entries.
+        boolean tryAcquire(int bytes, int entries, long timeout, TimeUnit unit) {
+            return rateLimiter.tryAcquire(this.isThrottleByBytes ? bytes : entries, timeout, unit);
         }
 
         // GC thread will check the status for the rate limiter
         // If the compactor is being stopped by other threads,
         // and the GC thread is still limited, the compact task will be stopped.
         public void acquire(int permits) throws IOException {
+            acquire(permits, 1);
+        }
+
+        // Same as acquire(int), for a run of entries moved at once
+        public void acquire(int bytes, int entries) throws IOException {
             long timeout = 100;
             long start = System.currentTimeMillis();
-            while (!tryAcquire(permits, timeout, TimeUnit.MILLISECONDS)) {
+            while (!tryAcquire(bytes, entries, timeout, TimeUnit.MILLISECONDS)) {
                 if (cancelled.get()) {
                     throw new IOException("Failed to get permits takes "
                             + (System.currentTimeMillis() - start)
@@ -166,6 +166,12 @@ public interface BookKeeperServerStats {
     String JOURNAL_NUM_FLUSH_EMPTY_QUEUE = "JOURNAL_NUM_FLUSH_EMPTY_QUEUE";
     String JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES = "JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES";
     String JOURNAL_NUM_FLUSH_MAX_WAIT = "JOURNAL_NUM_FLUSH_MAX_WAIT";
+    String JOURNAL_NUM_CHANNEL_PAUSED = "JOURNAL_NUM_CHANNEL_PAUSED";
+    String JOURNAL_GROUP_WAIT_USEC = "JOURNAL_GROUP_WAIT_USEC";
+    String JOURNAL_GROUP_WAIT_INCREASE = "JOURNAL_GROUP_WAIT_INCREASE";
+    String JOURNAL_GROUP_WAIT_DECREASE = "JOURNAL_GROUP_WAIT_DECREASE";
+    String JOURNAL_GROUP_WAIT_LIGHT_LOAD = "JOURNAL_GROUP_WAIT_LIGHT_LOAD";
+    String JOURNAL_OBSERVED_ADD_P99_LATENCY_USEC = "JOURNAL_OBSERVED_ADD_P99_LATENCY_USEC";
     String SKIP_LIST_FLUSH_BYTES = "SKIP_LIST_FLUSH_BYTES";
     String SKIP_LIST_THROTTLING = "SKIP_LIST_THROTTLING";
     String SKIP_LIST_THROTTLING_LATENCY = "SKIP_LIST_THROTTLING_LATENCY";
@@ -20,6 +20,8 @@ package org.apache.bookkeeper.bookie;
 
 import io.netty.buffer.ByteBuf;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.PrimitiveIterator;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.common.util.Watcher;
@@ -57,6 +59,26 @@ public interface Bookie {
     // TODO: Shouldn't this be async?
     ByteBuf readEntry(long ledgerId, long entryId)
             throws IOException, NoLedgerException, BookieException;
+
+    /**
+     * Read up to maxCount consecutive entries of a ledger, starting at firstEntryId.
+     * Reading stops at the first entry which can't be read. An error is only raised if the
+     * first entry can't be read.
+     */
+    default List<ByteBuf> readEntries(long ledgerId, long firstEntryId, int maxCount)
+            throws IOException, NoLedgerException, BookieException {
+        List<ByteBuf> entries = new ArrayList<>();
+        entries.add(readEntry(ledgerId, firstEntryId));
+        for (int i = 1; i < maxCount; i++) {
+            try {
+                entries.add(readEntry(ledgerId, firstEntryId + i));
+            } catch (IOException | BookieException e) {
+                break;
+            }
+        }
+        return entries;
+    }
+
     long readLastAddConfirmed(long ledgerId) throws IOException, BookieException;
     PrimitiveIterator.OfLong getListOfEntriesOfLedger(long ledgerId) throws IOException, NoLedgerException;
 
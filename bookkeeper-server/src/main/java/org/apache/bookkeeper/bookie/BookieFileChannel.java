@@ -36,6 +36,17 @@ public interface BookieFileChannel {
      */
     FileChannel getFileChannel() throws FileNotFoundException, IOException;
 
+    /**
+     * Get the FileChannel from the provider, either to write a new file or to read an existing one.
+     * Defaults to {@link #getFileChannel()}, for channels which can do both.
+     *
+     * @param forWrite whether the file is opened to be written
+     * @return
+     */
+    default FileChannel getFileChannel(boolean forWrite) throws FileNotFoundException, IOException {
+        return getFileChannel();
+    }
+
     /**
      * Check the given file if exists.
      *
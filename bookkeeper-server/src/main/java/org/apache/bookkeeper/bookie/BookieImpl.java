@@ -611,8 +611,17 @@ public class BookieImpl implements Bookie {
             }
         };
 
-        for (Journal journal : journals) {
-            replay(journal, scanner);
+        int replayThreads = conf.getNumJournalReplayThreads();
+        if (replayThreads > 1) {
+            try (ParallelJournalScanner parallelScanner = new ParallelJournalScanner(scanner, replayThreads)) {
+                for (Journal journal : journals) {
+                    replay(journal, parallelScanner);
+                }
+            }
+        } else {
+            for (Journal journal : journals) {
+                replay(journal, scanner);
+            }
         }
         long elapsedTs = System.currentTimeMillis() - startTs;
         LOG.info("Finished replaying journal in {} ms.", elapsedTs);
@@ -648,6 +657,10 @@ public class BookieImpl implements Bookie {
             }
             LOG.info("Replaying journal {} from position {}", id, logPosition);
             long scanOffset = journal.scanJournal(id, logPosition, scanner, conf.isSkipReplayJournalInvalidRecord());
+            if (scanner instanceof ParallelJournalScanner) {
+                // The log mark must not move past records that are not applied yet
+                ((ParallelJournalScanner) scanner).waitForPendingRecords();
+            }
             // Update LastLogMark after completely replaying journal
             // scanOffset will point to EOF position
             // After LedgerStorage flush, SyncThread should persist this to disk
@@ -1162,6 +1175,36 @@ public class BookieImpl implements Bookie {
         }
     }
 
+    @Override
+    public List<ByteBuf> readEntries(long ledgerId, long firstEntryId, int maxCount)
+            throws IOException, NoLedgerException, BookieException {
+        long requestNanos = MathUtils.nowInNano();
+        boolean success = false;
+        long entriesSize = 0;
+        try {
+            LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Reading up to {} entries from {}@{}", maxCount, firstEntryId, ledgerId);
+            }
+            List<ByteBuf> entries = handle.readEntries(firstEntryId, maxCount);
+            for (ByteBuf entry : entries) {
+                entriesSize += entry.readableBytes();
+                bookieStats.getReadBytesStats().registerSuccessfulValue(entry.readableBytes());
+            }
+            bookieStats.getReadBytes().addCount(entriesSize);
+            success = true;
+            return entries;
+        } finally {
+            long elapsedNanos = MathUtils.elapsedNanos(requestNanos);
+            if (success) {
+                bookieStats.getReadEntryStats().registerSuccessfulEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+            } else {
+                bookieStats.getReadEntryStats().registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+                bookieStats.getReadBytesStats().registerFailedValue(entriesSize);
+            }
+        }
+    }
+
     public long readLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
         return handle.getLastAddConfirmed();
@@ -144,6 +144,91 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
         }
     }
 
+    /**
+     * Write all the data in src to the {@link FileChannel} without copying it in the write buffer.
+     *
+     * <p>The data already in the write buffer and the buffers backing src are written with a single gathering
+     * write, so that src can be released as soon as this method returns. This is meant for large direct buffers,
+     * small ones are cheaper to copy with {@link #write(ByteBuf)}.
+     *
+     * @param src The source ByteBuf which contains the data to be written.
+     * @throws IOException if a write operation fails.
+     */
+    public void writeGathering(ByteBuf src) throws IOException {
+        boolean shouldForceWrite = false;
+        synchronized (this) {
+            int len = src.readableBytes();
+            ByteBuffer[] srcBuffers = src.nioBuffers();
+            ByteBuffer[] buffers;
+            int buffered = writeBuffer.writerIndex();
+            if (buffered > 0) {
+                buffers = new ByteBuffer[srcBuffers.length + 1];
+                buffers[0] = writeBuffer.internalNioBuffer(0, buffered);
+                System.arraycopy(srcBuffers, 0, buffers, 1, srcBuffers.length);
+            } else {
+                buffers = srcBuffers;
+            }
+
+            long remaining = (long) buffered + len;
+            while (remaining > 0) {
+                remaining -= fileChannel.write(buffers);
+            }
+            writeBuffer.clear();
+            writeBufferStartPosition.set(fileChannel.position());
+
+            position += len;
+            if (doRegularFlushes) {
+                unpersistedBytes.addAndGet(len);
+                if (unpersistedBytes.get() >= unpersistedBytesBound) {
+                    shouldForceWrite = true;
+                }
+            }
+        }
+        if (shouldForceWrite) {
+            forceWrite(false);
+        }
+    }
+
+    /**
+     * Append a range of another file to the {@link FileChannel}, copying it from file to file
+     * without reading it into memory.
+     *
+     * <p>The data in the write buffer is written first, so that the range is appended at {@link #position()}.
+     *
+     * @param src The file to copy the range from.
+     * @param srcPosition The position of the range in src.
+     * @param count The length of the range.
+     * @throws IOException if the range is not fully available in src or a write operation fails.
+     */
+    public void transferFrom(FileChannel src, long srcPosition, long count) throws IOException {
+        boolean shouldForceWrite = false;
+        synchronized (this) {
+            flush();
+
+            long transferred = 0;
+            while (transferred < count) {
+                long n = src.transferTo(srcPosition + transferred, count - transferred, fileChannel);
+                if (n <= 0 && srcPosition + transferred >= src.size()) {
+                    throw new IOException("Short transfer: " + transferred + " of " + count + " bytes at "
+                            + srcPosition);
+                }
+                transferred += n;
+            }
+            writeBufferStartPosition.set(fileChannel.position());
+
+            position += count;
+            if (doRegularFlushes) {
+                unpersistedBytes.addAndGet(count);
+                if (unpersistedBytes.get() >= unpersistedBytesBound) {
+                    shouldForceWrite = true;
+                }
+            }
+        }
+        if (shouldForceWrite) {
+            forceWrite(false);
+        }
+    }
+
     /**
      * Get the position where the next write operation will begin writing from.
      * @return
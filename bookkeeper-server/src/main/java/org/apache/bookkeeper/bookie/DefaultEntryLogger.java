@@ -45,6 +45,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -59,6 +60,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Pattern;
 import org.apache.bookkeeper.bookie.storage.CompactionEntryLog;
 import org.apache.bookkeeper.bookie.storage.EntryLogScanner;
+import org.apache.bookkeeper.bookie.storage.EntryLogTransferScanner;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.NullStatsLogger;
@@ -283,6 +285,9 @@ public class DefaultEntryLogger implements EntryLogger {
     static final int MIN_SANE_ENTRY_SIZE = 8 + 8;
     static final long MB = 1024 * 1024;
 
+    // Largest run of contiguous entries moved with a single file to file copy by transferEntries
+    static final int MAX_TRANSFER_RUN_SIZE = 4 * 1024 * 1024;
+
     private final int maxSaneEntrySize;
 
     private final ByteBufAllocator allocator;
@@ -351,7 +356,10 @@ public class DefaultEntryLogger implements EntryLogger {
         this.recentlyCreatedEntryLogsStatus = new RecentEntryLogsStatus(logId + 1);
         this.entryLoggerAllocator = new EntryLoggerAllocator(conf, ledgerDirsManager, recentlyCreatedEntryLogsStatus,
                 logId, allocator);
-        if (entryLogPerLedgerEnabled) {
+        if (entryLogPerLedgerEnabled && conf.getEntryLogLifetimeGroups() > 0) {
+            this.entryLogManager = new EntryLogManagerForLedgerLifetimeGroups(conf, ledgerDirsManager,
+                    entryLoggerAllocator, listeners, recentlyCreatedEntryLogsStatus, statsLogger);
+        } else if (entryLogPerLedgerEnabled) {
             this.entryLogManager = new EntryLogManagerForEntryLogPerLedger(conf, ledgerDirsManager,
                     entryLoggerAllocator, listeners, recentlyCreatedEntryLogsStatus, statsLogger);
         } else {
@@ -364,6 +372,13 @@ public class DefaultEntryLogger implements EntryLogger {
         return entryLogManager;
     }
 
+    /**
+     * Forget what is tracked for a ledger which has been deleted.
+     */
+    public void ledgerDeleted(long ledgerId) {
+        entryLogManager.ledgerDeleted(ledgerId);
+    }
+
     void addListener(EntryLogListener listener) {
         if (null != listener) {
             listeners.add(listener);
@@ -617,6 +632,11 @@ public class DefaultEntryLogger implements EntryLogger {
         return entryLogManager.addEntry(ledger, entry, true);
     }
 
+    @Override
+    public long addCompactedEntry(long ledger, ByteBuf entry) throws IOException {
+        return entryLogManager.addCompactedEntry(ledger, entry);
+    }
+
     private final FastThreadLocal<ByteBuf> sizeBuffer = new FastThreadLocal<ByteBuf>() {
         @Override
         protected ByteBuf initialValue() throws Exception {
@@ -1052,6 +1072,122 @@ public class DefaultEntryLogger implements EntryLogger {
         }
     }
 
+    @Override
+    public void transferEntries(long entryLogId, EntryLogTransferScanner scanner) throws IOException {
+        if (entryLogManager.getCurrentLogIfPresent(entryLogId) != null) {
+            throw new IOException("Cannot transfer the entries of the current entry log " + entryLogId);
+        }
+        // Buffer where to read the entrySize (4 bytes), the ledgerId (8 bytes) and the entryId (8 bytes)
+        ByteBuf headerBuffer = Unpooled.buffer(4 + 8 + 8);
+        BufferedReadChannel bc;
+        // Get the BufferedChannel for the current entry log file
+        try {
+            bc = getChannelForLogId(entryLogId);
+        } catch (IOException e) {
+            LOG.warn("Failed to get channel to transfer entry log: " + entryLogId + ".log");
+            throw e;
+        }
+        TransferRun run = new TransferRun(bc.validateAndGetFileChannel(), scanner);
+        long pos = LOGFILE_HEADER_SIZE;
+
+        while (pos < bc.size()) {
+            headerBuffer.clear();
+            int rc = bc.read(headerBuffer, pos);
+            if (rc < 4 + 8) {
+                LOG.warn("Short read for entry size from entrylog {}", entryLogId);
+                break;
+            }
+            int entrySize = headerBuffer.readInt();
+            if (entrySize <= 0) { // hitting padding
+                pos++;
+                continue;
+            }
+            long ledgerId = headerBuffer.readLong();
+            if (ledgerId == INVALID_LID || !scanner.accept(ledgerId)) {
+                // skip this entry
+                pos += 4 + entrySize;
+                continue;
+            }
+            if (rc != headerBuffer.capacity() || entrySize < MIN_SANE_ENTRY_SIZE
+                    || pos + 4 + entrySize > bc.size()) {
+                LOG.warn("Short read for ledger entry from entryLog {}@{} ({})", entryLogId, pos, entrySize);
+                break;
+            }
+            long entryId = headerBuffer.readLong();
+
+            if (!run.canAppend(ledgerId, pos, entrySize)) {
+                run.transfer();
+            }
+            run.append(ledgerId, entryId, pos, entrySize);
+            pos += 4 + entrySize;
+        }
+        run.transfer();
+    }
+
+    /**
+     * A run of contiguous entries of an entry log, copied to the current entry log at once.
+     */
+    private class TransferRun {
+        private final FileChannel src;
+        private final EntryLogTransferScanner scanner;
+        private final ConcurrentLongLongHashMap ledgersSize = ConcurrentLongLongHashMap.newBuilder()
+                .expectedItems(16).concurrencyLevel(1).build();
+        private long start = -1;
+        private int length = 0;
+        private long firstLedgerId;
+        private int count = 0;
+        private long[] ledgerIds = new long[64];
+        private long[] entryIds = new long[64];
+        private int[] entrySizes = new int[64];
+
+        TransferRun(FileChannel src, EntryLogTransferScanner scanner) {
+            this.src = src;
+            this.scanner = scanner;
+        }
+
+        boolean canAppend(long ledgerId, long pos, int entrySize) {
+            return count == 0
+                    || (pos == start + length
+                        && length + 4L + entrySize <= MAX_TRANSFER_RUN_SIZE
+                        && (!entryLogPerLedgerEnabled || ledgerId == firstLedgerId));
+        }
+
+        void append(long ledgerId, long entryId, long pos, int entrySize) {
+            if (count == 0) {
+                start = pos;
+                firstLedgerId = ledgerId;
+            }
+            if (count == ledgerIds.length) {
+                ledgerIds = Arrays.copyOf(ledgerIds, count * 2);
+                entryIds = Arrays.copyOf(entryIds, count * 2);
+                entrySizes = Arrays.copyOf(entrySizes, count * 2);
+            }
+            ledgerIds[count] = ledgerId;
+            entryIds[count] = entryId;
+            entrySizes[count] = entrySize;
+            count++;
+            length += 4 + entrySize;
+            ledgersSize.addAndGet(ledgerId, 4 + entrySize);
+        }
+
+        void transfer() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            scanner.beforeTransfer(length, count);
+            long location = entryLogManager.transferEntries(firstLedgerId, src, start, length, ledgersSize);
+            for (int i = 0; i < count; i++) {
+                // Skip the entry size
+                location += 4;
+                scanner.process(ledgerIds[i], entryIds[i], location, entrySizes[i]);
+                location += entrySizes[i];
+            }
+            count = 0;
+            length = 0;
+            ledgersSize.clear();
+        }
+    }
+
     public EntryLogMetadata getEntryLogMetadata(long entryLogId, AbstractLogCompactor.Throttler throttler)
         throws IOException {
         // First try to extract the EntryLogMetadata from the index, if there's no index then fallback to scanning the
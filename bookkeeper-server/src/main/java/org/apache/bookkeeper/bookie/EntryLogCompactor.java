@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.bookkeeper.bookie.storage.EntryLogScanner;
+import org.apache.bookkeeper.bookie.storage.EntryLogTransferScanner;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.slf4j.Logger;
@@ -35,6 +36,8 @@ import org.slf4j.LoggerFactory;
  * This is the basic entry log compactor to compact entry logs.
  * The compaction is done by scanning the old entry log file, copy the active ledgers to the
  * current entry logger and remove the old entry log when the scan is over.
+ * When the entry logger supports it, the active entries can be moved from file to file instead,
+ * without reading them into memory.
  */
 public class EntryLogCompactor extends AbstractLogCompactor {
     private static final Logger LOG = LoggerFactory.getLogger(EntryLogCompactor.class);
@@ -43,23 +46,39 @@ public class EntryLogCompactor extends AbstractLogCompactor {
     final EntryLogger entryLogger;
     final CompactableLedgerStorage ledgerStorage;
     private final int maxOutstandingRequests;
+    private final boolean transferEntries;
 
     public EntryLogCompactor(
             ServerConfiguration conf,
             EntryLogger entryLogger,
             CompactableLedgerStorage ledgerStorage,
             LogRemovalListener logRemover) {
-        super(conf, logRemover);
+        this(conf, entryLogger, ledgerStorage, logRemover, new Throttler(conf));
+    }
+
+    public EntryLogCompactor(
+            ServerConfiguration conf,
+            EntryLogger entryLogger,
+            CompactableLedgerStorage ledgerStorage,
+            LogRemovalListener logRemover,
+            Throttler throttler) {
+        super(conf, logRemover, throttler);
         this.maxOutstandingRequests = conf.getCompactionMaxOutstandingRequests();
         this.entryLogger = entryLogger;
         this.ledgerStorage = ledgerStorage;
+        this.transferEntries = conf.isCompactionTransferEntriesEnabled();
     }
 
     @Override
     public boolean compact(EntryLogMetadata entryLogMeta) {
         try {
-            entryLogger.scanEntryLog(entryLogMeta.getEntryLogId(),
-                scannerFactory.newScanner(entryLogMeta));
+            if (transferEntries) {
+                entryLogger.transferEntries(entryLogMeta.getEntryLogId(),
+                    scannerFactory.newTransferScanner(entryLogMeta));
+            } else {
+                entryLogger.scanEntryLog(entryLogMeta.getEntryLogId(),
+                    scannerFactory.newScanner(entryLogMeta));
+            }
             scannerFactory.flush();
             LOG.info("Removing entry log {} after compaction", entryLogMeta.getEntryLogId());
             logRemovalListener.removeEntryLog(entryLogMeta.getEntryLogId());
@@ -99,13 +118,37 @@ public class EntryLogCompactor extends AbstractLogCompactor {
                     }
                     long entryId = entry.getLong(entry.readerIndex() + 8);
 
-                    long newoffset = entryLogger.addEntry(ledgerId, entry);
+                    long newoffset = entryLogger.addCompactedEntry(ledgerId, entry);
                     offsets.add(new EntryLocation(ledgerId, entryId, newoffset));
 
                 }
             };
         }
 
+        EntryLogTransferScanner newTransferScanner(final EntryLogMetadata meta) {
+
+            return new EntryLogTransferScanner() {
+                @Override
+                public boolean accept(long ledgerId) {
+                    return meta.containsLedger(ledgerId);
+                }
+
+                @Override
+                public void beforeTransfer(int length, int entries) throws IOException {
+                    throttler.acquire(length, entries);
+                }
+
+                @Override
+                public void process(long ledgerId, long entryId, long location, int entrySize)
+                        throws IOException {
+                    if (offsets.size() > maxOutstandingRequests) {
+                        flush();
+                    }
+                    offsets.add(new EntryLocation(ledgerId, entryId, location));
+                }
+            };
+        }
+
         void flush() throws IOException {
             if (offsets.isEmpty()) {
                 if (LOG.isDebugEnabled()) {
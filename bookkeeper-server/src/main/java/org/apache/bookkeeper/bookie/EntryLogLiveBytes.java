@@ -0,0 +1,189 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Arrays;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+
+/**
+ * Live bytes of the entry logs, kept up to date as ledgers are deleted.
+ *
+ * <p>The entry logs holding each ledger are indexed when their metadata is checked, so that a deleted
+ * ledger only decrements the live bytes of the entry logs it was written to, and marks them for the
+ * garbage collector to revisit. A deletion costs the number of entry logs of the ledger, not the
+ * number of entry logs of the bookie. The index keeps a flat array per ledger and per entry log, and
+ * a removed entry log is dropped from the arrays of its ledgers.
+ *
+ * <p>The index is not persisted. The live bytes of an entry log reach the {@link EntryLogMetadataMap},
+ * persistent or not, once the garbage collector revisits it and stores its updated metadata. After a
+ * restart, the index is rebuilt from that map by a full check of the ledgers.
+ */
+class EntryLogLiveBytes {
+
+    /**
+     * Ledgers deleted and entry logs to revisit since the previous snapshot.
+     */
+    static class Snapshot {
+        final ConcurrentLongHashSet deletedLedgers;
+        final ConcurrentLongHashSet entryLogs;
+
+        Snapshot(ConcurrentLongHashSet deletedLedgers, ConcurrentLongHashSet entryLogs) {
+            this.deletedLedgers = deletedLedgers;
+            this.entryLogs = entryLogs;
+        }
+    }
+
+    private static final long[] NO_ENTRY_LOGS = new long[0];
+
+    // ledger id -> pairs of (entry log id, bytes of the ledger in the entry log)
+    private final ConcurrentLongHashMap<long[]> ledgerEntryLogs =
+            ConcurrentLongHashMap.<long[]>newBuilder().build();
+    // entry log id -> ids of the ledgers indexed with the entry log
+    private final ConcurrentLongHashMap<long[]> entryLogLedgers =
+            ConcurrentLongHashMap.<long[]>newBuilder().build();
+    // entry log id -> bytes of the ledgers of the entry log which are not deleted
+    private final ConcurrentLongLongHashMap liveBytes = ConcurrentLongLongHashMap.newBuilder().build();
+    private ConcurrentLongHashSet deletedLedgers = ConcurrentLongHashSet.newBuilder().build();
+    private ConcurrentLongHashSet dirtyEntryLogs = ConcurrentLongHashSet.newBuilder().build();
+
+    /**
+     * Index the ledgers of an entry log whose metadata was just checked. A ledger deleted since the
+     * last snapshot is not counted, and the entry log is revisited after the next snapshot.
+     */
+    synchronized void addEntryLog(EntryLogMetadata meta) {
+        long entryLogId = meta.getEntryLogId();
+        // an entry log is indexed again when it is revisited
+        unindexEntryLog(entryLogId);
+
+        long[] ledgers = new long[(int) meta.getLedgersMap().size()];
+        int[] numLedgers = new int[] { 0 };
+        long[] bytes = new long[] { 0L };
+        meta.getLedgersMap().forEach((ledgerId, size) -> {
+            if (deletedLedgers.contains(ledgerId)) {
+                dirtyEntryLogs.add(entryLogId);
+                return;
+            }
+            long[] entryLogs = ledgerEntryLogs.get(ledgerId);
+            if (entryLogs == null) {
+                entryLogs = NO_ENTRY_LOGS;
+            }
+            entryLogs = Arrays.copyOf(entryLogs, entryLogs.length + 2);
+            entryLogs[entryLogs.length - 2] = entryLogId;
+            entryLogs[entryLogs.length - 1] = size;
+            ledgerEntryLogs.put(ledgerId, entryLogs);
+            ledgers[numLedgers[0]++] = ledgerId;
+            bytes[0] += size;
+        });
+        if (numLedgers[0] > 0) {
+            entryLogLedgers.put(entryLogId, Arrays.copyOf(ledgers, numLedgers[0]));
+        }
+        liveBytes.put(entryLogId, bytes[0]);
+    }
+
+    synchronized void removeEntryLog(long entryLogId) {
+        unindexEntryLog(entryLogId);
+        liveBytes.remove(entryLogId);
+        dirtyEntryLogs.remove(entryLogId);
+    }
+
+    /**
+     * Drop an entry log from the entry logs of its ledgers.
+     */
+    private void unindexEntryLog(long entryLogId) {
+        long[] ledgers = entryLogLedgers.remove(entryLogId);
+        if (ledgers == null) {
+            return;
+        }
+        for (long ledgerId : ledgers) {
+            // null once the ledger is deleted
+            long[] entryLogs = ledgerEntryLogs.get(ledgerId);
+            if (entryLogs == null) {
+                continue;
+            }
+            for (int i = 0; i < entryLogs.length; i += 2) {
+                if (entryLogs[i] == entryLogId) {
+                    if (entryLogs.length == 2) {
+                        ledgerEntryLogs.remove(ledgerId);
+                    } else {
+                        long[] remaining = Arrays.copyOf(entryLogs, entryLogs.length - 2);
+                        System.arraycopy(entryLogs, i + 2, remaining, i, entryLogs.length - i - 2);
+                        ledgerEntryLogs.put(ledgerId, remaining);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Called when a ledger is deleted from the ledger storage.
+     */
+    synchronized void ledgerDeleted(long ledgerId) {
+        deletedLedgers.add(ledgerId);
+        long[] entryLogs = ledgerEntryLogs.remove(ledgerId);
+        if (entryLogs == null) {
+            return;
+        }
+        for (int i = 0; i < entryLogs.length; i += 2) {
+            liveBytes.addAndGet(entryLogs[i], -entryLogs[i + 1]);
+            dirtyEntryLogs.add(entryLogs[i]);
+        }
+    }
+
+    /**
+     * Take the ledgers deleted, and the entry logs holding them, since the previous snapshot.
+     */
+    synchronized Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot(deletedLedgers, dirtyEntryLogs);
+        deletedLedgers = ConcurrentLongHashSet.newBuilder().build();
+        dirtyEntryLogs = ConcurrentLongHashSet.newBuilder().build();
+        return snapshot;
+    }
+
+    /**
+     * Drop the index, before all the entry logs are checked and added again.
+     */
+    synchronized void clear() {
+        ledgerEntryLogs.clear();
+        entryLogLedgers.clear();
+        liveBytes.clear();
+    }
+
+    @VisibleForTesting
+    synchronized int numEntryLogsOfLedger(long ledgerId) {
+        long[] entryLogs = ledgerEntryLogs.get(ledgerId);
+        return entryLogs == null ? 0 : entryLogs.length / 2;
+    }
+
+    synchronized long getLiveBytes(long entryLogId) {
+        return liveBytes.get(entryLogId);
+    }
+
+    synchronized long getTotalLiveBytes() {
+        long[] total = new long[] { 0L };
+        liveBytes.forEach((entryLogId, bytes) -> total[0] += bytes);
+        return total[0];
+    }
+}
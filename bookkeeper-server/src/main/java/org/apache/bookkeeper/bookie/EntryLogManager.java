@@ -24,8 +24,10 @@ package org.apache.bookkeeper.bookie;
 import io.netty.buffer.ByteBuf;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.List;
 import org.apache.bookkeeper.bookie.DefaultEntryLogger.BufferedLogChannel;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 
 interface EntryLogManager {
 
@@ -35,6 +37,23 @@ interface EntryLogManager {
      */
     long addEntry(long ledger, ByteBuf entry, boolean rollLog) throws IOException;
 
+    /*
+     * add an entry moved by the compaction of another entrylog to the
+     * corresponding entrylog and return the position of the entry in the
+     * entrylog
+     */
+    default long addCompactedEntry(long ledger, ByteBuf entry) throws IOException {
+        return addEntry(ledger, entry, true);
+    }
+
+    /*
+     * copy a range of another entrylog, made of contiguous entries whose size
+     * per ledger is given by ledgersSize, to the entrylog of the given ledger
+     * and return the position of the range in the entrylog
+     */
+    long transferEntries(long ledger, FileChannel src, long srcPosition, int length,
+                         ConcurrentLongLongHashMap ledgersSize) throws IOException;
+
     /*
      * gets the active logChannel with the given entryLogId. null if it is
      * not existing.
@@ -51,6 +70,12 @@ interface EntryLogManager {
      */
     void checkpoint() throws IOException;
 
+    /*
+     * forget what is tracked for the given ledger, once it has been deleted.
+     */
+    default void ledgerDeleted(long ledgerId) {
+    }
+
     /*
      * flush both current and rotated logs.
      */
@@ -29,12 +29,14 @@ import io.netty.buffer.Unpooled;
 import io.netty.util.concurrent.FastThreadLocal;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.bookie.DefaultEntryLogger.BufferedLogChannel;
 import org.apache.bookkeeper.bookie.DefaultEntryLogger.EntryLogListener;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 
 @Slf4j
 abstract class EntryLogManagerBase implements EntryLogManager {
@@ -68,8 +70,17 @@ abstract class EntryLogManagerBase implements EntryLogManager {
      */
     @Override
     public long addEntry(long ledger, ByteBuf entry, boolean rollLog) throws IOException {
+        return addEntry(ledger, ledger, entry, rollLog);
+    }
+
+    /*
+     * add entry of the ledger to the current entrylog of logKey, which is the
+     * ledger itself unless the ledgers share their entrylogs by group. This
+     * method should be guarded by the lock of logKey.
+     */
+    long addEntry(long logKey, long ledger, ByteBuf entry, boolean rollLog) throws IOException {
         int entrySize = entry.readableBytes() + 4; // Adding 4 bytes to prepend the size
-        BufferedLogChannel logChannel = getCurrentLogForLedgerForAddEntry(ledger, entrySize, rollLog);
+        BufferedLogChannel logChannel = getCurrentLogForLedgerForAddEntry(logKey, entrySize, rollLog);
         ByteBuf sizeBuffer = sizeBufferForAdd.get();
         sizeBuffer.clear();
         sizeBuffer.writeInt(entry.readableBytes());
@@ -82,6 +93,17 @@ abstract class EntryLogManagerBase implements EntryLogManager {
         return (logChannel.getLogId() << 32L) | pos;
     }
 
+    @Override
+    public long transferEntries(long ledger, FileChannel src, long srcPosition, int length,
+                                ConcurrentLongLongHashMap ledgersSize) throws IOException {
+        BufferedLogChannel logChannel = getCurrentLogForLedgerForAddEntry(ledger, length, true);
+        long pos = logChannel.position();
+        logChannel.transferFrom(src, srcPosition, length);
+        ledgersSize.forEach(logChannel::registerWrittenEntry);
+
+        return (logChannel.getLogId() << 32L) | pos;
+    }
+
     boolean reachEntryLogLimit(BufferedLogChannel logChannel, long size) {
         if (logChannel == null) {
             return false;
@@ -39,6 +39,7 @@ import com.google.common.cache.RemovalNotification;
 import io.netty.buffer.ByteBuf;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -63,6 +64,7 @@ import org.apache.bookkeeper.stats.StatsLogger;
 import org.apache.bookkeeper.stats.annotations.StatsDoc;
 import org.apache.bookkeeper.util.IOUtils;
 import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 import org.apache.commons.lang3.mutable.MutableInt;
 
 @Slf4j
@@ -628,6 +630,18 @@ class EntryLogManagerForEntryLogPerLedger extends EntryLogManagerBase {
         }
     }
 
+    @Override
+    public long transferEntries(long ledger, FileChannel src, long srcPosition, int length,
+                                ConcurrentLongLongHashMap ledgersSize) throws IOException {
+        Lock lock = getLock(ledger);
+        lock.lock();
+        try {
+            return super.transferEntries(ledger, src, srcPosition, length, ledgersSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     void createNewLog(long ledgerId) throws IOException {
         Lock lock = getLock(ledgerId);
@@ -0,0 +1,157 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+
+/**
+ * An {@link EntryLogManagerForEntryLogPerLedger} which groups the ledgers into a bounded set of
+ * active entrylogs by expected lifetime, instead of having an active entrylog for each ledger.
+ *
+ * <p>The lifetime of a ledger is expected from the time it has been written for: the ledgers written
+ * for less than the minimum age go to the first group and each next group takes the ledgers written for
+ * up to twice as long, the last group taking all the older ones. Ledgers which die young share their
+ * entrylogs, which can then be deleted without compaction once these ledgers are deleted, while the
+ * long lived ledgers do not keep them alive.
+ *
+ * <p>The first write time of each ledger is kept until the ledger is deleted, so that a ledger written
+ * rarely does not come back to the first group. It is not persisted: after a restart, ledgers are aged
+ * from their first write since the restart. The entries moved by compaction are not taken as writes: they
+ * go to the group of their ledger if its first write is known, to the last group otherwise.
+ */
+@Slf4j
+class EntryLogManagerForLedgerLifetimeGroups extends EntryLogManagerForEntryLogPerLedger {
+
+    private final int numGroups;
+    private final long minGroupAgeMillis;
+    /*
+     * the time each ledger has been first written at, forgotten once the
+     * ledger is deleted. This is bounded by the ledgers stored in the bookie,
+     * which the ledger storage already tracks one by one.
+     */
+    private final ConcurrentLongLongHashMap ledgerFirstWriteTime = ConcurrentLongLongHashMap.newBuilder().build();
+
+    EntryLogManagerForLedgerLifetimeGroups(ServerConfiguration conf, LedgerDirsManager ledgerDirsManager,
+                                           EntryLoggerAllocator entryLoggerAllocator,
+                                           List<DefaultEntryLogger.EntryLogListener> listeners,
+                                           DefaultEntryLogger.RecentEntryLogsStatus recentlyCreatedEntryLogsStatus,
+                                           StatsLogger statsLogger) throws IOException {
+        super(conf, ledgerDirsManager, entryLoggerAllocator, listeners, recentlyCreatedEntryLogsStatus, statsLogger);
+        this.numGroups = conf.getEntryLogLifetimeGroups();
+        this.minGroupAgeMillis = TimeUnit.SECONDS.toMillis(conf.getEntryLogLifetimeGroupMinAgeSeconds());
+        log.info("Grouping ledgers into {} active entry logs by lifetime, with a minimum age of {} ms",
+                numGroups, minGroupAgeMillis);
+    }
+
+    /*
+     * the key of the active entrylog of the given lifetime group. The keys
+     * are negative to not collide with ledger ids, and skip
+     * UNASSIGNED_LEDGERID.
+     */
+    static long groupKey(int group) {
+        return -2L - group;
+    }
+
+    @VisibleForTesting
+    int lifetimeGroup(long ledgerId, long nowMillis) {
+        long firstWriteTime = ledgerFirstWriteTime.putIfAbsent(ledgerId, nowMillis);
+        if (firstWriteTime < 0) {
+            firstWriteTime = nowMillis;
+        }
+        return groupOfAge(nowMillis - firstWriteTime);
+    }
+
+    /*
+     * the group of the entries of the given ledger moved by compaction, which
+     * are not a write to the ledger and so do not start its lifetime. A
+     * ledger whose entries outlived their entrylog is not expected to die
+     * young: if its first write is not known, as after a restart, it goes to
+     * the last group.
+     */
+    @VisibleForTesting
+    int compactionLifetimeGroup(long ledgerId, long nowMillis) {
+        long firstWriteTime = ledgerFirstWriteTime.get(ledgerId);
+        if (firstWriteTime < 0) {
+            return numGroups - 1;
+        }
+        return groupOfAge(nowMillis - firstWriteTime);
+    }
+
+    private int groupOfAge(long age) {
+        int group = 0;
+        for (long groupAge = minGroupAgeMillis; age >= groupAge && group < numGroups - 1; groupAge *= 2) {
+            group++;
+        }
+        return group;
+    }
+
+    @Override
+    public void ledgerDeleted(long ledgerId) {
+        ledgerFirstWriteTime.remove(ledgerId);
+    }
+
+    @VisibleForTesting
+    long numTrackedLedgers() {
+        return ledgerFirstWriteTime.size();
+    }
+
+    @Override
+    public long addEntry(long ledger, ByteBuf entry, boolean rollLog) throws IOException {
+        long logKey = groupKey(lifetimeGroup(ledger, System.currentTimeMillis()));
+        Lock lock = getLock(logKey);
+        lock.lock();
+        try {
+            return addEntry(logKey, ledger, entry, rollLog);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long addCompactedEntry(long ledger, ByteBuf entry) throws IOException {
+        long logKey = groupKey(compactionLifetimeGroup(ledger, System.currentTimeMillis()));
+        Lock lock = getLock(logKey);
+        lock.lock();
+        try {
+            return addEntry(logKey, ledger, entry, true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long transferEntries(long ledger, FileChannel src, long srcPosition, int length,
+                                ConcurrentLongLongHashMap ledgersSize) throws IOException {
+        long logKey = groupKey(compactionLifetimeGroup(ledger, System.currentTimeMillis()));
+        return super.transferEntries(logKey, src, srcPosition, length, ledgersSize);
+    }
+}
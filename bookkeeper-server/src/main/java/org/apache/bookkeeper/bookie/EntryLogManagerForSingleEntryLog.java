@@ -27,6 +27,7 @@ import static org.apache.bookkeeper.bookie.DefaultEntryLogger.UNASSIGNED_LEDGERI
 import io.netty.buffer.ByteBuf;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -37,6 +38,7 @@ import org.apache.bookkeeper.bookie.DefaultEntryLogger.BufferedLogChannel;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.LedgerDirsListener;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.util.IOUtils;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
 
 @Slf4j
 class EntryLogManagerForSingleEntryLog extends EntryLogManagerBase {
@@ -87,6 +89,12 @@ class EntryLogManagerForSingleEntryLog extends EntryLogManagerBase {
         return super.addEntry(ledger, entry, rollLog);
     }
 
+    @Override
+    public synchronized long transferEntries(long ledger, FileChannel src, long srcPosition, int length,
+                                             ConcurrentLongLongHashMap ledgersSize) throws IOException {
+        return super.transferEntries(ledger, src, srcPosition, length, ledgersSize);
+    }
+
     @Override
     synchronized BufferedLogChannel getCurrentLogForLedgerForAddEntry(long ledgerId, int entrySize,
             boolean rollLog) throws IOException {
@@ -70,6 +70,16 @@ public interface FileChannelProvider extends Closeable {
         return false;
     }
 
+    /**
+     * Whether the channels write without going through the OS page cache. Default is false.
+     * When true, there is no need to remove the written pages from the page cache.
+     *
+     * @return
+     */
+    default boolean bypassesPageCache() {
+        return false;
+    }
+
     /**
      * Notify the rename source file name to the target file name operation.
      * @param source
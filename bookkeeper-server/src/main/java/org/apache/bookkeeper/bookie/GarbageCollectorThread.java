@@ -30,14 +30,21 @@ import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import lombok.Getter;
 import org.apache.bookkeeper.bookie.BookieException.EntryLogMetadataMapException;
 import org.apache.bookkeeper.bookie.GarbageCollector.GarbageCleaner;
@@ -48,6 +55,7 @@ import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
 import org.apache.commons.lang3.mutable.MutableBoolean;
 import org.apache.commons.lang3.mutable.MutableLong;
 import org.slf4j.Logger;
@@ -130,6 +138,16 @@ public class GarbageCollectorThread implements Runnable {
     private static final AtomicLong threadNum = new AtomicLong(0);
     final AbstractLogCompactor.Throttler throttler;
 
+    // Compact multiple entry logs in parallel, each thread using one of the idle compactors.
+    // Null when entry logs are compacted one at a time on the gc thread.
+    private final ExecutorService compactionExecutor;
+    private final BlockingQueue<AbstractLogCompactor> idleCompactors;
+
+    // Live bytes of the entry logs, updated as ledgers are deleted. Null when every ledger of every
+    // entry log is looked up in the ledger storage on each run.
+    private final EntryLogLiveBytes entryLogLiveBytes;
+    private boolean fullEntryLogCheckDone = false;
+
     /**
      * Create a garbage collector thread.
      *
@@ -200,6 +218,13 @@ public class GarbageCollectorThread implements Runnable {
             }
         };
 
+        if (conf.isGcEntryLogIncrementalCheckEnabled()) {
+            this.entryLogLiveBytes = new EntryLogLiveBytes();
+            ledgerStorage.registerLedgerDeletionListener(entryLogLiveBytes::ledgerDeleted);
+        } else {
+            this.entryLogLiveBytes = null;
+        }
+
         // compaction parameters
         minorCompactionThreshold = conf.getMinorCompactionThreshold();
         minorCompactionInterval = conf.getMinorCompactionInterval() * SECOND;
@@ -230,6 +255,25 @@ public class GarbageCollectorThread implements Runnable {
             this.compactor = new EntryLogCompactor(conf, entryLogger, ledgerStorage, remover);
         }
 
+        int compactionThreads = conf.getCompactionThreads();
+        if (compactionThreads > 1 && !conf.getUseTransactionalCompaction()) {
+            // The compactors share the throttler, so the compaction rate is the same for any number of threads
+            this.idleCompactors = new LinkedBlockingQueue<>();
+            for (int i = 0; i < compactionThreads; i++) {
+                idleCompactors.add(new EntryLogCompactor(conf, entryLogger, ledgerStorage, remover,
+                        compactor.throttler));
+            }
+            this.compactionExecutor = Executors.newFixedThreadPool(compactionThreads,
+                    new DefaultThreadFactory("GarbageCollectorThread-compaction"));
+        } else {
+            if (compactionThreads > 1) {
+                LOG.warn("Transactional compaction compacts one entry log at a time, ignoring compactionThreads={}",
+                        compactionThreads);
+            }
+            this.idleCompactors = null;
+            this.compactionExecutor = null;
+        }
+
         this.throttler = new AbstractLogCompactor.Throttler(conf);
         if (minorCompactionInterval > 0 && minorCompactionThreshold > 0) {
             if (minorCompactionThreshold > 1.0d) {
@@ -429,7 +473,7 @@ public class GarbageCollectorThread implements Runnable {
                 extractMetaFromEntryLogs();
 
                 // gc entry logs
-                doGcEntryLogs();
+                doGcEntryLogs(force);
                 gcStats.getExtractMetaRuntime()
                         .registerSuccessfulEvent(MathUtils.elapsedNanos(extractMetaStart), TimeUnit.NANOSECONDS);
             } catch (EntryLogMetadataMapException e) {
@@ -521,43 +565,90 @@ public class GarbageCollectorThread implements Runnable {
 
     /**
      * Garbage collect those entry loggers which are not associated with any active ledgers.
+     *
+     * <p>When the incremental check is enabled, only the first and the forced runs look up every
+     * ledger in the ledger storage; the other runs only visit the entry logs which held the ledgers
+     * deleted since the previous run, and remove those ledgers from them.
      */
-    private void doGcEntryLogs() throws EntryLogMetadataMapException {
-        // Get a cumulative count, don't update until complete
-        AtomicLong totalEntryLogSizeAcc = new AtomicLong(0L);
+    @VisibleForTesting
+    void doGcEntryLogs(boolean force) throws EntryLogMetadataMapException {
+        if (entryLogLiveBytes == null || force || !fullEntryLogCheckDone) {
+            if (entryLogLiveBytes != null) {
+                // the full check covers the ledgers deleted so far
+                entryLogLiveBytes.snapshot();
+                entryLogLiveBytes.clear();
+            }
+            // Get a cumulative count, don't update until complete
+            AtomicLong totalEntryLogSizeAcc = new AtomicLong(0L);
 
-        // Loop through all of the entry logs and remove the non-active ledgers.
-        entryLogMetaMap.forEach((entryLogId, meta) -> {
-            try {
-                boolean modified = removeIfLedgerNotExists(meta);
-                if (meta.isEmpty()) {
-                    // This means the entry log is not associated with any active
-                    // ledgers anymore.
-                    // We can remove this entry log file now.
-                    LOG.info("Deleting entryLogId {} as it has no active ledgers!", entryLogId);
-                    if (removeEntryLog(entryLogId)) {
-                        gcStats.getReclaimedSpaceViaDeletes().addCount(meta.getTotalSize());
-                    } else {
-                        gcStats.getReclaimFailedToDelete().inc();
+            // Loop through all of the entry logs and remove the non-active ledgers.
+            entryLogMetaMap.forEach((entryLogId, meta) -> {
+                gcEntryLog(meta, removeIfLedgerNotExists(meta));
+                totalEntryLogSizeAcc.getAndAdd(meta.getRemainingSize());
+            });
+            this.totalEntryLogSize = totalEntryLogSizeAcc.get();
+            fullEntryLogCheckDone = entryLogLiveBytes != null;
+        } else {
+            EntryLogLiveBytes.Snapshot snapshot = entryLogLiveBytes.snapshot();
+            for (long entryLogId : snapshot.entryLogs.items()) {
+                entryLogMetaMap.forKey(entryLogId, (logId, meta) -> {
+                    // null when the entry log was removed after the ledger was deleted
+                    if (meta != null) {
+                        gcEntryLog(meta, removeIfLedgerDeleted(meta, snapshot.deletedLedgers));
                     }
-                } else if (modified) {
-                    // update entryLogMetaMap only when the meta modified.
-                    entryLogMetaMap.put(meta.getEntryLogId(), meta);
+                });
+            }
+            this.totalEntryLogSize = entryLogLiveBytes.getTotalLiveBytes();
+        }
+        this.numActiveEntryLogs = entryLogMetaMap.size();
+    }
+
+    private void gcEntryLog(EntryLogMetadata meta, boolean modified) {
+        final long entryLogId = meta.getEntryLogId();
+        try {
+            if (meta.isEmpty()) {
+                // This means the entry log is not associated with any active
+                // ledgers anymore.
+                // We can remove this entry log file now.
+                LOG.info("Deleting entryLogId {} as it has no active ledgers!", entryLogId);
+                if (removeEntryLog(entryLogId)) {
+                    gcStats.getReclaimedSpaceViaDeletes().addCount(meta.getTotalSize());
+                } else {
+                    gcStats.getReclaimFailedToDelete().inc();
                 }
-            } catch (EntryLogMetadataMapException e) {
-                // Ignore and continue because ledger will not be cleaned up
-                // from entry-logger in this pass and will be taken care in next
-                // schedule task
-                LOG.warn("Failed to remove ledger from entry-log metadata {}", entryLogId, e);
+                return;
             }
-           totalEntryLogSizeAcc.getAndAdd(meta.getRemainingSize());
-        });
+            if (modified) {
+                // update entryLogMetaMap only when the meta modified.
+                entryLogMetaMap.put(entryLogId, meta);
+            }
+        } catch (EntryLogMetadataMapException e) {
+            // Ignore and continue because ledger will not be cleaned up
+            // from entry-logger in this pass and will be taken care in next
+            // schedule task
+            LOG.warn("Failed to remove ledger from entry-log metadata {}", entryLogId, e);
+        }
+        if (entryLogLiveBytes != null) {
+            entryLogLiveBytes.addEntryLog(meta);
+        }
+    }
 
-        this.totalEntryLogSize = totalEntryLogSizeAcc.get();
-        this.numActiveEntryLogs = entryLogMetaMap.size();
+    private static boolean removeIfLedgerDeleted(EntryLogMetadata meta, ConcurrentLongHashSet deleted) {
+        if (deleted.isEmpty()) {
+            return false;
+        }
+        MutableBoolean modified = new MutableBoolean(false);
+        meta.removeLedgerIf((entryLogLedger) -> {
+            if (deleted.contains(entryLogLedger)) {
+                modified.setTrue();
+                return true;
+            }
+            return false;
+        });
+        return modified.getValue();
     }
 
-    private boolean removeIfLedgerNotExists(EntryLogMetadata meta) throws EntryLogMetadataMapException {
+    private boolean removeIfLedgerNotExists(EntryLogMetadata meta) {
         MutableBoolean modified = new MutableBoolean(false);
         meta.removeLedgerIf((entryLogLedger) -> {
             // Remove the entry log ledger from the set if it isn't active.
@@ -580,9 +671,9 @@ public class GarbageCollectorThread implements Runnable {
      * Compact entry logs if necessary.
      *
      * <p>
-     * Compaction will be executed from low unused space to high unused space.
-     * Those entry log files whose remaining size percentage is higher than threshold
-     * would not be compacted.
+     * The entry logs are compacted starting from the ones which reclaim the most space for the
+     * bytes they rewrite, see {@link #compactionScore}. Those entry log files whose remaining size
+     * percentage is higher than threshold would not be compacted.
      * </p>
      */
     @VisibleForTesting
@@ -591,21 +682,20 @@ public class GarbageCollectorThread implements Runnable {
 
         final int numBuckets = ENTRY_LOG_USAGE_SEGMENT_COUNT;
         int[] entryLogUsageBuckets = new int[numBuckets];
-        int[] compactedBuckets = new int[numBuckets];
-
-        ArrayList<LinkedList<Long>> compactableBuckets = new ArrayList<>(numBuckets);
-        for (int i = 0; i < numBuckets; i++) {
-            compactableBuckets.add(new LinkedList<>());
-        }
+        AtomicIntegerArray compactedBuckets = new AtomicIntegerArray(numBuckets);
+        List<CompactionCandidate> candidates = new ArrayList<>();
+        final double diskPressure = getDiskPressure();
 
         long start = System.currentTimeMillis();
         MutableLong end = new MutableLong(start);
         MutableLong timeDiff = new MutableLong(0);
 
         entryLogMetaMap.forEach((entryLogId, meta) -> {
+            long size = meta.getTotalSize();
             double usage = meta.getUsage();
             if (conf.isUseTargetEntryLogSizeForGc() && usage < 1.0d) {
-                usage = (double) meta.getRemainingSize() / Math.max(meta.getTotalSize(), conf.getEntryLogSizeLimit());
+                size = Math.max(meta.getTotalSize(), conf.getEntryLogSizeLimit());
+                usage = (double) meta.getRemainingSize() / size;
             }
             int bucketIndex = calculateUsageIndex(numBuckets, usage);
             entryLogUsageBuckets[bucketIndex]++;
@@ -622,7 +712,8 @@ public class GarbageCollectorThread implements Runnable {
                 return;
             }
 
-            compactableBuckets.get(bucketIndex).add(meta.getEntryLogId());
+            candidates.add(new CompactionCandidate(meta.getEntryLogId(), bucketIndex,
+                    compactionScore(size, meta.getRemainingSize(), diskPressure, conf.getEntryLogSizeLimit())));
         });
         currentEntryLogUsageBuckets = entryLogUsageBuckets;
         gcStats.setEntryLogUsageBuckets(currentEntryLogUsageBuckets);
@@ -630,70 +721,196 @@ public class GarbageCollectorThread implements Runnable {
                 "Compaction: entry log usage buckets before compaction [10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}",
                 entryLogUsageBuckets);
 
-        final int maxBucket = calculateUsageIndex(numBuckets, threshold);
-        int totalEntryLogIds = 0;
-        for (int currBucket = 0; currBucket <= maxBucket; currBucket++) {
-            totalEntryLogIds += compactableBuckets.get(currBucket).size();
-        }
-        long lastPrintTimestamp = 0;
-        AtomicInteger processedEntryLogCnt = new AtomicInteger(0);
-
-        stopCompaction:
-        for (int currBucket = 0; currBucket <= maxBucket; currBucket++) {
-            LinkedList<Long> entryLogIds = compactableBuckets.get(currBucket);
-            while (!entryLogIds.isEmpty()) {
-                if (timeDiff.getValue() < maxTimeMillis) {
-                    end.setValue(System.currentTimeMillis());
-                    timeDiff.setValue(end.getValue() - start);
-                }
-
-                if ((maxTimeMillis > 0 && timeDiff.getValue() >= maxTimeMillis) || !running) {
-                    // We allow the usage limit calculation to continue so that we get an accurate
-                    // report of where the usage was prior to running compaction.
-                    break stopCompaction;
-                }
+        candidates.sort(Comparator.comparingDouble((CompactionCandidate c) -> c.score).reversed());
+        CompactionProgress progress = new CompactionProgress(candidates.size(), compactedBuckets);
 
-                final int bucketIndex = currBucket;
-                final long logId = entryLogIds.remove();
-                if (System.currentTimeMillis() - lastPrintTimestamp >= MINUTE) {
-                    lastPrintTimestamp = System.currentTimeMillis();
-                    LOG.info("Compaction progress {} / {}, current compaction entryLogId: {}",
-                        processedEntryLogCnt.get(), totalEntryLogIds, logId);
+        if (compactionExecutor == null) {
+            for (CompactionCandidate candidate : candidates) {
+                if (isCompactionTimeExceeded(start, maxTimeMillis) || !running) {
+                    break;
                 }
-                entryLogMetaMap.forKey(logId, (entryLogId, meta) -> {
-                    if (meta == null) {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Metadata for entry log {} already deleted", logId);
-                        }
-                        return;
-                    }
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Compacting entry log {} with usage {} below threshold {}",
-                                meta.getEntryLogId(), meta.getUsage(), threshold);
-                    }
-
-                    long priorRemainingSize = meta.getRemainingSize();
-                    compactEntryLog(meta);
-                    gcStats.getReclaimedSpaceViaCompaction().addCount(meta.getTotalSize() - priorRemainingSize);
-                    compactedBuckets[bucketIndex]++;
-                    processedEntryLogCnt.getAndIncrement();
-                });
+                compactCandidate(candidate, threshold, progress, this::compactEntryLog);
             }
+        } else {
+            compactInParallel(candidates, threshold, start, maxTimeMillis, progress);
         }
 
         if (LOG.isDebugEnabled()) {
             if (!running) {
                 LOG.debug("Compaction exited due to gc not running");
             }
-            if (maxTimeMillis > 0 && timeDiff.getValue() > maxTimeMillis) {
-                LOG.debug("Compaction ran for {}ms but was limited by {}ms", timeDiff, maxTimeMillis);
+            if (isCompactionTimeExceeded(start, maxTimeMillis)) {
+                LOG.debug("Compaction ran for {}ms but was limited by {}ms",
+                        System.currentTimeMillis() - start, maxTimeMillis);
             }
         }
+        int[] compacted = new int[numBuckets];
+        for (int i = 0; i < numBuckets; i++) {
+            compacted[i] = compactedBuckets.get(i);
+        }
         int totalEntryLogNum = Arrays.stream(entryLogUsageBuckets).sum();
-        int compactedEntryLogNum = Arrays.stream(compactedBuckets).sum();
+        int compactedEntryLogNum = Arrays.stream(compacted).sum();
         this.entryLogCompactRatio = totalEntryLogNum == 0 ? 0 : (double) compactedEntryLogNum / totalEntryLogNum;
         LOG.info("Compaction: entry log usage buckets[10% 20% 30% 40% 50% 60% 70% 80% 90% 100%] = {}, compacted {}, "
-                + "compacted entry log ratio {}", entryLogUsageBuckets, compactedBuckets, entryLogCompactRatio);
+                + "compacted entry log ratio {}", entryLogUsageBuckets, compacted, entryLogCompactRatio);
+    }
+
+    private void compactInParallel(List<CompactionCandidate> candidates, double threshold, long start,
+                                   long maxTimeMillis, CompactionProgress progress)
+            throws EntryLogMetadataMapException {
+        // Hold the compacting flag for the whole batch, so that shutdown waits for all the compactions
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Future<?>> futures = new ArrayList<>(candidates.size());
+            for (CompactionCandidate candidate : candidates) {
+                futures.add(compactionExecutor.submit(() -> {
+                    if (isCompactionTimeExceeded(start, maxTimeMillis) || !running) {
+                        return null;
+                    }
+                    AbstractLogCompactor logCompactor;
+                    try {
+                        logCompactor = idleCompactors.take();
+                    } catch (InterruptedException e) {
+                        // the compaction pool is shut down, the remaining candidates are left for the next run
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                    try {
+                        compactCandidate(candidate, threshold, progress,
+                                meta -> compactEntryLog(logCompactor, meta));
+                    } finally {
+                        idleCompactors.add(logCompactor);
+                    }
+                    return null;
+                }));
+            }
+
+            EntryLogMetadataMapException metadataMapException = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof EntryLogMetadataMapException) {
+                        metadataMapException = (EntryLogMetadataMapException) e.getCause();
+                    } else {
+                        LOG.error("Failed to compact entry log due to unexpected error", e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    futures.forEach(f -> f.cancel(false));
+                    break;
+                }
+            }
+            if (metadataMapException != null) {
+                throw metadataMapException;
+            }
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private void compactCandidate(CompactionCandidate candidate, double threshold, CompactionProgress progress,
+                                  Consumer<EntryLogMetadata> compactFn) throws EntryLogMetadataMapException {
+        final long logId = candidate.entryLogId;
+        progress.maybeLog(logId);
+        entryLogMetaMap.forKey(logId, (entryLogId, meta) -> {
+            if (meta == null) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Metadata for entry log {} already deleted", logId);
+                }
+                return;
+            }
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Compacting entry log {} with usage {} below threshold {}",
+                        meta.getEntryLogId(), meta.getUsage(), threshold);
+            }
+
+            long priorRemainingSize = meta.getRemainingSize();
+            compactFn.accept(meta);
+            gcStats.getReclaimedSpaceViaCompaction().addCount(meta.getTotalSize() - priorRemainingSize);
+            progress.compacted(candidate.bucketIndex);
+        });
+    }
+
+    private static boolean isCompactionTimeExceeded(long start, long maxTimeMillis) {
+        return maxTimeMillis > 0 && System.currentTimeMillis() - start >= maxTimeMillis;
+    }
+
+    /**
+     * Score an entry log for compaction, as the bytes it reclaims per byte rewritten.
+     *
+     * <p>When the disks fill up, reclaiming space quickly matters more than the cost of rewriting
+     * the live entries, so the disk pressure adds a fixed cost to all the entry logs, which favors
+     * the ones reclaiming the most bytes.
+     *
+     * @param size size of the entry log
+     * @param remainingSize size of the live entries in the entry log
+     * @param diskPressure 0.0 - 1.0 value of the disk pressure, see {@link #getDiskPressure()}
+     * @param entryLogSizeLimit max size of an entry log
+     * @return the score of the entry log, the higher the sooner it is compacted
+     */
+    static double compactionScore(long size, long remainingSize, double diskPressure, long entryLogSizeLimit) {
+        long reclaimableSize = Math.max(0, size - remainingSize);
+        return reclaimableSize / (remainingSize + diskPressure * entryLogSizeLimit + 1.0d);
+    }
+
+    /**
+     * Get the disk pressure of the fullest ledger directory, from 0.0 below the disk usage warn threshold,
+     * to 1.0 when reaching the disk usage threshold.
+     */
+    double getDiskPressure() {
+        float maxUsage = 0f;
+        for (float usage : ledgerDirsManager.getDiskUsages().values()) {
+            maxUsage = Math.max(maxUsage, usage);
+        }
+        float warnThreshold = conf.getDiskUsageWarnThreshold();
+        float threshold = conf.getDiskUsageThreshold();
+        if (maxUsage <= warnThreshold) {
+            return 0.0d;
+        } else if (maxUsage >= threshold || threshold <= warnThreshold) {
+            return 1.0d;
+        }
+        return (maxUsage - warnThreshold) / (threshold - warnThreshold);
+    }
+
+    private static final class CompactionCandidate {
+        final long entryLogId;
+        final int bucketIndex;
+        final double score;
+
+        CompactionCandidate(long entryLogId, int bucketIndex, double score) {
+            this.entryLogId = entryLogId;
+            this.bucketIndex = bucketIndex;
+            this.score = score;
+        }
+    }
+
+    private static final class CompactionProgress {
+        private final int totalEntryLogIds;
+        private final AtomicIntegerArray compactedBuckets;
+        private final AtomicInteger processedEntryLogCnt = new AtomicInteger(0);
+        private final AtomicLong lastPrintTimestamp = new AtomicLong(0);
+
+        CompactionProgress(int totalEntryLogIds, AtomicIntegerArray compactedBuckets) {
+            this.totalEntryLogIds = totalEntryLogIds;
+            this.compactedBuckets = compactedBuckets;
+        }
+
+        void maybeLog(long logId) {
+            long lastPrint = lastPrintTimestamp.get();
+            long now = System.currentTimeMillis();
+            if (now - lastPrint >= MINUTE && lastPrintTimestamp.compareAndSet(lastPrint, now)) {
+                LOG.info("Compaction progress {} / {}, current compaction entryLogId: {}",
+                    processedEntryLogCnt.get(), totalEntryLogIds, logId);
+            }
+        }
+
+        void compacted(int bucketIndex) {
+            compactedBuckets.incrementAndGet(bucketIndex);
+            processedEntryLogCnt.incrementAndGet();
+        }
     }
 
     /**
@@ -731,6 +948,9 @@ public class GarbageCollectorThread implements Runnable {
 
         // Interrupt GC executor thread
         gcExecutor.shutdownNow();
+        if (compactionExecutor != null) {
+            compactionExecutor.shutdownNow();
+        }
         try {
             entryLogMetaMap.close();
         } catch (Exception e) {
@@ -750,6 +970,9 @@ public class GarbageCollectorThread implements Runnable {
         if (entryLogger.removeEntryLog(entryLogId)) {
             LOG.info("Removing entry log metadata for {}", entryLogId);
             entryLogMetaMap.remove(entryLogId);
+            if (entryLogLiveBytes != null) {
+                entryLogLiveBytes.removeEntryLog(entryLogId);
+            }
             return true;
         }
 
@@ -775,15 +998,21 @@ public class GarbageCollectorThread implements Runnable {
 
         try {
             // Do the actual compaction
-            compactor.compact(entryLogMeta);
-        } catch (Exception e) {
-            LOG.error("Failed to compact entry log {} due to unexpected error", entryLogMeta.getEntryLogId(), e);
+            compactEntryLog(compactor, entryLogMeta);
         } finally {
             // Mark compaction done
             compacting.set(false);
         }
     }
 
+    private void compactEntryLog(AbstractLogCompactor logCompactor, EntryLogMetadata entryLogMeta) {
+        try {
+            logCompactor.compact(entryLogMeta);
+        } catch (Exception e) {
+            LOG.error("Failed to compact entry log {} due to unexpected error", entryLogMeta.getEntryLogId(), e);
+        }
+    }
+
     /**
      * Method to read in all of the entry logs (those that we haven't done so yet),
      * and find the set of ledger ID's that make up each entry log file.
@@ -821,6 +1050,9 @@ public class GarbageCollectorThread implements Runnable {
                     }
                 } else {
                     entryLogMetaMap.put(entryLogId, entryLogMeta);
+                    if (entryLogLiveBytes != null) {
+                        entryLogLiveBytes.addEntryLog(entryLogMeta);
+                    }
                 }
             } catch (IOException | RuntimeException e) {
                 LOG.warn("Premature exception when processing " + entryLogId
@@ -838,6 +1070,11 @@ public class GarbageCollectorThread implements Runnable {
         return entryLogMetaMap;
     }
 
+    @VisibleForTesting
+    EntryLogLiveBytes getEntryLogLiveBytes() {
+        return entryLogLiveBytes;
+    }
+
     public GarbageCollectionStatus getGarbageCollectionStatus() {
         return GarbageCollectionStatus.builder()
             .forceCompacting(forceGarbageCollection.get())
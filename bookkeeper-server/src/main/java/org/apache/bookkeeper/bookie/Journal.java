@@ -29,32 +29,46 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
 import org.apache.bookkeeper.bookie.stats.JournalStats;
 import org.apache.bookkeeper.common.collections.BatchedArrayBlockingQueue;
 import org.apache.bookkeeper.common.collections.BatchedBlockingQueue;
+import org.apache.bookkeeper.common.collections.BlockingConsumerMpscQueue;
 import org.apache.bookkeeper.common.collections.BlockingMpscQueue;
 import org.apache.bookkeeper.common.collections.RecyclableArrayList;
 import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.common.util.MemoryLimitController;
 import org.apache.bookkeeper.common.util.affinity.CpuAffinity;
 import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.BookieProtocol;
 import org.apache.bookkeeper.proto.BookieRequestHandler;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.proto.ChannelReadPauses;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.stats.OpStatsLogger;
@@ -307,10 +321,11 @@ public class Journal implements CheckpointSource {
 
         OpStatsLogger journalAddEntryStats;
         Counter callbackTime;
+        JournalGroupCommitController groupCommitController;
 
         static QueueEntry create(ByteBuf entry, boolean ackBeforeSync, long ledgerId, long entryId,
                 WriteCallback cb, Object ctx, long enqueueTime, OpStatsLogger journalAddEntryStats,
-                Counter callbackTime) {
+                Counter callbackTime, JournalGroupCommitController groupCommitController) {
             QueueEntry qe = RECYCLER.get();
             qe.entry = entry;
             qe.ackBeforeSync = ackBeforeSync;
@@ -321,6 +336,7 @@ public class Journal implements CheckpointSource {
             qe.enqueueTime = enqueueTime;
             qe.journalAddEntryStats = journalAddEntryStats;
             qe.callbackTime = callbackTime;
+            qe.groupCommitController = groupCommitController;
             return qe;
         }
 
@@ -330,12 +346,22 @@ public class Journal implements CheckpointSource {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Acknowledge Ledger: {}, Entry: {}", ledgerId, entryId);
             }
-            journalAddEntryStats.registerSuccessfulEvent(MathUtils.elapsedNanos(enqueueTime), TimeUnit.NANOSECONDS);
+            long latencyNanos = MathUtils.elapsedNanos(enqueueTime);
+            journalAddEntryStats.registerSuccessfulEvent(latencyNanos, TimeUnit.NANOSECONDS);
+            if (groupCommitController != null) {
+                groupCommitController.recordAddLatency(latencyNanos);
+            }
             cb.writeComplete(0, ledgerId, entryId, null, ctx);
             callbackTime.addLatency(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
             recycle();
         }
 
+        void fail(int rc) {
+            journalAddEntryStats.registerFailedEvent(MathUtils.elapsedNanos(enqueueTime), TimeUnit.NANOSECONDS);
+            cb.writeComplete(rc, ledgerId, entryId, null, ctx);
+            recycle();
+        }
+
         private Object getCtx() {
             return ctx;
         }
@@ -359,6 +385,7 @@ public class Journal implements CheckpointSource {
             this.ctx = null;
             this.journalAddEntryStats = null;
             this.callbackTime = null;
+            this.groupCommitController = null;
             recyclerHandle.recycle(this);
         }
     }
@@ -393,6 +420,22 @@ public class Journal implements CheckpointSource {
             return forceWriteWaiters.size();
         }
 
+        int fail(int rc, ObjectHashSet<BookieRequestHandler> writeHandlers) {
+            // Notify the waiters that the force write failed
+            for (int i = 0; i < forceWriteWaiters.size(); i++) {
+                QueueEntry qe = forceWriteWaiters.get(i);
+                if (qe != null) {
+                    if (qe.getCtx() instanceof BookieRequestHandler
+                            && qe.entryId != BookieImpl.METAENTRY_ID_FORCE_LEDGER) {
+                        writeHandlers.add((BookieRequestHandler) qe.getCtx());
+                    }
+                    qe.fail(rc);
+                }
+            }
+
+            return forceWriteWaiters.size();
+        }
+
         private void flushFileToDisk() throws IOException {
             if (!flushed) {
                 logFile.forceWrite(false);
@@ -456,9 +499,30 @@ public class Journal implements CheckpointSource {
                 }
             };
 
+    /**
+     * A group of force write requests taken together from the queue, that are made durable by a single force write.
+     */
+    private static class ForceWriteGroup {
+        private final ForceWriteRequest[] requests;
+        // Guarded by the pending groups of the ForceWriteThread
+        private boolean synced;
+
+        ForceWriteGroup(ForceWriteRequest[] requests) {
+            this.requests = requests;
+        }
+
+        ForceWriteRequest lastRequest() {
+            return requests[requests.length - 1];
+        }
+    }
+
     /**
      * ForceWriteThread is a background thread which makes the journal durable periodically.
      *
+     * <p>When multiple outstanding force writes are allowed, the force writes are issued by a pool of threads, so
+     * that the next group of requests can be synced while the previous one is still in progress. The groups are
+     * still completed in the order they were written in the journal, so that the log mark never moves past a
+     * request that is not durable yet.
      */
     private class ForceWriteThread extends BookieCriticalThread {
         volatile boolean running = true;
@@ -470,14 +534,32 @@ public class Journal implements CheckpointSource {
         private final boolean enableGroupForceWrites;
         private final Counter forceWriteThreadTime;
 
+        // Only set when multiple outstanding force writes are allowed
+        private final ExecutorService forceWriteExecutor;
+        private final Semaphore outstandingForceWrites;
+        // Groups being synced, in journal order
+        private final ArrayDeque<ForceWriteGroup> pendingGroups = new ArrayDeque<>();
+        private final ObjectHashSet<BookieRequestHandler> pendingGroupsWriteHandlers = new ObjectHashSet<>();
+        // Set, under the pendingGroups lock, once a group failed to sync
+        private boolean groupSyncFailed = false;
+
         public ForceWriteThread(Consumer<Void> threadToNotifyOnEx,
                                 boolean enableGroupForceWrites,
+                                int maxOutstandingForceWrites,
                                 StatsLogger statsLogger) {
             super("ForceWriteThread");
             this.setPriority(Thread.MAX_PRIORITY);
             this.threadToNotifyOnEx = threadToNotifyOnEx;
             this.enableGroupForceWrites = enableGroupForceWrites;
             this.forceWriteThreadTime = statsLogger.getThreadScopedCounter("force-write-thread-time");
+            if (maxOutstandingForceWrites > 1) {
+                this.forceWriteExecutor = Executors.newFixedThreadPool(maxOutstandingForceWrites,
+                        new DefaultThreadFactory("ForceWriteThread-sync"));
+                this.outstandingForceWrites = new Semaphore(maxOutstandingForceWrites);
+            } else {
+                this.forceWriteExecutor = null;
+                this.outstandingForceWrites = null;
+            }
         }
         @Override
         public void run() {
@@ -497,6 +579,21 @@ public class Journal implements CheckpointSource {
 
             while (running) {
                 try {
+                    if (forceWriteExecutor != null) {
+                        // Wait for a free slot, meanwhile more requests can be grouped in the queue
+                        outstandingForceWrites.acquire();
+                        int requestsCount = forceWriteRequests.takeAll(localRequests);
+                        journalStats.getForceWriteQueueSize().addCount(-requestsCount);
+
+                        ForceWriteGroup group = new ForceWriteGroup(Arrays.copyOf(localRequests, requestsCount));
+                        Arrays.fill(localRequests, 0, requestsCount, null);
+                        synchronized (pendingGroups) {
+                            pendingGroups.add(group);
+                        }
+                        forceWriteExecutor.execute(() -> syncGroup(group));
+                        continue;
+                    }
+
                     int numEntriesInLastForceWrite = 0;
 
                     int requestsCount = forceWriteRequests.takeAll(localRequests);
@@ -531,6 +628,14 @@ public class Journal implements CheckpointSource {
                     running = false;
                 }
             }
+            if (forceWriteExecutor != null) {
+                forceWriteExecutor.shutdown();
+                try {
+                    forceWriteExecutor.awaitTermination(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
             // Regardless of what caused us to exit, we should notify the
             // the parent thread as it should either exit or be in the process
             // of exiting else we will have write requests hang
@@ -538,12 +643,19 @@ public class Journal implements CheckpointSource {
         }
 
         private void syncJournal(ForceWriteRequest lastRequest) throws IOException {
+            forceWrite(lastRequest);
+            lastLogMark.setCurLogMark(lastRequest.logId, lastRequest.lastFlushedPosition);
+        }
+
+        private void forceWrite(ForceWriteRequest lastRequest) throws IOException {
             long fsyncStartTime = MathUtils.nowInNano();
             try {
                 lastRequest.flushFileToDisk();
-                journalStats.getJournalSyncStats().registerSuccessfulEvent(MathUtils.elapsedNanos(fsyncStartTime),
-                        TimeUnit.NANOSECONDS);
-                lastLogMark.setCurLogMark(lastRequest.logId, lastRequest.lastFlushedPosition);
+                long fsyncLatencyNanos = MathUtils.elapsedNanos(fsyncStartTime);
+                journalStats.getJournalSyncStats().registerSuccessfulEvent(fsyncLatencyNanos, TimeUnit.NANOSECONDS);
+                if (groupCommitController != null) {
+                    groupCommitController.recordForceWriteLatency(fsyncLatencyNanos);
+                }
             } catch (IOException ioe) {
                 journalStats.getJournalSyncStats()
                         .registerFailedEvent(MathUtils.elapsedNanos(fsyncStartTime), TimeUnit.NANOSECONDS);
@@ -551,6 +663,68 @@ public class Journal implements CheckpointSource {
             }
         }
 
+        /**
+         * Force write a group of requests, then complete all the groups that are synced, in journal order.
+         */
+        private void syncGroup(ForceWriteGroup group) {
+            IOException failure = null;
+            try {
+                forceWrite(group.lastRequest());
+            } catch (IOException ioe) {
+                failure = ioe;
+            }
+
+            synchronized (pendingGroups) {
+                group.synced = true;
+                if (failure != null && !groupSyncFailed) {
+                    LOG.error("I/O exception in ForceWrite thread", failure);
+                    groupSyncFailed = true;
+                    running = false;
+                    this.interrupt();
+                }
+                if (groupSyncFailed) {
+                    failSyncedGroups();
+                }
+                while (!groupSyncFailed && !pendingGroups.isEmpty() && pendingGroups.peek().synced) {
+                    ForceWriteGroup syncedGroup = pendingGroups.poll();
+                    ForceWriteRequest lastRequest = syncedGroup.lastRequest();
+                    lastLogMark.setCurLogMark(lastRequest.logId, lastRequest.lastFlushedPosition);
+
+                    int numEntriesInForceWrite = 0;
+                    for (ForceWriteRequest req : syncedGroup.requests) {
+                        numEntriesInForceWrite += req.process(pendingGroupsWriteHandlers);
+                        req.recycle();
+                    }
+                    journalStats.getForceWriteGroupingCountStats().registerSuccessfulValue(numEntriesInForceWrite);
+                    outstandingForceWrites.release();
+                }
+                pendingGroupsWriteHandlers.forEach(
+                        (ObjectProcedure<? super BookieRequestHandler>) BookieRequestHandler::flushPendingResponse);
+                pendingGroupsWriteHandlers.clear();
+            }
+        }
+
+        /**
+         * Fail the groups which are done syncing once a group failed to sync. The log mark cannot move
+         * past the failed group, so none of the groups pending with it can be acknowledged. The groups
+         * still syncing fail themselves when they are done.
+         */
+        private void failSyncedGroups() {
+            Iterator<ForceWriteGroup> iterator = pendingGroups.iterator();
+            while (iterator.hasNext()) {
+                ForceWriteGroup pendingGroup = iterator.next();
+                if (!pendingGroup.synced) {
+                    continue;
+                }
+                iterator.remove();
+                for (ForceWriteRequest req : pendingGroup.requests) {
+                    req.fail(BookieProtocol.EIO, pendingGroupsWriteHandlers);
+                    req.recycle();
+                }
+                outstandingForceWrites.release();
+            }
+        }
+
         // shutdown sync thread
         void shutdown() throws InterruptedException {
             running = false;
@@ -609,6 +783,8 @@ public class Journal implements CheckpointSource {
     private final long bufferedWritesThreshold;
     // should we flush if the queue is empty
     private final boolean flushWhenQueueEmpty;
+    // tunes the group wait time from the observed latencies, null if disabled
+    private final JournalGroupCommitController groupCommitController;
     // should we hint the filesystem to remove pages from cache after force write
     private final boolean removePagesFromCache;
     private final int journalFormatVersionToWrite;
@@ -617,6 +793,8 @@ public class Journal implements CheckpointSource {
     private final long journalPageCacheFlushIntervalMSec;
     // Whether reuse journal files, it will use maxBackupJournal as the journal file pool.
     private final boolean journalReuseFiles;
+    // Entries of at least this size are written without copying them in the write buffer, 0 to always copy
+    private final int gatheringWriteThreshold;
 
     // Should data be fsynced on disk before triggering the callback
     private final boolean syncData;
@@ -644,6 +822,15 @@ public class Journal implements CheckpointSource {
     private JournalAliveListener journalAliveListener;
 
     private MemoryLimitController memoryLimitController;
+    private final boolean channelBackPressureEnabled;
+    // Channels paused because the journal is over its memory limit. Updates are synchronized on the set, so that
+    // the pauses and resumes of a channel are done in the order of its additions and removals
+    private final Set<Channel> pausedChannels = ConcurrentHashMap.newKeySet();
+    private final ChannelFutureListener pausedChannelCloseListener = future -> {
+        synchronized (pausedChannels) {
+            pausedChannels.remove(future.channel());
+        }
+    };
 
 
     public Journal(int journalIndex, File journalDirectory, ServerConfiguration conf,
@@ -663,13 +850,18 @@ public class Journal implements CheckpointSource {
             queue = new BlockingMpscQueue<>(conf.getJournalQueueSize());
             forceWriteRequests = new BlockingMpscQueue<>(conf.getJournalQueueSize());
         } else {
-            queue = new BatchedArrayBlockingQueue<>(conf.getJournalQueueSize());
+            if (conf.isJournalLockFreeQueueEnabled()) {
+                queue = new BlockingConsumerMpscQueue<>(conf.getJournalQueueSize());
+            } else {
+                queue = new BatchedArrayBlockingQueue<>(conf.getJournalQueueSize());
+            }
             forceWriteRequests = new BatchedArrayBlockingQueue<>(conf.getJournalQueueSize());
         }
 
         // Adjust the journal max memory in case there are multiple journals configured.
         long journalMaxMemory = conf.getJournalMaxMemorySizeMb() / conf.getJournalDirNames().length * 1024 * 1024;
         this.memoryLimitController = new MemoryLimitController(journalMaxMemory);
+        this.channelBackPressureEnabled = conf.isJournalChannelBackPressureEnabled();
         this.ledgerDirsManager = ledgerDirsManager;
         this.conf = conf;
         this.journalDirectory = journalDirectory;
@@ -679,7 +871,7 @@ public class Journal implements CheckpointSource {
         this.syncData = conf.getJournalSyncData();
         this.maxBackupJournals = conf.getMaxBackupJournals();
         this.forceWriteThread = new ForceWriteThread((__) -> this.interruptThread(),
-                conf.getJournalAdaptiveGroupWrites(), journalStatsLogger);
+                conf.getJournalAdaptiveGroupWrites(), conf.getJournalMaxOutstandingForceWrites(), journalStatsLogger);
         this.maxGroupWaitInNanos = TimeUnit.MILLISECONDS.toNanos(conf.getJournalMaxGroupWaitMSec());
         this.bufferedWritesThreshold = conf.getJournalBufferedWritesThreshold();
         this.bufferedEntriesThreshold = conf.getJournalBufferedEntriesThreshold();
@@ -687,10 +879,19 @@ public class Journal implements CheckpointSource {
         this.journalAlignmentSize = conf.getJournalAlignmentSize();
         this.journalPageCacheFlushIntervalMSec = conf.getJournalPageCacheFlushIntervalMSec();
         this.journalReuseFiles = conf.getJournalReuseFiles();
+        this.gatheringWriteThreshold = conf.getJournalGatheringWriteThresholdBytes();
         this.callbackTime = journalStatsLogger.getThreadScopedCounter("callback-time");
         // Unless there is a cap on the max wait (which requires group force writes)
         // we cannot skip flushing for queue empty
         this.flushWhenQueueEmpty = maxGroupWaitInNanos <= 0 || conf.getJournalFlushWhenQueueEmpty();
+        long groupCommitTargetLatencyNanos =
+                TimeUnit.MILLISECONDS.toNanos(conf.getJournalAdaptiveGroupWaitTargetLatencyMSec());
+        if (groupCommitTargetLatencyNanos > 0 && maxGroupWaitInNanos > 0) {
+            this.groupCommitController = new JournalGroupCommitController(groupCommitTargetLatencyNanos,
+                    maxGroupWaitInNanos, MathUtils.nowInNano(), journalStatsLogger);
+        } else {
+            this.groupCommitController = null;
+        }
 
         this.removePagesFromCache = conf.getJournalRemovePagesFromCache();
         // read last log mark
@@ -903,12 +1104,68 @@ public class Journal implements CheckpointSource {
 
         journalStats.getJournalQueueSize().inc();
 
-        memoryLimitController.reserveMemory(entry.readableBytes());
+        reserveMemory(entry.readableBytes(), ctx);
 
         queue.put(QueueEntry.create(
                 entry, ackBeforeSync, ledgerId, entryId, cb, ctx, MathUtils.nowInNano(),
                 journalStats.getJournalAddEntryStats(),
-                callbackTime));
+                callbackTime, groupCommitController));
+    }
+
+    /**
+     * Reserve the memory for an entry. With the channel back-pressure enabled, requests coming from a bookie client
+     * channel don't block when the journal is over its memory limit: the channel stops reading new requests
+     * instead, until the journal catches up. They only block once the journal is over twice its memory limit.
+     */
+    private void reserveMemory(int size, Object ctx) throws InterruptedException {
+        Channel channel = null;
+        if (channelBackPressureEnabled && ctx instanceof BookieRequestHandler
+                && ((BookieRequestHandler) ctx).ctx() != null) {
+            channel = ((BookieRequestHandler) ctx).ctx().channel();
+        }
+
+        if (channel == null) {
+            memoryLimitController.reserveMemory(size);
+        } else if (!memoryLimitController.tryReserveMemory(size)) {
+            if (!memoryLimitController.tryForceReserveMemory(size)) {
+                memoryLimitController.reserveMemory(size);
+                return;
+            }
+            synchronized (pausedChannels) {
+                if (pausedChannels.add(channel)) {
+                    ChannelReadPauses.pause(channel);
+                    channel.closeFuture().addListener(pausedChannelCloseListener);
+                    journalStats.getChannelPausedCounter().inc();
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Journal memory limit exceeded, disabling autoread on channel {}", channel);
+                    }
+                }
+            }
+            // The journal might have released the memory before the channel was added to the set
+            if (!memoryLimitController.isMemoryLimitExceeded()) {
+                resumePausedChannels();
+            }
+        }
+    }
+
+    private void releaseMemory(int size) {
+        memoryLimitController.releaseMemory(size);
+        if (!pausedChannels.isEmpty() && !memoryLimitController.isMemoryLimitExceeded()) {
+            resumePausedChannels();
+        }
+    }
+
+    private void resumePausedChannels() {
+        synchronized (pausedChannels) {
+            for (Channel channel : pausedChannels) {
+                channel.closeFuture().removeListener(pausedChannelCloseListener);
+                ChannelReadPauses.resume(channel);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Journal memory back under the limit, re-enabling autoread on channel {}", channel);
+                }
+            }
+            pausedChannels.clear();
+        }
     }
 
     void forceLedger(long ledgerId, WriteCallback cb, Object ctx) {
@@ -916,7 +1173,7 @@ public class Journal implements CheckpointSource {
                 null, false /* ackBeforeSync */, ledgerId,
                 BookieImpl.METAENTRY_ID_FORCE_LEDGER, cb, ctx, MathUtils.nowInNano(),
                 journalStats.getJournalForceLedgerStats(),
-                callbackTime));
+                callbackTime, null));
         // Increment afterwards because the add operation could fail.
         journalStats.getJournalQueueSize().inc();
     }
@@ -988,6 +1245,7 @@ public class Journal implements CheckpointSource {
 
             long dequeueStartTime = 0L;
             long lastFlushTimeMs = System.currentTimeMillis();
+            long groupWaitInNanos = maxGroupWaitInNanos;
 
             final ObjectHashSet<BookieRequestHandler> writeHandlers = new ObjectHashSet<>();
             QueueEntry[] localQueueEntries = new QueueEntry[conf.getJournalQueueSize()];
@@ -1031,7 +1289,7 @@ public class Journal implements CheckpointSource {
                     } else {
                         // There are already some entries pending. We must adjust
                         // the waiting time to the remaining groupWait time
-                        long pollWaitTimeNanos = maxGroupWaitInNanos
+                        long pollWaitTimeNanos = groupWaitInNanos
                                 - MathUtils.elapsedNanos(toFlush.get(0).enqueueTime);
                         if (flushWhenQueueEmpty || pollWaitTimeNanos < 0) {
                             pollWaitTimeNanos = 0;
@@ -1043,6 +1301,11 @@ public class Journal implements CheckpointSource {
 
                     dequeueStartTime = MathUtils.nowInNano();
 
+                    if (groupCommitController != null) {
+                        groupCommitController.onEntriesDrained(localQueueEntriesLen, dequeueStartTime);
+                        groupWaitInNanos = groupCommitController.getGroupWaitNanos();
+                    }
+
                     if (localQueueEntriesLen > 0) {
                         qe = localQueueEntries[localQueueEntriesIdx];
                         localQueueEntries[localQueueEntriesIdx++] = null;
@@ -1053,12 +1316,12 @@ public class Journal implements CheckpointSource {
                     boolean shouldFlush = false;
                     // We should issue a forceWrite if any of the three conditions below holds good
                     // 1. If the oldest pending entry has been pending for longer than the max wait time
-                    if (maxGroupWaitInNanos > 0 && !groupWhenTimeout && (MathUtils
-                            .elapsedNanos(toFlush.get(0).enqueueTime) > maxGroupWaitInNanos)) {
+                    if (groupWaitInNanos > 0 && !groupWhenTimeout && (MathUtils
+                            .elapsedNanos(toFlush.get(0).enqueueTime) > groupWaitInNanos)) {
                         groupWhenTimeout = true;
-                    } else if (maxGroupWaitInNanos > 0 && groupWhenTimeout
+                    } else if (groupWaitInNanos > 0 && groupWhenTimeout
                         && (qe == null // no entry to group
-                            || MathUtils.elapsedNanos(qe.enqueueTime) < maxGroupWaitInNanos)) {
+                            || MathUtils.elapsedNanos(qe.enqueueTime) < groupWaitInNanos)) {
                         // when group timeout, it would be better to look forward, as there might be lots of
                         // entries already timeout
                         // due to a previous slow write (writing to filesystem which impacted by force write).
@@ -1182,7 +1445,7 @@ public class Journal implements CheckpointSource {
                      * shouldn't write this special entry
                      * (METAENTRY_ID_LEDGER_EXPLICITLAC) to Journal.
                      */
-                    memoryLimitController.releaseMemory(qe.entry.readableBytes());
+                    releaseMemory(qe.entry.readableBytes());
                     ReferenceCountUtil.release(qe.entry);
                 } else if (qe.entryId != BookieImpl.METAENTRY_ID_FORCE_LEDGER) {
                     int entrySize = qe.entry.readableBytes();
@@ -1197,8 +1460,14 @@ public class Journal implements CheckpointSource {
                     logFile.preAllocIfNeeded(4 + entrySize);
 
                     bc.write(lenBuff);
-                    bc.write(qe.entry);
-                    memoryLimitController.releaseMemory(qe.entry.readableBytes());
+                    if (gatheringWriteThreshold > 0 && entrySize >= gatheringWriteThreshold
+                            && qe.entry.isDirect()) {
+                        // Write the large entries straight from their buffers, along with the buffered data
+                        bc.writeGathering(qe.entry);
+                    } else {
+                        bc.write(qe.entry);
+                    }
+                    releaseMemory(qe.entry.readableBytes());
                     ReferenceCountUtil.release(qe.entry);
                 }
 
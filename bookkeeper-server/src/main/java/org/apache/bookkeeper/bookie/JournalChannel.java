@@ -156,7 +156,8 @@ class JournalChannel implements Closeable {
         this.journalAlignSize = journalAlignSize;
         this.zeros = ByteBuffer.allocate(journalAlignSize);
         this.preAllocSize = preAllocSize - preAllocSize % journalAlignSize;
-        this.fRemoveFromPageCache = fRemoveFromPageCache;
+        // Nothing to remove from the page cache when the provider bypasses it
+        this.fRemoveFromPageCache = fRemoveFromPageCache && !provider.bypassesPageCache();
         this.configuration = conf;
 
         boolean reuseFile = false;
@@ -183,15 +184,15 @@ class JournalChannel implements Closeable {
                 throw new IOException("File " + fn
                         + " suddenly appeared, is another bookie process running?");
             }
-            fc = channel.getFileChannel();
+            fc = channel.getFileChannel(true);
             formatVersion = formatVersionToWrite;
             writeHeader(bcBuilder, writeBufferSize);
         } else if (reuseFile) { // Open an existing journal to write, it needs fileChannelProvider support reuse file.
-            fc = channel.getFileChannel();
+            fc = channel.getFileChannel(true);
             formatVersion = formatVersionToWrite;
             writeHeader(bcBuilder, writeBufferSize);
         } else {  // open an existing file to read.
-            fc = channel.getFileChannel();
+            fc = channel.getFileChannel(false);
             // readonly, use fileChannel directly, no need to use BufferedChannel
 
             ByteBuffer bb = ByteBuffer.allocate(VERSION_HEADER_SIZE);
@@ -240,7 +241,7 @@ class JournalChannel implements Closeable {
                 throw e;
             }
         }
-        if (fRemoveFromPageCache) {
+        if (this.fRemoveFromPageCache) {
             this.fd = PageCacheUtil.getSysFileDescriptor(channel.getFD());
         } else {
             this.fd = -1;
@@ -0,0 +1,271 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GROUP_WAIT_DECREASE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GROUP_WAIT_INCREASE;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GROUP_WAIT_LIGHT_LOAD;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_GROUP_WAIT_USEC;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_OBSERVED_ADD_P99_LATENCY_USEC;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SCOPE;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Feedback controller that tunes the journal group commit wait window.
+ *
+ * <p>The controller observes the add latency of the entries acknowledged by the journal, the latency of the
+ * force writes and the number of entries drained from the journal queue at once. Once per control interval it
+ * compares the observed p99 add latency with the configured target:
+ * <ul>
+ * <li>if the target is exceeded, the wait window is halved;</li>
+ * <li>if less than one entry arrives during a force write and the queue is not backing up, grouping cannot
+ * help, so the wait window drops to its minimum;</li>
+ * <li>if there is room below the target, the wait window grows by a fraction of the slack, never beyond the
+ * configured max group wait nor beyond what the target leaves after a force write.</li>
+ * </ul>
+ *
+ * <p>The latency samples are recorded from the threads completing the adds, while the control step runs in
+ * the journal thread.
+ */
+@StatsDoc(
+    name = JOURNAL_SCOPE,
+    category = CATEGORY_SERVER,
+    help = "Journal adaptive group commit stats"
+)
+class JournalGroupCommitController {
+    private static final Logger LOG = LoggerFactory.getLogger(JournalGroupCommitController.class);
+
+    static final long MIN_GROUP_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    static final long CONTROL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Latency histogram with 4 sub-buckets for each power of 2
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = 64 * SUB_BUCKETS;
+
+    // Weight of the last sample in the force write latency moving average
+    private static final double FORCE_WRITE_EWMA_ALPHA = 0.2;
+
+    private final long targetLatencyNanos;
+    private final long minGroupWaitNanos;
+    private final long maxGroupWaitNanos;
+
+    private final AtomicLongArray addLatencyBuckets = new AtomicLongArray(NUM_BUCKETS);
+    private volatile double forceWriteLatencyNanos = 0;
+    private volatile long groupWaitNanos;
+    private volatile long observedP99Nanos = 0;
+
+    // Accessed only by the journal thread
+    private long lastUpdateNanos;
+    private int maxDrainedEntries = 0;
+
+    @StatsDoc(
+        name = JOURNAL_GROUP_WAIT_USEC,
+        help = "The group commit wait window currently used by the journal, in microseconds"
+    )
+    private final Gauge<Long> groupWaitGauge;
+    @StatsDoc(
+        name = JOURNAL_OBSERVED_ADD_P99_LATENCY_USEC,
+        help = "The p99 add latency observed by the group commit controller in the last interval, in microseconds"
+    )
+    private final Gauge<Long> observedP99Gauge;
+    @StatsDoc(
+        name = JOURNAL_GROUP_WAIT_INCREASE,
+        help = "The number of times the group commit controller increased the wait window"
+    )
+    private final Counter groupWaitIncreaseCounter;
+    @StatsDoc(
+        name = JOURNAL_GROUP_WAIT_DECREASE,
+        help = "The number of times the group commit controller decreased the wait window because the add latency"
+            + " exceeded the target"
+    )
+    private final Counter groupWaitDecreaseCounter;
+    @StatsDoc(
+        name = JOURNAL_GROUP_WAIT_LIGHT_LOAD,
+        help = "The number of times the group commit controller dropped the wait window to its minimum because"
+            + " the load was too light to benefit from grouping"
+    )
+    private final Counter groupWaitLightLoadCounter;
+
+    JournalGroupCommitController(long targetLatencyNanos, long maxGroupWaitNanos, long nowNanos,
+                                 StatsLogger statsLogger) {
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.maxGroupWaitNanos = maxGroupWaitNanos;
+        this.minGroupWaitNanos = Math.min(MIN_GROUP_WAIT_NANOS, maxGroupWaitNanos);
+        this.groupWaitNanos = maxGroupWaitNanos;
+        this.lastUpdateNanos = nowNanos;
+
+        this.groupWaitGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return TimeUnit.NANOSECONDS.toMicros(groupWaitNanos);
+            }
+        };
+        statsLogger.registerGauge(JOURNAL_GROUP_WAIT_USEC, groupWaitGauge);
+        this.observedP99Gauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return TimeUnit.NANOSECONDS.toMicros(observedP99Nanos);
+            }
+        };
+        statsLogger.registerGauge(JOURNAL_OBSERVED_ADD_P99_LATENCY_USEC, observedP99Gauge);
+        this.groupWaitIncreaseCounter = statsLogger.getCounter(JOURNAL_GROUP_WAIT_INCREASE);
+        this.groupWaitDecreaseCounter = statsLogger.getCounter(JOURNAL_GROUP_WAIT_DECREASE);
+        this.groupWaitLightLoadCounter = statsLogger.getCounter(JOURNAL_GROUP_WAIT_LIGHT_LOAD);
+    }
+
+    /**
+     * @return the wait window to use for grouping the journal writes
+     */
+    long getGroupWaitNanos() {
+        return groupWaitNanos;
+    }
+
+    void recordAddLatency(long latencyNanos) {
+        addLatencyBuckets.incrementAndGet(bucketIndex(latencyNanos));
+    }
+
+    synchronized void recordForceWriteLatency(long latencyNanos) {
+        double current = forceWriteLatencyNanos;
+        forceWriteLatencyNanos = current == 0 ? latencyNanos
+                : current + FORCE_WRITE_EWMA_ALPHA * (latencyNanos - current);
+    }
+
+    /**
+     * Record the number of entries drained from the journal queue and run a control step, if the control
+     * interval has elapsed.
+     */
+    void onEntriesDrained(int drainedEntries, long nowNanos) {
+        maxDrainedEntries = Math.max(maxDrainedEntries, drainedEntries);
+        long elapsed = nowNanos - lastUpdateNanos;
+        if (elapsed < CONTROL_INTERVAL_NANOS) {
+            return;
+        }
+        lastUpdateNanos = nowNanos;
+        update(elapsed);
+        maxDrainedEntries = 0;
+    }
+
+    private void update(long intervalNanos) {
+        long samples = 0;
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            counts[i] = addLatencyBuckets.getAndSet(i, 0);
+            samples += counts[i];
+        }
+        if (samples == 0) {
+            return;
+        }
+        long p99 = percentile(counts, samples, 0.99);
+        observedP99Nanos = p99;
+
+        long currentWait = groupWaitNanos;
+        long newWait = currentWait;
+        double entriesPerForceWrite = (double) samples * forceWriteLatencyNanos / intervalNanos;
+        if (p99 > targetLatencyNanos) {
+            newWait = Math.max(minGroupWaitNanos, currentWait / 2);
+            if (newWait < currentWait) {
+                groupWaitDecreaseCounter.inc();
+            }
+        } else if (entriesPerForceWrite < 1 && maxDrainedEntries <= 1) {
+            newWait = minGroupWaitNanos;
+            if (newWait < currentWait) {
+                groupWaitLightLoadCounter.inc();
+            }
+        } else {
+            // Grow by a quarter of the slack, leaving room for the force write itself
+            long limit = Math.min(maxGroupWaitNanos, targetLatencyNanos - (long) forceWriteLatencyNanos);
+            newWait = Math.max(minGroupWaitNanos, Math.min(limit, currentWait + (targetLatencyNanos - p99) / 4));
+            if (newWait > currentWait) {
+                groupWaitIncreaseCounter.inc();
+            }
+        }
+
+        if (newWait != currentWait) {
+            groupWaitNanos = newWait;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Journal group wait changed from {} to {} us, p99 add latency: {} us,"
+                        + " force write latency: {} us, entries per force write: {}",
+                        TimeUnit.NANOSECONDS.toMicros(currentWait), TimeUnit.NANOSECONDS.toMicros(newWait),
+                        TimeUnit.NANOSECONDS.toMicros(p99),
+                        TimeUnit.NANOSECONDS.toMicros((long) forceWriteLatencyNanos), entriesPerForceWrite);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    long getObservedP99Nanos() {
+        return observedP99Nanos;
+    }
+
+    @VisibleForTesting
+    static int bucketIndex(long latencyNanos) {
+        if (latencyNanos < SUB_BUCKETS) {
+            return (int) Math.max(0, latencyNanos);
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(latencyNanos);
+        int sub = (int) (latencyNanos >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exp - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + sub;
+    }
+
+    @VisibleForTesting
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        int sub = index & (SUB_BUCKETS - 1);
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    private static long percentile(long[] counts, long samples, double percentile) {
+        long threshold = (long) Math.ceil(samples * percentile);
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= threshold) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(counts.length - 1);
+    }
+}
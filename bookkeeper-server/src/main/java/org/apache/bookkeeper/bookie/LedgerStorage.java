@@ -144,6 +144,25 @@ public interface LedgerStorage {
      */
     ByteBuf getEntry(long ledgerId, long entryId) throws IOException, BookieException;
 
+    /**
+     * Read up to maxCount consecutive entries of a ledger from storage, starting at firstEntryId.
+     * Reading stops at the first entry which can't be read. An error is only raised if the
+     * first entry can't be read.
+     */
+    default List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount)
+            throws IOException, BookieException {
+        List<ByteBuf> entries = new ArrayList<>();
+        entries.add(getEntry(ledgerId, firstEntryId));
+        for (int i = 1; i < maxCount; i++) {
+            try {
+                entries.add(getEntry(ledgerId, firstEntryId + i));
+            } catch (IOException | BookieException e) {
+                break;
+            }
+        }
+        return entries;
+    }
+
     /**
      * Get last add confirmed.
      *
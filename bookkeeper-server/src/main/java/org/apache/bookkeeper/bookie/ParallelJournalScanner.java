@@ -0,0 +1,133 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.bookkeeper.bookie.Journal.JournalScanner;
+import org.apache.bookkeeper.common.util.MemoryLimitController;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+
+/**
+ * Journal scanner that replays the journal records on multiple threads.
+ *
+ * <p>The thread scanning the journal only copies the records and dispatches them by ledger id to a pool of
+ * workers, which apply them through the wrapped scanner. All the records of a ledger are processed by the same
+ * worker, so the order of the records within a ledger is preserved.
+ *
+ * <p>{@link #waitForPendingRecords()} must be called before recording the position of the scanned records, since
+ * the scan returns before the records are applied.
+ */
+public class ParallelJournalScanner implements JournalScanner, AutoCloseable {
+
+    // Max size of the records copied and not yet applied by the workers
+    private static final long MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+    private final JournalScanner scanner;
+    private final OrderedExecutor executor;
+    private final MemoryLimitController pendingBytes = new MemoryLimitController(MAX_PENDING_BYTES);
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+    // Number of records dispatched and not yet processed
+    private long pendingRecords = 0;
+
+    public ParallelJournalScanner(JournalScanner scanner, int numThreads) {
+        this.scanner = scanner;
+        this.executor = OrderedExecutor.newBuilder()
+                .numThreads(numThreads)
+                .name("JournalReplay")
+                .build();
+    }
+
+    @Override
+    public void process(int journalVersion, long offset, ByteBuffer entry) throws IOException {
+        checkFailure();
+
+        // The scanner reuses the buffer for the next record
+        int size = entry.remaining();
+        ByteBuffer record = ByteBuffer.allocate(size);
+        record.put(entry.duplicate());
+        record.flip();
+        long ledgerId = record.getLong(0);
+
+        try {
+            pendingBytes.reserveMemory(size);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while replaying the journal", e);
+        }
+        synchronized (this) {
+            pendingRecords++;
+        }
+
+        executor.executeOrdered(ledgerId, () -> {
+            try {
+                if (failure.get() == null) {
+                    scanner.process(journalVersion, offset, record);
+                }
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, new IOException(e));
+            } finally {
+                pendingBytes.releaseMemory(size);
+                synchronized (this) {
+                    if (--pendingRecords == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait until all the dispatched records are applied.
+     *
+     * @throws IOException if any of the records failed to be applied
+     */
+    public void waitForPendingRecords() throws IOException {
+        synchronized (this) {
+            while (pendingRecords > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while replaying the journal", e);
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -33,6 +33,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_W
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_FORCE_WRITE_QUEUE_SIZE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_MEMORY_MAX;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_MEMORY_USED;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_CHANNEL_PAUSED;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLUSH_EMPTY_QUEUE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_NUM_FLUSH_MAX_WAIT;
@@ -157,6 +158,11 @@ public class JournalStats {
         help = "The number of journal flushes triggered when journal queue becomes empty"
     )
     private final Counter flushEmptyQueueCounter;
+    @StatsDoc(
+        name = JOURNAL_NUM_CHANNEL_PAUSED,
+        help = "The number of times a client channel stopped reading because the journal was over its memory limit"
+    )
+    private final Counter channelPausedCounter;
     @StatsDoc(
         name = JOURNAL_WRITE_BYTES,
         help = "The number of bytes appended to the journal"
@@ -194,6 +200,7 @@ public class JournalStats {
         flushMaxOutstandingBytesCounter =
                 statsLogger.getCounter(BookKeeperServerStats.JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES);
         flushEmptyQueueCounter = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_NUM_FLUSH_EMPTY_QUEUE);
+        channelPausedCounter = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_NUM_CHANNEL_PAUSED);
         journalWriteBytes = statsLogger.getCounter(BookKeeperServerStats.JOURNAL_WRITE_BYTES);
 
         journalMemoryMaxStats = new Gauge<Long>() {
@@ -0,0 +1,65 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage;
+
+import java.io.IOException;
+
+/**
+ * Receive the new locations of the entries moved by {@link EntryLogger#transferEntries}.
+ */
+public interface EntryLogTransferScanner {
+    /**
+     * Tests whether or not the entries belongs to the specified ledger
+     * should be moved.
+     *
+     * @param ledgerId
+     *          Ledger ID.
+     * @return true if and only the entries of the ledger should be moved.
+     */
+    boolean accept(long ledgerId);
+
+    /**
+     * Called before moving a run of entries to the current entry log.
+     *
+     * @param length
+     *          Number of bytes about to be written.
+     * @param entries
+     *          Number of entries about to be written.
+     * @throws IOException
+     */
+    default void beforeTransfer(int length, int entries) throws IOException {
+    }
+
+    /**
+     * Process an entry which has been moved to the current entry log.
+     *
+     * @param ledgerId
+     *          Ledger ID.
+     * @param entryId
+     *          Entry ID.
+     * @param location
+     *          New location of the entry.
+     * @param entrySize
+     *          Size of the entry.
+     * @throws IOException
+     */
+    void process(long ledgerId, long entryId, long location, int entrySize) throws IOException;
+}
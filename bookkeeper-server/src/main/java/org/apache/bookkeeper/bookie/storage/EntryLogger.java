@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.bookie.storage;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
 import java.io.IOException;
 import java.util.Collection;
 import org.apache.bookkeeper.bookie.AbstractLogCompactor;
@@ -49,6 +50,18 @@ public interface EntryLogger extends AutoCloseable {
      */
     long addEntry(long ledgerId, ByteBuf buf) throws IOException;
 
+    /**
+     * Add an entry moved by the compaction of another entrylog. Unlike {@link #addEntry(long, ByteBuf)},
+     * this is not a new write to the ledger, which implementations placing the entries by the age
+     * of their ledger must not take as one.
+     * @param ledgerId the ledger for which the entry is being added
+     * @param buf the contents of the entry (this method does not take ownership of the refcount)
+     * @return the location in the entry log of the added entry
+     */
+    default long addCompactedEntry(long ledgerId, ByteBuf buf) throws IOException {
+        return addEntry(ledgerId, buf);
+    }
+
     /**
      * Read an entry from an entrylog location.
      * @param entryLocation the location from which to read the entry
@@ -67,6 +80,32 @@ public interface EntryLogger extends AutoCloseable {
     ByteBuf readEntry(long ledgerId, long entryId, long entryLocation)
             throws IOException, NoEntryException;
 
+    /**
+     * Read a batch of entries of a ledger from their entrylog locations, and verify
+     * that each of them matches the expected ledger and entry ID.
+     * Implementations may serve entries which are close to each other in the same
+     * log with a single read.
+     * @param ledgerId the ledgerID to match
+     * @param entryIds the entryIDs to match
+     * @param entryLocations the locations from which to read the entries
+     * @return the entries, in the same order as the locations. The caller must release them.
+     */
+    default ByteBuf[] readEntries(long ledgerId, long[] entryIds, long[] entryLocations)
+            throws IOException, NoEntryException {
+        ByteBuf[] entries = new ByteBuf[entryLocations.length];
+        try {
+            for (int i = 0; i < entryLocations.length; i++) {
+                entries[i] = readEntry(ledgerId, entryIds[i], entryLocations[i]);
+            }
+        } catch (IOException e) {
+            for (ByteBuf entry : entries) {
+                ReferenceCountUtil.release(entry);
+            }
+            throw e;
+        }
+        return entries;
+    }
+
     /**
      * Flush any outstanding writes to disk.
      */
@@ -101,6 +140,31 @@ public interface EntryLogger extends AutoCloseable {
      */
     void scanEntryLog(long entryLogId, EntryLogScanner scanner) throws IOException;
 
+    /**
+     * Move the entries of the given entrylog accepted by the scanner to the current entrylog.
+     * Implementations may copy contiguous runs of entries from file to file, without reading
+     * the entries into memory. The default implementation reads and adds the entries one by one.
+     * The scanner is called with the new location of each entry once the run containing it has
+     * been written.
+     */
+    default void transferEntries(long entryLogId, EntryLogTransferScanner scanner) throws IOException {
+        scanEntryLog(entryLogId, new EntryLogScanner() {
+            @Override
+            public boolean accept(long ledgerId) {
+                return scanner.accept(ledgerId);
+            }
+
+            @Override
+            public void process(long ledgerId, long offset, ByteBuf entry) throws IOException {
+                long entryId = entry.getLong(entry.readerIndex() + 8);
+                int entrySize = entry.readableBytes();
+                scanner.beforeTransfer(entrySize, 1);
+                long location = addCompactedEntry(ledgerId, entry);
+                scanner.process(ledgerId, entryId, location, entrySize);
+            }
+        });
+    }
+
     /**
      * Retrieve metadata for the given entrylog ID.
      * The metadata contains the size of the log, the size of the data in the log which is still
@@ -55,6 +55,7 @@ class Buffer {
     public static final int ALIGNMENT = 4096;
     private static final int MAX_ALIGNMENT = Integer.MAX_VALUE & ~(ALIGNMENT - 1);
     static final byte[] PADDING = generatePadding();
+    static final byte[] ZEROS = new byte[ALIGNMENT];
 
     final NativeIO nativeIO;
     final int bufferSize;
@@ -126,6 +127,24 @@ class Buffer {
         bytebuf.skipBytes(bytesWritten);
     }
 
+    /**
+     * Write as many bytes of a ByteBuffer as there is space for in this buffer. Progresses the position of
+     * both this buffer and the ByteBuffer by the number of bytes written.
+     * @return the number of bytes written
+     */
+    int writeByteBuffer(ByteBuffer src) {
+        int bytesToWrite = Math.min(src.remaining(), byteBuffer.remaining());
+        if (bytesToWrite == src.remaining()) {
+            byteBuffer.put(src);
+        } else {
+            ByteBuffer part = src.duplicate();
+            part.limit(part.position() + bytesToWrite);
+            byteBuffer.put(part);
+            src.position(src.position() + bytesToWrite);
+        }
+        return bytesToWrite;
+    }
+
     /**
      * Read an integer from the buffer at the given offset. The offset is in bytes.
      */
@@ -233,6 +252,34 @@ class Buffer {
         return nextAlignment;
     }
 
+    /**
+     * Pad the buffer with zeros to the next alignment position.
+     * @return the position of the next alignment. This should be used as the size argument to make aligned writes.
+     */
+    int zeroPadToAlignment() {
+        int bufferPos = byteBuffer.position();
+        int nextAlignment = nextAlignment(bufferPos);
+        byteBuffer.put(ZEROS, 0, nextAlignment - bufferPos);
+        return nextAlignment;
+    }
+
+    /**
+     * Move the bytes from offset to offset + length to the start of the buffer, and position the buffer
+     * right after them. The offset must be aligned, so that the bytes moved don't overlap their destination.
+     */
+    void compact(int offset, int length) {
+        checkArgument(isAligned(offset) && length < ALIGNMENT,
+                      "Cannot compact %d bytes from offset %d", length, offset);
+        if (offset > 0) {
+            ByteBuffer tail = byteBuffer.duplicate();
+            tail.limit(offset + length).position(offset);
+            byteBuffer.clear();
+            byteBuffer.put(tail);
+        } else {
+            byteBuffer.position(length);
+        }
+    }
+
     /**
      * Clear the bytes written. This doesn't actually destroy the data, but moves the position back to the start of
      * the buffer.
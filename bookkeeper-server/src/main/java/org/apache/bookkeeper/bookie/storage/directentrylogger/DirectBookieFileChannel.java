@@ -0,0 +1,99 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.directentrylogger;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import org.apache.bookkeeper.bookie.BookieFileChannel;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+
+/**
+ * A {@link BookieFileChannel} which writes new files with a {@link DirectFileChannel}, and reads
+ * existing files with a regular file channel.
+ * <p/>
+ * The mode is chosen by the caller, never guessed from the file. A file which already has data is
+ * never opened for direct writes, as the direct channel only appends from the start of the file.
+ */
+class DirectBookieFileChannel implements BookieFileChannel {
+    private final File file;
+    private final NativeIO nativeIO;
+    private final DirectFileChannelProvider provider;
+    private FileChannel fileChannel;
+    private RandomAccessFile randomAccessFile;
+
+    DirectBookieFileChannel(File file, NativeIO nativeIO, DirectFileChannelProvider provider) {
+        this.file = file;
+        this.nativeIO = nativeIO;
+        this.provider = provider;
+    }
+
+    @Override
+    public FileChannel getFileChannel() throws IOException {
+        return getFileChannel(false);
+    }
+
+    @Override
+    public FileChannel getFileChannel(boolean forWrite) throws IOException {
+        synchronized (this) {
+            if (fileChannel == null) {
+                if (forWrite) {
+                    if (file.length() != 0) {
+                        throw new IOException("Cannot write " + file + " with direct I/O, it is not a new file");
+                    }
+                    fileChannel = new DirectFileChannel(file, nativeIO, provider);
+                } else {
+                    randomAccessFile = new RandomAccessFile(file, "r");
+                    fileChannel = randomAccessFile.getChannel();
+                }
+            } else if (forWrite != (fileChannel instanceof DirectFileChannel)) {
+                throw new IOException(file + " is already opened " + (forWrite ? "to read" : "to write"));
+            }
+            return fileChannel;
+        }
+    }
+
+    @Override
+    public boolean fileExists(File file) {
+        return file.exists();
+    }
+
+    @Override
+    public FileDescriptor getFD() throws IOException {
+        synchronized (this) {
+            if (randomAccessFile == null) {
+                throw new IOException("No file descriptor for " + file + ", it is written with direct I/O");
+            }
+            return randomAccessFile.getFD();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (fileChannel != null) {
+                fileChannel.close();
+            }
+        }
+    }
+}
@@ -36,7 +36,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -75,6 +77,7 @@ public class DirectEntryLogger implements EntryLogger {
     private final BufferPool writeBuffers;
     private final int readBufferSize;
     private final int maxSaneEntrySize;
+    private final boolean mmapFlushedLogs;
     private final Set<Integer> unflushedLogs;
 
     private WriterWithMetadata curWriter;
@@ -86,6 +89,29 @@ public class DirectEntryLogger implements EntryLogger {
 
     private static final int NUMBER_OF_WRITE_BUFFERS = 8;
 
+    // entries closer than this to each other in a log are served by a single read in readEntries
+    private static final int MAX_COALESCED_READ_GAP = 64 * 1024;
+
+    public DirectEntryLogger(File ledgerDir,
+                             EntryLogIds ids,
+                             NativeIO nativeIO,
+                             ByteBufAllocator allocator,
+                             ExecutorService writeExecutor,
+                             ExecutorService flushExecutor,
+                             long maxFileSize,
+                             int maxSaneEntrySize,
+                             long totalWriteBufferSize,
+                             long totalReadBufferSize,
+                             int readBufferSize,
+                             int numReadThreads,
+                             int maxFdCacheTimeSeconds,
+                             Slogger slogParent,
+                             StatsLogger stats) throws IOException {
+        this(ledgerDir, ids, nativeIO, allocator, writeExecutor, flushExecutor, maxFileSize, maxSaneEntrySize,
+             totalWriteBufferSize, totalReadBufferSize, readBufferSize, numReadThreads, maxFdCacheTimeSeconds,
+             false, slogParent, stats);
+    }
+
     public DirectEntryLogger(File ledgerDir,
                              EntryLogIds ids,
                              NativeIO nativeIO,
@@ -99,6 +125,7 @@ public class DirectEntryLogger implements EntryLogger {
                              int readBufferSize,
                              int numReadThreads,
                              int maxFdCacheTimeSeconds,
+                             boolean mmapFlushedLogs,
                              Slogger slogParent,
                              StatsLogger stats) throws IOException {
         this.ledgerDir = ledgerDir;
@@ -110,6 +137,7 @@ public class DirectEntryLogger implements EntryLogger {
 
         this.maxFileSize = maxFileSize;
         this.maxSaneEntrySize = maxSaneEntrySize;
+        this.mmapFlushedLogs = mmapFlushedLogs;
         this.readBufferSize = Buffer.nextAlignment(readBufferSize);
         this.ids = ids;
         this.slog = slogParent.kv("directory", ledgerDir).ctx(DirectEntryLogger.class);
@@ -150,6 +178,7 @@ public class DirectEntryLogger implements EntryLogger {
             .kv("perThreadBufferSize", perThreadBufferSize)
             .kv("maxCachedReadersPerThread", maxCachedReadersPerThread)
             .kv("maxCachedReaders", maxCachedReaders)
+            .kv("mmapFlushedLogs", mmapFlushedLogs)
             .info(Events.ENTRYLOGGER_CREATED);
 
         this.caches = ThreadLocal.withInitial(() -> {
@@ -216,7 +245,7 @@ public class DirectEntryLogger implements EntryLogger {
         try {
             LogReader reader = cache.get(logId, () -> {
                 this.stats.getOpenReaderCounter().inc();
-                return newDirectReader(logId);
+                return newReader(logId);
             });
 
             // it is possible though unlikely, that the cache has already cleaned up this cache entry
@@ -237,6 +266,124 @@ public class DirectEntryLogger implements EntryLogger {
         }
     }
 
+    @Override
+    public ByteBuf[] readEntries(long ledgerId, long[] entryIds, long[] entryLocations)
+            throws IOException, NoEntryException {
+        checkArgument(entryIds.length == entryLocations.length,
+                      "Entry ids and locations must have the same length (%s != %s)",
+                      entryIds.length, entryLocations.length);
+        int count = entryLocations.length;
+        ByteBuf[] entries = new ByteBuf[count];
+        int[] entrySizes = new int[count];
+
+        // serve the entries in log and offset order, so that neighbouring entries share a single read
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> entryLocations[i]));
+
+        long start = System.nanoTime();
+        try {
+            int next = 0;
+            while (next < count) {
+                next = readCoalesced(ledgerId, entryIds, entryLocations, order, next, entrySizes, entries);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (ByteBuf entry : entries) {
+                ReferenceCountUtil.release(entry);
+            }
+            stats.getReadEntriesStats().registerFailedEvent(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        stats.getReadEntriesStats().registerSuccessfulEvent(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return entries;
+    }
+
+    /**
+     * Read the entries order[first], order[first + 1]... with a single read, for as long as they
+     * are in the same log and close to each other.
+     * @return the position in order of the first entry which hasn't been read
+     */
+    private int readCoalesced(long ledgerId, long[] entryIds, long[] entryLocations, Integer[] order,
+                              int first, int[] entrySizes, ByteBuf[] entries) throws IOException {
+        int firstIndex = order[first];
+        // the entry whose location is being read, to report it if the location is past the end of the log
+        int reading = firstIndex;
+        try {
+            int logId = (int) (entryLocations[firstIndex] >> 32);
+            long firstPos = entryLocations[firstIndex] & 0xFFFFFFFFL;
+            LogReader reader = getReader(logId);
+
+            entrySizes[firstIndex] = firstPos >= Integer.BYTES ? reader.readIntAt(firstPos - Integer.BYTES) : 0;
+            if (!isSaneEntrySize(entrySizes[firstIndex])) {
+                // let the single entry path deal with stale views of the log and report bad locations
+                entries[firstIndex] = internalReadEntry(ledgerId, entryIds[firstIndex],
+                                                        entryLocations[firstIndex], true);
+                return first + 1;
+            }
+
+            long extentStart = firstPos - Integer.BYTES;
+            long extentEnd = firstPos + entrySizes[firstIndex];
+            int extentEndIndex = firstIndex;
+            int last = first;
+            while (last + 1 < order.length) {
+                int index = order[last + 1];
+                if ((int) (entryLocations[index] >> 32) != logId) {
+                    break;
+                }
+                long pos = entryLocations[index] & 0xFFFFFFFFL;
+                if (pos - Integer.BYTES - extentEnd > MAX_COALESCED_READ_GAP) {
+                    break;
+                }
+                reading = index;
+                int size = reader.readIntAt(pos - Integer.BYTES);
+                long end = Math.max(extentEnd, pos + size);
+                if (!isSaneEntrySize(size) || end - extentStart > readBufferSize) {
+                    break;
+                }
+                entrySizes[index] = size;
+                if (end > extentEnd) {
+                    extentEnd = end;
+                    extentEndIndex = index;
+                }
+                last++;
+            }
+
+            reading = extentEndIndex;
+            ByteBuf extent = reader.readBufferAt(extentStart, (int) (extentEnd - extentStart));
+            try {
+                for (int i = first; i <= last; i++) {
+                    int index = order[i];
+                    long pos = entryLocations[index] & 0xFFFFFFFFL;
+                    ByteBuf entry = extent.retainedSlice((int) (pos - extentStart), entrySizes[index]);
+                    entries[index] = entry;
+                    long thisLedgerId = entry.getLong(0);
+                    long thisEntryId = entry.getLong(8);
+                    if (thisLedgerId != ledgerId || thisEntryId != entryIds[index]) {
+                        throw new IOException(
+                                exMsg("Bad location").kv("location", entryLocations[index])
+                                .kv("expectedLedger", ledgerId).kv("expectedEntry", entryIds[index])
+                                .kv("foundLedger", thisLedgerId).kv("foundEntry", thisEntryId)
+                                .toString());
+                    }
+                }
+            } finally {
+                ReferenceCountUtil.release(extent);
+            }
+            stats.getCoalescedReadEntriesStats().registerSuccessfulValue(last - first + 1);
+            return last + 1;
+        } catch (EOFException eof) {
+            throw new NoEntryException(
+                    exMsg("Entry location doesn't exist").kv("location", entryLocations[reading]).toString(),
+                    ledgerId, entryIds[reading]);
+        }
+    }
+
+    private boolean isSaneEntrySize(int entrySize) {
+        return entrySize > 0 && entrySize <= maxSaneEntrySize;
+    }
+
     private ByteBuf internalReadEntry(long ledgerId, long entryId, long location, boolean validateEntry)
             throws IOException, NoEntryException {
         int logId = (int) (location >> 32);
@@ -440,6 +587,14 @@ public class DirectEntryLogger implements EntryLogger {
         return meta;
     }
 
+    private LogReader newReader(int logId) throws IOException {
+        // only logs which will not be written anymore can be mapped, the mapping doesn't follow the file size
+        if (mmapFlushedLogs && !unflushedLogs.contains(logId)) {
+            return new MappedReader(logId, logFilename(ledgerDir, logId), allocator, maxSaneEntrySize);
+        }
+        return newDirectReader(logId);
+    }
+
     @VisibleForTesting
     LogReader newDirectReader(int logId) throws IOException {
         return new DirectReader(logId, logFilename(ledgerDir, logId),
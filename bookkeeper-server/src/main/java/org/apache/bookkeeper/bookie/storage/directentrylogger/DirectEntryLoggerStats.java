@@ -37,6 +37,8 @@ import org.apache.bookkeeper.stats.annotations.StatsDoc;
 class DirectEntryLoggerStats {
     private static final String ADD_ENTRY = "entrylog-add-entry";
     private static final String READ_ENTRY = "entrylog-read-entry";
+    private static final String READ_ENTRIES = "entrylog-read-entries";
+    private static final String COALESCED_READ_ENTRIES = "entrylog-coalesced-read-entries";
     private static final String FLUSH = "entrylog-flush";
     private static final String WRITER_FLUSH = "entrylog-writer-flush";
     private static final String READ_BLOCK = "entrylog-read-block";
@@ -58,6 +60,19 @@ class DirectEntryLoggerStats {
     )
     private static ThreadLocal<OpStatsLogger> readEntryStats;
 
+    @StatsDoc(
+              name = READ_ENTRIES,
+              help = "Operation stats of reading a batch of entries from the entry log",
+              parent = BOOKIE_READ_ENTRY
+    )
+    private static ThreadLocal<OpStatsLogger> readEntriesStats;
+
+    @StatsDoc(
+              name = COALESCED_READ_ENTRIES,
+              help = "Number of entries served by each coalesced read of a batch read"
+    )
+    private static ThreadLocal<OpStatsLogger> coalescedReadEntriesStats;
+
     @StatsDoc(
               name = FLUSH,
               help = "Stats for persisting outstanding entrylog writes to disk"
@@ -110,6 +125,20 @@ class DirectEntryLoggerStats {
                     .getOpStatsLogger(READ_ENTRY);
             }
         };
+        readEntriesStats = new ThreadLocal<OpStatsLogger>() {
+            @Override
+            public OpStatsLogger initialValue() {
+                return stats.scopeLabel("thread", String.valueOf(Thread.currentThread().getId()))
+                    .getOpStatsLogger(READ_ENTRIES);
+            }
+        };
+        coalescedReadEntriesStats = new ThreadLocal<OpStatsLogger>() {
+            @Override
+            public OpStatsLogger initialValue() {
+                return stats.scopeLabel("thread", String.valueOf(Thread.currentThread().getId()))
+                    .getOpStatsLogger(COALESCED_READ_ENTRIES);
+            }
+        };
         readBlockStats = new ThreadLocal<OpStatsLogger>() {
             @Override
             public OpStatsLogger initialValue() {
@@ -159,6 +188,14 @@ class DirectEntryLoggerStats {
         return readEntryStats.get();
     }
 
+    OpStatsLogger getReadEntriesStats() {
+        return readEntriesStats.get();
+    }
+
+    OpStatsLogger getCoalescedReadEntriesStats() {
+        return coalescedReadEntriesStats.get();
+    }
+
     OpStatsLogger getReadBlockStats() {
         return readBlockStats.get();
     }
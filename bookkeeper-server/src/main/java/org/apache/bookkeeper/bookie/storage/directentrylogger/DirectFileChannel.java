@@ -0,0 +1,287 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.directentrylogger;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.bookkeeper.common.util.ExceptionMessageHelper.exMsg;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
+
+/**
+ * An append only {@link FileChannel} which writes with direct I/O, bypassing the page cache.
+ * <p/>
+ * Writes are staged in an aligned native buffer, which is written out whenever it is full, or
+ * when the channel is forced. As direct I/O can only write whole aligned blocks, the last partial
+ * block is padded with zeros when forced, and kept in the buffer to be written again, with the
+ * bytes that follow it, by the next write out. Zeros are what a reader finds past the end of a
+ * preallocated journal, so the padding is never mistaken for data.
+ * <p/>
+ * Rewriting that last block cannot lose data which was already forced: the rewrite carries the
+ * same bytes for the forced part of the block, so whichever of the old or the new sectors the
+ * device holds after a crash, the forced bytes are intact, and only the unforced tail may be torn.
+ * This is the same guarantee the page cache gives, as it also writes the whole last page again on
+ * every sync. When the journal aligns its writes, with {@code journalAlignmentSize} set to the
+ * block size, forces end on block boundaries and no block is ever written twice.
+ * <p/>
+ * Positional writes are only supported past the end of the appended data, which is how the
+ * journal preallocates its files. Positional reads are served from a regular file channel, after
+ * writing out the buffered data they need.
+ */
+class DirectFileChannel extends FileChannel {
+    private final NativeIO nativeIO;
+    private final File file;
+    private final int fd;
+    private final DirectFileChannelProvider provider;
+
+    private Buffer nativeBuffer;
+    // Aligned offset in the file of the start of the native buffer
+    private long bufferOffset;
+    // End of the data written out, or preallocated, in the file
+    private long fileSize;
+    private RandomAccessFile reader;
+
+    DirectFileChannel(File file, NativeIO nativeIO, DirectFileChannelProvider provider) throws IOException {
+        this.file = file;
+        this.nativeIO = nativeIO;
+        this.provider = provider;
+        try {
+            fd = nativeIO.open(file.getPath(), NativeIO.O_CREAT | NativeIO.O_WRONLY | NativeIO.O_DIRECT, 00644);
+            checkState(fd >= 0, "Open should have thrown exception, fd is invalid : %d", fd);
+        } catch (NativeIOException ne) {
+            throw new IOException(exMsg(ne.getMessage()).kv("file", file)
+                                  .kv("errno", ne.getErrno()).toString(), ne);
+        }
+        this.nativeBuffer = provider.acquireBuffer();
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+        ensureOpen();
+        int written = 0;
+        while (src.hasRemaining()) {
+            written += nativeBuffer.writeByteBuffer(src);
+            if (nativeBuffer.position() == nativeBuffer.size()) {
+                writeBuffer();
+            }
+        }
+        return written;
+    }
+
+    @Override
+    public synchronized long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        long written = 0;
+        for (int i = offset; i < offset + length; i++) {
+            written += write(srcs[i]);
+        }
+        return written;
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src, long position) throws IOException {
+        ensureOpen();
+        long blockStart = position & ~(Buffer.ALIGNMENT - 1);
+        long appendEnd = bufferOffset + Buffer.nextAlignment(nativeBuffer.position());
+        if (blockStart < appendEnd) {
+            throw new IOException(exMsg("Positional writes are only supported past the appended data")
+                                  .kv("file", file).kv("position", position)
+                                  .kv("appendPosition", bufferOffset + nativeBuffer.position()).toString());
+        }
+        int length = src.remaining();
+        Buffer block = provider.acquireBuffer();
+        try {
+            int offsetInBlock = (int) (position - blockStart);
+            if (!block.hasSpace(offsetInBlock + length)) {
+                throw new IOException(exMsg("Positional write too large").kv("file", file)
+                                      .kv("writeSize", length).kv("maxSize", block.size()).toString());
+            }
+            block.writeByteBuffer(ByteBuffer.wrap(Buffer.ZEROS, 0, offsetInBlock));
+            block.writeByteBuffer(src);
+            int bytesToWrite = block.zeroPadToAlignment();
+            pwrite(block, bytesToWrite, blockStart);
+            fileSize = Math.max(fileSize, position + length);
+        } finally {
+            provider.releaseBuffer(block);
+        }
+        return length;
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        return bufferOffset + nativeBuffer.position();
+    }
+
+    @Override
+    public synchronized FileChannel position(long newPosition) throws IOException {
+        if (newPosition != position()) {
+            throw new UnsupportedOperationException("Direct file channels can only be appended to");
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        return Math.max(fileSize, position());
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        synchronized (this) {
+            ensureOpen();
+            writeBuffer();
+        }
+        // The data is already out of the page cache, only the device cache and the metadata need a sync
+        try {
+            int ret = nativeIO.fsync(fd);
+            checkState(ret == 0, "Fsync should throw exception on non-zero return (%d)", ret);
+        } catch (NativeIOException ne) {
+            throw new IOException(exMsg(ne.getMessage()).kv("file", file)
+                                  .kv("errno", ne.getErrno()).toString(), ne);
+        }
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst, long position) throws IOException {
+        ensureOpen();
+        if (position + dst.remaining() > bufferOffset) {
+            writeBuffer();
+        }
+        if (reader == null) {
+            reader = new RandomAccessFile(file, "r");
+        }
+        return reader.getChannel().read(dst, position);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        throw new UnsupportedOperationException("Direct file channels only support positional reads");
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        throw new UnsupportedOperationException("Direct file channels only support positional reads");
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+        throw new UnsupportedOperationException("Direct file channels can only be appended to");
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        throw new UnsupportedOperationException("Direct file channels do not support transfers");
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+        throw new UnsupportedOperationException("Direct file channels do not support transfers");
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+        throw new UnsupportedOperationException("Direct file channels cannot be mapped");
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+        throw new UnsupportedOperationException("Direct file channels cannot be locked");
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+        throw new UnsupportedOperationException("Direct file channels cannot be locked");
+    }
+
+    @Override
+    protected synchronized void implCloseChannel() throws IOException {
+        try {
+            writeBuffer();
+            if (reader != null) {
+                reader.close();
+            }
+        } finally {
+            try {
+                int ret = nativeIO.close(fd);
+                checkState(ret == 0, "Close should throw exception on non-zero return (%d)", ret);
+            } catch (NativeIOException ne) {
+                throw new IOException(exMsg(ne.getMessage()).kv("file", file)
+                                      .kv("errno", ne.getErrno()).toString(), ne);
+            } finally {
+                provider.releaseBuffer(nativeBuffer);
+                nativeBuffer = null;
+            }
+        }
+    }
+
+    /**
+     * Write out the buffered data, padded to the next alignment. Only the last partial block is kept
+     * in the buffer, to be written again along with the data appended after it.
+     */
+    private void writeBuffer() throws IOException {
+        int dataEnd = nativeBuffer.position();
+        if (dataEnd == 0) {
+            return;
+        }
+        int bytesToWrite = nativeBuffer.zeroPadToAlignment();
+        pwrite(nativeBuffer, bytesToWrite, bufferOffset);
+        fileSize = Math.max(fileSize, bufferOffset + dataEnd);
+
+        int tailStart = dataEnd & ~(Buffer.ALIGNMENT - 1);
+        nativeBuffer.compact(tailStart, dataEnd - tailStart);
+        bufferOffset += tailStart;
+    }
+
+    private void pwrite(Buffer buffer, int bytesToWrite, long offset) throws IOException {
+        try {
+            int ret = nativeIO.pwrite(fd, buffer.pointer(), bytesToWrite, offset);
+            if (ret != bytesToWrite) {
+                throw new IOException(exMsg("Incomplete write")
+                                      .kv("file", file)
+                                      .kv("offset", offset)
+                                      .kv("writeSize", bytesToWrite)
+                                      .kv("bytesWritten", ret)
+                                      .toString());
+            }
+        } catch (NativeIOException ne) {
+            throw new IOException(exMsg("Write error")
+                                  .kv("file", file)
+                                  .kv("offset", offset)
+                                  .kv("writeSize", bytesToWrite)
+                                  .kv("errno", ne.getErrno())
+                                  .toString(), ne);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!isOpen()) {
+            throw new IOException(exMsg("Channel is closed").kv("file", file).toString());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.directentrylogger;
+
+import io.netty.buffer.ByteBufAllocator;
+import java.io.File;
+import java.io.IOException;
+import org.apache.bookkeeper.bookie.BookieFileChannel;
+import org.apache.bookkeeper.bookie.FileChannelProvider;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+
+/**
+ * A {@link FileChannelProvider} for the journal, which writes the journal files with direct I/O.
+ * <p/>
+ * Journal writes bypass the page cache, so they don't evict the pages read by the ledger storage,
+ * and {@code journalRemoveFromPageCache} is not needed. Journal files are still read through the
+ * page cache when they are replayed.
+ */
+public class DirectFileChannelProvider implements FileChannelProvider {
+    // One buffer for the current journal file, one for the previous file until it is closed,
+    // and one for preallocation writes
+    private static final int NUMBER_OF_BUFFERS = 4;
+
+    private final NativeIO nativeIO;
+    private BufferPool bufferPool;
+    private boolean closed = false;
+
+    public DirectFileChannelProvider() {
+        this(new NativeIOImpl());
+    }
+
+    DirectFileChannelProvider(NativeIO nativeIO) {
+        this.nativeIO = nativeIO;
+    }
+
+    @Override
+    public BookieFileChannel open(File file, ServerConfiguration configuration) throws IOException {
+        synchronized (this) {
+            if (bufferPool == null) {
+                int bufferSize = Buffer.nextAlignment(configuration.getJournalWriteBufferSizeKB() * 1024);
+                bufferPool = new BufferPool(nativeIO, ByteBufAllocator.DEFAULT, bufferSize, NUMBER_OF_BUFFERS);
+            }
+        }
+        return new DirectBookieFileChannel(file, nativeIO, this);
+    }
+
+    @Override
+    public void close(BookieFileChannel bookieFileChannel) throws IOException {
+        bookieFileChannel.close();
+    }
+
+    @Override
+    public boolean bypassesPageCache() {
+        return true;
+    }
+
+    Buffer acquireBuffer() throws IOException {
+        BufferPool pool;
+        synchronized (this) {
+            pool = bufferPool;
+        }
+        return pool.acquire();
+    }
+
+    synchronized void releaseBuffer(Buffer buffer) {
+        if (closed) {
+            // The channels can outlive the provider when the journal shuts down
+            buffer.free();
+        } else {
+            bufferPool.release(buffer);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (bufferPool != null) {
+            bufferPool.close();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.directentrylogger;
+
+import static org.apache.bookkeeper.common.util.ExceptionMessageHelper.exMsg;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.PlatformDependent;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader for entry logs which have been completely written and flushed.
+ *
+ * <p>The whole log is mapped into memory once, so reads are served from the page cache
+ * without a syscall per read, and without reading whole aligned blocks as O_DIRECT reads do.
+ * The log must not grow after the reader has been opened.
+ *
+ * <p>This is not zero-copy: entries are copied out of the mapping into buffers of the allocator,
+ * so that they stay valid after the reader is closed and the mapping released.
+ *
+ * <p>The mapping is never written, so reads don't need to be serialized. Like other readers, a
+ * mapped reader is only read from by the thread whose reader cache holds it, and is closed either
+ * by that thread when it is evicted, or when the entry logger is closed after reads have stopped.
+ */
+class MappedReader implements LogReader {
+    private final ByteBufAllocator allocator;
+    private final String filename;
+    private final int logId;
+    private final int maxSaneEntrySize;
+    private final long maxOffset;
+    private final MappedByteBuffer mapped;
+    private final ByteBuf mappedView;
+    private volatile boolean closed;
+
+    MappedReader(int logId, String filename, ByteBufAllocator allocator,
+                 int maxSaneEntrySize) throws IOException {
+        this.allocator = allocator;
+        this.logId = logId;
+        this.filename = filename;
+        this.maxSaneEntrySize = maxSaneEntrySize;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(exMsg("Log too large to be mapped")
+                                      .kv("file", filename)
+                                      .kv("fileSize", size).toString());
+            }
+            this.maxOffset = size;
+            this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        // wrapping a direct buffer doesn't take ownership of it, the mapping is released on close
+        this.mappedView = Unpooled.wrappedBuffer(mapped);
+        closed = false;
+    }
+
+    @Override
+    public int logId() {
+        return logId;
+    }
+
+    @Override
+    public long maxOffset() {
+        return maxOffset;
+    }
+
+    @Override
+    public ByteBuf readBufferAt(long offset, int size) throws IOException, EOFException {
+        ByteBuf buf = allocator.buffer(size);
+        try {
+            readIntoBufferAt(buf, offset, size);
+        } catch (IOException e) {
+            ReferenceCountUtil.release(buf);
+            throw e;
+        }
+        return buf;
+    }
+
+    @Override
+    public void readIntoBufferAt(ByteBuf buffer, long offset, int size)
+            throws IOException, EOFException {
+        assertReadable(offset, size);
+        buffer.writeBytes(mappedView, (int) offset, size);
+    }
+
+    @Override
+    public int readIntAt(long offset) throws IOException, EOFException {
+        assertReadable(offset, Integer.BYTES);
+        return mappedView.getInt((int) offset);
+    }
+
+    @Override
+    public long readLongAt(long offset) throws IOException, EOFException {
+        assertReadable(offset, Long.BYTES);
+        return mappedView.getLong((int) offset);
+    }
+
+    @Override
+    public ByteBuf readEntryAt(int offset) throws IOException, EOFException {
+        int sizeOffset = offset - Integer.BYTES;
+        if (sizeOffset < 0) {
+            throw new IOException(exMsg("Invalid offset, buffer size missing")
+                                  .kv("file", filename)
+                                  .kv("offset", offset).toString());
+        }
+
+        int entrySize = readIntAt(sizeOffset);
+        if (entrySize > maxSaneEntrySize || entrySize <= 0) {
+            throw new IOException(exMsg("Invalid entry size")
+                                  .kv("file", filename)
+                                  .kv("offset", offset)
+                                  .kv("maxSaneEntrySize", maxSaneEntrySize)
+                                  .kv("readEntrySize", entrySize).toString());
+        }
+        return readBufferAt(offset, entrySize);
+    }
+
+    private void assertReadable(long offset, int size) throws IOException, EOFException {
+        if (closed) {
+            throw new IOException(exMsg("Reader already closed").kv("file", filename).toString());
+        }
+        if (offset < 0) {
+            throw new IOException(exMsg("Offset can't be negative")
+                                  .kv("file", filename)
+                                  .kv("offset", offset).toString());
+        }
+        if (offset + size > maxOffset) {
+            throw new EOFException(exMsg("Not enough bytes available")
+                                   .kv("file", filename)
+                                   .kv("fileSize", maxOffset)
+                                   .kv("offset", offset)
+                                   .kv("size", size).toString());
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            // unmap eagerly rather than waiting for the mapping to be garbage collected
+            PlatformDependent.freeDirectBuffer(mapped);
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
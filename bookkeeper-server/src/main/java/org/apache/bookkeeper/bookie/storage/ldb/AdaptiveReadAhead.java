@@ -0,0 +1,148 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+
+/**
+ * Sizes the read-ahead done after a read cache miss, based on the access pattern of each ledger.
+ *
+ * <p>A miss on the entry that directly follows the last read-ahead batch of the same ledger means the reader is
+ * streaming through the ledger: the read-ahead window is doubled, up to the configured max. Any other miss means
+ * the read-ahead was not useful: the window is shrunk, down to zero for readers doing random accesses, and the bytes
+ * of the previous read-ahead batch are accounted as wasted.
+ */
+class AdaptiveReadAhead {
+
+    static final long STATE_CACHING_TIME_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    // Windows smaller than this are not worth a read-ahead
+    private static final int MIN_WINDOW = 4;
+
+    private final int initialWindow;
+    private final int maxWindow;
+
+    private final ConcurrentLongHashMap<LedgerReadAheadState> states;
+
+    private final OpStatsLogger windowSizeStats;
+    private final Counter wastedBytesCounter;
+
+    AdaptiveReadAhead(int initialWindow, int maxWindow, OpStatsLogger windowSizeStats, Counter wastedBytesCounter) {
+        this.initialWindow = initialWindow;
+        this.maxWindow = Math.max(initialWindow, maxWindow);
+        this.windowSizeStats = windowSizeStats;
+        this.wastedBytesCounter = wastedBytesCounter;
+        this.states = ConcurrentLongHashMap.<LedgerReadAheadState>newBuilder()
+                .expectedItems(1024)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors() * 2)
+                .build();
+    }
+
+    /**
+     * Record a read cache miss and compute how many entries should be read-ahead after it.
+     *
+     * @return the number of entries to read-ahead, starting from {@code entryId + 1}
+     */
+    int onCacheMiss(long ledgerId, long entryId) {
+        LedgerReadAheadState state = states.computeIfAbsent(ledgerId, l -> new LedgerReadAheadState());
+        int window = state.onCacheMiss(entryId);
+        windowSizeStats.registerSuccessfulValue(window);
+        return window;
+    }
+
+    /**
+     * Record the completion of a read-ahead batch.
+     *
+     * @param nextEntryId the first entry id that was not read by the batch
+     * @param bytes the number of bytes read by the batch
+     */
+    void onReadAheadCompleted(long ledgerId, long nextEntryId, long bytes) {
+        LedgerReadAheadState state = states.get(ledgerId);
+        if (state != null) {
+            state.onReadAheadCompleted(nextEntryId, bytes);
+        }
+    }
+
+    void ledgerDeleted(long ledgerId) {
+        states.remove(ledgerId);
+    }
+
+    /**
+     * Drop the state of the ledgers that were not read recently.
+     */
+    void removeStaleStates() {
+        long staleThreshold = System.currentTimeMillis() - STATE_CACHING_TIME_MILLIS;
+        states.removeIf((ledgerId, state) -> state.lastAccessed < staleThreshold);
+    }
+
+    long getTrackedLedgersCount() {
+        return states.size();
+    }
+
+    private final class LedgerReadAheadState {
+        private long lastMissEntryId = -1;
+        // First entry after the last read-ahead batch
+        private long nextExpectedEntryId = -1;
+        private long lastReadAheadBytes;
+        private int window = initialWindow;
+
+        private volatile long lastAccessed = System.currentTimeMillis();
+
+        synchronized int onCacheMiss(long entryId) {
+            lastAccessed = System.currentTimeMillis();
+
+            if (lastMissEntryId == -1) {
+                // First read on this ledger, start with the initial window
+                window = initialWindow;
+            } else if (entryId == nextExpectedEntryId) {
+                // The reader consumed the whole previous batch, it is streaming through the ledger
+                window = window == 0 ? initialWindow : Math.min(maxWindow, window * 2);
+            } else if (entryId > lastMissEntryId && entryId < nextExpectedEntryId) {
+                // The reader is still progressing sequentially, though the read-ahead did not keep up with it or
+                // its entries were evicted before being read. Keep the current window.
+            } else {
+                // Random access, the previous batch was not used
+                wastedBytesCounter.addCount(lastReadAheadBytes);
+                window /= 2;
+                if (window < MIN_WINDOW) {
+                    window = 0;
+                }
+            }
+
+            lastMissEntryId = entryId;
+            nextExpectedEntryId = entryId + 1;
+            lastReadAheadBytes = 0;
+            return window;
+        }
+
+        synchronized void onReadAheadCompleted(long nextEntryId, long bytes) {
+            if (nextEntryId <= lastMissEntryId) {
+                // Stale batch, a more recent miss was already recorded
+                return;
+            }
+            nextExpectedEntryId = nextEntryId;
+            lastReadAheadBytes = bytes;
+        }
+    }
+}
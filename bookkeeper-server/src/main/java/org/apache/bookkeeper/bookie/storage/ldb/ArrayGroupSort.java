@@ -22,6 +22,8 @@ package org.apache.bookkeeper.bookie.storage.ldb;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import lombok.experimental.UtilityClass;
 
 /**
@@ -29,6 +31,8 @@ import lombok.experimental.UtilityClass;
  *
  * <p>Group size decides how many longs are included in the tuples and key size controls how many items to use for
  * comparison.
+ *
+ * <p>Large arrays can also be sorted in parallel, on the common fork-join pool, with {@link #parallelSort}.
  */
 @UtilityClass
 public class ArrayGroupSort {
@@ -37,6 +41,9 @@ public class ArrayGroupSort {
 
     private static final int GROUP_SIZE = 4;
 
+    // Below this number of longs, a range is sorted by a single thread
+    private static final int PARALLEL_SORT_THRESHOLD = 64 * 1024;
+
     public void sort(long[] array) {
         sort(array, 0, array.length);
     }
@@ -46,8 +53,92 @@ public class ArrayGroupSort {
         quickSort(array, offset, (length + offset - GROUP_SIZE));
     }
 
+    public static void parallelSort(long[] array) {
+        parallelSort(array, 0, array.length, new long[array.length]);
+    }
+
+    /**
+     * Sort the array in parallel, splitting it into ranges that are sorted on separate threads and then merged.
+     *
+     * @param buffer a scratch array, of at least {@code length} items, used to merge the sorted ranges
+     */
+    public static void parallelSort(long[] array, int offset, int length, long[] buffer) {
+        checkArgument(length % GROUP_SIZE == 0, "Array length must be multiple of 4");
+        checkArgument(buffer.length >= length, "Buffer is shorter than the array length");
+        if (length <= PARALLEL_SORT_THRESHOLD) {
+            quickSort(array, offset, (length + offset - GROUP_SIZE));
+        } else {
+            ForkJoinPool.commonPool().invoke(new ParallelSortTask(array, buffer, offset, offset + length, offset));
+        }
+    }
+
     ////// Private
 
+    /**
+     * Merge sort where each half is sorted by a separate task, down to ranges small enough to be sorted in place.
+     */
+    private static final class ParallelSortTask extends RecursiveAction {
+        private final long[] array;
+        private final long[] buffer;
+        private final int low;
+        private final int high;
+        private final int offset;
+
+        ParallelSortTask(long[] array, long[] buffer, int low, int high, int offset) {
+            this.array = array;
+            this.buffer = buffer;
+            this.low = low;
+            this.high = high;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if (high - low <= PARALLEL_SORT_THRESHOLD) {
+                quickSort(array, low, high - GROUP_SIZE);
+                return;
+            }
+
+            int mid = low + alignGroup((high - low) / 2);
+            invokeAll(new ParallelSortTask(array, buffer, low, mid, offset),
+                    new ParallelSortTask(array, buffer, mid, high, offset));
+            merge(array, buffer, low, mid, high, offset);
+        }
+    }
+
+    /**
+     * Merge the sorted ranges [low, mid) and [mid, high) through the buffer, whose items are shifted by offset.
+     */
+    private static void merge(long[] array, long[] buffer, int low, int mid, int high, int offset) {
+        if (!isLess(array, mid, mid - GROUP_SIZE)) {
+            // Ranges are already in order
+            return;
+        }
+
+        int i = low;
+        int j = mid;
+        int k = low - offset;
+        while (i < mid && j < high) {
+            int src;
+            if (isLess(array, j, i)) {
+                src = j;
+                j += GROUP_SIZE;
+            } else {
+                src = i;
+                i += GROUP_SIZE;
+            }
+            buffer[k] = array[src];
+            buffer[k + 1] = array[src + 1];
+            buffer[k + 2] = array[src + 2];
+            buffer[k + 3] = array[src + 3];
+            k += GROUP_SIZE;
+        }
+
+        // Items left in the second range are already in their final position
+        System.arraycopy(array, i, buffer, k, mid - i);
+        System.arraycopy(buffer, low - offset, array, low, j - low);
+    }
+
     private static void quickSort(long[] array, int low, int high) {
         if (low >= high) {
             return;
@@ -117,7 +208,7 @@ public class ArrayGroupSort {
     private static void insertionSort(long[] a, int low, int high) {
         for (int i = low + GROUP_SIZE; i <= high; i += GROUP_SIZE) {
             int j = i;
-            while (j > 0 && isLess(a, j, j - GROUP_SIZE)) {
+            while (j > low && isLess(a, j, j - GROUP_SIZE)) {
                 swap(a, j, j - GROUP_SIZE);
                 j -= GROUP_SIZE;
             }
@@ -91,8 +91,16 @@ public class DbLedgerStorage implements LedgerStorage {
         "dbStorage_directIOEntryLoggerReadBufferSizeMB";
     public static final String DIRECT_IO_ENTRYLOGGER_MAX_FD_CACHE_TIME_SECONDS =
         "dbStorage_directIOEntryLoggerMaxFdCacheTimeSeconds";
+    public static final String DIRECT_IO_ENTRYLOGGER_READ_MMAP = "dbStorage_directIOEntryLoggerReadMmap";
 
     static final String MAX_THROTTLE_TIME_MILLIS = "dbStorage_maxThrottleTimeMs";
+    static final String WRITE_CACHE_BUFFERS = "dbStorage_writeCacheBuffers";
+    static final String WRITE_CACHE_SHARDS = "dbStorage_writeCacheShards";
+    static final String WRITE_CACHE_PARALLEL_SORT = "dbStorage_writeCacheParallelSort";
+    static final String READ_CACHE_EVICTION_POLICY = "dbStorage_readCacheEvictionPolicy";
+    static final String ENTRY_LOCATION_CACHE_MAX_SIZE_MB = "dbStorage_entryLocationCacheMaxSizeMb";
+    static final String ENTRY_LOCATION_INDEX_RANGE_ENCODING = "dbStorage_entryLocationIndexRangeEncoding";
+    static final String KEY_VALUE_STORAGE_ENGINE = "dbStorage_keyValueStorageEngine";
 
     private static final int MB = 1024 * 1024;
 
@@ -103,6 +111,11 @@ public class DbLedgerStorage implements LedgerStorage {
 
     static final String READ_AHEAD_CACHE_BATCH_SIZE = "dbStorage_readAheadCacheBatchSize";
     static final String READ_AHEAD_CACHE_BATCH_BYTES_SIZE = "dbStorage_readAheadCacheBatchBytesSize";
+    static final String READ_AHEAD_CACHE_ADAPTIVE = "dbStorage_readAheadCacheAdaptive";
+    static final String READ_AHEAD_CACHE_ADAPTIVE_MAX_BATCH_SIZE = "dbStorage_readAheadCacheAdaptiveMaxBatchSize";
+    static final String READ_AHEAD_THREADS = "dbStorage_readAheadThreads";
+    static final String READ_AHEAD_MAX_PENDING_REQUESTS = "dbStorage_readAheadMaxPendingRequests";
+    static final String READ_AHEAD_MAX_DIRECT_MEMORY_USAGE_PERCENT = "dbStorage_readAheadMaxDirectMemoryUsagePercent";
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_SIZE = 100;
     // the default value is -1. this feature(limit of read ahead bytes) is disabled
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_BYTES_SIZE = -1;
@@ -213,6 +226,7 @@ public class DbLedgerStorage implements LedgerStorage {
                     conf,
                     DIRECT_IO_ENTRYLOGGER_MAX_FD_CACHE_TIME_SECONDS,
                     DEFAULT_DIRECT_IO_MAX_FD_CACHE_TIME_SECONDS);
+                boolean mmapFlushedLogs = getBooleanVariableOrDefault(conf, DIRECT_IO_ENTRYLOGGER_READ_MMAP, false);
                 Slf4jSlogger slog = new Slf4jSlogger(DbLedgerStorage.class);
                 entryLoggerWriteExecutor = Executors.newSingleThreadExecutor(
                     new DefaultThreadFactory("EntryLoggerWrite"));
@@ -234,6 +248,7 @@ public class DbLedgerStorage implements LedgerStorage {
                     readBufferSize,
                     numReadThreads,
                     maxFdCacheTimeSeconds,
+                    mmapFlushedLogs,
                     slog, statsLogger);
             } else {
                 entrylogger = new DefaultEntryLogger(conf, ldm, null, statsLogger, allocator);
@@ -361,6 +376,12 @@ public class DbLedgerStorage implements LedgerStorage {
         return getLedgerStorage(ledgerId).getEntry(ledgerId, entryId);
     }
 
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount)
+            throws IOException, BookieException {
+        return getLedgerStorage(ledgerId).getEntries(ledgerId, firstEntryId, maxCount);
+    }
+
     @Override
     public long getLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         return getLedgerStorage(ledgerId).getLastAddConfirmed(ledgerId);
@@ -597,6 +618,21 @@ public class DbLedgerStorage implements LedgerStorage {
             .map(single -> single.getGarbageCollectionStatus().get(0)).collect(Collectors.toList());
     }
 
+    /**
+     * Key-value storage used for the ledgers and the entry locations indexes.
+     */
+    static KeyValueStorageFactory getKeyValueStorageFactory(ServerConfiguration conf) {
+        String engine = conf.getString(KEY_VALUE_STORAGE_ENGINE, "RocksDB").trim();
+        switch (engine.toUpperCase()) {
+            case "ROCKSDB":
+                return KeyValueStorageRocksDB.factory;
+            case "SORTEDTABLE":
+                return KeyValueStorageSortedTable.factory;
+            default:
+                throw new IllegalArgumentException("Unknown key-value storage engine: " + engine);
+        }
+    }
+
     static long getLongVariableOrDefault(ServerConfiguration conf, String keyName, long defaultValue) {
         Object obj = conf.getProperty(keyName);
         if (obj instanceof Number) {
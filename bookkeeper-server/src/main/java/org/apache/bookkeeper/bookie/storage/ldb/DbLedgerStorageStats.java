@@ -55,11 +55,18 @@ class DbLedgerStorageStats {
     private static final String READAHEAD_BATCH_COUNT = "readahead-batch-count";
     private static final String READAHEAD_BATCH_SIZE = "readahead-batch-size";
     private static final String READAHEAD_TIME = "readahead-time";
+    private static final String READAHEAD_WINDOW_SIZE = "readahead-window-size";
+    private static final String READAHEAD_WASTED_BYTES = "readahead-wasted-bytes";
+    private static final String READAHEAD_DROPPED_REQUESTS = "readahead-dropped-requests";
+    private static final String READAHEAD_DEDUPED_REQUESTS = "readahead-deduped-requests";
     private static final String FLUSH = "flush";
     private static final String FLUSH_ENTRYLOG = "flush-entrylog";
     private static final String FLUSH_LOCATIONS_INDEX = "flush-locations-index";
     private static final String FLUSH_LEDGER_INDEX = "flush-ledger-index";
     private static final String FLUSH_SIZE = "flush-size";
+    private static final String FLUSH_ENTRYLOG_STAGE = "flush-entrylog-stage";
+    private static final String FLUSH_INDEX_QUEUE = "flush-index-queue";
+    private static final String FLUSH_INDEX_STAGE = "flush-index-stage";
 
     @Deprecated
     private static final String THROTTLED_WRITE_REQUESTS = "throttled-write-requests";
@@ -134,6 +141,26 @@ class DbLedgerStorageStats {
             help = "Time spent on readahead operations"
     )
     private final Counter readAheadTime;
+    @StatsDoc(
+        name = READAHEAD_WINDOW_SIZE,
+        help = "the distribution of num of entries to read ahead, as computed by the adaptive readahead"
+    )
+    private final OpStatsLogger readAheadWindowSizeStats;
+    @StatsDoc(
+        name = READAHEAD_WASTED_BYTES,
+        help = "estimated number of readahead bytes that were not used by the reader, with adaptive readahead"
+    )
+    private final Counter readAheadWastedBytes;
+    @StatsDoc(
+        name = READAHEAD_DROPPED_REQUESTS,
+        help = "number of background readahead requests dropped because of the pool saturation or memory pressure"
+    )
+    private final Counter readAheadDroppedRequests;
+    @StatsDoc(
+        name = READAHEAD_DEDUPED_REQUESTS,
+        help = "number of background readahead requests skipped because already covered by a pending readahead"
+    )
+    private final Counter readAheadDedupedRequests;
     @StatsDoc(
         name = FLUSH,
         help = "operation stats of flushing write cache to entry log files"
@@ -159,6 +186,21 @@ class DbLedgerStorageStats {
         help = "the distribution of number of bytes flushed from write cache to entry log files"
     )
     private final OpStatsLogger flushSizeStats;
+    @StatsDoc(
+        name = FLUSH_ENTRYLOG_STAGE,
+        help = "operation stats of writing a write cache into the entry log, the first stage of a flush"
+    )
+    private final OpStatsLogger flushEntryLogStageStats;
+    @StatsDoc(
+        name = FLUSH_INDEX_QUEUE,
+        help = "the time a flushed write cache waits before its locations are written in the indexes"
+    )
+    private final OpStatsLogger flushIndexQueueStats;
+    @StatsDoc(
+        name = FLUSH_INDEX_STAGE,
+        help = "operation stats of writing the locations of a write cache in the indexes, the second stage of a flush"
+    )
+    private final OpStatsLogger flushIndexStageStats;
     @StatsDoc(
         name = THROTTLED_WRITE_REQUESTS,
         help = "The number of requests throttled due to write cache is full"
@@ -212,11 +254,18 @@ class DbLedgerStorageStats {
         readAheadBatchCountStats = stats.getOpStatsLogger(READAHEAD_BATCH_COUNT);
         readAheadBatchSizeStats = stats.getOpStatsLogger(READAHEAD_BATCH_SIZE);
         readAheadTime = stats.getThreadScopedCounter(READAHEAD_TIME);
+        readAheadWindowSizeStats = stats.getOpStatsLogger(READAHEAD_WINDOW_SIZE);
+        readAheadWastedBytes = stats.getCounter(READAHEAD_WASTED_BYTES);
+        readAheadDroppedRequests = stats.getCounter(READAHEAD_DROPPED_REQUESTS);
+        readAheadDedupedRequests = stats.getCounter(READAHEAD_DEDUPED_REQUESTS);
         flushStats = stats.getOpStatsLogger(FLUSH);
         flushEntryLogStats = stats.getOpStatsLogger(FLUSH_ENTRYLOG);
         flushLocationIndexStats = stats.getOpStatsLogger(FLUSH_LOCATIONS_INDEX);
         flushLedgerIndexStats = stats.getOpStatsLogger(FLUSH_LEDGER_INDEX);
         flushSizeStats = stats.getOpStatsLogger(FLUSH_SIZE);
+        flushEntryLogStageStats = stats.getOpStatsLogger(FLUSH_ENTRYLOG_STAGE);
+        flushIndexQueueStats = stats.getOpStatsLogger(FLUSH_INDEX_QUEUE);
+        flushIndexStageStats = stats.getOpStatsLogger(FLUSH_INDEX_STAGE);
 
         throttledWriteRequests = stats.getThreadScopedCounter(THROTTLED_WRITE_REQUESTS);
         throttledWriteStats = stats.getOpStatsLogger(THROTTLED_WRITE);
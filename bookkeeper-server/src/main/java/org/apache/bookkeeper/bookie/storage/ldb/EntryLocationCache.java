@@ -0,0 +1,273 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.Closeable;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Bounded off-heap cache of (ledgerId, entryId) -&gt; entry location mappings, used in front of the
+ * entry location index.
+ *
+ * <p>The cache is a set-associative open addressing table: each key hashes to a bucket of
+ * {@link #BUCKET_SIZE} slots, which are probed linearly. When a bucket is full, one of its slots
+ * is overwritten. The table never grows, so a lookup touches a single cache line sized bucket.
+ *
+ * <p>The table is split in sections, each guarded by a {@link StampedLock}, with lookups using
+ * optimistic reads. Each section also keeps a generation, bumped on every update, so that a
+ * location read from the index can be cached only if no update raced with the index lookup.
+ */
+class EntryLocationCache implements Closeable {
+
+    static final int BUCKET_SIZE = 4;
+    // ledgerId, entryId, location
+    private static final int SLOT_SIZE = 3 * Long.BYTES;
+    private static final int BUCKET_BYTES = BUCKET_SIZE * SLOT_SIZE;
+
+    private static final long EMPTY_LEDGER = -1L;
+
+    private static final int NUM_SECTIONS = 64;
+    private static final int MAX_SECTION_SIZE = 1024 * 1024 * 1024;
+
+    private final Section[] sections;
+    private final int sectionMask;
+
+    EntryLocationCache(ByteBufAllocator allocator, long maxSizeBytes) {
+        long bucketsPerSection = Math.min(maxSizeBytes / BUCKET_BYTES / NUM_SECTIONS, MAX_SECTION_SIZE / BUCKET_BYTES);
+        int buckets = Integer.highestOneBit((int) Math.max(1, bucketsPerSection));
+
+        this.sections = new Section[NUM_SECTIONS];
+        this.sectionMask = NUM_SECTIONS - 1;
+        for (int i = 0; i < NUM_SECTIONS; i++) {
+            sections[i] = new Section(allocator, buckets);
+        }
+    }
+
+    /**
+     * @return the cached location of the entry, or 0 if the entry is not cached
+     */
+    long get(long ledgerId, long entryId) {
+        long h = hash(ledgerId, entryId);
+        return sections[(int) (h >>> 32) & sectionMask].get(ledgerId, entryId, (int) h);
+    }
+
+    /**
+     * Get the generation of the section owning the entry. It needs to be taken before reading the location
+     * from the index, and passed to {@link #putIfUnchanged}.
+     */
+    long generation(long ledgerId, long entryId) {
+        long h = hash(ledgerId, entryId);
+        return sections[(int) (h >>> 32) & sectionMask].generation();
+    }
+
+    /**
+     * Cache a location that was just written to the index, replacing any previous location of the entry.
+     */
+    void put(long ledgerId, long entryId, long location) {
+        long h = hash(ledgerId, entryId);
+        sections[(int) (h >>> 32) & sectionMask].put(ledgerId, entryId, location, (int) h, -1L, true);
+    }
+
+    /**
+     * Cache a location that was read from the index, unless the entry is already cached or the section
+     * has been updated since {@code generation} was taken, in which case the location may be stale.
+     */
+    void putIfUnchanged(long ledgerId, long entryId, long location, long generation) {
+        long h = hash(ledgerId, entryId);
+        sections[(int) (h >>> 32) & sectionMask].put(ledgerId, entryId, location, (int) h, generation, false);
+    }
+
+    /**
+     * Remove all the cached locations of the ledgers matching the predicate.
+     */
+    void removeLedgers(LongPredicate ledgers) {
+        for (Section s : sections) {
+            s.removeLedgers(ledgers);
+        }
+    }
+
+    long count() {
+        long count = 0;
+        for (Section s : sections) {
+            count += s.count();
+        }
+        return count;
+    }
+
+    long capacity() {
+        return (long) sections.length * sections[0].buckets * BUCKET_SIZE;
+    }
+
+    @Override
+    public void close() {
+        for (Section s : sections) {
+            s.close();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Section extends StampedLock {
+        private final ByteBuf table;
+        private final int buckets;
+        private long generation;
+        private long count;
+        // rotates the slot overwritten when a bucket is full
+        private int victim;
+
+        Section(ByteBufAllocator allocator, int buckets) {
+            this.buckets = buckets;
+            this.table = allocator.directBuffer(buckets * BUCKET_BYTES, buckets * BUCKET_BYTES);
+            for (int offset = 0; offset < buckets * BUCKET_BYTES; offset += SLOT_SIZE) {
+                table.setLong(offset, EMPTY_LEDGER);
+            }
+        }
+
+        long generation() {
+            long stamp = tryOptimisticRead();
+            long generation = this.generation;
+            if (!validate(stamp)) {
+                stamp = readLock();
+                try {
+                    generation = this.generation;
+                } finally {
+                    unlockRead(stamp);
+                }
+            }
+            return generation;
+        }
+
+        long count() {
+            long stamp = readLock();
+            try {
+                return count;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        long get(long ledgerId, long entryId, int keyHash) {
+            int bucketOffset = (keyHash & (buckets - 1)) * BUCKET_BYTES;
+
+            long stamp = tryOptimisticRead();
+            long location = find(ledgerId, entryId, bucketOffset);
+            if (validate(stamp)) {
+                return location;
+            }
+
+            stamp = readLock();
+            try {
+                return find(ledgerId, entryId, bucketOffset);
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        private long find(long ledgerId, long entryId, int bucketOffset) {
+            for (int offset = bucketOffset; offset < bucketOffset + BUCKET_BYTES; offset += SLOT_SIZE) {
+                if (table.getLong(offset) == ledgerId && table.getLong(offset + 8) == entryId) {
+                    return table.getLong(offset + 16);
+                }
+            }
+            return 0L;
+        }
+
+        void put(long ledgerId, long entryId, long location, int keyHash, long expectedGeneration,
+                 boolean replace) {
+            int bucketOffset = (keyHash & (buckets - 1)) * BUCKET_BYTES;
+
+            long stamp = writeLock();
+            try {
+                if (!replace && generation != expectedGeneration) {
+                    return;
+                }
+
+                int freeSlot = -1;
+                for (int offset = bucketOffset; offset < bucketOffset + BUCKET_BYTES; offset += SLOT_SIZE) {
+                    long storedLedgerId = table.getLong(offset);
+                    if (storedLedgerId == ledgerId && table.getLong(offset + 8) == entryId) {
+                        if (replace) {
+                            table.setLong(offset + 16, location);
+                            generation++;
+                        }
+                        return;
+                    } else if (storedLedgerId == EMPTY_LEDGER && freeSlot < 0) {
+                        freeSlot = offset;
+                    }
+                }
+
+                if (freeSlot < 0) {
+                    freeSlot = bucketOffset + (victim++ & (BUCKET_SIZE - 1)) * SLOT_SIZE;
+                } else {
+                    count++;
+                }
+                table.setLong(freeSlot, ledgerId);
+                table.setLong(freeSlot + 8, entryId);
+                table.setLong(freeSlot + 16, location);
+                if (replace) {
+                    generation++;
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void removeLedgers(LongPredicate ledgers) {
+            long stamp = writeLock();
+            try {
+                generation++;
+                for (int offset = 0; offset < buckets * BUCKET_BYTES; offset += SLOT_SIZE) {
+                    long storedLedgerId = table.getLong(offset);
+                    if (storedLedgerId != EMPTY_LEDGER && ledgers.test(storedLedgerId)) {
+                        table.setLong(offset, EMPTY_LEDGER);
+                        count--;
+                    }
+                }
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        void close() {
+            long stamp = writeLock();
+            try {
+                table.release();
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+    }
+
+    private static final long HashMixer = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+
+    private static long hash(long ledgerId, long entryId) {
+        long hash = ledgerId * HashMixer;
+        hash ^= hash >>> R;
+        hash *= HashMixer;
+        hash += 31 + (entryId * HashMixer);
+        hash ^= hash >>> R;
+        hash *= HashMixer;
+        return hash;
+    }
+}
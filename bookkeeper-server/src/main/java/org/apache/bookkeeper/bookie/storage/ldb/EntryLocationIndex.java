@@ -21,11 +21,14 @@
 package org.apache.bookkeeper.bookie.storage.ldb;
 
 import com.google.common.collect.Iterables;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.EntryLocation;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
@@ -42,18 +45,42 @@ import org.slf4j.LoggerFactory;
  *
  * <p>For each ledger multiple entries are stored in the same "record", represented
  * by the {@link LedgerIndexPage} class.
+ *
+ * <p>When the range encoding is enabled, consecutive entries stored in the same entry log share a single
+ * record, see {@link EntryLocationRunBatch}. Records written with and without the range encoding can be
+ * read when it is enabled, though it can only be disabled again after rebuilding the index.
  */
 public class EntryLocationIndex implements Closeable {
 
     private final KeyValueStorage locationsDb;
     private final ConcurrentLongHashSet deletedLedgers = ConcurrentLongHashSet.newBuilder().build();
     private final EntryLocationIndexStats stats;
+    private final EntryLocationCache locationCache;
+    private final boolean rangeEncoding;
+    // Serializes the batches rewriting the run records, see EntryLocationRunBatch
+    private final ReentrantLock runWriterLock = new ReentrantLock();
     private boolean isCompacting;
 
     public EntryLocationIndex(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath,
             StatsLogger stats) throws IOException {
+        this(conf, storageFactory, basePath, stats, PooledByteBufAllocator.DEFAULT);
+    }
+
+    public EntryLocationIndex(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath,
+            StatsLogger stats, ByteBufAllocator allocator) throws IOException {
         locationsDb = storageFactory.newKeyValueStorage(basePath, "locations", DbConfigType.EntryLocation, conf);
 
+        // The configured size is shared by all the ledger directories, as for the RocksDB block cache
+        long locationCacheSize = DbLedgerStorage.getLongVariableOrDefault(conf,
+                DbLedgerStorage.ENTRY_LOCATION_CACHE_MAX_SIZE_MB, 0)
+                * 1024 * 1024 / Math.max(1, conf.getLedgerDirNames().length);
+        if (locationCacheSize > 0) {
+            locationCache = new EntryLocationCache(allocator, locationCacheSize);
+        } else {
+            locationCache = null;
+        }
+        rangeEncoding = conf.getBoolean(DbLedgerStorage.ENTRY_LOCATION_INDEX_RANGE_ENCODING, false);
+
         this.stats = new EntryLocationIndexStats(
             stats,
             () -> {
@@ -62,15 +89,35 @@ public class EntryLocationIndex implements Closeable {
                 } catch (IOException e) {
                     return -1L;
                 }
-            });
+            },
+            () -> locationCache != null ? locationCache.count() : 0L);
     }
 
     @Override
     public void close() throws IOException {
         locationsDb.close();
+        if (locationCache != null) {
+            locationCache.close();
+        }
     }
 
     public long getLocation(long ledgerId, long entryId) throws IOException {
+        long cacheGeneration = 0;
+        if (locationCache != null) {
+            long location = locationCache.get(ledgerId, entryId);
+            if (location != 0) {
+                stats.getLocationCacheHitCounter().inc();
+                return location;
+            }
+            stats.getLocationCacheMissCounter().inc();
+            // taken before the lookup, so that a location updated meanwhile doesn't get overwritten
+            cacheGeneration = locationCache.generation(ledgerId, entryId);
+        }
+
+        if (rangeEncoding && entryId >= 0 && entryId < Long.MAX_VALUE) {
+            return getLocationFromRun(ledgerId, entryId, cacheGeneration);
+        }
+
         LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
         LongWrapper value = LongWrapper.get();
 
@@ -84,7 +131,11 @@ public class EntryLocationIndex implements Closeable {
                 return 0;
             }
             operationSuccess = true;
-            return value.getValue();
+            long location = value.getValue();
+            if (locationCache != null && !deletedLedgers.contains(ledgerId)) {
+                locationCache.putIfUnchanged(ledgerId, entryId, location, cacheGeneration);
+            }
+            return location;
         } finally {
             key.recycle();
             value.recycle();
@@ -98,6 +149,42 @@ public class EntryLocationIndex implements Closeable {
         }
     }
 
+    private long getLocationFromRun(long ledgerId, long entryId, long cacheGeneration) throws IOException {
+        // The entry is in the last record starting at or before it
+        LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId + 1);
+
+        long startTimeNanos = MathUtils.nowInNano();
+        boolean operationSuccess = false;
+        try {
+            Entry<byte[], byte[]> entry = locationsDb.getFloor(key.array);
+            long location = 0;
+            if (entry != null && ArrayUtil.getLong(entry.getKey(), 0) == ledgerId) {
+                location = EntryLocationRunBatch.getLocation(ArrayUtil.getLong(entry.getKey(), 8), entry.getValue(),
+                        entryId);
+            }
+            if (location == 0) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Entry not found {}@{} in db index", ledgerId, entryId);
+                }
+                return 0;
+            }
+            operationSuccess = true;
+            if (locationCache != null && !deletedLedgers.contains(ledgerId)) {
+                locationCache.putIfUnchanged(ledgerId, entryId, location, cacheGeneration);
+            }
+            return location;
+        } finally {
+            key.recycle();
+            if (operationSuccess) {
+                stats.getLookupEntryLocationStats()
+                        .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            } else {
+                stats.getLookupEntryLocationStats()
+                        .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
     public long getLastEntryInLedger(long ledgerId) throws IOException {
         if (deletedLedgers.contains(ledgerId)) {
             // Ledger already deleted
@@ -125,7 +212,9 @@ public class EntryLocationIndex implements Closeable {
             throw new Bookie.NoEntryException(ledgerId, -1);
         } else {
             long foundLedgerId = ArrayUtil.getLong(entry.getKey(), 0);
-            long lastEntryId = ArrayUtil.getLong(entry.getKey(), 8);
+            // A record might cover a run of entries, when the range encoding is used
+            long lastEntryId = EntryLocationRunBatch.getLastEntryId(ArrayUtil.getLong(entry.getKey(), 8),
+                    entry.getValue());
 
             if (foundLedgerId == ledgerId) {
                 if (log.isDebugEnabled()) {
@@ -139,17 +228,36 @@ public class EntryLocationIndex implements Closeable {
     }
 
     public void addLocation(long ledgerId, long entryId, long location) throws IOException {
-        Batch batch = locationsDb.newBatch();
-        addLocation(batch, ledgerId, entryId, location);
-        batch.flush();
-        batch.close();
+        try (Batch batch = newBatch()) {
+            addLocation(batch, ledgerId, entryId, location);
+            batch.flush();
+        }
     }
 
+    /**
+     * Create a batch of location updates. With the range encoding, the batch must be closed once written, as it
+     * holds the lock serializing the index writers until then.
+     */
     public Batch newBatch() {
-        return locationsDb.newBatch();
+        if (rangeEncoding) {
+            return new EntryLocationRunBatch(locationsDb, runWriterLock);
+        } else {
+            return locationsDb.newBatch();
+        }
     }
 
     public void addLocation(Batch batch, long ledgerId, long entryId, long location) throws IOException {
+        if (batch instanceof EntryLocationRunBatch) {
+            if (log.isDebugEnabled()) {
+                log.debug("Add location - ledger: {} -- entry: {} -- location: {}", ledgerId, entryId, location);
+            }
+            ((EntryLocationRunBatch) batch).addLocation(ledgerId, entryId, location);
+            if (locationCache != null) {
+                locationCache.put(ledgerId, entryId, location);
+            }
+            return;
+        }
+
         LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
         LongWrapper value = LongWrapper.get(location);
 
@@ -159,6 +267,9 @@ public class EntryLocationIndex implements Closeable {
 
         try {
             batch.put(key.array, value.array);
+            if (locationCache != null) {
+                locationCache.put(ledgerId, entryId, location);
+            }
         } finally {
             key.recycle();
             value.recycle();
@@ -170,23 +281,24 @@ public class EntryLocationIndex implements Closeable {
             log.debug("Update locations -- {}", Iterables.size(newLocations));
         }
 
-        Batch batch = newBatch();
-        // Update all the ledger index pages with the new locations
-        for (EntryLocation e : newLocations) {
-            if (log.isDebugEnabled()) {
-                log.debug("Update location - ledger: {} -- entry: {}", e.ledger, e.entry);
+        try (Batch batch = newBatch()) {
+            // Update all the ledger index pages with the new locations
+            for (EntryLocation e : newLocations) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Update location - ledger: {} -- entry: {}", e.ledger, e.entry);
+                }
+
+                addLocation(batch, e.ledger, e.entry, e.location);
             }
 
-            addLocation(batch, e.ledger, e.entry, e.location);
+            batch.flush();
         }
-
-        batch.flush();
-        batch.close();
     }
 
     public void delete(long ledgerId) throws IOException {
         // We need to find all the LedgerIndexPage records belonging to one specific
-        // ledgers
+        // ledgers. The cached locations are dropped along with the index records,
+        // in removeOffsetFromDeletedLedgers
         deletedLedgers.add(ledgerId);
     }
 
@@ -220,7 +332,8 @@ public class EntryLocationIndex implements Closeable {
         log.info("Deleting indexes for ledgers: {}", ledgersToDelete);
         long startTime = System.nanoTime();
 
-        try (Batch batch = locationsDb.newBatch()) {
+        // Through newBatch(), so that a run batch can't write back the records of a ledger being deleted
+        try (Batch batch = newBatch()) {
             for (long ledgerId : ledgersToDelete) {
                 if (log.isDebugEnabled()) {
                     log.debug("Deleting indexes from ledger {}", ledgerId);
@@ -233,6 +346,10 @@ public class EntryLocationIndex implements Closeable {
             }
 
             batch.flush();
+            if (locationCache != null) {
+                // ledgers are still in deletedLedgers here, so their locations can't be cached again
+                locationCache.removeLedgers(deletedLedgers::contains);
+            }
             for (long ledgerId : ledgersToDelete) {
                 deletedLedgers.remove(ledgerId);
             }
@@ -24,6 +24,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER
 
 import java.util.function.Supplier;
 import lombok.Getter;
+import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -42,6 +43,9 @@ class EntryLocationIndexStats {
 
     private static final String ENTRIES_COUNT = "entries-count";
     private static final String LOOKUP_ENTRY_LOCATION = "lookup-entry-location";
+    private static final String LOCATION_CACHE_HITS = "entry-location-cache-hits";
+    private static final String LOCATION_CACHE_MISSES = "entry-location-cache-misses";
+    private static final String LOCATION_CACHE_COUNT = "entry-location-cache-count";
 
     @StatsDoc(
         name = ENTRIES_COUNT,
@@ -55,8 +59,27 @@ class EntryLocationIndexStats {
     )
     private final OpStatsLogger lookupEntryLocationStats;
 
+    @StatsDoc(
+            name = LOCATION_CACHE_HITS,
+            help = "number of entry location lookups served by the entry location cache"
+    )
+    private final Counter locationCacheHitCounter;
+
+    @StatsDoc(
+            name = LOCATION_CACHE_MISSES,
+            help = "number of entry location lookups not found in the entry location cache"
+    )
+    private final Counter locationCacheMissCounter;
+
+    @StatsDoc(
+            name = LOCATION_CACHE_COUNT,
+            help = "Current number of entry locations in the entry location cache"
+    )
+    private final Gauge<Long> locationCacheCountGauge;
+
     EntryLocationIndexStats(StatsLogger statsLogger,
-                            Supplier<Long> entriesCountSupplier) {
+                            Supplier<Long> entriesCountSupplier,
+                            Supplier<Long> locationCacheCountSupplier) {
         entriesCountGauge = new Gauge<Long>() {
             @Override
             public Long getDefaultValue() {
@@ -70,6 +93,20 @@ class EntryLocationIndexStats {
         };
         statsLogger.registerGauge(ENTRIES_COUNT, entriesCountGauge);
         lookupEntryLocationStats = statsLogger.getOpStatsLogger(LOOKUP_ENTRY_LOCATION);
+        locationCacheHitCounter = statsLogger.getCounter(LOCATION_CACHE_HITS);
+        locationCacheMissCounter = statsLogger.getCounter(LOCATION_CACHE_MISSES);
+        locationCacheCountGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return locationCacheCountSupplier.get();
+            }
+        };
+        statsLogger.registerGauge(LOCATION_CACHE_COUNT, locationCacheCountGauge);
     }
 
 }
@@ -0,0 +1,361 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+
+/**
+ * Batch that stores the entry locations of the {@link EntryLocationIndex} as runs.
+ *
+ * <p>Consecutive entries of a ledger written in the same entry log are kept in a single record, keyed by
+ * (ledgerId, firstEntryId). The value holds the location of the first entry, the number of entries in the run
+ * and the difference between the offsets of each entry and the previous one, as zig-zag varints. The location
+ * of an entry is found in the record with the greatest key not bigger than (ledgerId, entryId).
+ *
+ * <p>The runs of a ledger never overlap: when a run is written over existing records, these are trimmed and
+ * the part that is not overwritten is written back. Records holding a single 8 bytes location, as written when
+ * the range encoding is disabled, are read as runs of one entry.
+ *
+ * <p>Since writing a run reads and rewrites the records around it, two batches writing the same ledger at the
+ * same time would overwrite each other's records. A batch holds the index writer lock from its creation until it
+ * is closed, so the batches of an index are written one after the other.
+ */
+class EntryLocationRunBatch implements KeyValueStorage.Batch {
+
+    static final int MAX_RUN_LENGTH = 256;
+
+    private static final int SINGLE_LOCATION_SIZE = 8;
+    private static final int RUN_HEADER_SIZE = 12;
+    private static final int MAX_VARLONG_SIZE = 10;
+
+    private final KeyValueStorage db;
+    private final KeyValueStorage.Batch batch;
+    private final ReentrantLock writerLock;
+    private boolean closed = false;
+
+    private long runLedgerId;
+    private long runFirstEntryId;
+    private int runCount;
+    private final long[] runLocations = new long[MAX_RUN_LENGTH];
+    private final byte[] encodeBuffer = new byte[RUN_HEADER_SIZE + MAX_RUN_LENGTH * MAX_VARLONG_SIZE];
+
+    // Last entry id written for each ledger in the part of the batch that is not flushed yet
+    private final ConcurrentLongLongHashMap pendingLastEntries = ConcurrentLongLongHashMap.newBuilder()
+            .concurrencyLevel(1)
+            .build();
+
+    EntryLocationRunBatch(KeyValueStorage db, ReentrantLock writerLock) {
+        this.db = db;
+        this.writerLock = writerLock;
+        writerLock.lock();
+        try {
+            this.batch = db.newBatch();
+        } catch (RuntimeException e) {
+            writerLock.unlock();
+            throw e;
+        }
+    }
+
+    void addLocation(long ledgerId, long entryId, long location) throws IOException {
+        if (runCount > 0 && (ledgerId != runLedgerId
+                || entryId != runFirstEntryId + runCount
+                || (location >>> 32) != (runLocations[0] >>> 32)
+                || runCount == MAX_RUN_LENGTH)) {
+            writeRun();
+        }
+
+        if (entryId < 0) {
+            // Negative entry ids are sorted after all the others, they can't be part of a run
+            LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
+            LongWrapper value = LongWrapper.get(location);
+            try {
+                batch.put(key.array, value.array);
+            } finally {
+                key.recycle();
+                value.recycle();
+            }
+            return;
+        }
+
+        if (runCount == 0) {
+            runLedgerId = ledgerId;
+            runFirstEntryId = entryId;
+        }
+        runLocations[runCount++] = location;
+    }
+
+    private void writeRun() throws IOException {
+        if (runCount == 0) {
+            return;
+        }
+
+        long ledgerId = runLedgerId;
+        long firstEntryId = runFirstEntryId;
+        long lastEntryId = firstEntryId + runCount - 1;
+        long lastWrittenEntryId = lastEntryId;
+        runCount = 0;
+
+        if (pendingLastEntries.get(ledgerId) >= firstEntryId) {
+            // The records overlapping this run might still be in the batch, make them visible to the lookups
+            batch.flush();
+            batch.clear();
+            pendingLastEntries.clear();
+        }
+
+        long[] locations = runLocations;
+        int count = (int) (lastEntryId - firstEntryId + 1);
+
+        Entry<byte[], byte[]> last = getFloor(ledgerId, lastEntryId + 1);
+        if (last != null) {
+            long lastRecordFirstEntryId = ArrayUtil.getLong(last.getKey(), 8);
+            long lastRecordLastEntryId = getLastEntryId(lastRecordFirstEntryId, last.getValue());
+            if (lastRecordLastEntryId > lastEntryId) {
+                // Keep the part of the record that goes past this run
+                long[] lastLocations = decode(last.getValue());
+                int from = (int) (lastEntryId + 1 - lastRecordFirstEntryId);
+                put(ledgerId, lastEntryId + 1, lastLocations, from, lastLocations.length - from);
+                lastWrittenEntryId = lastRecordLastEntryId;
+            }
+
+            Entry<byte[], byte[]> previous = null;
+            if (lastRecordFirstEntryId > firstEntryId) {
+                // Drop the records starting within this run
+                LongPairWrapper firstKey = LongPairWrapper.get(ledgerId, firstEntryId + 1);
+                LongPairWrapper lastKey = LongPairWrapper.get(ledgerId, lastEntryId + 1);
+                try {
+                    batch.deleteRange(firstKey.array, lastKey.array);
+                } finally {
+                    firstKey.recycle();
+                    lastKey.recycle();
+                }
+                previous = getFloor(ledgerId, firstEntryId);
+            } else if (lastRecordFirstEntryId < firstEntryId) {
+                previous = last;
+            }
+
+            if (previous != null) {
+                long previousFirstEntryId = ArrayUtil.getLong(previous.getKey(), 8);
+                long previousLastEntryId = getLastEntryId(previousFirstEntryId, previous.getValue());
+                if (previousLastEntryId >= firstEntryId) {
+                    // Trim the record this run starts into
+                    long[] previousLocations = decode(previous.getValue());
+                    put(ledgerId, previousFirstEntryId, previousLocations, 0,
+                            (int) (firstEntryId - previousFirstEntryId));
+                } else if (previousLastEntryId == firstEntryId - 1
+                        && !pendingLastEntries.containsKey(ledgerId)
+                        && previous.getValue().length > SINGLE_LOCATION_SIZE
+                        && (ArrayUtil.getLong(previous.getValue(), 0) >>> 32) == (locations[0] >>> 32)
+                        && getCount(previous.getValue()) + count <= MAX_RUN_LENGTH) {
+                    // The run continues the previous one, in the same entry log: append to it. Only done when
+                    // nothing is pending for the ledger, since the batch could hold a newer version of the record
+                    if (lastRecordFirstEntryId >= firstEntryId) {
+                        // The record starting at the beginning of the run is not overwritten anymore
+                        LongPairWrapper key = LongPairWrapper.get(ledgerId, firstEntryId);
+                        try {
+                            batch.remove(key.array);
+                        } finally {
+                            key.recycle();
+                        }
+                    }
+                    long[] previousLocations = decode(previous.getValue());
+                    long[] merged = Arrays.copyOf(previousLocations, previousLocations.length + count);
+                    System.arraycopy(locations, 0, merged, previousLocations.length, count);
+                    locations = merged;
+                    firstEntryId = previousFirstEntryId;
+                    count = merged.length;
+                }
+            }
+        }
+
+        put(ledgerId, firstEntryId, locations, 0, count);
+        pendingLastEntries.put(ledgerId, Math.max(pendingLastEntries.get(ledgerId), lastWrittenEntryId));
+    }
+
+    private Entry<byte[], byte[]> getFloor(long ledgerId, long entryId) throws IOException {
+        LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
+        try {
+            Entry<byte[], byte[]> entry = db.getFloor(key.array);
+            if (entry != null && ArrayUtil.getLong(entry.getKey(), 0) == ledgerId) {
+                return entry;
+            } else {
+                return null;
+            }
+        } finally {
+            key.recycle();
+        }
+    }
+
+    private void put(long ledgerId, long firstEntryId, long[] locations, int offset, int count) throws IOException {
+        LongPairWrapper key = LongPairWrapper.get(ledgerId, firstEntryId);
+        try {
+            batch.put(key.array, encode(locations, offset, count));
+        } finally {
+            key.recycle();
+        }
+    }
+
+    private byte[] encode(long[] locations, int offset, int count) {
+        byte[] buf = encodeBuffer;
+        ArrayUtil.setLong(buf, 0, locations[offset]);
+        buf[8] = (byte) (count >>> 24);
+        buf[9] = (byte) (count >>> 16);
+        buf[10] = (byte) (count >>> 8);
+        buf[11] = (byte) count;
+
+        int idx = RUN_HEADER_SIZE;
+        for (int i = offset + 1; i < offset + count; i++) {
+            long delta = locations[i] - locations[i - 1];
+            long v = (delta << 1) ^ (delta >> 63);
+            while ((v & ~0x7FL) != 0) {
+                buf[idx++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[idx++] = (byte) v;
+        }
+        return Arrays.copyOf(buf, idx);
+    }
+
+    private static int getCount(byte[] value) {
+        return (value[8] & 0xff) << 24 | (value[9] & 0xff) << 16 | (value[10] & 0xff) << 8 | (value[11] & 0xff);
+    }
+
+    /**
+     * @return the last entry id covered by a record
+     */
+    static long getLastEntryId(long firstEntryId, byte[] value) {
+        if (value.length == SINGLE_LOCATION_SIZE) {
+            return firstEntryId;
+        } else {
+            return firstEntryId + getCount(value) - 1;
+        }
+    }
+
+    /**
+     * @return the location of the entry in a record, or 0 if the record doesn't cover the entry
+     */
+    static long getLocation(long firstEntryId, byte[] value, long entryId) {
+        if (value.length == SINGLE_LOCATION_SIZE) {
+            return entryId == firstEntryId ? ArrayUtil.getLong(value, 0) : 0;
+        }
+
+        long index = entryId - firstEntryId;
+        if (index < 0 || index >= getCount(value)) {
+            return 0;
+        }
+
+        long location = ArrayUtil.getLong(value, 0);
+        int idx = RUN_HEADER_SIZE;
+        for (long i = 0; i < index; i++) {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = value[idx++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            location += (v >>> 1) ^ -(v & 1);
+        }
+        return location;
+    }
+
+    /**
+     * @return the locations of all the entries in a record
+     */
+    static long[] decode(byte[] value) {
+        if (value.length == SINGLE_LOCATION_SIZE) {
+            return new long[] { ArrayUtil.getLong(value, 0) };
+        }
+
+        long[] locations = new long[getCount(value)];
+        locations[0] = ArrayUtil.getLong(value, 0);
+        int idx = RUN_HEADER_SIZE;
+        for (int i = 1; i < locations.length; i++) {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = value[idx++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            locations[i] = locations[i - 1] + ((v >>> 1) ^ -(v & 1));
+        }
+        return locations;
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) throws IOException {
+        writeRun();
+        batch.put(key, value);
+        pendingLastEntries.put(ArrayUtil.getLong(key, 0), Long.MAX_VALUE);
+    }
+
+    @Override
+    public void remove(byte[] key) throws IOException {
+        writeRun();
+        batch.remove(key);
+        pendingLastEntries.put(ArrayUtil.getLong(key, 0), Long.MAX_VALUE);
+    }
+
+    @Override
+    public void deleteRange(byte[] beginKey, byte[] endKey) throws IOException {
+        writeRun();
+        batch.deleteRange(beginKey, endKey);
+        pendingLastEntries.put(ArrayUtil.getLong(beginKey, 0), Long.MAX_VALUE);
+    }
+
+    @Override
+    public void clear() {
+        runCount = 0;
+        pendingLastEntries.clear();
+        batch.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeRun();
+        batch.flush();
+        pendingLastEntries.clear();
+    }
+
+    @Override
+    public int batchCount() {
+        return batch.batchCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            batch.close();
+        } finally {
+            writerLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import java.io.Closeable;
+
+/**
+ * Cache of entries used by {@link SingleDirectoryDbLedgerStorage} to serve reads that miss the write cache.
+ *
+ * <p>The cache is filled with the entries read from the entry logs, including the ones speculatively loaded through
+ * read-ahead. Implementations are free to pick their own memory layout and eviction policy, though they must all be
+ * thread safe.
+ */
+public interface EntryReadCache extends Closeable {
+
+    /**
+     * Eviction policies available for the read cache.
+     */
+    enum EvictionPolicy {
+        /**
+         * Ring of memory segments, evicted in insertion order. See {@link ReadCache}.
+         */
+        FIFO,
+        /**
+         * Lock-striped, scan resistant segmented LRU. See {@link SegmentedLruReadCache}.
+         */
+        SLRU
+    }
+
+    /**
+     * Insert an entry in the cache. The content of the buffer is copied, so the caller retains ownership of it.
+     */
+    void put(long ledgerId, long entryId, ByteBuf entry);
+
+    /**
+     * @return the cached entry, or null if not present. The caller is responsible for releasing the returned buffer.
+     */
+    ByteBuf get(long ledgerId, long entryId);
+
+    boolean hasEntry(long ledgerId, long entryId);
+
+    /**
+     * @return the total size of cached entries
+     */
+    long size();
+
+    /**
+     * @return the total number of cached entries
+     */
+    long count();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,1201 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.primitives.UnsignedBytes;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pure Java implementation of the KeyValueStorage.
+ *
+ * <p>Writes are appended to a log and applied to an in-memory sorted table. When the in-memory table is full, it is
+ * written in background into a new {@link SortedTable} run of level 0, which replaces the log. Writes keep going to
+ * a new in-memory table and log meanwhile, and are only blocked if this one is full too before the run is written.
+ *
+ * <p>The runs are merged in background, in a size-tiered way: when there are {@link #RUNS_PER_LEVEL} runs of the
+ * same level, they are merged into a single run of the next level. A key is then rewritten once per level, and
+ * the merges never block the writers. The deleted keys are kept in the runs until they are merged into the oldest
+ * one.
+ *
+ * <p>Reads look up the in-memory tables and then the memory-mapped runs, newest first. Each run has a sparse index
+ * and a bloom filter.
+ */
+public class KeyValueStorageSortedTable implements KeyValueStorage {
+
+    static KeyValueStorageFactory factory = KeyValueStorageSortedTable::new;
+
+    static final String MEMTABLE_SIZE_MB = "dbStorage_sortedTableMemTableSizeMB";
+    private static final long DEFAULT_MEMTABLE_SIZE_MB = 64;
+
+    // Number of runs of a level merged together into a run of the next level
+    static final int RUNS_PER_LEVEL = 4;
+
+    private static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
+
+    // Marks the deleted keys in the in-memory tables and in the runs
+    private static final byte[] TOMBSTONE = SortedTable.DELETED;
+
+    // Rough memory used by the in-memory table for each entry, besides the key and the value
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private static final byte OP_PUT = 0;
+    private static final byte OP_DELETE = 1;
+    private static final byte OP_DELETE_RANGE = 2;
+
+    private static final String LOG_SUFFIX = ".log";
+    private static final String TABLE_SUFFIX = ".sst";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File dir;
+    private final long memTableMaxSize;
+    private final int writeBatchMaxSize;
+    private final ExecutorService flushExecutor;
+    private final ExecutorService mergeExecutor;
+
+    // Guards all the writes, including the swaps of the state
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Condition flushDone = writeLock.newCondition();
+
+    private volatile State state;
+    private volatile boolean closed;
+    private FileChannel log;
+    private long nextLogId;
+    private IOException flushFailure;
+
+    public KeyValueStorageSortedTable(String basePath, String subPath, DbConfigType dbConfigType,
+                                      ServerConfiguration conf) throws IOException {
+        this.dir = new File(basePath, subPath);
+        this.memTableMaxSize = conf.getLong(MEMTABLE_SIZE_MB, DEFAULT_MEMTABLE_SIZE_MB) * 1024 * 1024;
+        this.writeBatchMaxSize = conf.getMaxOperationNumbersInSingleRocksDBBatch();
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory " + dir);
+        }
+        if (new File(dir, "CURRENT").exists()) {
+            throw new IOException("Storage at " + dir + " was created by RocksDB. The index needs to be rebuilt"
+                    + " to be used with a different key-value storage");
+        }
+
+        recover();
+
+        this.flushExecutor = Executors.newSingleThreadExecutor(
+                new DefaultThreadFactory("db-storage-sorted-table-flush"));
+        this.mergeExecutor = Executors.newSingleThreadExecutor(
+                new DefaultThreadFactory("db-storage-sorted-table-merge"));
+        mergeExecutor.execute(this::mergeRuns);
+    }
+
+    private void recover() throws IOException {
+        TreeSet<Long> logIds = new TreeSet<>();
+        List<long[]> runIds = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Failed to list files in " + dir);
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TMP_SUFFIX)) {
+                // Leftover of an interrupted flush or merge
+                Files.delete(file.toPath());
+            } else if (name.endsWith(LOG_SUFFIX)) {
+                logIds.add(Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length())));
+            } else if (name.endsWith(TABLE_SUFFIX)) {
+                String[] ids = name.substring(0, name.length() - TABLE_SUFFIX.length()).split("-");
+                runIds.add(new long[] { Long.parseLong(ids[0]), Long.parseLong(ids[1]) });
+            }
+        }
+
+        // Each run includes the logs in its range of ids. A merged run replaces the runs in its range, which are
+        // left behind if the merge was interrupted before deleting them
+        runIds.sort((a, b) -> a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+        List<Run> runs = new ArrayList<>();
+        long nextFirstLogId = Long.MAX_VALUE;
+        for (long[] ids : runIds) {
+            if (ids[1] < nextFirstLogId) {
+                runs.add(new Run(SortedTable.open(runFile(ids[0], ids[1])), ids[0], ids[1]));
+                nextFirstLogId = ids[0];
+            } else {
+                Files.delete(runFile(ids[0], ids[1]).toPath());
+            }
+        }
+
+        long lastRunLogId = runs.isEmpty() ? -1 : runs.get(0).lastLogId;
+        deleteLogs(lastRunLogId);
+
+        MemTable recovered = new MemTable();
+        long lastLogId = lastRunLogId;
+        for (long logId : logIds.tailSet(lastRunLogId, false)) {
+            replay(logFile(logId), recovered);
+            lastLogId = logId;
+        }
+
+        if (lastLogId > lastRunLogId) {
+            // Persist the recovered writes in a new run, so that the logs can be dropped
+            State recoveredState = new State(new MemTable[] { recovered }, new Run[0]);
+            boolean oldest = runs.isEmpty();
+            try (MergingIterator iterator = new MergingIterator(recoveredState, null, null, !oldest)) {
+                runs.add(0, writeRun(iterator, oldest ? Collections.emptyList() : recovered.deletedRanges.entrySet(),
+                        recovered.count, lastRunLogId + 1, lastLogId, 0));
+            }
+            deleteLogs(lastLogId);
+        }
+
+        nextLogId = lastLogId + 1;
+        log = openLog(nextLogId);
+        state = new State(new MemTable[] { new MemTable(nextLogId) }, runs.toArray(new Run[0]));
+        nextLogId++;
+        LOG.info("Opened key-value storage at {} with {} runs", dir, runs.size());
+    }
+
+    private void replay(File logFile, MemTable memTable) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES);
+            CRC32 crc = new CRC32();
+            while (true) {
+                header.clear();
+                if (!readFully(channel, header)) {
+                    break;
+                }
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length < 0 || length > channel.size() - channel.position()) {
+                    LOG.warn("Ignoring truncated record at the end of {}", logFile);
+                    break;
+                }
+
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload);
+                crc.reset();
+                crc.update(payload.array(), 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    LOG.warn("Ignoring corrupted record at the end of {}", logFile);
+                    break;
+                }
+                payload.flip();
+                apply(payload, memTable);
+            }
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) throws IOException {
+        Record record = new Record();
+        record.add(OP_PUT, key, value);
+        write(record, false);
+    }
+
+    @Override
+    public byte[] get(byte[] key) throws IOException {
+        State s = acquireState();
+        try {
+            for (Source source : s.sources) {
+                byte[] value = source.get(key);
+                if (value != null) {
+                    return value == TOMBSTONE ? null : value;
+                } else if (source.deletedRange(key) != null) {
+                    return null;
+                }
+            }
+            return null;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public int get(byte[] key, byte[] value) throws IOException {
+        byte[] result = get(key);
+        if (result == null) {
+            return -1;
+        } else if (result.length > value.length) {
+            throw new IOException("Value array is too small to fit the result");
+        }
+        System.arraycopy(result, 0, value, 0, result.length);
+        return result.length;
+    }
+
+    @Override
+    public Entry<byte[], byte[]> getFloor(byte[] key) throws IOException {
+        State s = acquireState();
+        try {
+            Source[] sources = s.sources;
+
+            // Upper bound (excluded) of the next candidate in each source. A key hidden by a deleted range
+            // lets the older sources skip the whole range
+            byte[][] bounds = new byte[sources.length][];
+            Arrays.fill(bounds, key);
+
+            while (true) {
+                byte[] candidate = null;
+                for (int i = 0; i < sources.length; i++) {
+                    byte[] k = sources[i].lowerKey(bounds[i]);
+                    if (k != null && (candidate == null || COMPARATOR.compare(k, candidate) > 0)) {
+                        candidate = k;
+                    }
+                }
+
+                if (candidate == null) {
+                    return null;
+                }
+
+                // Resolve the candidate, newest source first
+                int deletedBy = -1;
+                byte[] deletedRangeStart = null;
+                for (int i = 0; i < sources.length; i++) {
+                    byte[] value = sources[i].get(candidate);
+                    if (value != null) {
+                        if (value != TOMBSTONE) {
+                            return new SimpleImmutableEntry<>(candidate, value);
+                        }
+                        deletedBy = i;
+                        break;
+                    }
+
+                    Entry<byte[], byte[]> range = sources[i].deletedRange(candidate);
+                    if (range != null) {
+                        deletedBy = i;
+                        deletedRangeStart = range.getKey();
+                        break;
+                    }
+                }
+
+                if (deletedBy < 0) {
+                    // Removed from an in-memory table meanwhile, look again
+                    continue;
+                }
+
+                for (int i = 0; i < sources.length; i++) {
+                    byte[] bound = i > deletedBy && deletedRangeStart != null ? deletedRangeStart : candidate;
+                    if (COMPARATOR.compare(bound, bounds[i]) < 0) {
+                        bounds[i] = bound;
+                    }
+                }
+            }
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public Entry<byte[], byte[]> getCeil(byte[] key) throws IOException {
+        try (MergingIterator iterator = new MergingIterator(acquireState(), key, null, false)) {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+
+    @Override
+    public void delete(byte[] key) throws IOException {
+        Record record = new Record();
+        record.add(OP_DELETE, key, TOMBSTONE);
+        write(record, false);
+    }
+
+    @Override
+    public void compact(byte[] firstKey, byte[] lastKey) throws IOException {
+        compact();
+    }
+
+    /**
+     * Write the in-memory table in a run and merge all the runs into a single one, dropping the deleted keys.
+     */
+    @Override
+    public void compact() throws IOException {
+        writeLock.lock();
+        try {
+            if (state.memTables[0].size > 0) {
+                rotate();
+            }
+            awaitFlush();
+        } finally {
+            writeLock.unlock();
+        }
+
+        try {
+            mergeExecutor.submit(() -> {
+                Run[] runs = state.runs;
+                if (runs.length > 1) {
+                    int level = 0;
+                    for (Run run : runs) {
+                        level = Math.max(level, run.table.level());
+                    }
+                    merge(runs, 0, runs.length, level + 1);
+                }
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while merging " + dir, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to merge the key-value storage at " + dir, e.getCause());
+        }
+    }
+
+    @Override
+    public String getDBPath() {
+        return dir.toString();
+    }
+
+    @Override
+    public CloseableIterator<byte[]> keys() {
+        return keys(null, null);
+    }
+
+    @Override
+    public CloseableIterator<byte[]> keys(byte[] firstKey, byte[] lastKey) {
+        final MergingIterator iterator = new MergingIterator(acquireState(), firstKey, lastKey, false);
+        return new CloseableIterator<byte[]>() {
+            @Override
+            public boolean hasNext() throws IOException {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public byte[] next() throws IOException {
+                return iterator.next().getKey();
+            }
+
+            @Override
+            public void close() {
+                iterator.close();
+            }
+        };
+    }
+
+    @Override
+    public CloseableIterator<Entry<byte[], byte[]>> iterator() {
+        return new MergingIterator(acquireState(), null, null, false);
+    }
+
+    @Override
+    public void sync() throws IOException {
+        writeLock.lock();
+        try {
+            log.force(false);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of keys, estimated since the in-memory tables and the runs can overlap
+     */
+    @Override
+    public long count() throws IOException {
+        State s = acquireState();
+        try {
+            long count = 0;
+            for (MemTable memTable : s.memTables) {
+                count += memTable.count;
+            }
+            for (Run run : s.runs) {
+                count += run.table.count();
+            }
+            return count;
+        } finally {
+            s.release();
+        }
+    }
+
+    @Override
+    public Batch newBatch() {
+        return new SortedTableBatch();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            // The flushes schedule merges, stop them first
+            flushExecutor.shutdown();
+            flushExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            mergeExecutor.shutdown();
+            mergeExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing " + dir, e);
+        }
+
+        writeLock.lock();
+        try {
+            log.force(false);
+            log.close();
+            state.release();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(Record record, boolean sync) throws IOException {
+        byte[] payload = record.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        ByteBuffer buf = ByteBuffer.allocate(2 * Integer.BYTES + payload.length);
+        buf.putInt(payload.length);
+        buf.putInt((int) crc.getValue());
+        buf.put(payload);
+        buf.flip();
+
+        writeLock.lock();
+        try {
+            while (buf.hasRemaining()) {
+                log.write(buf);
+            }
+            if (sync) {
+                log.force(false);
+            }
+
+            MemTable active = state.memTables[0];
+            apply(ByteBuffer.wrap(payload), active);
+            if (active.size >= memTableMaxSize) {
+                rotate();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void apply(ByteBuffer payload, MemTable memTable) {
+        while (payload.hasRemaining()) {
+            byte op = payload.get();
+            byte[] key = new byte[payload.getInt()];
+            payload.get(key);
+            byte[] value = new byte[payload.getInt()];
+            payload.get(value);
+
+            switch (op) {
+            case OP_PUT:
+                memTable.put(key, value);
+                break;
+            case OP_DELETE:
+                memTable.put(key, TOMBSTONE);
+                break;
+            case OP_DELETE_RANGE:
+                memTable.deleteRange(key, value);
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + op);
+            }
+        }
+    }
+
+    /**
+     * Switch to a new in-memory table and log, and write the previous ones in a run in background.
+     */
+    private void rotate() throws IOException {
+        // Only one in-memory table can be written at a time
+        awaitFlush();
+
+        long logId = nextLogId++;
+        FileChannel newLog = openLog(logId);
+        log.close();
+        log = newLog;
+
+        State s = state;
+        MemTable immutable = s.memTables[0];
+        state = new State(new MemTable[] { new MemTable(logId), immutable }, s.runs);
+        flushExecutor.execute(() -> flush(immutable));
+    }
+
+    private void awaitFlush() throws IOException {
+        while (state.memTables.length > 1) {
+            if (flushFailure != null) {
+                throw new IOException("Failed to write the in-memory table of " + dir, flushFailure);
+            }
+            try {
+                flushDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the in-memory table of " + dir, e);
+            }
+        }
+    }
+
+    private void flush(MemTable immutable) {
+        try {
+            long startTime = System.nanoTime();
+
+            // Only this thread adds runs, the merges can't make the state go from no run to some runs
+            boolean oldest = state.runs.length == 0;
+            Run run;
+            try (MergingIterator iterator = new MergingIterator(
+                    new State(new MemTable[] { immutable }, new Run[0]), null, null, !oldest)) {
+                run = writeRun(iterator, oldest ? Collections.emptyList() : immutable.deletedRanges.entrySet(),
+                        immutable.count, immutable.logId, immutable.logId, 0);
+            }
+
+            writeLock.lock();
+            try {
+                State s = state;
+                Run[] runs = new Run[s.runs.length + 1];
+                runs[0] = run;
+                System.arraycopy(s.runs, 0, runs, 1, s.runs.length);
+                state = new State(new MemTable[] { s.memTables[0] }, runs);
+                flushDone.signalAll();
+            } finally {
+                writeLock.unlock();
+            }
+
+            Files.delete(logFile(immutable.logId).toPath());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Flushed key-value storage at {} -- {} keys in {} ms", dir, run.table.count(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            }
+
+            mergeExecutor.execute(this::mergeRuns);
+        } catch (IOException e) {
+            LOG.error("Failed to write the in-memory table of the key-value storage at {}", dir, e);
+            writeLock.lock();
+            try {
+                flushFailure = e;
+                flushDone.signalAll();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Merge the runs of the levels that have {@link #RUNS_PER_LEVEL} runs, lowest level first.
+     */
+    private void mergeRuns() {
+        try {
+            while (!closed) {
+                // The levels never decrease from the newest run to the oldest one, so the runs of a level are
+                // contiguous. Merging the oldest runs of a level keeps it that way
+                Run[] runs = state.runs;
+                boolean merged = false;
+                int end = 0;
+                while (end < runs.length && !merged) {
+                    int start = end;
+                    int level = runs[start].table.level();
+                    while (end < runs.length && runs[end].table.level() == level) {
+                        end++;
+                    }
+                    if (end - start >= RUNS_PER_LEVEL) {
+                        merge(runs, end - RUNS_PER_LEVEL, end, level + 1);
+                        merged = true;
+                    }
+                }
+                if (!merged) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // The runs are left as they are, and merged again after the next flush
+            LOG.error("Failed to merge the key-value storage at {}", dir, e);
+        }
+    }
+
+    /**
+     * Merge the contiguous runs from index start (included) to end (excluded) into a single run.
+     *
+     * <p>Must be called from the merge thread, which is the only one removing runs from the state.
+     */
+    private void merge(Run[] runs, int start, int end, int level) throws IOException {
+        long startTime = System.nanoTime();
+        Run[] merged = Arrays.copyOfRange(runs, start, end);
+
+        // The deleted keys are dropped when merging into the oldest run, as there is nothing left to hide
+        boolean oldest = end == runs.length;
+        ConcurrentSkipListMap<byte[], byte[]> deletedRanges = new ConcurrentSkipListMap<>(COMPARATOR);
+        long maxEntries = 0;
+        for (Run run : merged) {
+            checkState(run.table.tryRetain());
+            maxEntries += run.table.count();
+            if (!oldest) {
+                for (Entry<byte[], byte[]> range : run.table.deletedRanges().entrySet()) {
+                    addRange(deletedRanges, range.getKey(), range.getValue());
+                }
+            }
+        }
+
+        Run run;
+        try (MergingIterator iterator = new MergingIterator(new State(new MemTable[0], merged), null, null,
+                !oldest)) {
+            run = writeRun(iterator, deletedRanges.entrySet(), maxEntries, merged[merged.length - 1].firstLogId,
+                    merged[0].lastLogId, level);
+        }
+
+        writeLock.lock();
+        try {
+            // Newer runs might have been flushed meanwhile, in front of the merged ones
+            State s = state;
+            int offset = s.runs.length - runs.length;
+            for (int i = 0; i < merged.length; i++) {
+                checkState(s.runs[offset + start + i] == merged[i]);
+            }
+            Run[] newRuns = new Run[s.runs.length - merged.length + 1];
+            System.arraycopy(s.runs, 0, newRuns, 0, offset + start);
+            newRuns[offset + start] = run;
+            System.arraycopy(s.runs, offset + end, newRuns, offset + start + 1, runs.length - end);
+            state = new State(s.memTables, newRuns);
+        } finally {
+            writeLock.unlock();
+        }
+
+        for (Run r : merged) {
+            r.table.release();
+            Files.delete(r.table.getFile().toPath());
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Merged {} runs of key-value storage at {} into level {} -- {} keys in {} ms", merged.length,
+                    dir, level, run.table.count(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+    }
+
+    private Run writeRun(Iterator<Entry<byte[], byte[]>> entries, Iterable<Entry<byte[], byte[]>> deletedRanges,
+                         long maxEntries, long firstLogId, long lastLogId, int level) throws IOException {
+        File runFile = runFile(firstLogId, lastLogId);
+        File tmpFile = new File(dir, runFile.getName() + TMP_SUFFIX);
+        SortedTable.write(tmpFile, entries, deletedRanges, maxEntries, level);
+        Files.move(tmpFile.toPath(), runFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        syncDir();
+        return new Run(SortedTable.open(runFile), firstLogId, lastLogId);
+    }
+
+    private void deleteLogs(long lastLogId) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(LOG_SUFFIX)
+                    && Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length())) <= lastLogId) {
+                Files.delete(file.toPath());
+            }
+        }
+    }
+
+    private void syncDir() {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on all the platforms
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Failed to sync directory {}", dir, e);
+            }
+        }
+    }
+
+    private FileChannel openLog(long logId) throws IOException {
+        FileChannel channel = FileChannel.open(logFile(logId).toPath(), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        syncDir();
+        return channel;
+    }
+
+    private File logFile(long logId) {
+        return new File(dir, logId + LOG_SUFFIX);
+    }
+
+    private File runFile(long firstLogId, long lastLogId) {
+        return new File(dir, firstLogId + "-" + lastLogId + TABLE_SUFFIX);
+    }
+
+    private State acquireState() {
+        while (true) {
+            State s = state;
+            int retained = 0;
+            while (retained < s.runs.length && s.runs[retained].table.tryRetain()) {
+                retained++;
+            }
+            if (retained == s.runs.length) {
+                return s;
+            }
+
+            // A run was merged meanwhile, try again with the new state
+            for (int i = 0; i < retained; i++) {
+                s.runs[i].table.release();
+            }
+        }
+    }
+
+    /**
+     * Add a range of deleted keys to a set of disjoint ranges, merging it with the ranges it overlaps.
+     */
+    private static void addRange(ConcurrentNavigableMap<byte[], byte[]> ranges, byte[] start, byte[] end) {
+        // The merged range is added before removing the ones it replaces, so that the concurrent readers always
+        // see the keys as deleted
+        byte[] mergedStart = start;
+        byte[] mergedEnd = end;
+        Entry<byte[], byte[]> previous = ranges.floorEntry(start);
+        if (previous != null && COMPARATOR.compare(previous.getValue(), start) >= 0) {
+            mergedStart = previous.getKey();
+            if (COMPARATOR.compare(previous.getValue(), mergedEnd) > 0) {
+                mergedEnd = previous.getValue();
+            }
+        }
+        for (byte[] rangeEnd : ranges.subMap(start, false, end, true).values()) {
+            if (COMPARATOR.compare(rangeEnd, mergedEnd) > 0) {
+                mergedEnd = rangeEnd;
+            }
+        }
+
+        ranges.put(mergedStart, mergedEnd);
+        ranges.subMap(mergedStart, false, mergedEnd, true).clear();
+    }
+
+    private static final class State {
+        // Newest first
+        final MemTable[] memTables;
+        final Run[] runs;
+
+        // The in-memory tables followed by the runs
+        final Source[] sources;
+
+        State(MemTable[] memTables, Run[] runs) {
+            this.memTables = memTables;
+            this.runs = runs;
+            this.sources = new Source[memTables.length + runs.length];
+            System.arraycopy(memTables, 0, sources, 0, memTables.length);
+            System.arraycopy(runs, 0, sources, memTables.length, runs.length);
+        }
+
+        void release() {
+            for (Run run : runs) {
+                run.table.release();
+            }
+        }
+    }
+
+    /**
+     * Sorted set of keys, where the keys and deleted ranges hide the ones of the older sources.
+     */
+    private abstract static class Source {
+        /**
+         * @return the biggest key lesser than the supplied key, deleted or not, or null
+         */
+        abstract byte[] lowerKey(byte[] key);
+
+        /**
+         * @return the value of the key, {@link #TOMBSTONE} if the key is deleted, or null if it's not in this source
+         */
+        abstract byte[] get(byte[] key);
+
+        /**
+         * @return the deleted range including the key, or null
+         */
+        abstract Entry<byte[], byte[]> deletedRange(byte[] key);
+
+        abstract Cursor newCursor();
+    }
+
+    private static final class MemTable extends Source {
+        final long logId;
+        final ConcurrentSkipListMap<byte[], byte[]> entries = new ConcurrentSkipListMap<>(COMPARATOR);
+
+        // Disjoint ranges (start -> end excluded) of keys deleted from the older sources
+        final ConcurrentSkipListMap<byte[], byte[]> deletedRanges = new ConcurrentSkipListMap<>(COMPARATOR);
+
+        // Only updated with the write lock held
+        volatile long size;
+        volatile long count;
+
+        MemTable() {
+            this(-1);
+        }
+
+        MemTable(long logId) {
+            this.logId = logId;
+        }
+
+        void put(byte[] key, byte[] value) {
+            if (entries.put(key, value) == null) {
+                count++;
+            }
+            size += ENTRY_OVERHEAD + key.length + value.length;
+        }
+
+        void deleteRange(byte[] start, byte[] end) {
+            if (COMPARATOR.compare(start, end) >= 0) {
+                return;
+            }
+            // The range is added before removing the entries, so that the concurrent readers always see the keys
+            // as deleted
+            addRange(deletedRanges, start, end);
+            entries.subMap(start, end).clear();
+            size += ENTRY_OVERHEAD + start.length + end.length;
+        }
+
+        @Override
+        byte[] lowerKey(byte[] key) {
+            return entries.lowerKey(key);
+        }
+
+        @Override
+        byte[] get(byte[] key) {
+            return entries.get(key);
+        }
+
+        @Override
+        Entry<byte[], byte[]> deletedRange(byte[] key) {
+            Entry<byte[], byte[]> range = deletedRanges.floorEntry(key);
+            if (range != null && COMPARATOR.compare(key, range.getValue()) < 0) {
+                return range;
+            } else {
+                return null;
+            }
+        }
+
+        @Override
+        Cursor newCursor() {
+            return new MemTableCursor(this);
+        }
+    }
+
+    /**
+     * Sorted table holding the writes of a range of logs.
+     */
+    private static final class Run extends Source {
+        final SortedTable table;
+        final long firstLogId;
+        final long lastLogId;
+
+        Run(SortedTable table, long firstLogId, long lastLogId) {
+            this.table = table;
+            this.firstLogId = firstLogId;
+            this.lastLogId = lastLogId;
+        }
+
+        @Override
+        byte[] lowerKey(byte[] key) {
+            long pos = table.floor(key);
+            return pos >= 0 ? table.keyAt(pos) : null;
+        }
+
+        @Override
+        byte[] get(byte[] key) {
+            return table.get(key);
+        }
+
+        @Override
+        Entry<byte[], byte[]> deletedRange(byte[] key) {
+            return table.deletedRange(key);
+        }
+
+        @Override
+        Cursor newCursor() {
+            return new TableCursor(table);
+        }
+    }
+
+    /**
+     * Encoded list of operations, written in the log as a single record.
+     */
+    private static final class Record {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(buffer);
+        private int count;
+
+        void add(byte op, byte[] key, byte[] value) throws IOException {
+            out.writeByte(op);
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeInt(value.length);
+            out.write(value);
+            count++;
+        }
+
+        byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+
+        void clear() {
+            buffer.reset();
+            count = 0;
+        }
+    }
+
+    private class SortedTableBatch implements Batch {
+        private final Record record = new Record();
+
+        @Override
+        public void put(byte[] key, byte[] value) throws IOException {
+            record.add(OP_PUT, key, value);
+            flushIfNeeded();
+        }
+
+        @Override
+        public void remove(byte[] key) throws IOException {
+            record.add(OP_DELETE, key, TOMBSTONE);
+            flushIfNeeded();
+        }
+
+        @Override
+        public void deleteRange(byte[] beginKey, byte[] endKey) throws IOException {
+            record.add(OP_DELETE_RANGE, beginKey, endKey);
+            flushIfNeeded();
+        }
+
+        private void flushIfNeeded() throws IOException {
+            if (record.count >= writeBatchMaxSize) {
+                flush();
+                clear();
+            }
+        }
+
+        @Override
+        public void clear() {
+            record.clear();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (record.count > 0) {
+                write(record, true);
+            }
+        }
+
+        @Override
+        public int batchCount() {
+            return record.count;
+        }
+
+        @Override
+        public void close() {
+            record.clear();
+        }
+    }
+
+    /**
+     * Iterates over the entries of a state, in key order, merging the in-memory tables and the runs.
+     */
+    private static final class MergingIterator
+            implements CloseableIterator<Entry<byte[], byte[]>>, Iterator<Entry<byte[], byte[]>> {
+        private final State state;
+        private final byte[] lastKey;
+        private final boolean includeDeletedKeys;
+        private final Cursor[] cursors;
+        private Entry<byte[], byte[]> nextEntry;
+        private boolean closed;
+
+        /**
+         * @param includeDeletedKeys whether to return the deleted keys, with {@link #TOMBSTONE} as value. The keys
+         *                           hidden by a deleted range are never returned
+         */
+        MergingIterator(State state, byte[] firstKey, byte[] lastKey, boolean includeDeletedKeys) {
+            this.state = state;
+            this.lastKey = lastKey;
+            this.includeDeletedKeys = includeDeletedKeys;
+
+            this.cursors = new Cursor[state.sources.length];
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = state.sources[i].newCursor();
+                cursors[i].seek(firstKey);
+            }
+            advance();
+        }
+
+        private void advance() {
+            while (true) {
+                byte[] key = null;
+                int source = -1;
+                for (int i = 0; i < cursors.length; i++) {
+                    byte[] k = cursors[i].key;
+                    if (k != null && (key == null || COMPARATOR.compare(k, key) < 0)) {
+                        key = k;
+                        source = i;
+                    }
+                }
+
+                if (key == null || (lastKey != null && COMPARATOR.compare(key, lastKey) >= 0)) {
+                    nextEntry = null;
+                    return;
+                }
+
+                byte[] value = cursors[source].value();
+                for (Cursor cursor : cursors) {
+                    if (cursor.key != null && COMPARATOR.compare(cursor.key, key) == 0) {
+                        cursor.next();
+                    }
+                }
+
+                Entry<byte[], byte[]> deletedRange = null;
+                int deletedBy = -1;
+                for (int i = 0; i < source && deletedRange == null; i++) {
+                    deletedRange = state.sources[i].deletedRange(key);
+                    deletedBy = i;
+                }
+                if (deletedRange != null) {
+                    // Skip the whole range in the older sources
+                    byte[] rangeEnd = deletedRange.getValue();
+                    for (int i = deletedBy + 1; i < cursors.length; i++) {
+                        if (cursors[i].key != null && COMPARATOR.compare(cursors[i].key, rangeEnd) < 0) {
+                            cursors[i].seek(rangeEnd);
+                        }
+                    }
+                    continue;
+                }
+
+                if (value == TOMBSTONE && !includeDeletedKeys) {
+                    continue;
+                }
+
+                nextEntry = new SimpleImmutableEntry<>(key, value);
+                return;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextEntry != null;
+        }
+
+        @Override
+        public Entry<byte[], byte[]> next() {
+            if (nextEntry == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<byte[], byte[]> entry = nextEntry;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                state.release();
+            }
+        }
+    }
+
+    private abstract static class Cursor {
+        // Key at the current position, or null at the end
+        byte[] key;
+
+        abstract byte[] value();
+
+        abstract void next();
+
+        /**
+         * Move to the first key bigger or equal than the supplied one, or to the first key if null.
+         */
+        abstract void seek(byte[] key);
+    }
+
+    private static final class MemTableCursor extends Cursor {
+        private final MemTable memTable;
+        private Iterator<Entry<byte[], byte[]>> iterator;
+        private byte[] value;
+
+        MemTableCursor(MemTable memTable) {
+            this.memTable = memTable;
+        }
+
+        @Override
+        byte[] value() {
+            return value;
+        }
+
+        @Override
+        void next() {
+            if (iterator.hasNext()) {
+                Entry<byte[], byte[]> entry = iterator.next();
+                key = entry.getKey();
+                value = entry.getValue();
+            } else {
+                key = null;
+                value = null;
+            }
+        }
+
+        @Override
+        void seek(byte[] key) {
+            iterator = (key == null ? memTable.entries : memTable.entries.tailMap(key, true)).entrySet().iterator();
+            next();
+        }
+    }
+
+    private static final class TableCursor extends Cursor {
+        private final SortedTable table;
+        private long pos;
+
+        TableCursor(SortedTable table) {
+            this.table = table;
+        }
+
+        @Override
+        byte[] value() {
+            return table.valueAt(pos);
+        }
+
+        @Override
+        void next() {
+            pos = table.next(pos);
+            key = pos >= 0 ? table.keyAt(pos) : null;
+        }
+
+        @Override
+        void seek(byte[] key) {
+            pos = key == null ? table.first() : table.ceil(key);
+            this.key = pos >= 0 ? table.keyAt(pos) : null;
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyValueStorageSortedTable.class);
+}
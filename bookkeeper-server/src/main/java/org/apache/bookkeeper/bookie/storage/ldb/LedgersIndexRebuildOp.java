@@ -105,7 +105,7 @@ public class LedgersIndexRebuildOp {
                 LOG.info("Scan complete, found {} ledgers. "
                         + "Starting to build a new ledgers index", ledgers.size());
 
-                try (KeyValueStorage newIndex = KeyValueStorageRocksDB.factory.newKeyValueStorage(
+                try (KeyValueStorage newIndex = DbLedgerStorage.getKeyValueStorageFactory(conf).newKeyValueStorage(
                         indexBasePath, tempLedgersSubPath, DbConfigType.Default, conf)) {
                     LOG.info("Created ledgers index at temp location {}", indexTempPath);
 
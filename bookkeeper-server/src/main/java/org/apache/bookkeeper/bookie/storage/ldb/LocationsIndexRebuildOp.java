@@ -33,6 +33,7 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.bookkeeper.bookie.BookieImpl;
 import org.apache.bookkeeper.bookie.DefaultEntryLogger;
 import org.apache.bookkeeper.bookie.LedgerDirsManager;
@@ -85,16 +86,17 @@ public class LocationsIndexRebuildOp {
                     new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold())));
             Set<Long> entryLogs = entryLogger.getEntryLogsSet();
 
-            Set<Long> activeLedgers = getActiveLedgers(conf, KeyValueStorageRocksDB.factory, iBasePath);
+            KeyValueStorageFactory storageFactory = DbLedgerStorage.getKeyValueStorageFactory(conf);
+            Set<Long> activeLedgers = getActiveLedgers(conf, storageFactory, iBasePath);
             LOG.info("Found {} active ledgers in ledger manager", activeLedgers.size());
 
-            KeyValueStorage newIndex = KeyValueStorageRocksDB.factory.newKeyValueStorage(iBasePath, "locations",
+            KeyValueStorage newIndex = storageFactory.newKeyValueStorage(iBasePath, "locations",
                     DbConfigType.Default, conf);
 
             int totalEntryLogs = entryLogs.size();
             int completedEntryLogs = 0;
             LOG.info("Scanning {} entry logs", totalEntryLogs);
-            AtomicReference<KeyValueStorage.Batch> batch = new AtomicReference<>(newIndex.newBatch());
+            AtomicReference<KeyValueStorage.Batch> batch = new AtomicReference<>(newBatch(newIndex));
             AtomicInteger count = new AtomicInteger();
 
             for (long entryLogId : entryLogs) {
@@ -112,21 +114,25 @@ public class LocationsIndexRebuildOp {
                         }
 
                         // Update the ledger index page
-                        LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
-                        LongWrapper value = LongWrapper.get(location);
-
-                        try {
-                            batch.get().put(key.array, value.array);
-                        } finally {
-                            key.recycle();
-                            value.recycle();
+                        if (batch.get() instanceof EntryLocationRunBatch) {
+                            ((EntryLocationRunBatch) batch.get()).addLocation(ledgerId, entryId, location);
+                        } else {
+                            LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
+                            LongWrapper value = LongWrapper.get(location);
+
+                            try {
+                                batch.get().put(key.array, value.array);
+                            } finally {
+                                key.recycle();
+                                value.recycle();
+                            }
                         }
 
                         if (count.incrementAndGet() > BATCH_COMMIT_SIZE) {
                             batch.get().flush();
                             batch.get().close();
 
-                            batch.set(newIndex.newBatch());
+                            batch.set(newBatch(newIndex));
                             count.set(0);
                         }
                     }
@@ -153,6 +159,16 @@ public class LocationsIndexRebuildOp {
                         TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)));
     }
 
+    private KeyValueStorage.Batch newBatch(KeyValueStorage index) {
+        // Entries are found in the order they were written, so consecutive entries can be grouped in runs
+        if (conf.getBoolean(DbLedgerStorage.ENTRY_LOCATION_INDEX_RANGE_ENCODING, false)) {
+            // the rebuilt index has a single writer
+            return new EntryLocationRunBatch(index, new ReentrantLock());
+        } else {
+            return index.newBatch();
+        }
+    }
+
     private Set<Long> getActiveLedgers(ServerConfiguration conf, KeyValueStorageFactory storageFactory, String basePath)
             throws IOException {
         LedgerMetadataIndex ledgers = new LedgerMetadataIndex(conf, storageFactory, basePath, NullStatsLogger.INSTANCE);
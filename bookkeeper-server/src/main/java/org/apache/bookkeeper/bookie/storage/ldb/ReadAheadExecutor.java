@@ -0,0 +1,144 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.internal.PlatformDependent;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+
+/**
+ * Bounded thread pool that runs the read-ahead of a single ledger directory, out of the read request thread.
+ *
+ * <p>Read-ahead is only an optimization, so it is dropped rather than queued when the pool is saturated or when the
+ * direct memory is almost exhausted. A read-ahead request is also discarded if there is already a pending one
+ * covering the same entries of the ledger.
+ */
+class ReadAheadExecutor {
+
+    private static final BufferPoolMXBean DIRECT_BUFFER_POOL = ManagementFactory
+            .getPlatformMXBeans(BufferPoolMXBean.class).stream()
+            .filter(pool -> "direct".equals(pool.getName()))
+            .findFirst()
+            .orElse(null);
+
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentLongHashMap<PendingReadAhead> pendingReadAheads;
+    private final BooleanSupplier memoryPressure;
+
+    private final Counter droppedCounter;
+    private final Counter dedupedCounter;
+
+    ReadAheadExecutor(int numThreads, int maxPendingRequests, int maxDirectMemoryUsagePercent,
+                      Counter droppedCounter, Counter dedupedCounter) {
+        this(numThreads, maxPendingRequests,
+                directMemoryPressure(PlatformDependent.estimateMaxDirectMemory() / 100 * maxDirectMemoryUsagePercent),
+                droppedCounter, dedupedCounter);
+    }
+
+    ReadAheadExecutor(int numThreads, int maxPendingRequests, BooleanSupplier memoryPressure,
+                      Counter droppedCounter, Counter dedupedCounter) {
+        this.executor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxPendingRequests), new DefaultThreadFactory("db-storage-readahead"));
+        this.pendingReadAheads = ConcurrentLongHashMap.<PendingReadAhead>newBuilder()
+                .expectedItems(1024)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors() * 2)
+                .build();
+        this.memoryPressure = memoryPressure;
+        this.droppedCounter = droppedCounter;
+        this.dedupedCounter = dedupedCounter;
+    }
+
+    /**
+     * Schedule the read-ahead of the entries [firstEntryId, firstEntryId + maxEntries) of a ledger.
+     *
+     * @return true if the read-ahead was scheduled, false if it was discarded
+     */
+    boolean submit(long ledgerId, long firstEntryId, int maxEntries, Runnable readAhead) {
+        if (memoryPressure.getAsBoolean()) {
+            droppedCounter.inc();
+            return false;
+        }
+
+        PendingReadAhead pending = new PendingReadAhead(firstEntryId, firstEntryId + maxEntries);
+        PendingReadAhead existing = pendingReadAheads.putIfAbsent(ledgerId, pending);
+        if (existing != null) {
+            if (existing.covers(firstEntryId)) {
+                dedupedCounter.inc();
+                return false;
+            }
+
+            // Track the most recent read-ahead of the ledger
+            pendingReadAheads.put(ledgerId, pending);
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    readAhead.run();
+                } finally {
+                    pendingReadAheads.remove(ledgerId, pending);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pendingReadAheads.remove(ledgerId, pending);
+            droppedCounter.inc();
+            return false;
+        }
+    }
+
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    private static BooleanSupplier directMemoryPressure(long maxDirectMemoryUsage) {
+        return () -> {
+            long used = PlatformDependent.usedDirectMemory();
+            if (DIRECT_BUFFER_POOL != null) {
+                used = Math.max(used, DIRECT_BUFFER_POOL.getMemoryUsed());
+            }
+            return used > maxDirectMemoryUsage;
+        };
+    }
+
+    private static final class PendingReadAhead {
+        private final long firstEntryId;
+        private final long endEntryId;
+
+        PendingReadAhead(long firstEntryId, long endEntryId) {
+            this.firstEntryId = firstEntryId;
+            this.endEntryId = endEntryId;
+        }
+
+        boolean covers(long entryId) {
+            return entryId >= firstEntryId && entryId < endEntryId;
+        }
+    }
+}
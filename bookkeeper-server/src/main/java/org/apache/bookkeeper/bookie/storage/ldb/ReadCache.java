@@ -26,7 +26,6 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCountUtil;
-import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -46,7 +45,7 @@ import org.slf4j.LoggerFactory;
  * is cleared and rotated to make space for new entries to be added to
  * the read cache.
  */
-public class ReadCache implements Closeable {
+public class ReadCache implements EntryReadCache {
     private static final Logger log = LoggerFactory.getLogger(ReadCache.class);
 
     private static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
@@ -89,6 +88,7 @@ public class ReadCache implements Closeable {
         cacheSegments.forEach(ReferenceCountUtil::safeRelease);
     }
 
+    @Override
     public void put(long ledgerId, long entryId, ByteBuf entry) {
         int entrySize = entry.readableBytes();
         int alignedSize = align64(entrySize);
@@ -136,6 +136,7 @@ public class ReadCache implements Closeable {
         }
     }
 
+    @Override
     public ByteBuf get(long ledgerId, long entryId) {
         lock.readLock().lock();
 
@@ -165,6 +166,7 @@ public class ReadCache implements Closeable {
         return null;
     }
 
+    @Override
     public boolean hasEntry(long ledgerId, long entryId) {
         lock.readLock().lock();
 
@@ -186,9 +188,7 @@ public class ReadCache implements Closeable {
         return false;
     }
 
-    /**
-     * @return the total size of cached entries
-     */
+    @Override
     public long size() {
         lock.readLock().lock();
 
@@ -210,9 +210,7 @@ public class ReadCache implements Closeable {
         }
     }
 
-    /**
-     * @return the total number of cached entries
-     */
+    @Override
     public long count() {
         lock.readLock().lock();
 
@@ -0,0 +1,339 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scan resistant read cache implementation.
+ *
+ * <p>The cache is split in multiple independent stripes, selected by hashing the (ledgerId, entryId) pair, so that
+ * insertions and lookups for different entries rarely contend on the same lock.
+ *
+ * <p>Each stripe is a segmented LRU: new entries are inserted in the <i>probation</i> segment and they are only
+ * promoted to the <i>protected</i> segment once they are read more than once. Eviction always picks the least recently
+ * used entry of the probation segment first. Entries that are read-ahead and then read a single time by a catch-up
+ * reader are therefore evicted before the entries that are repeatedly read by other readers.
+ *
+ * <p>Entries are copied into buffers obtained from the allocator and the buffers returned by {@link #get(long, long)}
+ * share the cached memory, so no copy is done on cache hits.
+ */
+public class SegmentedLruReadCache implements EntryReadCache {
+    private static final Logger log = LoggerFactory.getLogger(SegmentedLruReadCache.class);
+
+    // Percentage of each stripe reserved to entries that were read more than once
+    private static final int PROTECTED_SEGMENT_PERCENT = 80;
+
+    // Number of reads required to promote an entry from the probation to the protected segment
+    private static final int PROMOTION_THRESHOLD = 2;
+
+    private static final long MIN_STRIPE_SIZE = 1024 * 1024;
+
+    private final ByteBufAllocator allocator;
+    private final Stripe[] stripes;
+    private final int stripesMask;
+
+    public SegmentedLruReadCache(ByteBufAllocator allocator, long maxCacheSize) {
+        this(allocator, maxCacheSize, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public SegmentedLruReadCache(ByteBufAllocator allocator, long maxCacheSize, int concurrencyLevel) {
+        this.allocator = allocator;
+
+        int stripesCount = 1;
+        while (stripesCount < concurrencyLevel && maxCacheSize / (stripesCount * 2L) >= MIN_STRIPE_SIZE) {
+            stripesCount *= 2;
+        }
+
+        this.stripes = new Stripe[stripesCount];
+        this.stripesMask = stripesCount - 1;
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = new Stripe(maxCacheSize / stripesCount);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    @Override
+    public void put(long ledgerId, long entryId, ByteBuf entry) {
+        Stripe stripe = getStripe(ledgerId, entryId);
+        int entrySize = entry.readableBytes();
+        if (entrySize > stripe.capacity) {
+            log.warn("entrySize {} > stripeSize {}, skip update read cache!", entrySize, stripe.capacity);
+            return;
+        }
+
+        // Copy the entry outside of the stripe lock
+        ByteBuf cachedEntry = allocator.directBuffer(entrySize, entrySize);
+        cachedEntry.writeBytes(entry, entry.readerIndex(), entrySize);
+
+        if (!stripe.put(ledgerId, entryId, cachedEntry)) {
+            // Entry was already cached
+            cachedEntry.release();
+        }
+    }
+
+    @Override
+    public ByteBuf get(long ledgerId, long entryId) {
+        return getStripe(ledgerId, entryId).get(ledgerId, entryId);
+    }
+
+    @Override
+    public boolean hasEntry(long ledgerId, long entryId) {
+        return getStripe(ledgerId, entryId).hasEntry(ledgerId, entryId);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.count;
+        }
+        return count;
+    }
+
+    private Stripe getStripe(long ledgerId, long entryId) {
+        long h = ledgerId * 0x9E3779B97F4A7C15L + entryId * 0xC2B2AE3D27D4EB4FL;
+        h ^= (h >>> 32);
+        h ^= (h >>> 16);
+        return stripes[(int) h & stripesMask];
+    }
+
+    private static final class Key {
+        private final long ledgerId;
+        private final long entryId;
+
+        Key(long ledgerId, long entryId) {
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return ledgerId == other.ledgerId && entryId == other.entryId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(ledgerId * 31 + entryId);
+        }
+    }
+
+    private static final class Node {
+        private final Key key;
+        private final ByteBuf entry;
+        private boolean isProtected;
+        private int hits;
+
+        private Node prev;
+        private Node next;
+
+        Node(Key key, ByteBuf entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Doubly-linked list of nodes, ordered from the least to the most recently used.
+     */
+    private static final class Segment {
+        private Node head;
+        private Node tail;
+        private long size;
+
+        void addLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size += node.entry.readableBytes();
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size -= node.entry.readableBytes();
+        }
+    }
+
+    private static final class Stripe {
+        private final long capacity;
+        private final long protectedCapacity;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Key, Node> index = new HashMap<>();
+        private final Segment probation = new Segment();
+        private final Segment protectedSegment = new Segment();
+
+        // Only updated while holding the lock
+        private volatile long size;
+        private volatile long count;
+
+        Stripe(long capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = capacity * PROTECTED_SEGMENT_PERCENT / 100;
+        }
+
+        boolean put(long ledgerId, long entryId, ByteBuf entry) {
+            Key key = new Key(ledgerId, entryId);
+            lock.lock();
+            try {
+                if (index.containsKey(key)) {
+                    return false;
+                }
+
+                Node node = new Node(key, entry);
+                index.put(key, node);
+                probation.addLast(node);
+
+                // The entry fits in the stripe, so the older entries make enough room for it: when it is the only
+                // entry on probation, the least recently used protected entries are evicted instead
+                while (probation.size + protectedSegment.size > capacity) {
+                    Node victim = probation.head != node ? probation.head : protectedSegment.head;
+                    evict(victim);
+                }
+                updateSize();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        ByteBuf get(long ledgerId, long entryId) {
+            lock.lock();
+            try {
+                Node node = index.get(new Key(ledgerId, entryId));
+                if (node == null) {
+                    return null;
+                }
+
+                if (node.isProtected) {
+                    protectedSegment.remove(node);
+                    protectedSegment.addLast(node);
+                } else if (++node.hits >= PROMOTION_THRESHOLD) {
+                    promote(node);
+                } else {
+                    probation.remove(node);
+                    probation.addLast(node);
+                }
+
+                // The buffer needs to be retained while holding the lock, to prevent a concurrent eviction from
+                // releasing it
+                return node.entry.retainedDuplicate();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean hasEntry(long ledgerId, long entryId) {
+            lock.lock();
+            try {
+                return index.containsKey(new Key(ledgerId, entryId));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                while (probation.head != null) {
+                    evict(probation.head);
+                }
+                while (protectedSegment.head != null) {
+                    evict(protectedSegment.head);
+                }
+                updateSize();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void promote(Node node) {
+            probation.remove(node);
+            node.isProtected = true;
+            protectedSegment.addLast(node);
+
+            // Demote the least recently used protected entries to make room
+            while (protectedSegment.size > protectedCapacity && protectedSegment.head != node) {
+                Node demoted = protectedSegment.head;
+                protectedSegment.remove(demoted);
+                demoted.isProtected = false;
+                probation.addLast(demoted);
+            }
+        }
+
+        private void evict(Node node) {
+            if (node.isProtected) {
+                protectedSegment.remove(node);
+            } else {
+                probation.remove(node);
+            }
+            index.remove(node.key);
+            ReferenceCountUtil.safeRelease(node.entry);
+        }
+
+        private void updateSize() {
+            size = probation.size + protectedSegment.size;
+            count = index.size();
+        }
+    }
+}
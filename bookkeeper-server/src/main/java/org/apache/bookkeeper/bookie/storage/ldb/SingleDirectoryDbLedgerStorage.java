@@ -35,17 +35,24 @@ import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.PrimitiveIterator.OfLong;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.StampedLock;
 import org.apache.bookkeeper.bookie.Bookie;
@@ -56,6 +63,7 @@ import org.apache.bookkeeper.bookie.CheckpointSource;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.bookie.Checkpointer;
 import org.apache.bookkeeper.bookie.CompactableLedgerStorage;
+import org.apache.bookkeeper.bookie.DefaultEntryLogger;
 import org.apache.bookkeeper.bookie.EntryLocation;
 import org.apache.bookkeeper.bookie.GarbageCollectionStatus;
 import org.apache.bookkeeper.bookie.GarbageCollectorThread;
@@ -99,21 +107,43 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private final GarbageCollectorThread gcThread;
 
-    // Write cache where all new entries are inserted into
-    protected volatile WriteCache writeCache;
+    // Write caches where all new entries are inserted into, one per shard. Each ledger is assigned to a shard by
+    // its id, so that the shards can be rotated and flushed independently when full. The array is replaced
+    // whenever a shard is rotated
+    protected volatile WriteCache[] writeCaches;
 
-    // Write cache that is used to swap with writeCache during flushes
-    protected volatile WriteCache writeCacheBeingFlushed;
+    // Shards whose write cache was found full by a writer, set to 1 until they get rotated
+    private final AtomicIntegerArray fullWriteCaches;
+
+    // Write caches that were rotated out during flushes and whose entries are not yet persisted in both the entry
+    // log and the locations index, from the newest to the oldest
+    protected volatile WriteCache[] writeCachesBeingFlushed;
+
+    private final WriteCache[] allWriteCaches;
+
+    // Empty write caches that can replace the current write cache, guarded by writeCacheRotationLock
+    private final ArrayDeque<WriteCache> freeWriteCaches = new ArrayDeque<>();
+    private volatile int freeWriteCachesCount;
+
+    // Rotated write caches that are not yet written in the entry log, from the oldest to the newest, guarded by
+    // writeCacheRotationLock
+    private final ArrayDeque<WriteCache> writeCachesToFlush = new ArrayDeque<>();
+
+    // Updates of the indexes for the write caches already written in the entry log, guarded by flushMutex
+    private final List<CompletableFuture<Void>> pendingIndexUpdates = new ArrayList<>();
+
+    // Set when the indexes could not be updated for a write cache, so that the newer write caches are not indexed
+    // before it is flushed again
+    private volatile boolean indexUpdateFailed = false;
 
     // Cache where we insert entries for speculative reading
-    private final ReadCache readCache;
+    private final EntryReadCache readCache;
 
     private final StampedLock writeCacheRotationLock = new StampedLock();
 
     protected final ReentrantLock flushMutex = new ReentrantLock();
 
     protected final AtomicBoolean hasFlushBeenTriggered = new AtomicBoolean(false);
-    private final AtomicBoolean isFlushOngoing = new AtomicBoolean(false);
 
     private static String dbStoragerExecutorName = "db-storage";
     private final ExecutorService executor = Executors.newSingleThreadExecutor(
@@ -124,6 +154,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 }
             });
 
+    // Executor used to write the locations of the flushed entries in the indexes, while the next write cache is
+    // being written in the entry log
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor(
+            new DefaultThreadFactory("db-storage-index"));
+
     // Executor used to for db index cleanup
     private final ScheduledExecutorService cleanupExecutor = Executors
             .newSingleThreadScheduledExecutor(new DefaultThreadFactory("db-storage-cleanup"));
@@ -135,6 +170,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     private Checkpoint lastCheckpoint = Checkpoint.MIN;
 
     private final long writeCacheMaxSize;
+    private final ByteBufAllocator allocator;
     private final long readCacheMaxSize;
     private final int readAheadCacheBatchSize;
     private final long readAheadCacheBatchBytesSize;
@@ -145,8 +181,21 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private static final long DEFAULT_MAX_THROTTLE_TIME_MILLIS = TimeUnit.SECONDS.toMillis(10);
 
+    private static final int DEFAULT_WRITE_CACHE_BUFFERS = 2;
+    // Size of the ledger id, entry id and location kept for each entry between the two stages of a flush
+    private static final int ENTRY_LOCATION_SIZE = 3 * Long.BYTES;
+
+    private static final int DEFAULT_ADAPTIVE_READ_AHEAD_MAX_BATCH_SIZE_FACTOR = 8;
+    private static final int DEFAULT_READ_AHEAD_MAX_PENDING_REQUESTS = 1024;
+    private static final int DEFAULT_READ_AHEAD_MAX_DIRECT_MEMORY_USAGE_PERCENT = 90;
+
     private final long maxReadAheadBytesSize;
 
+    // Only set when the adaptive read-ahead is enabled
+    private final AdaptiveReadAhead adaptiveReadAhead;
+    // Only set when the read-ahead is done in background
+    private final ReadAheadExecutor readAheadExecutor;
+
     private final Counter flushExecutorTime;
     private final boolean singleLedgerDirs;
 
@@ -178,8 +227,25 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 .scopeLabel("indexDir", indexBaseDir);
 
         this.writeCacheMaxSize = writeCacheSize;
-        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2);
-        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2);
+        this.allocator = allocator;
+        int writeCacheShards = Math.max(1, conf.getInt(DbLedgerStorage.WRITE_CACHE_SHARDS, 1));
+        int writeCacheBuffers = writeCacheShards * Math.max(DEFAULT_WRITE_CACHE_BUFFERS,
+                conf.getInt(DbLedgerStorage.WRITE_CACHE_BUFFERS, DEFAULT_WRITE_CACHE_BUFFERS));
+        boolean writeCacheParallelSort = DbLedgerStorage.getBooleanVariableOrDefault(conf,
+                DbLedgerStorage.WRITE_CACHE_PARALLEL_SORT, false);
+        this.allWriteCaches = new WriteCache[writeCacheBuffers];
+        for (int i = 0; i < writeCacheBuffers; i++) {
+            allWriteCaches[i] = new WriteCache(allocator, writeCacheMaxSize / writeCacheBuffers,
+                    writeCacheParallelSort);
+        }
+        // The free write caches are shared by all the shards
+        this.writeCaches = Arrays.copyOf(allWriteCaches, writeCacheShards);
+        this.fullWriteCaches = new AtomicIntegerArray(writeCacheShards);
+        this.writeCachesBeingFlushed = new WriteCache[0];
+        for (int i = writeCacheShards; i < writeCacheBuffers; i++) {
+            freeWriteCaches.add(allWriteCaches[i]);
+        }
+        this.freeWriteCachesCount = freeWriteCaches.size();
         this.singleLedgerDirs = conf.getLedgerDirs().length == 1;
 
         readCacheMaxSize = readCacheSize;
@@ -193,12 +259,13 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 DEFAULT_MAX_THROTTLE_TIME_MILLIS);
         maxThrottleTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxThrottleTimeMillis);
 
-        readCache = new ReadCache(allocator, readCacheMaxSize);
+        readCache = newReadCache(conf, allocator, readCacheMaxSize);
 
+        KeyValueStorageFactory storageFactory = DbLedgerStorage.getKeyValueStorageFactory(conf);
         ledgerIndex = new LedgerMetadataIndex(conf,
-                KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
+                storageFactory, indexBaseDir, ledgerIndexDirStatsLogger);
         entryLocationIndex = new EntryLocationIndex(conf,
-                KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
+                storageFactory, indexBaseDir, ledgerIndexDirStatsLogger, allocator);
 
         transientLedgerInfoCache = ConcurrentLongHashMap.<TransientLedgerInfo>newBuilder()
                 .expectedItems(16 * 1024)
@@ -209,17 +276,51 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 TransientLedgerInfo.LEDGER_INFO_CACHING_TIME_MINUTES, TimeUnit.MINUTES);
 
         this.entryLogger = entryLogger;
+        if (entryLogger instanceof DefaultEntryLogger) {
+            registerLedgerDeletionListener(((DefaultEntryLogger) entryLogger)::ledgerDeleted);
+        }
         gcThread = new GarbageCollectorThread(conf,
                 ledgerManager, ledgerDirsManager, this, entryLogger, ledgerIndexDirStatsLogger);
 
         dbLedgerStorageStats = new DbLedgerStorageStats(
             ledgerIndexDirStatsLogger,
-            () -> writeCache.size() + writeCacheBeingFlushed.size(),
-            () -> writeCache.count() + writeCacheBeingFlushed.count(),
+            () -> Arrays.stream(allWriteCaches).mapToLong(WriteCache::size).sum(),
+            () -> Arrays.stream(allWriteCaches).mapToLong(WriteCache::count).sum(),
             () -> readCache.size(),
             () -> readCache.count()
         );
 
+        int readAheadThreads = conf.getInt(DbLedgerStorage.READ_AHEAD_THREADS, 0);
+        if (DbLedgerStorage.getBooleanVariableOrDefault(conf, DbLedgerStorage.READ_AHEAD_CACHE_ADAPTIVE, false)) {
+            int maxReadAheadBatchSize = conf.getInt(DbLedgerStorage.READ_AHEAD_CACHE_ADAPTIVE_MAX_BATCH_SIZE,
+                    DEFAULT_ADAPTIVE_READ_AHEAD_MAX_BATCH_SIZE_FACTOR * readAheadCacheBatchSize);
+            log.info("Adaptive read-ahead enabled, max batch size: {}", maxReadAheadBatchSize);
+            adaptiveReadAhead = new AdaptiveReadAhead(readAheadCacheBatchSize, maxReadAheadBatchSize,
+                    dbLedgerStorageStats.getReadAheadWindowSizeStats(),
+                    dbLedgerStorageStats.getReadAheadWastedBytes());
+            cleanupExecutor.scheduleAtFixedRate(adaptiveReadAhead::removeStaleStates,
+                    AdaptiveReadAhead.STATE_CACHING_TIME_MILLIS, AdaptiveReadAhead.STATE_CACHING_TIME_MILLIS,
+                    TimeUnit.MILLISECONDS);
+            // The adaptive read-ahead is always done in background
+            readAheadThreads = Math.max(1, readAheadThreads);
+        } else {
+            adaptiveReadAhead = null;
+        }
+
+        if (readAheadThreads > 0) {
+            int maxPendingRequests = conf.getInt(DbLedgerStorage.READ_AHEAD_MAX_PENDING_REQUESTS,
+                    DEFAULT_READ_AHEAD_MAX_PENDING_REQUESTS);
+            int maxDirectMemoryUsagePercent = conf.getInt(DbLedgerStorage.READ_AHEAD_MAX_DIRECT_MEMORY_USAGE_PERCENT,
+                    DEFAULT_READ_AHEAD_MAX_DIRECT_MEMORY_USAGE_PERCENT);
+            log.info("Background read-ahead enabled, threads: {}, max pending requests: {}", readAheadThreads,
+                    maxPendingRequests);
+            readAheadExecutor = new ReadAheadExecutor(readAheadThreads, maxPendingRequests,
+                    maxDirectMemoryUsagePercent, dbLedgerStorageStats.getReadAheadDroppedRequests(),
+                    dbLedgerStorageStats.getReadAheadDedupedRequests());
+        } else {
+            readAheadExecutor = null;
+        }
+
         flushExecutorTime = ledgerIndexDirStatsLogger.getThreadScopedCounter("db-storage-thread-time");
 
         executor.submit(() -> {
@@ -234,6 +335,21 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
     }
 
+    private static EntryReadCache newReadCache(ServerConfiguration conf, ByteBufAllocator allocator,
+                                               long readCacheMaxSize) {
+        EntryReadCache.EvictionPolicy policy = EntryReadCache.EvictionPolicy.valueOf(
+                conf.getString(DbLedgerStorage.READ_CACHE_EVICTION_POLICY,
+                        EntryReadCache.EvictionPolicy.FIFO.name()).trim().toUpperCase());
+        log.info("Creating read cache with {} eviction policy", policy);
+        switch (policy) {
+            case SLRU:
+                return new SegmentedLruReadCache(allocator, readCacheMaxSize);
+            case FIFO:
+            default:
+                return new ReadCache(allocator, readCacheMaxSize);
+        }
+    }
+
     @Override
     public void initialize(ServerConfiguration conf, LedgerManager ledgerManager, LedgerDirsManager ledgerDirsManager,
             LedgerDirsManager indexDirsManager, StatsLogger statsLogger,
@@ -342,6 +458,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         try {
             flush();
 
+            if (readAheadExecutor != null) {
+                readAheadExecutor.shutdown();
+            }
+
             gcThread.shutdown();
             entryLogger.close();
 
@@ -351,10 +471,12 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             ledgerIndex.close();
             entryLocationIndex.close();
 
-            writeCache.close();
-            writeCacheBeingFlushed.close();
+            for (WriteCache cache : allWriteCaches) {
+                cache.close();
+            }
             readCache.close();
             executor.shutdown();
+            indexExecutor.shutdown();
 
         } catch (IOException e) {
             log.error("Error closing db storage", e);
@@ -381,26 +503,28 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return false;
         }
 
-        // We need to try to read from both write caches, since recent entries could be found in either of the two. The
-        // write caches are already thread safe on their own, here we just need to make sure we get references to both
-        // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
+        // We need to try to read from all the write caches, since recent entries could be found in any of them. The
+        // write caches are already thread safe on their own, here we just need to make sure we get references to all
+        // of them. Using an optimistic lock since the read lock is always free, unless we're rotating the caches.
         long stamp = writeCacheRotationLock.tryOptimisticRead();
-        WriteCache localWriteCache = writeCache;
-        WriteCache localWriteCacheBeingFlushed = writeCacheBeingFlushed;
+        WriteCache localWriteCache = writeCacheFor(ledgerId);
+        WriteCache[] localWriteCachesBeingFlushed = writeCachesBeingFlushed;
         if (!writeCacheRotationLock.validate(stamp)) {
             // Fallback to regular read lock approach
             stamp = writeCacheRotationLock.readLock();
             try {
-                localWriteCache = writeCache;
-                localWriteCacheBeingFlushed = writeCacheBeingFlushed;
+                localWriteCache = writeCacheFor(ledgerId);
+                localWriteCachesBeingFlushed = writeCachesBeingFlushed;
             } finally {
                 writeCacheRotationLock.unlockRead(stamp);
             }
         }
 
         boolean inCache = localWriteCache.hasEntry(ledgerId, entryId)
-             || localWriteCacheBeingFlushed.hasEntry(ledgerId, entryId)
              || readCache.hasEntry(ledgerId, entryId);
+        for (int i = 0; i < localWriteCachesBeingFlushed.length && !inCache; i++) {
+            inCache = localWriteCachesBeingFlushed[i].hasEntry(ledgerId, entryId);
+        }
 
         if (inCache) {
             return true;
@@ -486,7 +610,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         // If the stamp is 0, the lock was exclusively acquired, validation will fail, and we can skip this put.
         if (stamp != 0) {
-            inserted = writeCache.put(ledgerId, entryId, entry);
+            inserted = writeCacheFor(ledgerId).put(ledgerId, entryId, entry);
         }
 
         if (stamp == 0 || !writeCacheRotationLock.validate(stamp)) {
@@ -495,7 +619,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             // without being sure about this last entry being flushed or not.
             stamp = writeCacheRotationLock.readLock();
             try {
-                inserted = writeCache.put(ledgerId, entryId, entry);
+                inserted = writeCacheFor(ledgerId).put(ledgerId, entryId, entry);
             } finally {
                 writeCacheRotationLock.unlockRead(stamp);
             }
@@ -517,18 +641,20 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         long throttledStartTime = MathUtils.nowInNano();
         dbLedgerStorageStats.getThrottledWriteRequests().inc();
         long absoluteTimeoutNanos = System.nanoTime() + maxThrottleTimeNanos;
+        int shard = writeCacheShard(ledgerId);
 
         while (System.nanoTime() < absoluteTimeoutNanos) {
             // Write cache is full, we need to trigger a flush so that it gets rotated
-            // If the flush has already been triggered or flush has already switched the
-            // cache, we don't need to trigger another flush
-            if (!isFlushOngoing.get() && hasFlushBeenTriggered.compareAndSet(false, true)) {
+            // If the flush has already been triggered or all the write caches are already
+            // being flushed, we don't need to trigger another flush
+            fullWriteCaches.set(shard, 1);
+            if (freeWriteCachesCount > 0 && hasFlushBeenTriggered.compareAndSet(false, true)) {
                 // Trigger an early flush in background
                 log.info("Write cache is full, triggering flush");
                 executor.execute(() -> {
                         long startTime = System.nanoTime();
                         try {
-                            flush();
+                            flushWriteCacheInBackground();
                         } catch (IOException e) {
                             log.error("Error during flush", e);
                         } finally {
@@ -539,7 +665,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
             long stamp = writeCacheRotationLock.readLock();
             try {
-                if (writeCache.put(ledgerId, entryId, entry)) {
+                if (writeCacheFor(ledgerId).put(ledgerId, entryId, entry)) {
                     // We succeeded in putting the entry in write cache in the
                     recordSuccessfulEvent(dbLedgerStorageStats.getThrottledWriteStats(), throttledStartTime);
                     return;
@@ -585,18 +711,144 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return getLastEntry(ledgerId);
         }
 
-        // We need to try to read from both write caches, since recent entries could be found in either of the two. The
-        // write caches are already thread safe on their own, here we just need to make sure we get references to both
-        // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
+        ByteBuf entry = getEntryFromCaches(ledgerId, entryId);
+        if (entry != null) {
+            return entry;
+        }
+
+        // Read from main storage
+        long entryLocation = getEntryLocation(ledgerId, entryId);
+        if (entryLocation == 0) {
+            // Only a negative result while in limbo equates to unknown
+            throwIfLimbo(ledgerId);
+
+            throw new NoEntryException(ledgerId, entryId);
+        }
+
+        long readEntryStartNano = MathUtils.nowInNano();
+        try {
+            entry = entryLogger.readEntry(ledgerId, entryId, entryLocation);
+        } finally {
+            dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(
+                    MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
+        }
+
+        readCache.put(ledgerId, entryId, entry);
+        readAheadAfter(ledgerId, entryId, entryLocation, entry);
+        return entry;
+    }
+
+    /**
+     * Try to read more entries, following an entry which had to be read from the entry logs.
+     */
+    private void readAheadAfter(long ledgerId, long entryId, long entryLocation, ByteBuf entry) {
+        long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
+        int window = adaptiveReadAhead != null
+                ? adaptiveReadAhead.onCacheMiss(ledgerId, entryId)
+                : readAheadCacheBatchSize;
+        if (window > 0) {
+            if (readAheadExecutor != null) {
+                readAheadExecutor.submit(ledgerId, entryId + 1, window,
+                        () -> fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation, window));
+            } else {
+                fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation, window);
+            }
+        }
+    }
+
+    /**
+     * Read up to maxCount consecutive entries, looking them all up in the caches and the location index
+     * first, so that the entries which have to be read from the entry logs are read as one batch.
+     */
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount)
+            throws IOException, BookieException {
+        if (firstEntryId == BookieProtocol.LAST_ADD_CONFIRMED || maxCount <= 1) {
+            return Lists.newArrayList(getEntry(ledgerId, firstEntryId));
+        }
+
+        long startTime = MathUtils.nowInNano();
+        ByteBuf[] entries = new ByteBuf[maxCount];
+        long[] missedEntryIds = new long[maxCount];
+        long[] missedLocations = new long[maxCount];
+        int[] missedPositions = new int[maxCount];
+        int count = 0;
+        int missed = 0;
+        try {
+            for (; count < maxCount; count++) {
+                long entryId = firstEntryId + count;
+                ByteBuf entry = getEntryFromCaches(ledgerId, entryId);
+                if (entry != null) {
+                    entries[count] = entry;
+                    continue;
+                }
+
+                long entryLocation = getEntryLocation(ledgerId, entryId);
+                if (entryLocation == 0) {
+                    break;
+                }
+                missedEntryIds[missed] = entryId;
+                missedLocations[missed] = entryLocation;
+                missedPositions[missed] = count;
+                missed++;
+            }
+
+            if (count == 0) {
+                // Only a negative result while in limbo equates to unknown
+                throwIfLimbo(ledgerId);
+
+                throw new NoEntryException(ledgerId, firstEntryId);
+            }
+
+            if (missed > 0) {
+                ByteBuf[] readEntries;
+                long readEntryStartNano = MathUtils.nowInNano();
+                try {
+                    readEntries = entryLogger.readEntries(ledgerId, Arrays.copyOf(missedEntryIds, missed),
+                            Arrays.copyOf(missedLocations, missed));
+                } finally {
+                    dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(
+                            MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
+                }
+                for (int i = 0; i < missed; i++) {
+                    entries[missedPositions[i]] = readEntries[i];
+                    readCache.put(ledgerId, missedEntryIds[i], readEntries[i]);
+                }
+                if (missedPositions[missed - 1] == count - 1) {
+                    // the batch ended with a cache miss, read ahead past it as a single read would
+                    readAheadAfter(ledgerId, missedEntryIds[missed - 1], missedLocations[missed - 1],
+                            readEntries[missed - 1]);
+                }
+            }
+        } catch (IOException | BookieException e) {
+            for (int i = 0; i < count; i++) {
+                ReferenceCountUtil.release(entries[i]);
+            }
+            recordFailedEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+            throw e;
+        }
+
+        recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+        List<ByteBuf> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(entries[i]);
+        }
+        return result;
+    }
+
+    private ByteBuf getEntryFromCaches(long ledgerId, long entryId) {
+        // We need to try to read from all the write caches, since recent entries could be found in any of them. The
+        // write caches are already thread safe on their own, here we just need to make sure we get references to all
+        // of them. Using an optimistic lock since the read lock is always free, unless we're rotating the caches.
         long stamp = writeCacheRotationLock.tryOptimisticRead();
-        WriteCache localWriteCache = writeCache;
-        WriteCache localWriteCacheBeingFlushed = writeCacheBeingFlushed;
+        WriteCache localWriteCache = writeCacheFor(ledgerId);
+        WriteCache[] localWriteCachesBeingFlushed = writeCachesBeingFlushed;
         if (!writeCacheRotationLock.validate(stamp)) {
             // Fallback to regular read lock approach
             stamp = writeCacheRotationLock.readLock();
             try {
-                localWriteCache = writeCache;
-                localWriteCacheBeingFlushed = writeCacheBeingFlushed;
+                localWriteCache = writeCacheFor(ledgerId);
+                localWriteCachesBeingFlushed = writeCachesBeingFlushed;
             } finally {
                 writeCacheRotationLock.unlockRead(stamp);
             }
@@ -609,11 +861,13 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return entry;
         }
 
-        // If there's a flush going on, the entry might be in the flush buffer
-        entry = localWriteCacheBeingFlushed.get(ledgerId, entryId);
-        if (entry != null) {
-            dbLedgerStorageStats.getWriteCacheHitCounter().inc();
-            return entry;
+        // If there's a flush going on, the entry might be in one of the flush buffers
+        for (WriteCache writeCacheBeingFlushed : localWriteCachesBeingFlushed) {
+            entry = writeCacheBeingFlushed.get(ledgerId, entryId);
+            if (entry != null) {
+                dbLedgerStorageStats.getWriteCacheHitCounter().inc();
+                return entry;
+            }
         }
 
         dbLedgerStorageStats.getWriteCacheMissCounter().inc();
@@ -626,41 +880,23 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
 
         dbLedgerStorageStats.getReadCacheMissCounter().inc();
+        return null;
+    }
 
-        // Read from main storage
-        long entryLocation;
+    /**
+     * @return the location of the entry in the entry logs, or 0 if the entry is not in the index
+     */
+    private long getEntryLocation(long ledgerId, long entryId) throws IOException {
         long locationIndexStartNano = MathUtils.nowInNano();
         try {
-            entryLocation = entryLocationIndex.getLocation(ledgerId, entryId);
-            if (entryLocation == 0) {
-                // Only a negative result while in limbo equates to unknown
-                throwIfLimbo(ledgerId);
-
-                throw new NoEntryException(ledgerId, entryId);
-            }
+            return entryLocationIndex.getLocation(ledgerId, entryId);
         } finally {
             dbLedgerStorageStats.getReadFromLocationIndexTime().addLatency(
                     MathUtils.elapsedNanos(locationIndexStartNano), TimeUnit.NANOSECONDS);
         }
-
-        long readEntryStartNano = MathUtils.nowInNano();
-        try {
-            entry = entryLogger.readEntry(ledgerId, entryId, entryLocation);
-        } finally {
-            dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(
-                    MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
-        }
-
-        readCache.put(ledgerId, entryId, entry);
-
-        // Try to read more entries
-        long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
-        fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation);
-
-        return entry;
     }
 
-    private void fillReadAheadCache(long originalLedgerId, long firstEntryId, long firstEntryLocation) {
+    private void fillReadAheadCache(long originalLedgerId, long firstEntryId, long firstEntryLocation, int window) {
         long readAheadStartNano = MathUtils.nowInNano();
         int count = 0;
         long size = 0;
@@ -670,7 +906,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             long currentEntryLogId = firstEntryLogId;
             long currentEntryLocation = firstEntryLocation;
 
-            while (chargeReadAheadCache(count, size) && currentEntryLogId == firstEntryLogId) {
+            while (currentEntryLogId == firstEntryLogId && (adaptiveReadAhead != null
+                    ? chargeAdaptiveReadAheadCache(count, size, window)
+                    : chargeReadAheadCache(count, size))) {
                 ByteBuf entry = entryLogger.readEntry(originalLedgerId,
                         firstEntryId, currentEntryLocation);
 
@@ -701,6 +939,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 log.debug("Exception during read ahead for ledger: {}: e", originalLedgerId, e);
             }
         } finally {
+            if (adaptiveReadAhead != null) {
+                adaptiveReadAhead.onReadAheadCompleted(originalLedgerId, firstEntryId, size);
+            }
             dbLedgerStorageStats.getReadAheadBatchCountStats().registerSuccessfulValue(count);
             dbLedgerStorageStats.getReadAheadBatchSizeStats().registerSuccessfulValue(size);
             dbLedgerStorageStats.getReadAheadTime().addLatency(
@@ -719,13 +960,24 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         return chargeSizeCondition;
     }
 
+    private boolean chargeAdaptiveReadAheadCache(int currentReadAheadCount, long currentReadAheadBytes, int window) {
+        boolean chargeSizeCondition = currentReadAheadCount < window
+                && currentReadAheadBytes < maxReadAheadBytesSize;
+        if (chargeSizeCondition && readAheadCacheBatchBytesSize > 0) {
+            // the bytes limit grows along with the read-ahead window
+            chargeSizeCondition = currentReadAheadBytes
+                    < readAheadCacheBatchBytesSize * window / Math.max(1, readAheadCacheBatchSize);
+        }
+        return chargeSizeCondition;
+    }
+
     public ByteBuf getLastEntry(long ledgerId) throws IOException, BookieException {
         throwIfLimbo(ledgerId);
 
         long stamp = writeCacheRotationLock.readLock();
         try {
             // First try to read from the write cache of recent entries
-            ByteBuf entry = writeCache.getLastEntry(ledgerId);
+            ByteBuf entry = writeCacheFor(ledgerId).getLastEntry(ledgerId);
             if (entry != null) {
                 if (log.isDebugEnabled()) {
                     long foundLedgerId = entry.readLong(); // ledgerId
@@ -741,20 +993,23 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 return entry;
             }
 
-            // If there's a flush going on, the entry might be in the flush buffer
-            entry = writeCacheBeingFlushed.getLastEntry(ledgerId);
-            if (entry != null) {
-                if (log.isDebugEnabled()) {
-                    entry.readLong(); // ledgerId
-                    long entryId = entry.readLong();
-                    entry.resetReaderIndex();
+            // If there's a flush going on, the entry might be in the flush buffers, the newest ones come first
+            for (WriteCache writeCacheBeingFlushed : writeCachesBeingFlushed) {
+                entry = writeCacheBeingFlushed.getLastEntry(ledgerId);
+                if (entry != null) {
                     if (log.isDebugEnabled()) {
-                        log.debug("Found last entry for ledger {} in write cache being flushed: {}", ledgerId, entryId);
+                        entry.readLong(); // ledgerId
+                        long entryId = entry.readLong();
+                        entry.resetReaderIndex();
+                        if (log.isDebugEnabled()) {
+                            log.debug("Found last entry for ledger {} in write cache being flushed: {}", ledgerId,
+                                    entryId);
+                        }
                     }
-                }
 
-                dbLedgerStorageStats.getWriteCacheHitCounter().inc();
-                return entry;
+                    dbLedgerStorageStats.getWriteCacheHitCounter().inc();
+                    return entry;
+                }
             }
         } finally {
             writeCacheRotationLock.unlockRead(stamp);
@@ -784,7 +1039,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     boolean isFlushRequired() {
         long stamp = writeCacheRotationLock.readLock();
         try {
-            return !writeCache.isEmpty();
+            return !isWriteCacheEmpty();
         } finally {
             writeCacheRotationLock.unlockRead(stamp);
         }
@@ -809,50 +1064,34 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
 
         try {
-            if (writeCache.isEmpty()) {
+            if (isWriteCacheEmpty() && writeCachesBeingFlushed.length == 0) {
                 return;
             }
-            // Swap the write cache so that writes can continue to happen while the flush is
-            // ongoing
-            swapWriteCache();
 
-            long sizeToFlush = writeCacheBeingFlushed.size();
+            long sizeToFlush = Arrays.stream(allWriteCaches).mapToLong(WriteCache::size).sum();
             if (log.isDebugEnabled()) {
-                log.debug("Flushing entries. count: {} -- size {} Mb", writeCacheBeingFlushed.count(),
+                log.debug("Flushing entries. count: {} -- size {} Mb",
+                        Arrays.stream(allWriteCaches).mapToLong(WriteCache::count).sum(),
                         sizeToFlush / 1024.0 / 1024);
             }
 
-            // Write all the pending entries into the entry logger and collect the offset
-            // position for each entry
-
-            Batch batch = entryLocationIndex.newBatch();
-            writeCacheBeingFlushed.forEach((ledgerId, entryId, entry) -> {
-                long location = entryLogger.addEntry(ledgerId, entry);
-                entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
-            });
-
-            long entryLoggerStart = MathUtils.nowInNano();
-            entryLogger.flush();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
-
-            long batchFlushStartTime = MathUtils.nowInNano();
-            batch.flush();
-            batch.close();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
-            if (log.isDebugEnabled()) {
-                log.debug("DB batch flushed time : {} s",
-                        MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+            // Rotate the write caches of all the shards so that writes can continue to happen
+            // while the flush is ongoing. All of them are then included in this checkpoint
+            for (int shard = 0; shard < writeCaches.length; shard++) {
+                if (!writeCaches[shard].isEmpty() && !rotateWriteCache(shard)) {
+                    // All the write caches are being flushed, wait for them to be persisted before
+                    // rotating this one
+                    flushWriteCachesToEntryLog();
+                    awaitIndexUpdates();
+                    checkState(rotateWriteCache(shard), "No write cache available after flushing all of them");
+                }
             }
 
-            long ledgerIndexStartTime = MathUtils.nowInNano();
-            ledgerIndex.flush();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLedgerIndexStats(), ledgerIndexStartTime);
+            flushWriteCachesToEntryLog();
+            awaitIndexUpdates();
 
             lastCheckpoint = thisCheckpoint;
 
-            // Discard all the entry from the write cache, since they're now persisted
-            writeCacheBeingFlushed.clear();
-
             double flushTimeSeconds = MathUtils.elapsedNanos(startTime) / (double) TimeUnit.SECONDS.toNanos(1);
             double flushThroughput = sizeToFlush / 1024.0 / 1024.0 / flushTimeSeconds;
 
@@ -868,47 +1107,322 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             throw e;
         } finally {
             try {
-                cleanupExecutor.execute(() -> {
-                    // There can only be one single cleanup task running because the cleanupExecutor
-                    // is single-threaded
-                    try {
-                        if (log.isDebugEnabled()) {
-                            log.debug("Removing deleted ledgers from db indexes");
-                        }
-
-                        entryLocationIndex.removeOffsetFromDeletedLedgers();
-                        ledgerIndex.removeDeletedLedgers();
-                    } catch (Throwable t) {
-                        log.warn("Failed to cleanup db indexes", t);
-                    }
-                });
+                scheduleIndexesCleanup();
+            } finally {
+                flushMutex.unlock();
+            }
+        }
+    }
 
-                isFlushOngoing.set(false);
+    /**
+     * Rotate the write caches found full by the writers and write the rotated write caches into the entry log,
+     * without waiting for their locations to be written in the indexes.
+     *
+     * <p>This is used when a write cache is full, to free a write cache for the writers as soon as possible. The
+     * shards that are not full keep accepting writes in their current write cache. No checkpoint is recorded here,
+     * the journal is trimmed by the next flush of the sync thread.
+     */
+    protected void flushWriteCacheInBackground() throws IOException {
+        flushMutex.lock();
+        try {
+            for (int shard = 0; shard < fullWriteCaches.length(); shard++) {
+                if (fullWriteCaches.get(shard) == 1) {
+                    rotateWriteCache(shard);
+                }
+            }
+            flushWriteCachesToEntryLog();
+        } finally {
+            try {
+                hasFlushBeenTriggered.set(false);
+                scheduleIndexesCleanup();
             } finally {
                 flushMutex.unlock();
             }
         }
     }
 
+    private int writeCacheShard(long ledgerId) {
+        int shards = writeCaches.length;
+        return shards == 1 ? 0 : MathUtils.signSafeMod(ledgerId, shards);
+    }
+
+    private WriteCache writeCacheFor(long ledgerId) {
+        WriteCache[] caches = writeCaches;
+        return caches[caches.length == 1 ? 0 : MathUtils.signSafeMod(ledgerId, caches.length)];
+    }
+
+    private boolean isWriteCacheEmpty() {
+        for (WriteCache cache : writeCaches) {
+            if (!cache.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void scheduleIndexesCleanup() {
+        cleanupExecutor.execute(() -> {
+            // There can only be one single cleanup task running because the cleanupExecutor
+            // is single-threaded
+            try {
+                if (log.isDebugEnabled()) {
+                    log.debug("Removing deleted ledgers from db indexes");
+                }
+
+                entryLocationIndex.removeOffsetFromDeletedLedgers();
+                ledgerIndex.removeDeletedLedgers();
+            } catch (Throwable t) {
+                log.warn("Failed to cleanup db indexes", t);
+            }
+        });
+    }
+
     /**
-     * Swap the current write cache with the replacement cache.
+     * Replace the current write cache of all the non-empty shards with an empty one.
+     *
+     * @return false if a shard could not be rotated, because all the other write caches are still being flushed
      */
-    private void swapWriteCache() {
+    protected boolean rotateWriteCache() {
+        boolean rotated = true;
+        for (int shard = 0; shard < writeCaches.length; shard++) {
+            if (!writeCaches[shard].isEmpty()) {
+                rotated &= rotateWriteCache(shard);
+            }
+        }
+        return rotated;
+    }
+
+    /**
+     * Replace the current write cache of a shard with an empty one, so that writes can continue to happen while it's
+     * being flushed.
+     *
+     * @return false if there is no empty write cache, because all the others are still being flushed
+     */
+    protected boolean rotateWriteCache(int shard) {
         long stamp = writeCacheRotationLock.writeLock();
         try {
-            // First, swap the current write-cache map with an empty one so that writes will
-            // go on unaffected. Only a single flush is happening at the same time
-            WriteCache tmp = writeCacheBeingFlushed;
-            writeCacheBeingFlushed = writeCache;
-            writeCache = tmp;
-
-            // Set to true before updating hasFlushBeenTriggered to false.
-            isFlushOngoing.set(true);
+            WriteCache nextWriteCache = freeWriteCaches.poll();
+            if (nextWriteCache == null) {
+                return false;
+            }
+
+            WriteCache writeCache = writeCaches[shard];
+            WriteCache[] caches = new WriteCache[writeCachesBeingFlushed.length + 1];
+            caches[0] = writeCache;
+            System.arraycopy(writeCachesBeingFlushed, 0, caches, 1, writeCachesBeingFlushed.length);
+            writeCachesBeingFlushed = caches;
+            writeCachesToFlush.add(writeCache);
+
+            WriteCache[] shards = Arrays.copyOf(writeCaches, writeCaches.length);
+            shards[shard] = nextWriteCache;
+            writeCaches = shards;
+            fullWriteCaches.set(shard, 0);
+            freeWriteCachesCount = freeWriteCaches.size();
+
             // since the cache is switched, we can allow flush to be triggered
             hasFlushBeenTriggered.set(false);
+            return true;
+        } finally {
+            writeCacheRotationLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Write all the rotated write caches into the entry log, in order. The locations of the entries of each write
+     * cache are then written in the indexes in background, while the next write cache is written in the entry log.
+     *
+     * <p>Must be called with the flushMutex held.
+     */
+    private void flushWriteCachesToEntryLog() throws IOException {
+        if (indexUpdateFailed) {
+            // Wait for the write caches queued behind the one that failed to be put back too, so that they're all
+            // flushed again in order
+            awaitIndexUpdatesQuietly();
+            indexUpdateFailed = false;
+        }
+        pendingIndexUpdates.removeIf(CompletableFuture::isDone);
+
+        WriteCache cache;
+        while ((cache = pollWriteCacheToFlush()) != null) {
+            ByteBuf locations = writeToEntryLog(cache);
+
+            WriteCache flushedCache = cache;
+            long queuedTime = MathUtils.nowInNano();
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            pendingIndexUpdates.add(future);
+            indexExecutor.execute(() -> {
+                if (indexUpdateFailed) {
+                    // An older write cache is going to be written again, this one must not be indexed before it
+                    locations.release();
+                    retryWriteCacheFlush(flushedCache);
+                    future.completeExceptionally(
+                            new IOException("Indexes not updated since an older write cache failed to be indexed"));
+                    return;
+                }
+                try {
+                    dbLedgerStorageStats.getFlushIndexQueueStats().registerSuccessfulEvent(
+                            MathUtils.elapsedNanos(queuedTime), TimeUnit.NANOSECONDS);
+                    writeToIndexes(flushedCache, locations);
+                    future.complete(null);
+                } catch (Throwable t) {
+                    log.error("Error writing flushed entries into the indexes", t);
+                    indexUpdateFailed = true;
+                    future.completeExceptionally(t);
+                }
+            });
+        }
+    }
+
+    private WriteCache pollWriteCacheToFlush() {
+        long stamp = writeCacheRotationLock.writeLock();
+        try {
+            return writeCachesToFlush.poll();
+        } finally {
+            writeCacheRotationLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Put back a write cache that failed to be flushed, so that it gets flushed again before the newer ones.
+     */
+    private void retryWriteCacheFlush(WriteCache cache) {
+        long stamp = writeCacheRotationLock.writeLock();
+        try {
+            // The write caches being flushed are kept from the newest to the oldest
+            List<WriteCache> rotationOrder = Arrays.asList(writeCachesBeingFlushed);
+            WriteCache[] caches = writeCachesToFlush.toArray(new WriteCache[writeCachesToFlush.size() + 1]);
+            caches[caches.length - 1] = cache;
+            Arrays.sort(caches, Comparator.comparingInt(c -> -rotationOrder.indexOf(c)));
+            writeCachesToFlush.clear();
+            writeCachesToFlush.addAll(Arrays.asList(caches));
+        } finally {
+            writeCacheRotationLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * First stage of a flush: write all the entries of a write cache into the entry log.
+     *
+     * @return the ledger id, entry id and location of each of the entries written
+     */
+    private ByteBuf writeToEntryLog(WriteCache cache) throws IOException {
+        long startTime = MathUtils.nowInNano();
+        ByteBuf locations = allocator.directBuffer(
+                (int) Math.min(cache.count() * ENTRY_LOCATION_SIZE, Integer.MAX_VALUE));
+        try {
+            // Write all the pending entries into the entry logger and collect the offset
+            // position for each entry
+            cache.forEach((ledgerId, entryId, entry) -> {
+                long location = entryLogger.addEntry(ledgerId, entry);
+                locations.writeLong(ledgerId);
+                locations.writeLong(entryId);
+                locations.writeLong(location);
+            });
+
+            long entryLoggerStart = MathUtils.nowInNano();
+            entryLogger.flush();
+            recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
+            recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStageStats(), startTime);
+            return locations;
+        } catch (IOException | RuntimeException e) {
+            locations.release();
+            retryWriteCacheFlush(cache);
+            recordFailedEvent(dbLedgerStorageStats.getFlushEntryLogStageStats(), startTime);
+            throw e;
+        }
+    }
+
+    /**
+     * Second stage of a flush: write the locations of the entries of a write cache in the indexes. The write cache
+     * can then be reused once its entries are persisted.
+     */
+    private void writeToIndexes(WriteCache cache, ByteBuf locations) throws IOException {
+        long startTime = MathUtils.nowInNano();
+        Batch batch = entryLocationIndex.newBatch();
+        try {
+            while (locations.isReadable()) {
+                long ledgerId = locations.readLong();
+                long entryId = locations.readLong();
+                long location = locations.readLong();
+                entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
+            }
+
+            long batchFlushStartTime = MathUtils.nowInNano();
+            batch.flush();
+            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
+            if (log.isDebugEnabled()) {
+                log.debug("DB batch flushed time : {} s",
+                        MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+            }
+
+            long ledgerIndexStartTime = MathUtils.nowInNano();
+            ledgerIndex.flush();
+            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLedgerIndexStats(), ledgerIndexStartTime);
+        } catch (IOException | RuntimeException e) {
+            // The entries will be written again in the entry log by the next flush
+            retryWriteCacheFlush(cache);
+            recordFailedEvent(dbLedgerStorageStats.getFlushIndexStageStats(), startTime);
+            throw e;
+        } finally {
+            batch.close();
+            locations.release();
+        }
+
+        // Discard all the entry from the write cache, since they're now persisted
+        cache.clear();
+        long stamp = writeCacheRotationLock.writeLock();
+        try {
+            WriteCache[] caches = new WriteCache[writeCachesBeingFlushed.length - 1];
+            int i = 0;
+            for (WriteCache c : writeCachesBeingFlushed) {
+                if (c != cache) {
+                    caches[i++] = c;
+                }
+            }
+            writeCachesBeingFlushed = caches;
+            freeWriteCaches.add(cache);
+            freeWriteCachesCount = freeWriteCaches.size();
         } finally {
             writeCacheRotationLock.unlockWrite(stamp);
         }
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushIndexStageStats(), startTime);
+    }
+
+    /**
+     * Wait for the locations of all the write caches already written in the entry log to be written in the indexes.
+     *
+     * <p>Must be called with the flushMutex held.
+     */
+    private void awaitIndexUpdates() throws IOException {
+        IOException exception = null;
+        for (CompletableFuture<Void> future : pendingIndexUpdates) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the indexes to be updated", e);
+            } catch (ExecutionException e) {
+                if (exception == null) {
+                    exception = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+        }
+        pendingIndexUpdates.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private void awaitIndexUpdatesQuietly() throws IOException {
+        try {
+            awaitIndexUpdates();
+        } catch (IOException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw e;
+            }
+            // The write caches that failed are flushed again
+        }
     }
 
     @Override
@@ -929,7 +1443,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         // Delete entries from this ledger that are still in the write cache
         long stamp = writeCacheRotationLock.readLock();
         try {
-            writeCache.deleteLedger(ledgerId);
+            writeCacheFor(ledgerId).deleteLedger(ledgerId);
         } finally {
             writeCacheRotationLock.unlockRead(stamp);
         }
@@ -937,6 +1451,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         entryLocationIndex.delete(ledgerId);
         ledgerIndex.delete(ledgerId);
 
+        if (adaptiveReadAhead != null) {
+            adaptiveReadAhead.ledgerDeleted(ledgerId);
+        }
+
         for (int i = 0, size = ledgerDeletionListeners.size(); i < size; i++) {
             LedgerDeletionListener listener = ledgerDeletionListeners.get(i);
             listener.ledgerDeleted(ledgerId);
@@ -971,14 +1489,20 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         // the DB.
         // The easiest lightweight way to achieve this is to wait for any pending
         // flush operation to be completed before updating the index with the compacted
-        // entries, by blocking on the flushMutex.
+        // entries, by blocking on the flushMutex and waiting for the pending updates of
+        // the indexes.
         flushMutex.lock();
-        flushMutex.unlock();
+        try {
+            awaitIndexUpdates();
+        } finally {
+            flushMutex.unlock();
+        }
 
         // We don't need to keep the flush mutex locked here while updating the DB.
-        // It's fine to have a concurrent flush operation at this point, because we
-        // know that none of the entries being flushed was included in the compaction
-        // round that we are dealing with.
+        // None of the entries being flushed concurrently was included in the compaction
+        // round that we are dealing with. The writes of the index are still serialized
+        // by the index itself, since with the range encoding the entries of a ledger
+        // share records that each write reads and rewrites.
         entryLocationIndex.updateLocations(locations);
     }
 
@@ -1093,20 +1617,20 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         MutableLong numberOfEntries = new MutableLong();
 
         // Iterate over all the entries pages
-        Batch batch = entryLocationIndex.newBatch();
-        for (LedgerCache.PageEntries page: pages) {
-            try (LedgerEntryPage lep = page.getLEP()) {
-                lep.getEntries((entryId, location) -> {
-                    entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
-                    numberOfEntries.increment();
-                    return true;
-                });
+        try (Batch batch = entryLocationIndex.newBatch()) {
+            for (LedgerCache.PageEntries page: pages) {
+                try (LedgerEntryPage lep = page.getLEP()) {
+                    lep.getEntries((entryId, location) -> {
+                        entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
+                        numberOfEntries.increment();
+                        return true;
+                    });
+                }
             }
-        }
 
-        ledgerIndex.flush();
-        batch.flush();
-        batch.close();
+            ledgerIndex.flush();
+            batch.flush();
+        }
 
         return numberOfEntries.longValue();
     }
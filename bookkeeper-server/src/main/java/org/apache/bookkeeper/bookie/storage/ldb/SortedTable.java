@@ -0,0 +1,478 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import com.google.common.primitives.UnsignedBytes;
+import io.netty.util.internal.PlatformDependent;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable sorted table of key-value pairs, memory-mapped for reads.
+ *
+ * <p>File layout:
+ * <pre>
+ * [entries]  keyLength (int), valueLength (int, -1 for a deleted key), key, value -- sorted by key
+ * [ranges]   startLength (int), endLength (int), start, end -- disjoint ranges of deleted keys, sorted
+ * [index]    offset (long) of every {@link #INDEX_INTERVAL}th entry
+ * [bloom]    bloom filter bits (longs)
+ * [footer]   entryCount, rangesOffset, indexOffset, bloomOffset, bloomHashes, level, magic (longs)
+ * </pre>
+ *
+ * <p>The deleted keys and ranges hide the keys of the older tables, the entries of a table are newer than its
+ * own deleted ranges. Keys are compared as unsigned bytes, like in RocksDB. A table is shared by the readers
+ * through a reference count, and unmapped when the last reference is released.
+ */
+class SortedTable {
+
+    static final int INDEX_INTERVAL = 16;
+
+    // Value of the deleted keys
+    static final byte[] DELETED = new byte[0];
+
+    private static final long MAGIC = 0x424b534f52544142L;
+    private static final int FOOTER_SIZE = 7 * Long.BYTES;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_HASHES = 7;
+
+    // Files can be bigger than what a single buffer can map
+    private static final int REGION_SHIFT = 30;
+    private static final long REGION_SIZE = 1L << REGION_SHIFT;
+
+    private static final int ENTRY_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final File file;
+    private final MappedByteBuffer[] regions;
+    private final long entryCount;
+    private final long dataEnd;
+    private final long indexStart;
+    private final long indexCount;
+    private final long bloomOffset;
+    private final long bloomBits;
+    private final int bloomHashes;
+    private final int level;
+    private final NavigableMap<byte[], byte[]> deletedRanges;
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+
+    private SortedTable(File file, MappedByteBuffer[] regions, long size) throws IOException {
+        this.file = file;
+        this.regions = regions;
+
+        long footerOffset = size - FOOTER_SIZE;
+        if (footerOffset < 0 || getLong(footerOffset + 6 * Long.BYTES) != MAGIC) {
+            throw new IOException("Invalid sorted table " + file);
+        }
+        this.entryCount = getLong(footerOffset);
+        this.dataEnd = getLong(footerOffset + Long.BYTES);
+        this.indexStart = getLong(footerOffset + 2 * Long.BYTES);
+        this.bloomOffset = getLong(footerOffset + 3 * Long.BYTES);
+        this.bloomHashes = (int) getLong(footerOffset + 4 * Long.BYTES);
+        this.level = (int) getLong(footerOffset + 5 * Long.BYTES);
+        this.indexCount = (bloomOffset - indexStart) / Long.BYTES;
+        this.bloomBits = (footerOffset - bloomOffset) * Byte.SIZE;
+
+        // The deleted ranges are few compared to the keys, keep them on the heap
+        TreeMap<byte[], byte[]> ranges = new TreeMap<>(UnsignedBytes.lexicographicalComparator());
+        for (long pos = dataEnd; pos < indexStart; ) {
+            byte[] start = new byte[getInt(pos)];
+            byte[] end = new byte[getInt(pos + Integer.BYTES)];
+            getBytes(pos + ENTRY_HEADER_SIZE, start);
+            getBytes(pos + ENTRY_HEADER_SIZE + start.length, end);
+            ranges.put(start, end);
+            pos += ENTRY_HEADER_SIZE + start.length + end.length;
+        }
+        this.deletedRanges = Collections.unmodifiableNavigableMap(ranges);
+    }
+
+    static SortedTable open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            long size = channel.size();
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((size + REGION_SIZE - 1) >>> REGION_SHIFT)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = i * REGION_SIZE;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE, size - start));
+            }
+
+            try {
+                return new SortedTable(file, regions, size);
+            } catch (IOException e) {
+                unmap(regions);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Write a new table with the supplied entries, which must be sorted by key.
+     *
+     * @param entries the entries, with {@link #DELETED} as the value of the deleted keys
+     * @param deletedRanges the disjoint ranges (start included, end excluded) of deleted keys, sorted
+     * @param maxEntries upper bound of the number of entries, used to size the bloom filter
+     * @param level level of the table, in the engine storing it
+     */
+    static void write(File file, Iterator<Entry<byte[], byte[]>> entries,
+                      Iterable<Entry<byte[], byte[]>> deletedRanges, long maxEntries, int level) throws IOException {
+        long[] bloom = new long[(int) Math.max(1, (Math.max(1, maxEntries) * BLOOM_BITS_PER_KEY + 63) / 64)];
+        long bloomBits = bloom.length * 64L;
+        long[] index = new long[64];
+        long indexCount = 0;
+        long entryCount = 0;
+        long offset = 0;
+
+        try (FileOutputStream fos = new FileOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+            while (entries.hasNext()) {
+                Entry<byte[], byte[]> entry = entries.next();
+                byte[] key = entry.getKey();
+                byte[] value = entry.getValue();
+
+                if (entryCount % INDEX_INTERVAL == 0) {
+                    if (indexCount == index.length) {
+                        index = Arrays.copyOf(index, index.length * 2);
+                    }
+                    index[(int) indexCount++] = offset;
+                }
+
+                long hash = hash(key);
+                for (int i = 0; i < BLOOM_HASHES; i++) {
+                    long bit = bloomBit(hash, i, bloomBits);
+                    bloom[(int) (bit >>> 6)] |= 1L << (bit & 63);
+                }
+
+                out.writeInt(key.length);
+                out.writeInt(value == DELETED ? -1 : value.length);
+                out.write(key);
+                out.write(value);
+                offset += ENTRY_HEADER_SIZE + key.length + value.length;
+                entryCount++;
+            }
+
+            long dataEnd = offset;
+            for (Entry<byte[], byte[]> range : deletedRanges) {
+                byte[] start = range.getKey();
+                byte[] end = range.getValue();
+                out.writeInt(start.length);
+                out.writeInt(end.length);
+                out.write(start);
+                out.write(end);
+                offset += ENTRY_HEADER_SIZE + start.length + end.length;
+            }
+
+            long indexOffset = offset;
+            for (int i = 0; i < indexCount; i++) {
+                out.writeLong(index[i]);
+            }
+            long bloomOffset = indexOffset + indexCount * Long.BYTES;
+            for (long word : bloom) {
+                out.writeLong(word);
+            }
+
+            out.writeLong(entryCount);
+            out.writeLong(dataEnd);
+            out.writeLong(indexOffset);
+            out.writeLong(bloomOffset);
+            out.writeLong(BLOOM_HASHES);
+            out.writeLong(level);
+            out.writeLong(MAGIC);
+            out.flush();
+            fos.getChannel().force(true);
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the number of entries, including the deleted keys
+     */
+    long count() {
+        return entryCount;
+    }
+
+    int level() {
+        return level;
+    }
+
+    NavigableMap<byte[], byte[]> deletedRanges() {
+        return deletedRanges;
+    }
+
+    /**
+     * @return the deleted range including the key, or null
+     */
+    Entry<byte[], byte[]> deletedRange(byte[] key) {
+        if (deletedRanges.isEmpty()) {
+            return null;
+        }
+        Entry<byte[], byte[]> range = deletedRanges.floorEntry(key);
+        if (range != null && UnsignedBytes.lexicographicalComparator().compare(key, range.getValue()) < 0) {
+            return range;
+        } else {
+            return null;
+        }
+    }
+
+    boolean tryRetain() {
+        while (true) {
+            int cnt = refCnt.get();
+            if (cnt == 0) {
+                return false;
+            } else if (refCnt.compareAndSet(cnt, cnt + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        if (refCnt.decrementAndGet() == 0) {
+            unmap(regions);
+        }
+    }
+
+    /**
+     * @return the value associated with the key, {@link #DELETED} if the key is deleted, or null if the key is not
+     *         in the table
+     */
+    byte[] get(byte[] key) {
+        if (!mightContain(key)) {
+            return null;
+        }
+
+        long idx = lastIndexBefore(key, true);
+        if (idx < 0) {
+            return null;
+        }
+
+        for (long pos = indexOffset(idx); pos >= 0; pos = next(pos)) {
+            int c = compareKeyAt(pos, key);
+            if (c == 0) {
+                return valueAt(pos);
+            } else if (c > 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the position of the entry with the biggest key lesser than the supplied key, or -1
+     */
+    long floor(byte[] key) {
+        long idx = lastIndexBefore(key, false);
+        if (idx < 0) {
+            return -1;
+        }
+
+        long pos = indexOffset(idx);
+        while (true) {
+            long next = next(pos);
+            if (next < 0 || compareKeyAt(next, key) >= 0) {
+                return pos;
+            }
+            pos = next;
+        }
+    }
+
+    /**
+     * @return the position of the entry with the smallest key bigger or equal than the supplied key, or -1
+     */
+    long ceil(byte[] key) {
+        long idx = lastIndexBefore(key, false);
+        long pos = idx < 0 ? first() : indexOffset(idx);
+        while (pos >= 0 && compareKeyAt(pos, key) < 0) {
+            pos = next(pos);
+        }
+        return pos;
+    }
+
+    /**
+     * @return the position of the first entry, or -1 if the table is empty
+     */
+    long first() {
+        return dataEnd > 0 ? 0 : -1;
+    }
+
+    /**
+     * @return the position of the entry following the one at the supplied position, or -1
+     */
+    long next(long pos) {
+        long next = pos + ENTRY_HEADER_SIZE + getInt(pos) + Math.max(0, getInt(pos + Integer.BYTES));
+        return next < dataEnd ? next : -1;
+    }
+
+    byte[] keyAt(long pos) {
+        byte[] key = new byte[getInt(pos)];
+        getBytes(pos + ENTRY_HEADER_SIZE, key);
+        return key;
+    }
+
+    /**
+     * @return the value of the entry at the supplied position, or {@link #DELETED} if the key is deleted
+     */
+    byte[] valueAt(long pos) {
+        int keyLength = getInt(pos);
+        int valueLength = getInt(pos + Integer.BYTES);
+        if (valueLength < 0) {
+            return DELETED;
+        }
+        byte[] value = new byte[valueLength];
+        getBytes(pos + ENTRY_HEADER_SIZE + keyLength, value);
+        return value;
+    }
+
+    private long indexOffset(long idx) {
+        return getLong(indexStart + idx * Long.BYTES);
+    }
+
+    /**
+     * Binary search in the sparse index.
+     *
+     * @return the last index slot whose key is lesser (or equal, if inclusive) than the key, or -1
+     */
+    private long lastIndexBefore(byte[] key, boolean inclusive) {
+        long low = 0;
+        long high = indexCount - 1;
+        long result = -1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            int c = compareKeyAt(indexOffset(mid), key);
+            if (c < 0 || (inclusive && c == 0)) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private int compareKeyAt(long pos, byte[] key) {
+        int keyLength = getInt(pos);
+        long keyPos = pos + ENTRY_HEADER_SIZE;
+        int len = Math.min(keyLength, key.length);
+        for (int i = 0; i < len; i++) {
+            int c = UnsignedBytes.compare(getByte(keyPos + i), key[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return keyLength - key.length;
+    }
+
+    private boolean mightContain(byte[] key) {
+        long hash = hash(key);
+        for (int i = 0; i < bloomHashes; i++) {
+            long bit = bloomBit(hash, i, bloomBits);
+            if ((getLong(bloomOffset + (bit >>> 6) * Long.BYTES) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long bloomBit(long hash, int i, long bloomBits) {
+        long combined = hash + i * ((hash >>> 32) | 1);
+        return (combined & Long.MAX_VALUE) % bloomBits;
+    }
+
+    private static long hash(byte[] key) {
+        long h = 0x9E3779B97F4A7C15L ^ key.length;
+        int i = 0;
+        for (; i + Long.BYTES <= key.length; i += Long.BYTES) {
+            h = mix(h ^ ArrayUtil.getLong(key, i));
+        }
+        long tail = 0;
+        for (; i < key.length; i++) {
+            tail = tail << 8 | (key[i] & 0xff);
+        }
+        return mix(h ^ tail);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private byte getByte(long pos) {
+        return regions[(int) (pos >>> REGION_SHIFT)].get((int) (pos & (REGION_SIZE - 1)));
+    }
+
+    private int getInt(long pos) {
+        int offset = (int) (pos & (REGION_SIZE - 1));
+        if (offset + Integer.BYTES <= REGION_SIZE) {
+            return regions[(int) (pos >>> REGION_SHIFT)].getInt(offset);
+        }
+        int v = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            v = v << 8 | (getByte(pos + i) & 0xff);
+        }
+        return v;
+    }
+
+    private long getLong(long pos) {
+        int offset = (int) (pos & (REGION_SIZE - 1));
+        if (offset + Long.BYTES <= REGION_SIZE) {
+            return regions[(int) (pos >>> REGION_SHIFT)].getLong(offset);
+        }
+        long v = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            v = v << 8 | (getByte(pos + i) & 0xff);
+        }
+        return v;
+    }
+
+    private void getBytes(long pos, byte[] dst) {
+        int copied = 0;
+        while (copied < dst.length) {
+            long p = pos + copied;
+            int offset = (int) (p & (REGION_SIZE - 1));
+            int len = (int) Math.min(dst.length - copied, REGION_SIZE - offset);
+            ByteBuffer region = regions[(int) (p >>> REGION_SHIFT)].duplicate();
+            region.position(offset);
+            region.get(dst, copied, len);
+            copied += len;
+        }
+    }
+
+    private static void unmap(MappedByteBuffer[] regions) {
+        for (MappedByteBuffer region : regions) {
+            PlatformDependent.freeDirectBuffer(region);
+        }
+    }
+}
@@ -85,18 +85,30 @@ public class WriteCache implements Closeable {
 
     private final ByteBufAllocator allocator;
 
+    // Whether to sort the entries on multiple threads when iterating through them
+    private final boolean parallelSort;
+
     public WriteCache(ByteBufAllocator allocator, long maxCacheSize) {
+        this(allocator, maxCacheSize, false);
+    }
+
+    public WriteCache(ByteBufAllocator allocator, long maxCacheSize, boolean parallelSort) {
         // Default maxSegmentSize set to 1Gb
-        this(allocator, maxCacheSize, 1 * 1024 * 1024 * 1024);
+        this(allocator, maxCacheSize, 1 * 1024 * 1024 * 1024, parallelSort);
     }
 
     public WriteCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, false);
+    }
+
+    public WriteCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize, boolean parallelSort) {
         checkArgument(maxSegmentSize > 0);
 
         long alignedMaxSegmentSize = alignToPowerOfTwo(maxSegmentSize);
         checkArgument(maxSegmentSize == alignedMaxSegmentSize, "Max segment size needs to be in form of 2^n");
 
         this.allocator = allocator;
+        this.parallelSort = parallelSort;
         this.maxCacheSize = maxCacheSize;
         this.maxSegmentSize = (int) maxSegmentSize;
         this.segmentOffsetMask = maxSegmentSize - 1;
@@ -225,6 +237,7 @@ public class WriteCache implements Closeable {
             int arrayLen = entriesToSort * 4;
             if (sortedEntries == null || sortedEntries.length < arrayLen) {
                 sortedEntries = new long[(int) (arrayLen * 2)];
+                sortBuffer = null;
             }
 
             long startTime = MathUtils.nowInNano();
@@ -249,7 +262,14 @@ public class WriteCache implements Closeable {
             startTime = MathUtils.nowInNano();
 
             // Sort entries by (ledgerId, entryId) maintaining the 4 items groups
-            ArrayGroupSort.sort(sortedEntries, 0, sortedEntriesIdx);
+            if (parallelSort) {
+                if (sortBuffer == null) {
+                    sortBuffer = new long[sortedEntries.length];
+                }
+                ArrayGroupSort.parallelSort(sortedEntries, 0, sortedEntriesIdx, sortBuffer);
+            } else {
+                ArrayGroupSort.sort(sortedEntries, 0, sortedEntriesIdx);
+            }
             if (log.isDebugEnabled()) {
                 log.debug("sorting {} ms", (MathUtils.elapsedNanos(startTime) / 1e6));
             }
@@ -306,6 +326,8 @@ public class WriteCache implements Closeable {
     private final ReentrantLock sortedEntriesLock = new ReentrantLock();
     private long[] sortedEntries;
     private int sortedEntriesIdx;
+    // Scratch array of the parallel sort, as large as sortedEntries
+    private long[] sortBuffer;
 
     private static final Logger log = LoggerFactory.getLogger(WriteCache.class);
 }
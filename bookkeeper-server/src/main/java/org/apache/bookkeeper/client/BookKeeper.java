@@ -117,6 +117,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     // The stats logger for this client.
     private final StatsLogger statsLogger;
     private final BookKeeperClientStats clientStats;
+    private final Optional<ClientEntryCache> entryCache;
     private final double bookieQuarantineRatio;
 
     // Inner high priority thread for WatchTask. Disable external use.
@@ -442,6 +443,11 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         // initialize stats logger
         this.statsLogger = rootStatsLogger.scope(BookKeeperClientStats.CLIENT_SCOPE);
         this.clientStats = BookKeeperClientStats.newInstance(this.statsLogger);
+        if (conf.getClientEntryCacheMaxSizeBytes() > 0) {
+            this.entryCache = Optional.of(new ClientEntryCache(conf.getClientEntryCacheMaxSizeBytes(), statsLogger));
+        } else {
+            this.entryCache = Optional.empty();
+        }
 
         // initialize metadata driver
         try {
@@ -555,6 +561,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         internalConf = ClientInternalConf.fromConfig(conf);
         statsLogger = NullStatsLogger.INSTANCE;
         clientStats = BookKeeperClientStats.newInstance(statsLogger);
+        entryCache = Optional.empty();
         scheduler = null;
         highPriorityTaskExecutor = null;
         requestTimer = null;
@@ -1494,6 +1501,7 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
             eventLoopGroup.shutdownGracefully();
         }
         this.metadataDriver.close();
+        entryCache.ifPresent(ClientEntryCache::clear);
     }
 
     @Override
@@ -1669,6 +1677,11 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 return clientStats;
             }
 
+            @Override
+            public Optional<ClientEntryCache> getEntryCache() {
+                return entryCache;
+            }
+
             @Override
             public boolean isClientClosed() {
                 return BookKeeper.this.isClosed();
@@ -0,0 +1,223 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.net.BookieId;
+
+/**
+ * Tracks the read latency and error rate of each bookie, as exponentially weighted moving averages,
+ * to send reads to the replica expected to answer first and to time speculative reads per bookie.
+ *
+ * <p>Latency is estimated the way TCP estimates round trip times (RFC 6298): a smoothed mean plus four
+ * smoothed mean deviations bounds the latency of nearly all the reads of a bookie, which makes it
+ * the speculative read timeout of that bookie.
+ *
+ * <p>Replicas are ranked by their expected latency, scaled by the requests already pending on them and
+ * by their recent error rate, in the spirit of C3. Bookies without samples nor errors rank first, so
+ * that a new bookie gets measured. A bookie that failed reads without ever answering one is ranked as
+ * if it was as fast as the fastest measured replica, scaled by its error rate. The error rate of a
+ * bookie halves every {@link #ERROR_RATE_HALF_LIFE_NANOS} without reads, and is dropped below
+ * {@link #MIN_ERROR_RATE}, so that a bookie penalized for failing reads is eventually tried again.
+ *
+ * <p>The stats of bookies that were not read from for {@link #IDLE_BOOKIE_NANOS} are dropped, so that
+ * bookies leaving the cluster do not accumulate.
+ */
+class BookieReadLatencyTracker {
+
+    static final double LATENCY_GAIN = 0.125;
+    static final double DEVIATION_GAIN = 0.25;
+    static final double ERROR_GAIN = 0.1;
+    static final int TIMEOUT_DEVIATIONS = 4;
+    // keeps bookies that fail every read orderable among themselves
+    static final double MAX_ERROR_RATE = 0.99;
+    static final double MIN_ERROR_RATE = 0.01;
+    static final long ERROR_RATE_HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(30);
+    static final long IDLE_BOOKIE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    static final long PRUNE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final class BookieStats {
+        double latencyNanos = -1;
+        double deviationNanos = 0;
+        double errorRate = 0;
+        long lastSampleNanos;
+
+        BookieStats(long nowNanos) {
+            this.lastSampleNanos = nowNanos;
+        }
+
+        private double errorRate(long nowNanos) {
+            if (errorRate == 0) {
+                return 0;
+            }
+            double decayed = errorRate * Math.pow(0.5,
+                    (double) (nowNanos - lastSampleNanos) / ERROR_RATE_HALF_LIFE_NANOS);
+            return decayed < MIN_ERROR_RATE ? 0 : decayed;
+        }
+
+        synchronized void recordLatency(long nanos, long nowNanos) {
+            errorRate = errorRate(nowNanos);
+            lastSampleNanos = nowNanos;
+            if (latencyNanos < 0) {
+                latencyNanos = nanos;
+                deviationNanos = nanos / 2.0;
+            } else {
+                deviationNanos += DEVIATION_GAIN * (Math.abs(nanos - latencyNanos) - deviationNanos);
+                latencyNanos += LATENCY_GAIN * (nanos - latencyNanos);
+            }
+            errorRate -= ERROR_GAIN * errorRate;
+        }
+
+        synchronized void recordError(long nowNanos) {
+            errorRate = errorRate(nowNanos);
+            lastSampleNanos = nowNanos;
+            errorRate += ERROR_GAIN * (MAX_ERROR_RATE - errorRate);
+        }
+
+        synchronized double latencyNanos() {
+            return latencyNanos;
+        }
+
+        /**
+         * @param unmeasuredLatencyNanos latency assumed for a bookie that never answered a read
+         */
+        synchronized double score(long pendingRequests, double unmeasuredLatencyNanos, long nowNanos) {
+            double errorRate = errorRate(nowNanos);
+            if (latencyNanos < 0 && errorRate == 0) {
+                return 0;
+            }
+            double latency = latencyNanos < 0 ? unmeasuredLatencyNanos : latencyNanos;
+            return latency * (1 + Math.max(0, pendingRequests)) / (1 - errorRate);
+        }
+
+        synchronized boolean isIdle(long nowNanos) {
+            return nowNanos - lastSampleNanos > IDLE_BOOKIE_NANOS;
+        }
+
+        synchronized long timeoutNanos() {
+            if (latencyNanos < 0) {
+                return -1;
+            }
+            return (long) (latencyNanos + TIMEOUT_DEVIATIONS * deviationNanos);
+        }
+    }
+
+    private final ConcurrentHashMap<BookieId, BookieStats> bookies = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+    private final AtomicLong lastPruneNanos;
+
+    BookieReadLatencyTracker() {
+        this(MathUtils::nowInNano);
+    }
+
+    @VisibleForTesting
+    BookieReadLatencyTracker(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.lastPruneNanos = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    private BookieStats stats(BookieId bookie, long nowNanos) {
+        pruneIdleBookies(nowNanos);
+        return bookies.computeIfAbsent(bookie, b -> new BookieStats(nowNanos));
+    }
+
+    private void pruneIdleBookies(long nowNanos) {
+        long lastPrune = lastPruneNanos.get();
+        if (nowNanos - lastPrune < PRUNE_INTERVAL_NANOS || !lastPruneNanos.compareAndSet(lastPrune, nowNanos)) {
+            return;
+        }
+        bookies.values().removeIf(stats -> stats.isIdle(nowNanos));
+    }
+
+    @VisibleForTesting
+    int getNumTrackedBookies() {
+        return bookies.size();
+    }
+
+    /**
+     * Record a successful read from <i>bookie</i>.
+     */
+    void recordLatency(BookieId bookie, long latencyNanos) {
+        long nowNanos = nanoClock.getAsLong();
+        stats(bookie, nowNanos).recordLatency(latencyNanos, nowNanos);
+    }
+
+    /**
+     * Record a failed read from <i>bookie</i>.
+     */
+    void recordError(BookieId bookie) {
+        long nowNanos = nanoClock.getAsLong();
+        stats(bookie, nowNanos).recordError(nowNanos);
+    }
+
+    /**
+     * Get the time after which a read sent to <i>bookie</i> is unlikely to be answered soon.
+     *
+     * @return the timeout in milliseconds, or -1 if the bookie was never read from
+     */
+    long getSpeculativeTimeoutMillis(BookieId bookie) {
+        BookieStats stats = bookies.get(bookie);
+        long timeoutNanos = stats != null ? stats.timeoutNanos() : -1;
+        return timeoutNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(timeoutNanos);
+    }
+
+    /**
+     * Move the replica expected to answer first to the front of the read sequence <i>writeSet</i>,
+     * keeping the order of the other replicas.
+     */
+    void moveFastestReplicaFirst(List<BookieId> ensemble, DistributionSchedule.WriteSet writeSet,
+                                 BookiesHealthInfo healthInfo) {
+        long nowNanos = nanoClock.getAsLong();
+        BookieStats[] replicaStats = new BookieStats[writeSet.size()];
+        double fastestLatencyNanos = Double.MAX_VALUE;
+        for (int i = 0; i < writeSet.size(); i++) {
+            replicaStats[i] = bookies.get(ensemble.get(writeSet.get(i)));
+            double latencyNanos = replicaStats[i] != null ? replicaStats[i].latencyNanos() : -1;
+            if (latencyNanos >= 0 && latencyNanos < fastestLatencyNanos) {
+                fastestLatencyNanos = latencyNanos;
+            }
+        }
+        // without any measured replica, the failing ones are only ranked by their error rate
+        double unmeasuredLatencyNanos = fastestLatencyNanos == Double.MAX_VALUE ? 1 : Math.max(1, fastestLatencyNanos);
+
+        int fastest = 0;
+        double fastestScore = Double.MAX_VALUE;
+        for (int i = 0; i < writeSet.size(); i++) {
+            BookieId bookie = ensemble.get(writeSet.get(i));
+            BookieStats stats = replicaStats[i];
+            double score = stats != null
+                    ? stats.score(healthInfo.getBookiePendingRequests(bookie), unmeasuredLatencyNanos, nowNanos) : 0;
+            if (score < fastestScore) {
+                fastest = i;
+                fastestScore = score;
+            }
+        }
+        if (fastest > 0) {
+            writeSet.moveAndShift(fastest, 0);
+        }
+    }
+}
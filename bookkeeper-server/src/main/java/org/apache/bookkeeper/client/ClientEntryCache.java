@@ -0,0 +1,271 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.BookKeeperClientStats.CATEGORY_CLIENT;
+import static org.apache.bookkeeper.client.BookKeeperClientStats.CLIENT_SCOPE;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+
+/**
+ * Cache of the entries written by this client, so that the readers of the same client read them back
+ * without a round trip to the bookies.
+ *
+ * <p>Only entries acknowledged by an ack quorum are cached, as a ledger recovery never truncates those.
+ * The cache keeps a copy of the payload of each write, allocated with the client allocator, as the payload
+ * may wrap an array the application is free to reuse once the write completes. It hands out retained
+ * duplicates of the copy, so entries are not copied out.
+ *
+ * <p>The cache is split in multiple independent stripes, selected by hashing the (ledgerId, entryId) pair, so
+ * that the acknowledged adds of different ledgers, or of the same ledger, do not all contend on the same lock.
+ * Entries are evicted from each stripe in insertion order once the cached payloads go over the capacity of the
+ * stripe. The entries replaced or invalidated are only marked as removed in the insertion order, which is
+ * pruned once they make up half of it, so that deleting a ledger costs the number of its cached entries.
+ */
+@StatsDoc(
+    name = CLIENT_SCOPE,
+    category = CATEGORY_CLIENT,
+    help = "BookKeeper client entry cache stats"
+)
+class ClientEntryCache {
+
+    private static final long MIN_STRIPE_SIZE = 1024 * 1024;
+
+    private static final class CachedEntry {
+        final long ledgerId;
+        final long entryId;
+        final long ledgerLength;
+        final ByteBuf data;
+        // set under the write lock of the stripe once the entry is released before its eviction
+        boolean removed = false;
+
+        CachedEntry(long ledgerId, long entryId, long ledgerLength, ByteBuf data) {
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+            this.ledgerLength = ledgerLength;
+            this.data = data;
+        }
+    }
+
+    private final Stripe[] stripes;
+    private final int stripesMask;
+
+    @StatsDoc(
+        name = BookKeeperClientStats.ENTRY_CACHE_HITS,
+        help = "number of entries read from the client entry cache"
+    )
+    private final Counter hits;
+    @StatsDoc(
+        name = BookKeeperClientStats.ENTRY_CACHE_MISSES,
+        help = "number of entries looked up in the client entry cache and read from bookies"
+    )
+    private final Counter misses;
+
+    ClientEntryCache(long maxSizeBytes, StatsLogger statsLogger) {
+        this(maxSizeBytes, statsLogger, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    ClientEntryCache(long maxSizeBytes, StatsLogger statsLogger, int concurrencyLevel) {
+        int stripesCount = 1;
+        while (stripesCount < concurrencyLevel && maxSizeBytes / (stripesCount * 2L) >= MIN_STRIPE_SIZE) {
+            stripesCount *= 2;
+        }
+        this.stripes = new Stripe[stripesCount];
+        this.stripesMask = stripesCount - 1;
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = new Stripe(maxSizeBytes / stripesCount);
+        }
+        this.hits = statsLogger.getCounter(BookKeeperClientStats.ENTRY_CACHE_HITS);
+        this.misses = statsLogger.getCounter(BookKeeperClientStats.ENTRY_CACHE_MISSES);
+    }
+
+    /**
+     * Cache an acknowledged entry. The cache takes the ownership of <i>data</i>.
+     */
+    void put(long ledgerId, long entryId, long ledgerLength, ByteBuf data) {
+        Stripe stripe = getStripe(ledgerId, entryId);
+        if (data.readableBytes() > stripe.capacity) {
+            data.release();
+            return;
+        }
+        stripe.put(new CachedEntry(ledgerId, entryId, ledgerLength, data));
+    }
+
+    /**
+     * Read a cached entry into <i>entry</i>, which gets its own reference on the entry payload.
+     *
+     * @return true if the entry was cached
+     */
+    boolean read(long ledgerId, long entryId, LedgerEntryImpl entry) {
+        if (getStripe(ledgerId, entryId).read(ledgerId, entryId, entry)) {
+            hits.inc();
+            return true;
+        } else {
+            misses.inc();
+            return false;
+        }
+    }
+
+    /**
+     * Drop the cached entries of a ledger.
+     */
+    void invalidate(long ledgerId) {
+        for (Stripe stripe : stripes) {
+            stripe.invalidate(ledgerId);
+        }
+    }
+
+    /**
+     * Drop all the cached entries.
+     */
+    void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    private Stripe getStripe(long ledgerId, long entryId) {
+        long h = ledgerId * 0x9E3779B97F4A7C15L + entryId * 0xC2B2AE3D27D4EB4FL;
+        h ^= (h >>> 32);
+        h ^= (h >>> 16);
+        return stripes[(int) h & stripesMask];
+    }
+
+    private static final class Stripe {
+        private final long capacity;
+        // buffers are only released under the write lock, so a reader can retain them under the read lock
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final ConcurrentLongHashMap<ConcurrentLongHashMap<CachedEntry>> ledgers =
+                ConcurrentLongHashMap.<ConcurrentLongHashMap<CachedEntry>>newBuilder().build();
+        private final ArrayDeque<CachedEntry> insertionOrder = new ArrayDeque<>();
+        private long sizeBytes = 0;
+        // entries of the insertion order already released
+        private int removedEntries = 0;
+
+        Stripe(long capacity) {
+            this.capacity = capacity;
+        }
+
+        void put(CachedEntry entry) {
+            lock.writeLock().lock();
+            try {
+                CachedEntry previous = ledgers.computeIfAbsent(entry.ledgerId,
+                        id -> ConcurrentLongHashMap.<CachedEntry>newBuilder().expectedItems(64).build())
+                        .put(entry.entryId, entry);
+                if (previous != null) {
+                    remove(previous);
+                }
+                insertionOrder.addLast(entry);
+                sizeBytes += entry.data.readableBytes();
+
+                while (sizeBytes > capacity) {
+                    CachedEntry evicted = insertionOrder.pollFirst();
+                    if (evicted.removed) {
+                        removedEntries--;
+                        continue;
+                    }
+                    ConcurrentLongHashMap<CachedEntry> entries = ledgers.get(evicted.ledgerId);
+                    entries.remove(evicted.entryId, evicted);
+                    if (entries.isEmpty()) {
+                        ledgers.remove(evicted.ledgerId, entries);
+                    }
+                    release(evicted);
+                }
+                pruneRemovedEntries();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        boolean read(long ledgerId, long entryId, LedgerEntryImpl entry) {
+            lock.readLock().lock();
+            try {
+                ConcurrentLongHashMap<CachedEntry> entries = ledgers.get(ledgerId);
+                CachedEntry cached = entries != null ? entries.get(entryId) : null;
+                if (cached == null) {
+                    return false;
+                }
+                entry.setLength(cached.ledgerLength);
+                entry.setEntryBuf(cached.data.retainedDuplicate());
+                return true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void invalidate(long ledgerId) {
+            if (!ledgers.containsKey(ledgerId)) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                ConcurrentLongHashMap<CachedEntry> entries = ledgers.remove(ledgerId);
+                if (entries != null) {
+                    entries.forEach((entryId, entry) -> remove(entry));
+                    pruneRemovedEntries();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void clear() {
+            lock.writeLock().lock();
+            try {
+                insertionOrder.forEach(entry -> {
+                    if (!entry.removed) {
+                        release(entry);
+                    }
+                });
+                insertionOrder.clear();
+                ledgers.clear();
+                removedEntries = 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void remove(CachedEntry entry) {
+            entry.removed = true;
+            removedEntries++;
+            release(entry);
+        }
+
+        private void pruneRemovedEntries() {
+            if (removedEntries > insertionOrder.size() / 2) {
+                insertionOrder.removeIf(entry -> entry.removed);
+                removedEntries = 0;
+            }
+        }
+
+        private void release(CachedEntry entry) {
+            sizeBytes -= entry.data.readableBytes();
+            entry.data.release();
+        }
+    }
+}
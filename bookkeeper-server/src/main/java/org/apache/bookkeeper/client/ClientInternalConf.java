@@ -33,6 +33,8 @@ class ClientInternalConf {
 
     final Optional<SpeculativeRequestExecutionPolicy> readSpeculativeRequestPolicy;
     final Optional<SpeculativeRequestExecutionPolicy> readLACSpeculativeRequestPolicy;
+    // null unless latency aware reads are enabled
+    final BookieReadLatencyTracker readLatencyTracker;
 
     final int explicitLacInterval;
     final long waitForWriteSetMs;
@@ -85,7 +87,16 @@ class ClientInternalConf {
         this.enableStickyReads = conf.isStickyReadsEnabled();
         this.enforceMinNumFaultDomainsForWrite = conf.getEnforceMinNumFaultDomainsForWrite();
 
-        if (conf.getFirstSpeculativeReadTimeout() > 0) {
+        this.readLatencyTracker = conf.isLatencyAwareReadsEnabled() ? new BookieReadLatencyTracker() : null;
+        if (conf.getFirstSpeculativeReadTimeout() > 0 && readLatencyTracker != null) {
+            this.readSpeculativeRequestPolicy =
+                    Optional.of(new LatencyAwareSpeculativeRequestExecutionPolicy(
+                                        readLatencyTracker,
+                                        conf.getLatencyAwareMinSpeculativeReadTimeout(),
+                                        conf.getFirstSpeculativeReadTimeout(),
+                                        conf.getMaxSpeculativeReadTimeout(),
+                                        conf.getSpeculativeReadTimeoutBackoffMultiplier()));
+        } else if (conf.getFirstSpeculativeReadTimeout() > 0) {
             this.readSpeculativeRequestPolicy =
                     Optional.of(new DefaultSpeculativeRequestExecutionPolicy(
                                         conf.getFirstSpeculativeReadTimeout(),
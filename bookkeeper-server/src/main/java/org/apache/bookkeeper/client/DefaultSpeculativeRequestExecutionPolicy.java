@@ -70,7 +70,28 @@ public class DefaultSpeculativeRequestExecutionPolicy implements SpeculativeRequ
     @Override
     public ScheduledFuture<?> initiateSpeculativeRequest(final ScheduledExecutorService scheduler,
             final SpeculativeRequestExecutor requestExecutor) {
-        return scheduleSpeculativeRead(scheduler, requestExecutor, firstSpeculativeRequestTimeout);
+        return scheduleSpeculativeRead(scheduler, requestExecutor, firstRequestTimeout(requestExecutor));
+    }
+
+    /**
+     * Get the time to wait before issuing the first speculative request.
+     *
+     * @param requestExecutor the executor of the request
+     * @return the timeout in milliseconds
+     */
+    protected int firstRequestTimeout(SpeculativeRequestExecutor requestExecutor) {
+        return firstSpeculativeRequestTimeout;
+    }
+
+    /**
+     * Get the time to wait before issuing the next speculative request.
+     *
+     * @param requestExecutor the executor of the request
+     * @param previousRequestTimeout the time waited before issuing the previous speculative request
+     * @return the timeout in milliseconds
+     */
+    protected int nextRequestTimeout(SpeculativeRequestExecutor requestExecutor, int previousRequestTimeout) {
+        return Math.min(maxSpeculativeRequestTimeout, Math.round((float) previousRequestTimeout * backoffMultiplier));
     }
 
     private ScheduledFuture<?> scheduleSpeculativeRead(final ScheduledExecutorService scheduler,
@@ -87,8 +108,7 @@ public class DefaultSpeculativeRequestExecutionPolicy implements SpeculativeRequ
                         public void onSuccess(Boolean issueNextRequest) {
                             if (issueNextRequest) {
                                 scheduleSpeculativeRead(scheduler, requestExecutor,
-                                        Math.min(maxSpeculativeRequestTimeout,
-                                        Math.round((float) speculativeRequestTimeout * backoffMultiplier)));
+                                        nextRequestTimeout(requestExecutor, speculativeRequestTimeout));
                             } else {
                                 if (LOG.isTraceEnabled()) {
                                     LOG.trace("Stopped issuing speculative requests for {}, "
@@ -0,0 +1,68 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import org.apache.bookkeeper.net.BookieId;
+
+/**
+ * A {@link SpeculativeRequestExecutionPolicy} that waits, before backing up a request, for as long as
+ * the bookie the request was sent to usually takes to answer.
+ *
+ * <p>The timeouts come from the latency observed on each bookie by a {@link BookieReadLatencyTracker},
+ * bounded by {@code minSpeculativeRequestTimeout} and {@code maxSpeculativeRequestTimeout}. The floor keeps
+ * a bookie that answers within a millisecond from having every late read backed up. The policy falls
+ * back to the backoff of {@link DefaultSpeculativeRequestExecutionPolicy} for bookies that were never
+ * read from.
+ */
+class LatencyAwareSpeculativeRequestExecutionPolicy extends DefaultSpeculativeRequestExecutionPolicy {
+
+    private final BookieReadLatencyTracker latencyTracker;
+    private final int minSpeculativeRequestTimeout;
+
+    LatencyAwareSpeculativeRequestExecutionPolicy(BookieReadLatencyTracker latencyTracker,
+                                                  int minSpeculativeRequestTimeout,
+                                                  int firstSpeculativeRequestTimeout,
+                                                  int maxSpeculativeRequestTimeout,
+                                                  float backoffMultiplier) {
+        super(firstSpeculativeRequestTimeout, maxSpeculativeRequestTimeout, backoffMultiplier);
+        this.latencyTracker = latencyTracker;
+        this.minSpeculativeRequestTimeout = Math.max(1, minSpeculativeRequestTimeout);
+    }
+
+    @Override
+    protected int firstRequestTimeout(SpeculativeRequestExecutor requestExecutor) {
+        return bookieRequestTimeout(requestExecutor, super.firstRequestTimeout(requestExecutor));
+    }
+
+    @Override
+    protected int nextRequestTimeout(SpeculativeRequestExecutor requestExecutor, int previousRequestTimeout) {
+        return bookieRequestTimeout(requestExecutor, super.nextRequestTimeout(requestExecutor, previousRequestTimeout));
+    }
+
+    private int bookieRequestTimeout(SpeculativeRequestExecutor requestExecutor, int defaultTimeout) {
+        BookieId bookie = requestExecutor.getLastRequestTarget();
+        long timeout = bookie != null ? latencyTracker.getSpeculativeTimeoutMillis(bookie) : -1;
+        if (timeout < 0) {
+            return defaultTimeout;
+        }
+        return (int) Math.max(minSpeculativeRequestTimeout, Math.min(timeout, maxSpeculativeRequestTimeout));
+    }
+}
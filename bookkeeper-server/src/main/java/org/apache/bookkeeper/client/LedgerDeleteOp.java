@@ -74,6 +74,7 @@ class LedgerDeleteOp {
      * Initiates the operation.
      */
     public void initiate() {
+        bk.getClientCtx().getEntryCache().ifPresent(cache -> cache.invalidate(ledgerId));
         // Asynchronously delete the ledger from meta manager
         // When this completes, it will invoke the callback method below.
         bk.getLedgerManager().removeLedgerMetadata(ledgerId, Version.ANY)
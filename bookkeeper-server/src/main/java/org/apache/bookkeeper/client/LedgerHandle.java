@@ -48,10 +48,12 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallback;
 import org.apache.bookkeeper.client.AsyncCallback.AddCallbackWithLatency;
 import org.apache.bookkeeper.client.AsyncCallback.CloseCallback;
@@ -67,11 +69,15 @@ import org.apache.bookkeeper.client.SyncCallbackUtils.SyncCloseCallback;
 import org.apache.bookkeeper.client.SyncCallbackUtils.SyncReadCallback;
 import org.apache.bookkeeper.client.SyncCallbackUtils.SyncReadLastConfirmedCallback;
 import org.apache.bookkeeper.client.api.BKException.Code;
+import org.apache.bookkeeper.client.api.BatchedRecord;
+import org.apache.bookkeeper.client.api.BatchedWriter;
 import org.apache.bookkeeper.client.api.LastConfirmedAndEntry;
 import org.apache.bookkeeper.client.api.LedgerEntries;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.client.api.WriteHandle;
+import org.apache.bookkeeper.client.impl.BatchedEntryFormat;
+import org.apache.bookkeeper.client.impl.BatchedWriterImpl;
 import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
 import org.apache.bookkeeper.common.concurrent.FutureEventListener;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
@@ -102,9 +108,19 @@ public class LedgerHandle implements WriteHandle {
     private Versioned<LedgerMetadata> versionedMetadata;
     final long ledgerId;
     final ExecutorService executor;
-    long lastAddPushed;
+    volatile long lastAddPushed;
     boolean notSupportBatch;
 
+    /**
+     * The entry id the next add gets, claimed by CAS, with {@link #ADDS_CLOSED} set once the handle stops
+     * taking adds. An add gets queued on {@link #pendingAddOps} and becomes the last add pushed once the adds
+     * before it are queued, so that the pending adds stay in the order of their entry ids.
+     */
+    private volatile long addState;
+    private static final AtomicLongFieldUpdater<LedgerHandle> ADD_STATE_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LedgerHandle.class, "addState");
+    private static final long ADDS_CLOSED = Long.MIN_VALUE;
+
     private enum HandleState {
         OPEN,
         CLOSED
@@ -118,6 +134,8 @@ public class LedgerHandle implements WriteHandle {
       * This value is used by readers, the LAC protocol
       */
     volatile long lastAddConfirmed;
+    private static final AtomicLongFieldUpdater<LedgerHandle> LAST_ADD_CONFIRMED_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LedgerHandle.class, "lastAddConfirmed");
 
      /**
       * Next entryId which is expected to move forward during {@link #sendAddSuccessCallbacks() }. This is important
@@ -137,7 +155,9 @@ public class LedgerHandle implements WriteHandle {
      */
     private int stickyBookieIndex;
 
-    long length;
+    volatile long length;
+    private static final AtomicLongFieldUpdater<LedgerHandle> LENGTH_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(LedgerHandle.class, "length");
     final DigestManager macManager;
     final DistributionSchedule distributionSchedule;
     final RateLimiter throttler;
@@ -188,9 +208,11 @@ public class LedgerHandle implements WriteHandle {
         LedgerMetadata metadata = versionedMetadata.getValue();
         if (metadata.isClosed()) {
             lastAddConfirmed = lastAddPushed = metadata.getLastEntryId();
+            addState = ADDS_CLOSED | (lastAddPushed + 1);
             length = metadata.getLength();
         } else {
             lastAddConfirmed = lastAddPushed = INVALID_ENTRY_ID;
+            addState = lastAddPushed + 1;
             length = 0;
         }
 
@@ -320,22 +342,76 @@ public class LedgerHandle implements WriteHandle {
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddConfirmed() {
+    public long getLastAddConfirmed() {
         return lastAddConfirmed;
     }
 
-    synchronized void setLastAddConfirmed(long lac) {
+    void setLastAddConfirmed(long lac) {
         this.lastAddConfirmed = lac;
     }
 
+    /**
+     * Move the last add confirmed forward to <i>lac</i>, unless it is already there.
+     *
+     * @return true if the last add confirmed was advanced
+     */
+    boolean advanceLastAddConfirmed(long lac) {
+        long current;
+        while (lac > (current = lastAddConfirmed)) {
+            if (LAST_ADD_CONFIRMED_UPDATER.compareAndSet(this, current, lac)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized long getLastAddPushed() {
+    public long getLastAddPushed() {
         return lastAddPushed;
     }
 
+    /**
+     * Set the last entry pushed, and the entry id of the next add after it. This is only done while no add
+     * is being pushed: before the handle takes adds or once they are closed.
+     */
+    void setLastAddPushed(long entryId) {
+        lastAddPushed = entryId;
+        long state;
+        do {
+            state = addState;
+        } while (!ADD_STATE_UPDATER.compareAndSet(this, state, (state & ADDS_CLOSED) | (entryId + 1)));
+    }
+
+    /**
+     * Claim the entry id of a new add.
+     *
+     * @return the entry id, or {@link #INVALID_ENTRY_ID} if the handle does not take adds anymore
+     */
+    private long claimEntryId() {
+        long state;
+        do {
+            state = addState;
+            if ((state & ADDS_CLOSED) != 0) {
+                return INVALID_ENTRY_ID;
+            }
+        } while (!ADD_STATE_UPDATER.compareAndSet(this, state, state + 1));
+        return state;
+    }
+
+    /**
+     * Stop taking adds, and wait for the adds which already claimed an entry id to be queued, so that they
+     * are found on {@link #pendingAddOps}.
+     */
+    private void closeAdds() {
+        long nextEntryId = ADD_STATE_UPDATER.getAndUpdate(this, state -> state | ADDS_CLOSED) & ~ADDS_CLOSED;
+        while (lastAddPushed < nextEntryId - 1) {
+            Thread.yield();
+        }
+    }
+
     /**
      * Get the Ledger's key/password.
      *
@@ -364,7 +440,9 @@ public class LedgerHandle implements WriteHandle {
                 versionedMetadata = newMetadata;
                 LedgerMetadata metadata = versionedMetadata.getValue();
                 if (metadata.isClosed()) {
-                    lastAddConfirmed = lastAddPushed = metadata.getLastEntryId();
+                    closeAdds();
+                    lastAddConfirmed = metadata.getLastEntryId();
+                    setLastAddPushed(metadata.getLastEntryId());
                     length = metadata.getLength();
                 }
                 return true;
@@ -422,9 +500,8 @@ public class LedgerHandle implements WriteHandle {
      * @param delta
      * @return the length of the ledger after the addition
      */
-    synchronized long addToLength(long delta) {
-        this.length += delta;
-        return this.length;
+    long addToLength(long delta) {
+        return LENGTH_UPDATER.addAndGet(this, delta);
     }
 
     /**
@@ -433,7 +510,7 @@ public class LedgerHandle implements WriteHandle {
      * @return the length of the ledger in bytes
      */
     @Override
-    public synchronized long getLength() {
+    public long getLength() {
         return this.length;
     }
 
@@ -554,11 +631,13 @@ public class LedgerHandle implements WriteHandle {
                     synchronized (LedgerHandle.this) {
                         prevHandleState = handleState;
 
-                        // drain pending adds first
+                        // drain pending adds first, once no more can be queued
+                        closeAdds();
                         pendingAdds = drainPendingAddsAndAdjustLength();
 
                         // taking the length must occur after draining, as draining changes the length
-                        lastEntry = lastAddPushed = LedgerHandle.this.lastAddConfirmed;
+                        lastEntry = LedgerHandle.this.lastAddConfirmed;
+                        setLastAddPushed(lastEntry);
                         finalLength = LedgerHandle.this.length;
                         handleState = HandleState.CLOSED;
                     }
@@ -941,6 +1020,14 @@ public class LedgerHandle implements WriteHandle {
         return future;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<BatchedRecord>> readBatchedAsync(long firstEntry, long lastEntry) {
+        return readAsync(firstEntry, lastEntry).thenApply(BatchedEntryFormat::unpack);
+    }
+
     private boolean notSupportBatchRead() {
         if (!clientCtx.getConf().batchReadEnabled) {
             return true;
@@ -1205,6 +1292,16 @@ public class LedgerHandle implements WriteHandle {
         return callback;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BatchedWriter newBatchedWriter(int maxBatchBytes, int maxBatchRecords,
+                                          long maxDelayMs, ScheduledExecutorService scheduler) {
+        return new BatchedWriterImpl(this, clientCtx.getByteBufAllocator(), maxBatchBytes, maxBatchRecords,
+                maxDelayMs, scheduler);
+    }
+
     /**
      * Add entry synchronously to an open ledger. This can be used only with
      * {@link LedgerHandleAdv} returned through ledgers created with {@link
@@ -1584,20 +1681,21 @@ public class LedgerHandle implements WriteHandle {
             throttler.acquire();
         }
 
-        boolean wasClosed = false;
-        synchronized (this) {
-            // synchronized on this to ensure that
-            // the ledger isn't closed between checking and
-            // updating lastAddPushed
-            if (isHandleWritable()) {
-                long entryId = ++lastAddPushed;
-                long currentLedgerLength = addToLength(op.payload.readableBytes());
-                op.setEntryId(entryId);
-                op.setLedgerLength(currentLedgerLength);
-                pendingAddOps.add(op);
-            } else {
-                wasClosed = true;
+        // the closed flag is part of the add state, so that the ledger isn't closed between checking and
+        // claiming the entry id
+        long entryId = isHandleWritable() ? claimEntryId() : INVALID_ENTRY_ID;
+        boolean wasClosed = entryId == INVALID_ENTRY_ID;
+        if (!wasClosed) {
+            // the adds which claimed the previous entry ids are queued first, which only takes them a few
+            // instructions past their claim
+            while (lastAddPushed != entryId - 1) {
+                Thread.yield();
             }
+            long currentLedgerLength = addToLength(op.payload.readableBytes());
+            op.setEntryId(entryId);
+            op.setLedgerLength(currentLedgerLength);
+            pendingAddOps.add(op);
+            lastAddPushed = entryId;
         }
 
         if (wasClosed) {
@@ -1641,15 +1739,24 @@ public class LedgerHandle implements WriteHandle {
 
     }
 
-    synchronized void updateLastConfirmed(long lac, long len) {
-        if (lac > lastAddConfirmed) {
-            lastAddConfirmed = lac;
+    void updateLastConfirmed(long lac, long len) {
+        if (advanceLastAddConfirmed(lac)) {
             lacUpdateHitsCounter.inc();
         } else {
             lacUpdateMissesCounter.inc();
         }
-        lastAddPushed = Math.max(lastAddPushed, lac);
-        length = Math.max(length, len);
+        // a writer has always pushed past the lac it reads back, so the handle lock stays off the add and
+        // read response paths
+        if (lac > lastAddPushed) {
+            synchronized (this) {
+                if (lac > lastAddPushed) {
+                    setLastAddPushed(lac);
+                }
+            }
+        }
+        if (len > length) {
+            LENGTH_UPDATER.accumulateAndGet(this, len, Math::max);
+        }
     }
 
     /**
@@ -1846,6 +1953,18 @@ public class LedgerHandle implements WriteHandle {
             }, ctx);
             return;
         }
+        // entries written through this client are served from its entry cache without a long poll
+        Optional<ClientEntryCache> entryCache = clientCtx.getEntryCache();
+        if (entryCache.isPresent()) {
+            LedgerEntryImpl entry = LedgerEntryImpl.create(ledgerId, entryId);
+            LedgerEntry cached = entryCache.get().read(ledgerId, entryId, entry) ? new LedgerEntry(entry) : null;
+            entry.close();
+            if (cached != null) {
+                updateLastConfirmed(entryId, 0L);
+                cb.readLastConfirmedAndEntryComplete(BKException.Code.OK, getLastAddConfirmed(), cached, ctx);
+                return;
+            }
+        }
         // wait for entry <i>entryId</i>
         ReadLastConfirmedAndEntryOp.LastConfirmedAndEntryCallback innercb =
             new ReadLastConfirmedAndEntryOp.LastConfirmedAndEntryCallback() {
@@ -2111,7 +2230,7 @@ public class LedgerHandle implements WriteHandle {
             explicitLacFlushPolicy.updatePiggyBackedLac(lastAddConfirmed);
             pendingAddsSequenceHead = pendingAddOp.entryId;
             if (!writeFlags.contains(WriteFlag.DEFERRED_SYNC)) {
-                this.lastAddConfirmed = pendingAddsSequenceHead;
+                advanceLastAddConfirmed(pendingAddsSequenceHead);
             }
 
             pendingAddOp.submitCallback(BKException.Code.OK);
@@ -56,6 +56,8 @@ class PendingAddOp implements WriteCallback {
     private static final Logger LOG = LoggerFactory.getLogger(PendingAddOp.class);
 
     ByteBuf payload;
+    // reference on the payload kept for the client entry cache, until the entry is acknowledged
+    ByteBuf cachedPayload;
     ReferenceCounted toSend;
     AddCallbackWithLatency cb;
     Object ctx;
@@ -243,6 +245,14 @@ class PendingAddOp implements WriteCallback {
         checkNotNull(lh.macManager);
 
         int flags = isRecoveryAdd ? FLAG_RECOVERY_ADD | FLAG_HIGH_PRIORITY : FLAG_NONE;
+        // entries written with deferred sync are not durable once acknowledged, so they can't be cached
+        if (!isRecoveryAdd && clientCtx.getEntryCache().isPresent()
+                && !lh.writeFlags.contains(WriteFlag.DEFERRED_SYNC)) {
+            // the payload may wrap an array the application still owns, e.g. with addEntry(byte[])
+            int length = payload.readableBytes();
+            cachedPayload = clientCtx.getByteBufAllocator().buffer(length, length)
+                    .writeBytes(payload, payload.readerIndex(), length);
+        }
         this.toSend = lh.macManager.computeDigestAndPackageForSending(
                 entryId, lh.lastAddConfirmed, currentLedgerLength,
                 payload, lh.ledgerKey, flags);
@@ -403,6 +413,14 @@ class PendingAddOp implements WriteCallback {
         } else {
             clientCtx.getClientStats().getAddOpLogger().registerSuccessfulEvent(latencyNanos, TimeUnit.NANOSECONDS);
         }
+        if (cachedPayload != null) {
+            if (rc == BKException.Code.OK) {
+                clientCtx.getEntryCache().get().put(lh.ledgerId, entryId, currentLedgerLength, cachedPayload);
+            } else {
+                ReferenceCountUtil.release(cachedPayload);
+            }
+            cachedPayload = null;
+        }
         cb.addCompleteWithLatency(rc, lh, entryId, qwcLatency, ctx);
         callbackTriggered = true;
 
@@ -481,6 +499,10 @@ class PendingAddOp implements WriteCallback {
             ReferenceCountUtil.release(payload);
             payload = null;
         }
+        if (cachedPayload != null) {
+            ReferenceCountUtil.release(cachedPayload);
+            cachedPayload = null;
+        }
         cb = null;
         ctx = null;
         ensemble = null;
@@ -25,6 +25,7 @@ import io.netty.buffer.ByteBuf;
 import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.client.impl.LedgerEntriesImpl;
 import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
@@ -82,8 +83,22 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
             seq.add(entry);
             i++;
         } while (i <= endEntryId);
+        // serve what this client wrote itself from the entry cache, before any read is sent out
+        Optional<ClientEntryCache> entryCache = isRecoveryRead ? Optional.empty() : clientCtx.getEntryCache();
+        if (entryCache.isPresent()) {
+            for (SingleLedgerEntryRequest entry : seq) {
+                if (entry.completeFromCache(entryCache.get())) {
+                    // cached entries were acknowledged by an ack quorum, so they are confirmed
+                    lh.updateLastConfirmed(entry.eId, 0L);
+                    submitCallback(BKException.Code.OK);
+                }
+            }
+        }
         // read the entries.
         for (LedgerEntryRequest entry : seq) {
+            if (entry.isComplete()) {
+                continue;
+            }
             entry.read();
             if (!parallelRead && clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
                 speculativeTask = clientCtx.getConf().readSpeculativeRequestPolicy.get()
@@ -97,6 +112,17 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
         final ReadContext rctx = (ReadContext) ctx;
         final SingleLedgerEntryRequest entry = (SingleLedgerEntryRequest) rctx.entry;
 
+        BookieReadLatencyTracker latencyTracker = clientCtx.getConf().readLatencyTracker;
+        if (latencyTracker != null) {
+            if (rc == BKException.Code.OK) {
+                latencyTracker.recordLatency(rctx.to, MathUtils.elapsedNanos(rctx.sentTimeNanos));
+            } else if (rc != BKException.Code.NoSuchEntryException
+                    && rc != BKException.Code.NoSuchLedgerExistsException) {
+                // a missing entry is a valid answer, not a sign of a struggling bookie
+                latencyTracker.recordError(rctx.to);
+            }
+        }
+
         if (rc != BKException.Code.OK) {
             entry.logErrorAndReattemptRead(rctx.bookieIndex, rctx.to, "Error: " + BKException.getMessage(rc), rc);
             return;
@@ -194,6 +220,22 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
             entryImpl.close();
         }
 
+        /**
+         * Complete the read request from the client entry cache.
+         *
+         * @param entryCache the client entry cache
+         * @return true if the entry was found in the cache
+         */
+        boolean completeFromCache(ClientEntryCache entryCache) {
+            if (!entryCache.read(lh.ledgerId, eId, entryImpl)) {
+                return false;
+            }
+            complete.set(true);
+            rc = BKException.Code.OK;
+            writeSet.recycle();
+            return true;
+        }
+
         /**
          * Complete the read request from <i>host</i>.
          *
@@ -282,6 +324,7 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
     class SequenceReadRequest extends SingleLedgerEntryRequest {
         static final int NOT_FOUND = -1;
         int nextReplicaIndexToReadFrom = 0;
+        BookieId lastSentTo = null;
 
         final BitSet sentReplicas;
         final BitSet erroredReplicas;
@@ -342,6 +385,11 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
             sendNextRead();
         }
 
+        @Override
+        public synchronized BookieId getLastRequestTarget() {
+            return lastSentTo;
+        }
+
         synchronized BookieId sendNextRead() {
             if (nextReplicaIndexToReadFrom >= getLedgerMetadata().getWriteQuorumSize()) {
                 // we are done, the read has failed from all replicas, just fail the
@@ -361,6 +409,7 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
                 sendReadTo(bookieIndex, to, this);
                 sentToHosts.add(to);
                 sentReplicas.set(replica);
+                lastSentTo = to;
                 return to;
             } catch (InterruptedException ie) {
                 LOG.error("Interrupted reading entry " + this, ie);
@@ -0,0 +1,67 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.api;
+
+import io.netty.buffer.ByteBuf;
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+
+/**
+ * A record unpacked from an entry written by a {@link BatchedWriter}.
+ *
+ * <p>The record holds a reference to the buffer of its entry, the users are responsible for calling
+ * {@link BatchedRecord#close()} to release it.
+ *
+ * @since 4.18
+ */
+@Public
+@Unstable
+public interface BatchedRecord extends AutoCloseable {
+
+    /**
+     * The position of the record in the ledger.
+     *
+     * @return the position of the record
+     */
+    RecordPosition getPosition();
+
+    /**
+     * Returns the content of the record as a byte array.
+     *
+     * @return the content of the record
+     */
+    byte[] getRecordBytes();
+
+    /**
+     * Return the internal {@link ByteBuf} that contains the record payload.
+     *
+     * <p>This call doesn't change the reference count on the returned bytebuf.
+     *
+     * @return a ByteBuf which contains the data
+     */
+    ByteBuf getRecordBuffer();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,88 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.api;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+
+/**
+ * Packs many small records into the entries of a {@link WriteHandle}, to amortize the per entry
+ * cost of the write path over all the records of a batch.
+ *
+ * <p>A batch is appended to the ledger as a single entry once it is full, once it has waited for
+ * the configured delay, or when {@link #flushAsync()} is called. The records of an entry can be
+ * read back with {@link ReadHandle#readBatchedAsync(long, long)}.
+ *
+ * <p>Closing the writer flushes the pending batch, it does not close the underlying handle.
+ *
+ * @see WriteHandle#newBatchedWriter(int, int)
+ *
+ * @since 4.18
+ */
+@Public
+@Unstable
+public interface BatchedWriter extends AutoCloseable {
+
+    /**
+     * Add a record asynchronously to the current batch.
+     *
+     * @param record a bytebuf to be written. The bytebuf's reference count will be decremented by 1 after the
+     *               completable future is returned
+     * @return an handle to the result, in case of success it will return the position of the record
+     */
+    CompletableFuture<RecordPosition> writeAsync(ByteBuf record);
+
+    /**
+     * Add a record asynchronously to the current batch.
+     *
+     * @param record array of bytes to be written
+     * @return an handle to the result, in case of success it will return the position of the record
+     */
+    default CompletableFuture<RecordPosition> writeAsync(byte[] record) {
+        return writeAsync(Unpooled.wrappedBuffer(record));
+    }
+
+    /**
+     * Append the current batch to the ledger.
+     *
+     * @return an handle to the result, which completes once all the records written so far are persisted
+     */
+    CompletableFuture<Void> flushAsync();
+
+    /**
+     * Flush the pending batch and reject further writes.
+     *
+     * @return an handle to the result, which completes once all the records written are persisted
+     */
+    CompletableFuture<Void> closeAsync();
+
+    /**
+     * Flush the pending batch and reject further writes, synchronously.
+     */
+    @Override
+    default void close() throws BKException, InterruptedException {
+        FutureUtils.<Void, BKException>result(closeAsync(), BKException.HANDLER);
+    }
+}
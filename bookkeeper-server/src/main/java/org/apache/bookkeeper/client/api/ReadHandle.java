@@ -20,6 +20,7 @@
  */
 package org.apache.bookkeeper.client.api;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
 import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
@@ -62,6 +63,25 @@ public interface ReadHandle extends Handle {
         return future;
     }
 
+    /**
+     * Read the records of a sequence of entries written by a {@link BatchedWriter}, asynchronously.
+     *
+     * <p>The result fails with an {@link IllegalArgumentException} if one of the entries was not written
+     * by a batched writer. The caller is responsible for closing the returned records.
+     *
+     * @param firstEntry
+     *          id of first entry of sequence
+     * @param lastEntry
+     *          id of last entry of sequence, inclusive
+     * @return an handle to the records of the entries, in the order they were written
+     * @since 4.18
+     */
+    default CompletableFuture<List<BatchedRecord>> readBatchedAsync(long firstEntry, long lastEntry) {
+        CompletableFuture<List<BatchedRecord>> future = new CompletableFuture<>();
+        future.completeExceptionally(new UnsupportedOperationException());
+        return future;
+    }
+
     /**
      * Read a sequence of entries synchronously.
      *
@@ -0,0 +1,55 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.api;
+
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+
+/**
+ * The position of a record written by a {@link BatchedWriter}: the entry which holds the record,
+ * and the index of the record within that entry.
+ *
+ * @since 4.18
+ */
+@Public
+@Unstable
+public interface RecordPosition extends Comparable<RecordPosition> {
+
+    /**
+     * The id of the entry which holds the record.
+     *
+     * @return the id of the entry
+     */
+    long getEntryId();
+
+    /**
+     * The index of the record within its entry.
+     *
+     * @return the index of the record, starting from 0
+     */
+    int getIndex();
+
+    @Override
+    default int compareTo(RecordPosition other) {
+        int cmp = Long.compare(getEntryId(), other.getEntryId());
+        return cmp != 0 ? cmp : Integer.compare(getIndex(), other.getIndex());
+    }
+}
@@ -24,6 +24,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.nio.ByteBuffer;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
 import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
 import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
@@ -133,6 +134,37 @@ public interface WriteHandle extends ReadHandle, ForceableHandle {
         return append(Unpooled.wrappedBuffer(data, offset, length));
     }
 
+    /**
+     * Create a writer which packs small records into the entries of this ledger. A batch is appended
+     * once it is full or when the writer is flushed.
+     *
+     * @param maxBatchBytes size in bytes above which a batch is appended, it must stay below the maximum
+     *                      size of an entry
+     * @param maxBatchRecords number of records at which a batch is appended
+     * @return a batched writer on this handle
+     * @since 4.18
+     */
+    default BatchedWriter newBatchedWriter(int maxBatchBytes, int maxBatchRecords) {
+        return newBatchedWriter(maxBatchBytes, maxBatchRecords, 0, null);
+    }
+
+    /**
+     * Create a writer which packs small records into the entries of this ledger. A batch is appended
+     * once it is full, once its first record has waited for <i>maxDelayMs</i>, or when the writer is flushed.
+     *
+     * @param maxBatchBytes size in bytes above which a batch is appended, it must stay below the maximum
+     *                      size of an entry
+     * @param maxBatchRecords number of records at which a batch is appended
+     * @param maxDelayMs maximum time a record waits for its batch to fill up
+     * @param scheduler scheduler running the delayed appends
+     * @return a batched writer on this handle
+     * @since 4.18
+     */
+    default BatchedWriter newBatchedWriter(int maxBatchBytes, int maxBatchRecords,
+                                           long maxDelayMs, ScheduledExecutorService scheduler) {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Get the entry id of the last entry that has been enqueued for addition (but
      * may not have possibly been persisted to the ledger).
@@ -0,0 +1,92 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.bookkeeper.client.api.BatchedRecord;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+
+/**
+ * Framing of the entries written by a {@link BatchedWriterImpl}.
+ *
+ * <pre>
+ * +-------------+-------------+--------------+----------------+---------+-----+
+ * | magic (2B)  | version (1B)| records (4B) | length (4B)    | payload | ... |
+ * +-------------+-------------+--------------+----------------+---------+-----+
+ * </pre>
+ */
+public final class BatchedEntryFormat {
+
+    static final short MAGIC = (short) 0xBA7C;
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 2 + 1 + 4;
+    static final int NUM_RECORDS_OFFSET = 2 + 1;
+    static final int RECORD_HEADER_SIZE = 4;
+
+    private BatchedEntryFormat() {}
+
+    static void writeHeader(ByteBuf batch) {
+        batch.writeShort(MAGIC);
+        batch.writeByte(VERSION);
+        batch.writeInt(0);
+    }
+
+    /**
+     * Unpack the records of batched entries. The entries are released.
+     *
+     * @throws IllegalArgumentException if an entry was not written by a batched writer
+     */
+    public static List<BatchedRecord> unpack(LedgerEntries entries) {
+        List<BatchedRecord> records = new ArrayList<>();
+        try {
+            for (LedgerEntry entry : entries) {
+                unpack(entry, records);
+            }
+        } catch (RuntimeException e) {
+            records.forEach(BatchedRecord::close);
+            throw e;
+        } finally {
+            entries.close();
+        }
+        return records;
+    }
+
+    private static void unpack(LedgerEntry entry, List<BatchedRecord> records) {
+        ByteBuf buf = entry.getEntryBuffer().duplicate();
+        if (buf.readableBytes() < HEADER_SIZE || buf.readShort() != MAGIC || buf.readByte() != VERSION) {
+            throw new IllegalArgumentException("Entry " + entry.getEntryId() + " of ledger "
+                    + entry.getLedgerId() + " is not a batched entry");
+        }
+        int numRecords = buf.readInt();
+        for (int i = 0; i < numRecords; i++) {
+            int length = buf.readableBytes() >= RECORD_HEADER_SIZE ? buf.readInt() : -1;
+            if (length < 0 || length > buf.readableBytes()) {
+                throw new IllegalArgumentException("Record " + i + " of entry " + entry.getEntryId()
+                        + " of ledger " + entry.getLedgerId() + " is truncated");
+            }
+            records.add(new BatchedRecordImpl(new RecordPositionImpl(entry.getEntryId(), i),
+                    buf.readRetainedSlice(length)));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.apache.bookkeeper.client.api.BatchedRecord;
+import org.apache.bookkeeper.client.api.RecordPosition;
+
+/**
+ * A record unpacked from a batched entry.
+ */
+public class BatchedRecordImpl implements BatchedRecord {
+
+    private final RecordPosition position;
+    private ByteBuf recordBuf;
+
+    BatchedRecordImpl(RecordPosition position, ByteBuf recordBuf) {
+        this.position = position;
+        this.recordBuf = recordBuf;
+    }
+
+    @Override
+    public RecordPosition getPosition() {
+        return position;
+    }
+
+    @Override
+    public byte[] getRecordBytes() {
+        return ByteBufUtil.getBytes(recordBuf, recordBuf.readerIndex(), recordBuf.readableBytes(), false);
+    }
+
+    @Override
+    public ByteBuf getRecordBuffer() {
+        return recordBuf;
+    }
+
+    @Override
+    public void close() {
+        if (null != recordBuf) {
+            ReferenceCountUtil.release(recordBuf);
+            recordBuf = null;
+        }
+    }
+}
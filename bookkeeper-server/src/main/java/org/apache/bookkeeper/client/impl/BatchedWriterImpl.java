@@ -0,0 +1,187 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.BatchedWriter;
+import org.apache.bookkeeper.client.api.RecordPosition;
+import org.apache.bookkeeper.client.api.WriteHandle;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+
+/**
+ * Batched writer which copies the records of a batch into one buffer, framed as described in
+ * {@link BatchedEntryFormat}, and appends it to the ledger as one entry.
+ */
+public class BatchedWriterImpl implements BatchedWriter {
+
+    private final WriteHandle handle;
+    private final ByteBufAllocator allocator;
+    private final int maxBatchBytes;
+    private final int maxBatchRecords;
+    private final long maxDelayMs;
+    private final ScheduledExecutorService scheduler;
+
+    // current batch, null when no record is waiting to be appended
+    private ByteBuf batch = null;
+    private List<CompletableFuture<RecordPosition>> batchFutures = null;
+    private ScheduledFuture<?> flushFuture = null;
+    private CompletableFuture<Long> lastAppend = FutureUtils.value(-1L);
+    // first append which failed, reported by every flush that follows it
+    private Throwable firstFailure = null;
+    private boolean closed = false;
+
+    /**
+     * Create a batched writer.
+     *
+     * @param handle handle to append the batches to
+     * @param allocator allocator of the batch buffers
+     * @param maxBatchBytes size in bytes above which a batch is appended
+     * @param maxBatchRecords number of records at which a batch is appended
+     * @param maxDelayMs delay after which a batch is appended, if a scheduler is provided
+     * @param scheduler scheduler of the delayed appends, or null to only append full or flushed batches
+     */
+    public BatchedWriterImpl(WriteHandle handle, ByteBufAllocator allocator, int maxBatchBytes, int maxBatchRecords,
+                             long maxDelayMs, ScheduledExecutorService scheduler) {
+        checkArgument(maxBatchBytes > 0, "maxBatchBytes must be positive");
+        checkArgument(maxBatchRecords > 0, "maxBatchRecords must be positive");
+        this.handle = handle;
+        this.allocator = allocator;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchRecords = maxBatchRecords;
+        this.maxDelayMs = maxDelayMs;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public synchronized CompletableFuture<RecordPosition> writeAsync(ByteBuf record) {
+        if (closed) {
+            ReferenceCountUtil.release(record);
+            return FutureUtils.exception(new BKException.BKLedgerClosedException());
+        }
+
+        int recordSize = BatchedEntryFormat.RECORD_HEADER_SIZE + record.readableBytes();
+        if (batch != null && batch.readableBytes() + recordSize > maxBatchBytes) {
+            appendBatch();
+        }
+        if (batch == null) {
+            batch = allocator.buffer(
+                    Math.min(maxBatchBytes, BatchedEntryFormat.HEADER_SIZE + recordSize));
+            BatchedEntryFormat.writeHeader(batch);
+            batchFutures = new ArrayList<>();
+            if (scheduler != null && maxDelayMs > 0) {
+                final ByteBuf scheduledBatch = batch;
+                flushFuture = scheduler.schedule(() -> appendBatchIfCurrent(scheduledBatch),
+                        maxDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        batch.writeInt(record.readableBytes());
+        batch.writeBytes(record, record.readerIndex(), record.readableBytes());
+        ReferenceCountUtil.release(record);
+
+        CompletableFuture<RecordPosition> future = new CompletableFuture<>();
+        batchFutures.add(future);
+        if (batchFutures.size() >= maxBatchRecords || batch.readableBytes() >= maxBatchBytes) {
+            appendBatch();
+        }
+        return future;
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> flushAsync() {
+        if (batch != null) {
+            appendBatch();
+        }
+        // the appends of a ledger complete in order, so all the batches are done once the last one is
+        return lastAppend.handle((entryId, cause) -> {
+            Throwable failure = getFirstFailure();
+            if (failure == null) {
+                // the callbacks of the last append may not have run yet
+                failure = cause;
+            }
+            if (failure != null) {
+                throw new CompletionException(failure);
+            }
+            return null;
+        });
+    }
+
+    private synchronized Throwable getFirstFailure() {
+        return firstFailure;
+    }
+
+    private synchronized void appendFailed(Throwable cause) {
+        if (firstFailure == null) {
+            firstFailure = cause;
+        }
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> closeAsync() {
+        closed = true;
+        return flushAsync();
+    }
+
+    private synchronized void appendBatchIfCurrent(ByteBuf scheduledBatch) {
+        if (batch == scheduledBatch) {
+            appendBatch();
+        }
+    }
+
+    // appends are issued under the writer lock, so the batches get entry ids in the order of their records
+    private void appendBatch() {
+        final List<CompletableFuture<RecordPosition>> futures = batchFutures;
+        batch.setInt(BatchedEntryFormat.NUM_RECORDS_OFFSET, futures.size());
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+        ByteBuf toAppend = batch;
+        batch = null;
+        batchFutures = null;
+
+        lastAppend = handle.appendAsync(toAppend);
+        lastAppend.whenComplete((entryId, cause) -> {
+            if (cause != null) {
+                appendFailed(cause);
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                if (cause != null) {
+                    futures.get(i).completeExceptionally(cause);
+                } else {
+                    futures.get(i).complete(new RecordPositionImpl(entryId, i));
+                }
+            }
+        });
+    }
+}
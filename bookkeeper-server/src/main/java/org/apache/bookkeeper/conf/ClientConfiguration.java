@@ -114,8 +114,12 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String ENABLE_PARALLEL_RECOVERY_READ = "enableParallelRecoveryRead";
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
+    protected static final String LATENCY_AWARE_READS_ENABLED = "latencyAwareReadsEnabled";
+    protected static final String LATENCY_AWARE_MIN_SPECULATIVE_READ_TIMEOUT =
+        "latencyAwareMinSpeculativeReadTimeout";
     protected static final String STICKY_READS_ENABLED = "stickyReadSEnabled";
     protected static final String RECOVERY_BATCH_READ_ENABLED = "recoveryBatchReadEnabled";
+    protected static final String CLIENT_ENTRY_CACHE_MAX_SIZE_BYTES = "clientEntryCacheMaxSizeBytes";
     // Add Parameters
     protected static final String OPPORTUNISTIC_STRIPING = "opportunisticStriping";
     protected static final String DELAY_ENSEMBLE_CHANGE = "delayEnsembleChange";
@@ -1174,6 +1178,61 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * If latency aware reads are enabled or not.
+     *
+     * @return true if latency aware reads are enabled, otherwise false.
+     */
+    public boolean isLatencyAwareReadsEnabled() {
+        return getBoolean(LATENCY_AWARE_READS_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable latency aware reads.
+     *
+     * <p>If this flag is enabled, the client tracks the read latency and error rate of each bookie
+     * as moving averages. Entry reads are first sent to the replica expected to answer first, and
+     * speculative reads are issued once the bookie a read was sent to is late compared to its usual
+     * latency, instead of after {@link #getFirstSpeculativeReadTimeout()}. Speculative reads still have
+     * to be enabled, and their timeouts are bounded by {@link #getLatencyAwareMinSpeculativeReadTimeout()}
+     * and {@link #getMaxSpeculativeReadTimeout()}.
+     *
+     * <p>Latency aware ordering is not applied when sticky reads are enabled.
+     *
+     * @param enabled the flag to enable/disable latency aware reads.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setLatencyAwareReadsEnabled(boolean enabled) {
+        setProperty(LATENCY_AWARE_READS_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the minimum speculative read timeout used by latency aware reads.
+     *
+     * <p>The default is a tenth of {@link #getFirstSpeculativeReadTimeout()}.
+     *
+     * @return the minimum speculative read timeout in milliseconds.
+     */
+    public int getLatencyAwareMinSpeculativeReadTimeout() {
+        return getInt(LATENCY_AWARE_MIN_SPECULATIVE_READ_TIMEOUT, getFirstSpeculativeReadTimeout() / 10);
+    }
+
+    /**
+     * Set the minimum speculative read timeout used by latency aware reads.
+     *
+     * <p>When latency aware reads are enabled, a speculative read is never issued sooner than this
+     * timeout, however fast the bookie a read was sent to usually answers. This keeps bookies that
+     * answer within a millisecond from having every read that hits a GC pause or a cold cache backed up.
+     *
+     * @param timeout the minimum speculative read timeout in milliseconds.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setLatencyAwareMinSpeculativeReadTimeout(int timeout) {
+        setProperty(LATENCY_AWARE_MIN_SPECULATIVE_READ_TIMEOUT, timeout);
+        return this;
+    }
+
     /**
      * If read operation should be sticky to a single bookie or not.
      *
@@ -1219,6 +1278,31 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         setProperty(RECOVERY_BATCH_READ_ENABLED, enabled);
         return this;
     }
+
+    /**
+     * Get the capacity of the client entry cache, in bytes.
+     *
+     * <p>The entries written by this client are kept in the cache once they are acknowledged, and the
+     * reads of this client are served from it before going to the bookies.
+     *
+     * @return the capacity of the client entry cache. Default is 0, which disables the cache.
+     */
+    public long getClientEntryCacheMaxSizeBytes() {
+        return getLong(CLIENT_ENTRY_CACHE_MAX_SIZE_BYTES, 0L);
+    }
+
+    /**
+     * Set the capacity of the client entry cache, in bytes. A value of 0 disables the cache.
+     *
+     * @see #getClientEntryCacheMaxSizeBytes()
+     * @param maxSizeBytes capacity of the cache, in bytes
+     * @return client configuration
+     */
+    public ClientConfiguration setClientEntryCacheMaxSizeBytes(long maxSizeBytes) {
+        setProperty(CLIENT_ENTRY_CACHE_MAX_SIZE_BYTES, maxSizeBytes);
+        return this;
+    }
+
     /**
      * Get Ensemble Placement Policy Class.
      *
@@ -104,6 +104,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String IS_THROTTLE_BY_BYTES = "isThrottleByBytes";
     protected static final String COMPACTION_MAX_OUTSTANDING_REQUESTS = "compactionMaxOutstandingRequests";
     protected static final String COMPACTION_RATE = "compactionRate";
+    protected static final String COMPACTION_THREADS = "compactionThreads";
     protected static final String COMPACTION_RATE_BY_ENTRIES = "compactionRateByEntries";
     protected static final String COMPACTION_RATE_BY_BYTES = "compactionRateByBytes";
 
@@ -114,9 +115,11 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String GC_OVERREPLICATED_LEDGER_MAX_CONCURRENT_REQUESTS =
             "gcOverreplicatedLedgerMaxConcurrentRequests";
     protected static final String USE_TRANSACTIONAL_COMPACTION = "useTransactionalCompaction";
+    protected static final String COMPACTION_TRANSFER_ENTRIES_ENABLED = "compactionTransferEntriesEnabled";
     protected static final String VERIFY_METADATA_ON_GC = "verifyMetadataOnGC";
     protected static final String GC_ENTRYLOGMETADATA_CACHE_ENABLED = "gcEntryLogMetadataCacheEnabled";
     protected static final String GC_ENTRYLOG_METADATA_CACHE_PATH = "gcEntryLogMetadataCachePath";
+    protected static final String GC_ENTRYLOG_INCREMENTAL_CHECK_ENABLED = "gcEntryLogIncrementalCheckEnabled";
     protected static final String USE_TARGET_ENTRYLOG_SIZE_FOR_GC = "useTargetEntryLogSizeForGc";
     // Scrub Parameters
     protected static final String LOCAL_SCRUB_PERIOD = "localScrubInterval";
@@ -140,20 +143,26 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_WRITE_DATA = "journalWriteData";
     protected static final String JOURNAL_ADAPTIVE_GROUP_WRITES = "journalAdaptiveGroupWrites";
     protected static final String JOURNAL_MAX_GROUP_WAIT_MSEC = "journalMaxGroupWaitMSec";
+    protected static final String JOURNAL_ADAPTIVE_GROUP_WAIT_TARGET_LATENCY_MSEC =
+        "journalAdaptiveGroupWaitTargetLatencyMSec";
     protected static final String JOURNAL_BUFFERED_WRITES_THRESHOLD = "journalBufferedWritesThreshold";
     protected static final String JOURNAL_BUFFERED_ENTRIES_THRESHOLD = "journalBufferedEntriesThreshold";
     protected static final String JOURNAL_FLUSH_WHEN_QUEUE_EMPTY = "journalFlushWhenQueueEmpty";
     protected static final String JOURNAL_REMOVE_FROM_PAGE_CACHE = "journalRemoveFromPageCache";
     protected static final String JOURNAL_PRE_ALLOC_SIZE = "journalPreAllocSizeMB";
     protected static final String JOURNAL_WRITE_BUFFER_SIZE = "journalWriteBufferSizeKB";
+    protected static final String JOURNAL_GATHERING_WRITE_THRESHOLD_BYTES = "journalGatheringWriteThresholdBytes";
     protected static final String JOURNAL_ALIGNMENT_SIZE = "journalAlignmentSize";
     protected static final String NUM_JOURNAL_CALLBACK_THREADS = "numJournalCallbackThreads";
     protected static final String JOURNAL_FORMAT_VERSION_TO_WRITE = "journalFormatVersionToWrite";
     protected static final String JOURNAL_QUEUE_SIZE = "journalQueueSize";
+    protected static final String JOURNAL_LOCK_FREE_QUEUE_ENABLED = "journalLockFreeQueueEnabled";
+    protected static final String JOURNAL_CHANNEL_BACK_PRESSURE_ENABLED = "journalChannelBackPressureEnabled";
     protected static final String JOURNAL_MAX_MEMORY_SIZE_MB = "journalMaxMemorySizeMb";
     protected static final String JOURNAL_PAGECACHE_FLUSH_INTERVAL_MSEC = "journalPageCacheFlushIntervalMSec";
     protected static final String JOURNAL_CHANNEL_PROVIDER = "journalChannelProvider";
     protected static final String JOURNAL_REUSE_FILES = "journalReuseFiles";
+    protected static final String JOURNAL_MAX_OUTSTANDING_FORCE_WRITES = "journalMaxOutstandingForceWrites";
     // backpressure control
     protected static final String MAX_ADDS_IN_PROGRESS_LIMIT = "maxAddsInProgressLimit";
     protected static final String MAX_READS_IN_PROGRESS_LIMIT = "maxReadsInProgressLimit";
@@ -322,6 +331,20 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String ENTRY_LOG_PER_LEDGER_COUNTER_LIMITS_MULT_FACTOR =
             "entryLogPerLedgerCounterLimitsMultFactor";
 
+    /*
+     * in entryLogPerLedger feature, if it is positive, the ledgers are grouped
+     * by expected lifetime into this number of active entrylogs, instead of
+     * having an active entrylog for each ledger.
+     */
+    protected static final String ENTRY_LOG_LIFETIME_GROUPS = "entryLogLifetimeGroups";
+
+    /*
+     * in entryLogPerLedger feature with entryLogLifetimeGroups, the ledgers
+     * written for less than this time go to the first group, and each next
+     * group takes the ledgers written for up to twice as long.
+     */
+    protected static final String ENTRY_LOG_LIFETIME_GROUP_MIN_AGE_SECONDS = "entryLogLifetimeGroupMinAgeSeconds";
+
     // Perform local consistency check on bookie startup
     protected static final String LOCAL_CONSISTENCY_CHECK_ON_STARTUP = "localConsistencyCheckOnStartup";
 
@@ -344,6 +367,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         "maxOperationNumbersInSingleRocksdbWriteBatch";
 
     protected static final String SKIP_REPLAY_JOURNAL_INVALID_RECORD = "skipReplayJournalInvalidRecord";
+    protected static final String NUM_JOURNAL_REPLAY_THREADS = "numJournalReplayThreads";
 
     protected static final String MAX_BATCH_READ_SIZE = "maxBatchReadSize";
     protected static final int DEFAULT_MAX_BATCH_READ_SIZE = 5 * 1024 * 1024; // 5MB
@@ -499,6 +523,28 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get whether the compaction moves contiguous runs of live entries from file to file, without
+     * reading them into memory, when the entry logger supports it.
+     *
+     * @return whether the compaction transfers the entries between entry log files
+     */
+    public boolean isCompactionTransferEntriesEnabled() {
+        return this.getBoolean(COMPACTION_TRANSFER_ENTRIES_ENABLED, false);
+    }
+
+    /**
+     * Set whether the compaction moves contiguous runs of live entries from file to file, without
+     * reading them into memory, when the entry logger supports it.
+     *
+     * @param enabled whether the compaction transfers the entries between entry log files
+     * @return server configuration
+     */
+    public ServerConfiguration setCompactionTransferEntriesEnabled(boolean enabled) {
+        this.setProperty(COMPACTION_TRANSFER_ENTRIES_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Get whether the bookie is configured to double check prior to gc.
      *
@@ -539,6 +585,29 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get whether the garbage collector only checks the entry logs metadata against the ledgers
+     * deleted since its last run, instead of looking up every ledger of every entry log in the
+     * ledger storage. All the ledgers are still checked on the first run and on forced runs.
+     *
+     * @return whether the entry logs metadata is checked incrementally
+     */
+    public boolean isGcEntryLogIncrementalCheckEnabled() {
+        return this.getBoolean(GC_ENTRYLOG_INCREMENTAL_CHECK_ENABLED, false);
+    }
+
+    /**
+     * Set whether the garbage collector only checks the entry logs metadata against the ledgers
+     * deleted since its last run.
+     *
+     * @param enabled whether the entry logs metadata is checked incrementally
+     * @return server configuration
+     */
+    public ServerConfiguration setGcEntryLogIncrementalCheckEnabled(boolean enabled) {
+        this.setProperty(GC_ENTRYLOG_INCREMENTAL_CHECK_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Get directory to persist Entrylog metadata if
      * gcPersistentEntrylogMetadataMapEnabled is true.
@@ -863,6 +932,28 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Minimum size of the journal entries that are written straight from their buffers with a gathering write,
+     * instead of being copied in the journal write buffer.
+     *
+     * @return the gathering write threshold in bytes, 0 means the entries are always copied
+     */
+    public int getJournalGatheringWriteThresholdBytes() {
+        return this.getInt(JOURNAL_GATHERING_WRITE_THRESHOLD_BYTES, 0);
+    }
+
+    /**
+     * Set the minimum size of the journal entries that are written straight from their buffers with a gathering
+     * write. Smaller entries are copied in the journal write buffer. 0 disables gathering writes.
+     *
+     * @param thresholdBytes the gathering write threshold in bytes
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalGatheringWriteThresholdBytes(int thresholdBytes) {
+        setProperty(JOURNAL_GATHERING_WRITE_THRESHOLD_BYTES, thresholdBytes);
+        return this;
+    }
+
     /**
      * Max number of older journal files kept.
      *
@@ -948,6 +1039,54 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this.getInt(JOURNAL_QUEUE_SIZE, 10_000);
     }
 
+    /**
+     * Whether the journal uses a lock-free queue for the incoming entries. When enabled, the add threads insert
+     * the entries without taking any lock, and the journal thread drains all the available entries in a single
+     * call, parking when the queue is empty. This is ignored when busy wait is enabled, which always uses a
+     * lock-free busy-spinning queue.
+     *
+     * @return true if the journal uses a lock-free queue
+     */
+    public boolean isJournalLockFreeQueueEnabled() {
+        return this.getBoolean(JOURNAL_LOCK_FREE_QUEUE_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable the lock-free journal queue.
+     *
+     * @param enabled
+     *            whether the journal uses a lock-free queue
+     * @return server configuration.
+     */
+    public ServerConfiguration setJournalLockFreeQueueEnabled(boolean enabled) {
+        this.setProperty(JOURNAL_LOCK_FREE_QUEUE_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Whether the journal applies back-pressure on the client channels when its memory limit is reached. When
+     * enabled, the adds coming from a client channel don't block on the limit: the channel stops reading new
+     * requests instead, until the journal catches up. The journal memory can then go up to twice the limit,
+     * beyond which the adds block again.
+     *
+     * @return true if the journal pauses the client channels on its memory limit
+     */
+    public boolean isJournalChannelBackPressureEnabled() {
+        return this.getBoolean(JOURNAL_CHANNEL_BACK_PRESSURE_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable pausing the client channels when the journal memory limit is reached.
+     *
+     * @param enabled
+     *            whether the journal pauses the client channels on its memory limit
+     * @return server configuration.
+     */
+    public ServerConfiguration setJournalChannelBackPressureEnabled(boolean enabled) {
+        this.setProperty(JOURNAL_CHANNEL_BACK_PRESSURE_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Set the max amount of memory that can be used by the journal.
      *
@@ -1031,6 +1170,30 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the max number of journal force writes that can be in progress at the same time.
+     *
+     * <p>When greater than 1, a new group of entries can be force written while the previous groups are still
+     * being synced. The add requests are still acknowledged in the order they were written in the journal.
+     *
+     * @return max number of outstanding journal force writes
+     */
+    public int getJournalMaxOutstandingForceWrites() {
+        return this.getInt(JOURNAL_MAX_OUTSTANDING_FORCE_WRITES, 1);
+    }
+
+    /**
+     * Set the max number of journal force writes that can be in progress at the same time.
+     *
+     * @param maxOutstandingForceWrites
+     *          max number of outstanding journal force writes
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalMaxOutstandingForceWrites(int maxOutstandingForceWrites) {
+        setProperty(JOURNAL_MAX_OUTSTANDING_FORCE_WRITES, maxOutstandingForceWrites);
+        return this;
+    }
+
     /**
      * Get max number of adds in progress. 0 == unlimited.
      *
@@ -2364,6 +2527,30 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the p99 add latency targeted by the journal when tuning the group wait time. When set, the journal
+     * adjusts the time it waits to group writes, between a small minimum and {@link #getJournalMaxGroupWaitMSec()},
+     * from the observed force write latency, queue depth and add latency. Default is 0, which disables the
+     * adaptive group wait and always uses the max group wait.
+     *
+     * @return target p99 add latency in milliseconds
+     */
+    public long getJournalAdaptiveGroupWaitTargetLatencyMSec() {
+        return getLong(JOURNAL_ADAPTIVE_GROUP_WAIT_TARGET_LATENCY_MSEC, 0);
+    }
+
+    /**
+     * Set the p99 add latency targeted by the journal when tuning the group wait time.
+     *
+     * @param targetLatencyMSec
+     *          target p99 add latency in milliseconds, 0 to disable the adaptive group wait.
+     * @return server configuration.
+     */
+    public ServerConfiguration setJournalAdaptiveGroupWaitTargetLatencyMSec(long targetLatencyMSec) {
+        setProperty(JOURNAL_ADAPTIVE_GROUP_WAIT_TARGET_LATENCY_MSEC, targetLatencyMSec);
+        return this;
+    }
+
     /**
      * Maximum bytes to buffer to impose on a journal write to achieve grouping.
      *
@@ -2909,6 +3096,29 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Get the number of entry logs which can be compacted in parallel.
+     *
+     * <p>The compactions share the compaction rate, and are only run in parallel with the
+     * non-transactional compactor.
+     *
+     * @return the number of compaction threads
+     */
+    public int getCompactionThreads() {
+        return getInt(COMPACTION_THREADS, 1);
+    }
+
+    /**
+     * Set the number of entry logs which can be compacted in parallel.
+     *
+     * @param numThreads number of compaction threads
+     * @return server configuration
+     */
+    public ServerConfiguration setCompactionThreads(int numThreads) {
+        setProperty(COMPACTION_THREADS, numThreads);
+        return this;
+    }
+
     /**
      * Get the rate of compaction adds. Default is 1,000.
      *
@@ -3940,6 +4150,42 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /*
+     * in entryLogPerLedger feature, get the number of active entrylogs the
+     * ledgers are grouped into by expected lifetime. If it is not positive,
+     * there would be a active entrylog for each ledger.
+     */
+    public int getEntryLogLifetimeGroups() {
+        return this.getInt(ENTRY_LOG_LIFETIME_GROUPS, 0);
+    }
+
+    /*
+     * in entryLogPerLedger feature, sets the number of active entrylogs the
+     * ledgers are grouped into by expected lifetime.
+     */
+    public ServerConfiguration setEntryLogLifetimeGroups(int entryLogLifetimeGroups) {
+        this.setProperty(ENTRY_LOG_LIFETIME_GROUPS, Integer.toString(entryLogLifetimeGroups));
+        return this;
+    }
+
+    /*
+     * in entryLogPerLedger feature with entryLogLifetimeGroups, get the time a
+     * ledger is written for before it leaves the first lifetime group.
+     */
+    public int getEntryLogLifetimeGroupMinAgeSeconds() {
+        return this.getInt(ENTRY_LOG_LIFETIME_GROUP_MIN_AGE_SECONDS, 60);
+    }
+
+    /*
+     * in entryLogPerLedger feature with entryLogLifetimeGroups, sets the time a
+     * ledger is written for before it leaves the first lifetime group.
+     */
+    public ServerConfiguration setEntryLogLifetimeGroupMinAgeSeconds(int entryLogLifetimeGroupMinAgeSeconds) {
+        this.setProperty(ENTRY_LOG_LIFETIME_GROUP_MIN_AGE_SECONDS,
+                Integer.toString(entryLogLifetimeGroupMinAgeSeconds));
+        return this;
+    }
+
     /**
      * True if a local consistency check should be performed on startup.
      */
@@ -4044,6 +4290,28 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this.getBoolean(SKIP_REPLAY_JOURNAL_INVALID_RECORD, false);
     }
 
+    /**
+     * Set the number of threads used to apply the journal records to the ledger storage when replaying the
+     * journal on startup. The records of a ledger are always applied in order by the same thread.
+     *
+     * @param numThreads number of journal replay threads, 1 to replay the journal serially
+     * @return server configuration
+     */
+    public ServerConfiguration setNumJournalReplayThreads(int numThreads) {
+        this.setProperty(NUM_JOURNAL_REPLAY_THREADS, numThreads);
+        return this;
+    }
+
+    /**
+     * Get the number of threads used to apply the journal records to the ledger storage when replaying the
+     * journal on startup.
+     *
+     * @return number of journal replay threads
+     */
+    public int getNumJournalReplayThreads() {
+        return this.getInt(NUM_JOURNAL_REPLAY_THREADS, 1);
+    }
+
     /**
      * Get default rocksdb conf.
      *
@@ -23,12 +23,16 @@ package org.apache.bookkeeper.proto;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.Recycler;
 import io.netty.util.ReferenceCounted;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import org.apache.bookkeeper.proto.BookieProtocol.BatchedReadRequest;
 import org.apache.bookkeeper.util.ByteBufList;
 
 public class BatchedReadEntryProcessor extends ReadEntryProcessor {
 
+    private static final int INITIAL_READ_CHUNK_SIZE = 8;
+    private static final int MAX_READ_CHUNK_SIZE = 64;
+
     private long maxBatchReadSize;
 
     public static BatchedReadEntryProcessor create(BatchedReadRequest request,
@@ -56,26 +60,47 @@ public class BatchedReadEntryProcessor extends ReadEntryProcessor {
         }
         long maxSize = Math.min(batchRequest.getMaxSize(), maxBatchReadSize);
         //See BookieProtoEncoding.ResponseEnDeCoderPreV3#encode on BatchedReadResponse case.
-        long frameSize = 24 + 8 + 4;
-        for (int i = 0; i < maxCount; i++) {
+        final long headerSize = 24 + 8 + 4;
+        long frameSize = headerSize;
+        int i = 0;
+        while (i < maxCount) {
+            // read the entries in chunks, so that the storage can serve each chunk with a few
+            // coalesced reads, without reading far past the point where the response is full
+            int chunkSize = Math.min(maxCount - i, i == 0 ? INITIAL_READ_CHUNK_SIZE : MAX_READ_CHUNK_SIZE);
+            if (i > 0) {
+                long averageEntrySize = Math.max(1, (frameSize - headerSize) / i);
+                chunkSize = (int) Math.max(1, Math.min(chunkSize, (maxSize - frameSize) / averageEntrySize + 1));
+            }
+            List<ByteBuf> entries;
             try {
-                ByteBuf entry = requestProcessor.getBookie().readEntry(request.getLedgerId(), request.getEntryId() + i);
+                entries = requestProcessor.getBookie().readEntries(request.getLedgerId(),
+                        request.getEntryId() + i, chunkSize);
+            } catch (Throwable e) {
+                if (data == null) {
+                    throw e;
+                }
+                break;
+            }
+            boolean full = false;
+            for (ByteBuf entry : entries) {
+                if (full) {
+                    entry.release();
+                    continue;
+                }
                 frameSize += entry.readableBytes() + 4;
                 if (data == null) {
                     data = ByteBufList.get(entry);
+                } else if (frameSize > maxSize) {
+                    entry.release();
+                    full = true;
                 } else {
-                    if (frameSize > maxSize) {
-                        entry.release();
-                        break;
-                    }
                     data.add(entry);
                 }
-            } catch (Throwable e) {
-                if (data == null) {
-                    throw e;
-                }
+            }
+            if (full || entries.size() < chunkSize) {
                 break;
             }
+            i += chunkSize;
         }
         return data;
     }
@@ -218,7 +218,8 @@ class BookieNettyServer {
         synchronized (suspensionLock) {
             suspended = false;
             for (Channel channel : allChannels) {
-                channel.config().setAutoRead(true);
+                // the channels paused for back-pressure are resumed by the components that paused them
+                ChannelReadPauses.restore(channel);
             }
             suspensionLock.notifyAll();
         }
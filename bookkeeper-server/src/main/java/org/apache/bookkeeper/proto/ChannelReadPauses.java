@@ -0,0 +1,92 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+/**
+ * Owner of the autoread flag of the bookie server channels.
+ *
+ * <p>Several components stop reading from a channel to apply back-pressure, such as the throttling of the
+ * requests in progress in {@link BookieRequestProcessor} or the journal memory limit. Each pause is counted on
+ * the channel, and the channel only reads again once every component that paused it resumed it.
+ */
+public final class ChannelReadPauses {
+
+    private static final AttributeKey<ChannelReadPauses> PAUSES = AttributeKey.valueOf("bookieChannelReadPauses");
+
+    // guarded by this
+    private int pauses = 0;
+
+    private ChannelReadPauses() {
+    }
+
+    private static ChannelReadPauses of(Channel channel) {
+        Attribute<ChannelReadPauses> attr = channel.attr(PAUSES);
+        ChannelReadPauses pauses = attr.get();
+        if (pauses == null) {
+            pauses = new ChannelReadPauses();
+            ChannelReadPauses existing = attr.setIfAbsent(pauses);
+            if (existing != null) {
+                pauses = existing;
+            }
+        }
+        return pauses;
+    }
+
+    /**
+     * Stop reading from <i>channel</i>, until {@link #resume(Channel)} is called.
+     */
+    public static void pause(Channel channel) {
+        ChannelReadPauses pauses = of(channel);
+        synchronized (pauses) {
+            if (pauses.pauses++ == 0) {
+                channel.config().setAutoRead(false);
+            }
+        }
+    }
+
+    /**
+     * Release a pause taken with {@link #pause(Channel)}. The channel reads again once no pause is left.
+     */
+    public static void resume(Channel channel) {
+        ChannelReadPauses pauses = of(channel);
+        synchronized (pauses) {
+            if (pauses.pauses > 0 && --pauses.pauses == 0) {
+                channel.config().setAutoRead(true);
+            }
+        }
+    }
+
+    /**
+     * Enable autoread on <i>channel</i> again, unless it is paused.
+     */
+    public static void restore(Channel channel) {
+        ChannelReadPauses pauses = of(channel);
+        synchronized (pauses) {
+            if (pauses.pauses == 0) {
+                channel.config().setAutoRead(true);
+            }
+        }
+    }
+}
@@ -87,7 +87,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.BiPredicate;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import lombok.SneakyThrows;
@@ -196,6 +195,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private final SynchronizedHashMultiMap<CompletionKey, CompletionValue> completionObjectsV2Conflicts =
         new SynchronizedHashMultiMap<>();
 
+    // Deadlines of the pending operations, in separate lanes for adds and for everything else
+    private final TimeoutWheel<CompletionValue> addTimeouts;
+    private final TimeoutWheel<CompletionValue> readTimeouts;
+
     private final StatsLogger statsLogger;
     @StatsDoc(
         name = BookKeeperClientStats.CHANNEL_READ_OP,
@@ -267,6 +270,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         help = "timeout stats of start_tls requests"
     )
     private final OpStatsLogger startTLSTimeoutOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.CHANNEL_TIMEOUT_TIMER_LAG,
+        help = "delay between the deadline of a timed out request and the time it was timed out"
+    )
+    private final OpStatsLogger timeoutTimerLagOpLogger;
     @StatsDoc(
         name = BookKeeperClientStats.CLIENT_CONNECT_TIMER,
         help = "channel stats of connect requests"
@@ -403,6 +411,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         this.readEntryTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getReadEntryTimeout());
         this.getBookieInfoTimeoutNanos = TimeUnit.SECONDS.toNanos(conf.getBookieInfoTimeout());
         this.startTLSTimeout = conf.getStartTLSTimeout();
+        long timeoutTickNanos = TimeUnit.SECONDS.toNanos(Math.max(1L, conf.getTimeoutMonitorIntervalSec()));
+        this.addTimeouts = new TimeoutWheel<>(timeoutTickNanos, addEntryTimeoutNanos,
+                CompletionValue::deadlineNanos);
+        this.readTimeouts = new TimeoutWheel<>(timeoutTickNanos,
+                Math.max(readEntryTimeoutNanos, getBookieInfoTimeoutNanos), CompletionValue::deadlineNanos);
         this.useV2WireProtocol = conf.getUseV2WireProtocol();
         this.preserveMdcForTaskExecution = conf.getPreserveMdcForTaskExecution();
 
@@ -432,6 +445,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         getBookieInfoTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.TIMEOUT_GET_BOOKIE_INFO);
         startTLSOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_START_TLS_OP);
         startTLSTimeoutOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_START_TLS_OP);
+        timeoutTimerLagOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.CHANNEL_TIMEOUT_TIMER_LAG);
         getListOfEntriesOfLedgerCompletionTimeoutOpLogger = statsLogger
                 .getOpStatsLogger(BookKeeperClientStats.TIMEOUT_GET_LIST_OF_ENTRIES_OF_LEDGER);
         exceptionCounter = statsLogger.getCounter(BookKeeperClientStats.NETTY_EXCEPTION_CNT);
@@ -692,7 +706,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         final CompletionKey completionKey = new TxnCompletionKey(txnId,
                                                                 OperationType.WRITE_LAC);
         // writeLac is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new WriteLacCompletion(completionKey, cb,
                                                      ctx, ledgerId));
 
@@ -731,7 +745,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         final CompletionKey completionKey = new TxnCompletionKey(txnId,
                                                                 OperationType.FORCE_LEDGER);
         // force is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new ForceLedgerCompletion(completionKey, cb,
                                                      ctx, ledgerId));
 
@@ -874,7 +888,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     public void getListOfEntriesOfLedger(final long ledgerId, GetListOfEntriesOfLedgerCallback cb) {
         final long txnId = getTxnId();
         final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER);
-        completionObjects.put(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
+        putCompletionKeyValue(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
 
         // Build the request.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder().setVersion(ProtocolVersion.VERSION_THREE)
@@ -1043,7 +1057,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     public void getBookieInfo(final long requested, GetBookieInfoCallback cb, Object ctx) {
         final long txnId = getTxnId();
         final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.GET_BOOKIE_INFO);
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new GetBookieInfoCompletion(
                                       completionKey, cb, ctx));
 
@@ -1064,14 +1078,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         writeAndFlush(channel, completionKey, getBookieInfoRequest);
     }
 
-    private static final BiPredicate<CompletionKey, CompletionValue> timeoutCheck = (key, value) -> {
-        return value.maybeTimeout();
-    };
-
     public void checkTimeoutOnPendingOperations() {
-        int timedOutOperations = completionObjects.removeIf(timeoutCheck);
+        long now = MathUtils.nowInNano();
+        int timedOutOperations = addTimeouts.expire(now, value -> timeoutIfPending(value, now));
 
-        timedOutOperations += completionObjectsV2Conflicts.removeIf(timeoutCheck);
+        timedOutOperations += readTimeouts.expire(now, value -> timeoutIfPending(value, now));
 
         if (timedOutOperations > 0) {
             LOG.info("Timed-out {} operations to channel {} for {}",
@@ -1228,12 +1239,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = getCompletionValue(key);
         if (completion != null) {
             completion.errorOut();
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut());
         }
     }
 
@@ -1241,12 +1249,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Removing completion key: {}", key);
         }
-        CompletionValue completion = completionObjects.remove(key);
+        CompletionValue completion = getCompletionValue(key);
         if (completion != null) {
             completion.errorOut(rc);
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut(rc));
         }
     }
 
@@ -1556,7 +1561,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             });
         }
 
-        completionObjects.remove(key);
+        CompletionValue removed = completionObjects.remove(key);
+        if (removed != null) {
+            removed.cancelTimeout();
+        }
     }
 
     void initTLSHandshake() {
@@ -1667,6 +1675,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         protected long ledgerId;
         protected long entryId;
         protected long startTime;
+        // key the completion is pending on, looked up again when its deadline passes
+        CompletionKey pendingKey;
+        // place on the timeout wheel, cancelled when the completion leaves the completion map
+        TimeoutWheel.Timeout<CompletionValue> timeout;
 
         public CompletionValue(String operationName,
                                Object ctx,
@@ -1700,12 +1712,23 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         }
 
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= readEntryTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
+        long timeoutNanos() {
+            return readEntryTimeoutNanos;
+        }
+
+        long deadlineNanos() {
+            return startTime + timeoutNanos();
+        }
+
+        TimeoutWheel<CompletionValue> timeoutWheel() {
+            return readTimeouts;
+        }
+
+        void cancelTimeout() {
+            TimeoutWheel.Timeout<CompletionValue> t = timeout;
+            if (t != null) {
+                t.cancel();
+                timeout = null;
             }
         }
 
@@ -2181,13 +2204,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
 
         @Override
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= getBookieInfoTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return getBookieInfoTimeoutNanos;
         }
 
         @Override
@@ -2327,13 +2345,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
 
         @Override
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= addEntryTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return addEntryTimeoutNanos;
+        }
+
+        @Override
+        TimeoutWheel<CompletionValue> timeoutWheel() {
+            return addTimeouts;
         }
 
         @Override
@@ -2460,6 +2478,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     private void putCompletionKeyValue(CompletionKey key, CompletionValue value) {
+        value.pendingKey = key;
+        // Scheduled before the completion is visible, so it cannot complete before it is scheduled.
+        // Operations whose timeout is disabled are never timed out, and never queued on the wheel.
+        if (value.timeoutNanos() > 0) {
+            value.timeout = value.timeoutWheel().schedule(value);
+        }
         CompletionValue existingValue = completionObjects.putIfAbsent(key, value);
         if (existingValue != null) { // will only happen for V2 keys, as V3 have unique txnid
             // There's a pending read request on same ledger/entry. Use the multimap to track all of them
@@ -2467,12 +2491,31 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * Time out an operation handed out by a timeout wheel, unless it already completed. An operation
+     * is pending as long as it is mapped from its key, and whoever removes it owns its completion.
+     */
+    private boolean timeoutIfPending(CompletionValue value, long now) {
+        CompletionKey key = value.pendingKey;
+        // a recycled completion handed out after it was reissued is not late
+        if (key == null || value.deadlineNanos() - now > 0
+            || !(completionObjects.remove(key, value) || completionObjectsV2Conflicts.remove(key, value))) {
+            return false;
+        }
+        timeoutTimerLagOpLogger.registerSuccessfulEvent(now - value.deadlineNanos(), TimeUnit.NANOSECONDS);
+        value.timeout();
+        return true;
+    }
+
     private CompletionValue getCompletionValue(CompletionKey key) {
         CompletionValue completionValue = completionObjects.remove(key);
         if (completionValue == null) {
             // If there's no completion object here, try in the multimap
             completionValue = completionObjectsV2Conflicts.removeAny(key).orElse(null);
         }
+        if (completionValue != null) {
+            completionValue.cancelTimeout();
+        }
         return completionValue;
     }
 
@@ -2705,7 +2748,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         assert state == ConnectionState.CONNECTING;
         final long txnId = getTxnId();
         final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.START_TLS);
-        completionObjects.put(completionKey,
+        putCompletionKeyValue(completionKey,
                               new StartTLSCompletion(completionKey));
         BookkeeperProtocol.Request.Builder h = withRequestContext(BookkeeperProtocol.Request.newBuilder());
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
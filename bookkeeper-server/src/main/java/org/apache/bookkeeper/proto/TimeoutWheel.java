@@ -0,0 +1,155 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import org.apache.bookkeeper.common.util.MathUtils;
+
+/**
+ * A hashed timing wheel tracking the deadlines of the operations pending on a channel.
+ *
+ * <p>Scheduling an operation appends a {@link Timeout} to the bucket of the tick of its deadline, which
+ * is O(1). Operations are not removed from the buckets when they complete, their timeout is cancelled
+ * instead, which leaves a tombstone that is dropped when its bucket is reached. A recycled operation
+ * gets a new timeout each time it is scheduled, so it is never queued twice. When the tick of a bucket
+ * is reached, each of its operations is handed to the owner, which times it out only if it is still
+ * pending. An operation whose deadline moved forward in the meantime is rescheduled.
+ *
+ * <p>The wheel spans more ticks than the longest timeout it tracks, so a bucket only ever holds
+ * operations of a single tick. Ticks are expected to be driven by a single thread.
+ */
+class TimeoutWheel<T> {
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final int mask;
+    private final Queue<Timeout<T>>[] buckets;
+    private final ToLongFunction<T> deadlineNanos;
+    private volatile long lastExpiredTick;
+
+    @SuppressWarnings("unchecked")
+    TimeoutWheel(long tickNanos, long maxTimeoutNanos, ToLongFunction<T> deadlineNanos) {
+        this.tickNanos = Math.max(1L, tickNanos);
+        this.startNanos = MathUtils.nowInNano();
+        long ticks = Math.min(maxTimeoutNanos / this.tickNanos + 2, 1 << 20);
+        int numBuckets = MathUtils.findNextPositivePowerOfTwo((int) Math.max(ticks, 2));
+        this.mask = numBuckets - 1;
+        this.buckets = new Queue[numBuckets];
+        for (int i = 0; i < numBuckets; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.deadlineNanos = deadlineNanos;
+        this.lastExpiredTick = 0;
+    }
+
+    /**
+     * The place of an operation on the wheel. It is cleared when the operation is handed out, or
+     * when the timeout is cancelled.
+     */
+    static final class Timeout<T> extends AtomicReference<T> {
+        private static final long serialVersionUID = 1L;
+
+        Timeout(T op) {
+            super(op);
+        }
+
+        /**
+         * Cancel the timeout of an operation which completed, before it is recycled.
+         */
+        void cancel() {
+            set(null);
+        }
+    }
+
+    /**
+     * Schedule an operation at its current deadline.
+     *
+     * @return the timeout to cancel when the operation completes
+     */
+    Timeout<T> schedule(T op) {
+        Timeout<T> timeout = new Timeout<>(op);
+        schedule(timeout, op);
+        return timeout;
+    }
+
+    private void schedule(Timeout<T> timeout, T op) {
+        long deadline = deadlineNanos.applyAsLong(op);
+        // round up, so an operation is never handed out before its deadline
+        long tick = Math.max((deadline - startNanos + tickNanos - 1) / tickNanos, lastExpiredTick + 1);
+        buckets[(int) (tick & mask)].add(timeout);
+    }
+
+    /**
+     * Hand out the operations of all the ticks elapsed since the previous call.
+     *
+     * @param nowNanos current time, in nanos
+     * @param timeoutIfPending times out an operation whose deadline has passed, if it is still pending
+     * @return the number of operations timed out
+     */
+    synchronized int expire(long nowNanos, Predicate<T> timeoutIfPending) {
+        long nowTick = (nowNanos - startNanos) / tickNanos;
+        long fromTick = lastExpiredTick + 1;
+        if (nowTick < fromTick) {
+            return 0;
+        }
+        // after a long stall every bucket is visited once
+        fromTick = Math.max(fromTick, nowTick - mask);
+
+        int timedOut = 0;
+        List<Timeout<T>> notExpired = null;
+        for (long tick = fromTick; tick <= nowTick; tick++) {
+            Queue<Timeout<T>> bucket = buckets[(int) (tick & mask)];
+            Timeout<T> timeout;
+            while ((timeout = bucket.poll()) != null) {
+                T op = timeout.get();
+                if (op == null) {
+                    // cancelled
+                    continue;
+                }
+                if (deadlineNanos.applyAsLong(op) - nowNanos > 0) {
+                    if (notExpired == null) {
+                        notExpired = new ArrayList<>();
+                    }
+                    notExpired.add(timeout);
+                } else if (timeout.compareAndSet(op, null) && timeoutIfPending.test(op)) {
+                    timedOut++;
+                }
+            }
+        }
+        lastExpiredTick = nowTick;
+
+        if (notExpired != null) {
+            for (Timeout<T> timeout : notExpired) {
+                T op = timeout.get();
+                if (op != null) {
+                    schedule(timeout, op);
+                }
+            }
+        }
+        return timedOut;
+    }
+}
@@ -28,6 +28,7 @@ import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -37,8 +38,14 @@ import static org.mockito.Mockito.when;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.bookie.Journal.ForceWriteRequest;
 import org.apache.bookkeeper.bookie.Journal.LastLogMark;
@@ -47,6 +54,7 @@ import org.apache.bookkeeper.common.collections.BatchedArrayBlockingQueue;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.conf.TestBKConfiguration;
 import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookieProtocol;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.test.TestStatsProvider;
@@ -301,6 +309,87 @@ public class BookieJournalForceTest {
         journal.shutdown();
     }
 
+    @Test
+    public void testMultipleOutstandingForceWrites() throws Exception {
+        File journalDir = tempDir.newFolder();
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(journalDir));
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setJournalDirName(journalDir.getPath())
+            .setJournalMaxOutstandingForceWrites(4)
+            .setMetadataServiceUri(null);
+
+        JournalChannel jc = spy(new JournalChannel(journalDir, 1));
+        // make the force writes complete out of order
+        AtomicInteger forceWrites = new AtomicInteger();
+        doAnswer((Answer) (InvocationOnMock iom) -> {
+            Thread.sleep(forceWrites.incrementAndGet() % 4 * 5);
+            return iom.callRealMethod();
+        }).when(jc).forceWrite(false);
+
+        LedgerDirsManager ledgerDirsManager = mock(LedgerDirsManager.class);
+        Journal journal = spy(new Journal(0, journalDir, conf, ledgerDirsManager));
+        doReturn(jc).when(journal).newLogFile(anyLong(), nullable(Long.class));
+
+        LogMark lastLogMarkBeforeWrite = journal.getLastLogMark().markLog().getCurMark();
+        journal.start();
+
+        final int numEntries = 200;
+        CountDownLatch latch = new CountDownLatch(numEntries);
+        List<Long> ackedEntries = Collections.synchronizedList(new ArrayList<>());
+        for (long entryId = 0; entryId < numEntries; entryId++) {
+            journal.logAddEntry(1, entryId, DATA, false, new WriteCallback() {
+                @Override
+                public void writeComplete(int rc, long ledgerId, long entryId, BookieId addr, Object ctx) {
+                    assertEquals(0, rc);
+                    ackedEntries.add(entryId);
+                    latch.countDown();
+                }
+            }, null);
+            if (entryId % 10 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        assertTrue(latch.await(20, TimeUnit.SECONDS));
+
+        // entries are acknowledged in journal order
+        for (int i = 0; i < numEntries; i++) {
+            assertEquals(i, ackedEntries.get(i).longValue());
+        }
+        verify(jc, atLeast(2)).forceWrite(false);
+        assertTrue(journal.getLastLogMark().getCurMark().compare(lastLogMarkBeforeWrite) > 0);
+
+        journal.shutdown();
+    }
+
+    @Test
+    public void testFailedOutstandingForceWriteFailsPendingEntries() throws Exception {
+        File journalDir = tempDir.newFolder();
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(journalDir));
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setJournalDirName(journalDir.getPath())
+            .setJournalMaxOutstandingForceWrites(4)
+            .setMetadataServiceUri(null);
+
+        JournalChannel jc = spy(new JournalChannel(journalDir, 1));
+        doThrow(new IOException("fsync failed")).when(jc).forceWrite(false);
+
+        LedgerDirsManager ledgerDirsManager = mock(LedgerDirsManager.class);
+        Journal journal = spy(new Journal(0, journalDir, conf, ledgerDirsManager));
+        doReturn(jc).when(journal).newLogFile(anyLong(), nullable(Long.class));
+        journal.start();
+
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        journal.logAddEntry(1, 0, DATA, false,
+                (rc, ledgerId, entryId, addr, ctx) -> result.complete(rc), null);
+
+        // the entry is failed instead of waiting forever for its force write
+        assertEquals(BookieProtocol.EIO, result.get(20, TimeUnit.SECONDS).intValue());
+
+        journal.shutdown();
+    }
+
     @SuppressWarnings("unchecked")
     private BatchedArrayBlockingQueue<ForceWriteRequest> enableForceWriteThreadSuspension(
         CountDownLatch forceWriteThreadSuspendedLatch,
@@ -20,22 +20,30 @@
  */
 package org.apache.bookkeeper.bookie;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
 import java.io.File;
 import java.util.concurrent.CountDownLatch;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.common.util.MemoryLimitController;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.proto.BookieRequestHandler;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -90,4 +98,88 @@ public class BookieJournalMaxMemoryTest {
 
         journal.shutdown();
     }
+
+    @Test
+    public void testChannelPausedWhenMemoryLimitExceeded() throws Exception {
+        File journalDir = tempDir.newFolder();
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(journalDir));
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration()
+                .setJournalDirName(journalDir.getPath())
+                .setJournalChannelBackPressureEnabled(true);
+
+        JournalChannel jc = spy(new JournalChannel(journalDir, 1));
+        LedgerDirsManager ledgerDirsManager = mock(LedgerDirsManager.class);
+        Journal journal = spy(new Journal(0, journalDir, conf, ledgerDirsManager));
+        doReturn(jc).when(journal).newLogFile(anyLong(), nullable(Long.class));
+        // 3 entries fit under the limit, the next 2 up to twice the limit
+        MemoryLimitController mlc = spy(new MemoryLimitController(2L * DATA.readableBytes()));
+        journal.setMemoryLimitController(mlc);
+
+        BookieRequestHandler requestHandler = mock(BookieRequestHandler.class);
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        when(requestHandler.ctx()).thenReturn(ctx);
+        when(ctx.channel()).thenReturn(channel);
+
+        CountDownLatch latch = new CountDownLatch(5);
+
+        // The journal is not started yet, so the entries pile up over the memory limit
+        for (int i = 0; i < 5; i++) {
+            journal.logAddEntry(1, i, DATA, false,
+                    (rc, ledgerId1, entryId1, addr, ctx1) -> latch.countDown(),
+                    requestHandler);
+        }
+
+        // The add threads are never blocked, the channel is paused instead
+        verify(mlc, never()).reserveMemory(DATA.readableBytes());
+        verify(mlc, times(2)).tryForceReserveMemory(DATA.readableBytes());
+        assertFalse(channel.config().isAutoRead());
+
+        journal.start();
+        latch.await();
+
+        verify(mlc, times(5)).releaseMemory(DATA.readableBytes());
+        assertTrue(channel.config().isAutoRead());
+
+        journal.shutdown();
+    }
+
+    @Test
+    public void testChannelBackPressureDisabledByDefault() throws Exception {
+        File journalDir = tempDir.newFolder();
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(journalDir));
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration()
+                .setJournalDirName(journalDir.getPath());
+
+        JournalChannel jc = spy(new JournalChannel(journalDir, 1));
+        LedgerDirsManager ledgerDirsManager = mock(LedgerDirsManager.class);
+        Journal journal = spy(new Journal(0, journalDir, conf, ledgerDirsManager));
+        doReturn(jc).when(journal).newLogFile(anyLong(), nullable(Long.class));
+        MemoryLimitController mlc = spy(new MemoryLimitController(1));
+        journal.setMemoryLimitController(mlc);
+
+        BookieRequestHandler requestHandler = mock(BookieRequestHandler.class);
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        EmbeddedChannel channel = new EmbeddedChannel();
+        // the journal doesn't even look at the channel
+        lenient().when(requestHandler.ctx()).thenReturn(ctx);
+        lenient().when(ctx.channel()).thenReturn(channel);
+
+        journal.start();
+        CountDownLatch latch = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            journal.logAddEntry(1, i, DATA, false,
+                    (rc, ledgerId1, entryId1, addr, ctx1) -> latch.countDown(),
+                    requestHandler);
+        }
+        latch.await();
+
+        verify(mlc, times(10)).reserveMemory(DATA.readableBytes());
+        verify(mlc, never()).tryForceReserveMemory(DATA.readableBytes());
+        assertTrue(channel.config().isAutoRead());
+
+        journal.shutdown();
+    }
 }
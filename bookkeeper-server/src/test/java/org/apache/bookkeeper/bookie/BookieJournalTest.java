@@ -30,6 +30,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCountUtil;
 import java.io.File;
@@ -41,6 +42,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import lombok.Cleanup;
 import org.apache.bookkeeper.bookie.Journal.LastLogMark;
 import org.apache.bookkeeper.client.ClientUtil;
@@ -489,6 +492,126 @@ public class BookieJournalTest {
         b.shutdown();
     }
 
+    @Test
+    public void testParallelReplay() throws Exception {
+        File journalDir = createTempDir("bookie", "journal");
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(journalDir));
+
+        File ledgerDir = createTempDir("bookie", "ledger");
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(ledgerDir));
+
+        // Interleave the records of multiple ledgers
+        final int numLedgers = 8;
+        final int numEntries = 200;
+        byte[] masterKey = "testParallelReplay".getBytes();
+        JournalChannel jc = new JournalChannel(BookieImpl.getCurrentDirectory(journalDir),
+                System.currentTimeMillis());
+        moveToPosition(jc, JournalChannel.VERSION_HEADER_SIZE);
+        BufferedChannel bc = jc.getBufferedChannel();
+        byte[] data = new byte[1024];
+        for (int i = 0; i <= numEntries; i++) {
+            for (long ledgerId = 1; ledgerId <= numLedgers; ledgerId++) {
+                ByteBuf packet;
+                if (i == 0) {
+                    packet = generateMetaEntry(ledgerId, masterKey);
+                } else {
+                    packet = ClientUtil.generatePacket(ledgerId, i, i - 1, (long) i * data.length, data);
+                }
+                ByteBuf lenBuff = Unpooled.buffer();
+                lenBuff.writeInt(packet.readableBytes());
+                bc.write(lenBuff);
+                bc.write(packet);
+                ReferenceCountUtil.release(packet);
+            }
+        }
+        ByteBuf packet = generateFenceEntry(1);
+        ByteBuf lenBuf = Unpooled.buffer();
+        lenBuf.writeInt(packet.readableBytes());
+        bc.write(lenBuf);
+        bc.write(packet);
+        bc.flushAndForceWrite(false);
+        updateJournalVersion(jc, JournalChannel.V4);
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setJournalDirName(journalDir.getPath())
+            .setLedgerDirNames(new String[] { ledgerDir.getPath() })
+            .setNumJournalReplayThreads(4)
+            .setMetadataServiceUri(null);
+
+        BookieImpl b = createBookieAndReadJournal(conf);
+
+        for (long ledgerId = 1; ledgerId <= numLedgers; ledgerId++) {
+            for (int i = 1; i <= numEntries; i++) {
+                ByteBuf entry = b.readEntry(ledgerId, i);
+                assertEquals(ledgerId, entry.getLong(0));
+                assertEquals(i, entry.getLong(8));
+                entry.release();
+            }
+            try {
+                b.readEntry(ledgerId, numEntries + 1);
+                fail("Shouldn't have found entry " + (numEntries + 1));
+            } catch (Bookie.NoEntryException e) {
+                // correct behavior
+            }
+        }
+        assertTrue(b.handles.getHandle(1, masterKey, false).isFenced());
+        assertFalse(b.handles.getHandle(2, masterKey, false).isFenced());
+
+        b.shutdown();
+    }
+
+    @Test
+    public void testGatheringWriteJournal() throws Exception {
+        File journalDir = createTempDir("bookie", "journal");
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(journalDir));
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setJournalDirName(journalDir.getPath())
+            .setJournalFormatVersionToWrite(JournalChannel.V6)
+            .setJournalAlignmentSize(4096)
+            .setJournalGatheringWriteThresholdBytes(1024)
+            .setMetadataServiceUri(null);
+
+        Journal journal = new Journal(0, BookieImpl.getCurrentDirectory(journalDir), conf,
+                mock(LedgerDirsManager.class));
+        journal.start();
+
+        // Mix entries copied in the write buffer with entries written from their own buffers
+        final int numEntries = 100;
+        Random random = new Random();
+        List<byte[]> written = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(numEntries);
+        for (int i = 0; i < numEntries; i++) {
+            byte[] data = new byte[i % 3 == 0 ? 10 : 1000 + random.nextInt(10000)];
+            random.nextBytes(data);
+            ByteBuf entry = Unpooled.directBuffer(16 + data.length);
+            entry.writeLong(1);
+            entry.writeLong(i);
+            entry.writeBytes(data);
+            written.add(ByteBufUtil.getBytes(entry));
+            journal.logAddEntry(entry, false, (rc, ledgerId, entryId, addr, ctx) -> latch.countDown(), null);
+            entry.release();
+        }
+        assertTrue(latch.await(20, TimeUnit.SECONDS));
+        journal.shutdown();
+
+        List<byte[]> read = new ArrayList<>();
+        List<Long> journalIds = Journal.listJournalIds(journal.getJournalDirectory(), null);
+        assertEquals(1, journalIds.size());
+        journal.scanJournal(journalIds.get(0), 0, (journalVersion, offset, entry) -> {
+            if (entry.getLong(0) == 1) {
+                byte[] bytes = new byte[entry.remaining()];
+                entry.get(bytes);
+                read.add(bytes);
+            }
+        }, false);
+
+        assertEquals(numEntries, read.size());
+        for (int i = 0; i < numEntries; i++) {
+            assertTrue("Entry " + i + " differs", Arrays.equals(written.get(i), read.get(i)));
+        }
+    }
+
     /**
      * Test that if the journal is all journal, we can not
      * start the bookie. An admin should look to see what has
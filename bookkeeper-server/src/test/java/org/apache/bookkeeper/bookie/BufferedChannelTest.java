@@ -22,9 +22,11 @@
 package org.apache.bookkeeper.bookie;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import java.io.File;
+import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.util.Random;
@@ -126,6 +128,88 @@ public class BufferedChannelTest {
         fileChannel.close();
     }
 
+    @Test
+    public void testTransferFrom() throws Exception {
+        File srcFile = File.createTempFile("test", "src");
+        srcFile.deleteOnExit();
+        ByteBuf srcData = generateEntry(20000);
+        try (RandomAccessFile raf = new RandomAccessFile(srcFile, "rw")) {
+            raf.write(srcData.array(), srcData.arrayOffset() + srcData.readerIndex(), srcData.readableBytes());
+        }
+        File newLogFile = File.createTempFile("test", "log");
+        newLogFile.deleteOnExit();
+        FileChannel srcChannel = new RandomAccessFile(srcFile, "r").getChannel();
+        FileChannel fileChannel = new RandomAccessFile(newLogFile, "rw").getChannel();
+
+        BufferedChannel logChannel = new BufferedChannel(UnpooledByteBufAllocator.DEFAULT, fileChannel,
+                INTERNAL_BUFFER_WRITE_CAPACITY, INTERNAL_BUFFER_READ_CAPACITY, 0);
+
+        ByteBuf expected = Unpooled.buffer();
+        ByteBuf small = generateEntry(100);
+        expected.writeBytes(small, small.readerIndex(), small.readableBytes());
+        logChannel.write(small);
+        expected.writeBytes(srcData, 5000, 12000);
+        logChannel.transferFrom(srcChannel, 5000, 12000);
+        Assert.assertEquals(12100, logChannel.position());
+        Assert.assertEquals("Write buffer should be flushed", 12100, logChannel.getFileChannelPosition());
+        expected.writeBytes(small, small.readerIndex(), small.readableBytes());
+        logChannel.write(small);
+
+        ByteBuf read = Unpooled.buffer(expected.readableBytes());
+        logChannel.read(read, 0, expected.readableBytes());
+        Assert.assertEquals(expected, read);
+
+        try {
+            logChannel.transferFrom(srcChannel, 19000, 2000);
+            Assert.fail("Should fail to transfer past the end of the source file");
+        } catch (IOException ioe) {
+            // expected
+        }
+
+        logChannel.close();
+        fileChannel.close();
+        srcChannel.close();
+    }
+
+    @Test
+    public void testGatheringWrite() throws Exception {
+        File newLogFile = File.createTempFile("test", "log");
+        newLogFile.deleteOnExit();
+        FileChannel fileChannel = new RandomAccessFile(newLogFile, "rw").getChannel();
+
+        BufferedChannel logChannel = new BufferedChannel(UnpooledByteBufAllocator.DEFAULT, fileChannel,
+                INTERNAL_BUFFER_WRITE_CAPACITY, INTERNAL_BUFFER_READ_CAPACITY, 0);
+
+        ByteBuf expected = Unpooled.buffer();
+        ByteBuf small = generateEntry(100);
+        ByteBuf large = Unpooled.directBuffer(10000).writeBytes(generateEntry(10000));
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponents(true, generateEntry(3000), Unpooled.directBuffer(5000).writeBytes(generateEntry(5000)));
+
+        expected.writeBytes(small, small.readerIndex(), small.readableBytes());
+        logChannel.write(small);
+        expected.writeBytes(large, large.readerIndex(), large.readableBytes());
+        logChannel.writeGathering(large);
+        Assert.assertEquals(10100, logChannel.position());
+        Assert.assertEquals("Write buffer should be flushed", 10100, logChannel.getFileChannelPosition());
+
+        expected.writeBytes(composite, composite.readerIndex(), composite.readableBytes());
+        logChannel.writeGathering(composite);
+        expected.writeBytes(small, small.readerIndex(), small.readableBytes());
+        logChannel.write(small);
+        Assert.assertEquals(18200, logChannel.position());
+        Assert.assertEquals(18100, logChannel.getFileChannelPosition());
+
+        ByteBuf read = Unpooled.buffer(expected.readableBytes());
+        logChannel.read(read, 0, expected.readableBytes());
+        Assert.assertEquals(expected, read);
+
+        logChannel.flush();
+        Assert.assertEquals(18200, fileChannel.size());
+        logChannel.close();
+        fileChannel.close();
+    }
+
     private static ByteBuf generateEntry(int length) {
         byte[] data = new byte[length];
         ByteBuf bb = Unpooled.buffer(length);
@@ -950,6 +950,90 @@ public abstract class CompactionTest extends BookKeeperClusterTestCase {
         verifyLedger(lhs[1].getId(), 0, lhs[1].getLastAddConfirmed());
     }
 
+    @Test
+    public void testMajorCompactionWithTransferEntries() throws Exception {
+        // prepare data
+        LedgerHandle[] lhs = prepareData(3, true);
+
+        for (LedgerHandle lh : lhs) {
+            lh.close();
+        }
+
+        // restart bookies
+        restartBookies(c -> {
+                // disable minor compaction
+                c.setMinorCompactionThreshold(0.0f);
+                c.setGcWaitTime(60000);
+                c.setMinorCompactionInterval(120000);
+                c.setMajorCompactionInterval(240000);
+                c.setCompactionTransferEntriesEnabled(true);
+                return c;
+            });
+
+        long lastMajorCompactionTime = getGCThread().lastMajorCompactionTime;
+
+        // remove ledger1 and ledger3
+        bkc.deleteLedger(lhs[0].getId());
+        bkc.deleteLedger(lhs[2].getId());
+        LOG.info("Finished deleting the ledgers contains most entries.");
+        getGCThread().enableForceGC();
+        getGCThread().triggerGC().get();
+        assertTrue(getGCThread().lastMajorCompactionTime > lastMajorCompactionTime);
+
+        // entry logs ([0,1,2].log) should be compacted
+        for (File ledgerDirectory : bookieLedgerDirs()) {
+            assertFalse("Found entry log file ([0,1,2].log that should have not been compacted in ledgerDirectory: "
+                      + ledgerDirectory, TestUtils.hasLogFiles(ledgerDirectory, true, 0, 1, 2));
+        }
+
+        // the moved entries are read from their new location
+        verifyLedger(lhs[1].getId(), 0, lhs[1].getLastAddConfirmed());
+
+        // and are still there after a restart
+        restartBookies();
+        verifyLedger(lhs[1].getId(), 0, lhs[1].getLastAddConfirmed());
+    }
+
+    @Test
+    public void testParallelMajorCompaction() throws Exception {
+        // prepare data
+        LedgerHandle[] lhs = prepareData(3, true);
+
+        for (LedgerHandle lh : lhs) {
+            lh.close();
+        }
+
+        // restart bookies
+        restartBookies(c -> {
+                // disable minor compaction
+                c.setMinorCompactionThreshold(0.0f);
+                c.setGcWaitTime(60000);
+                c.setMinorCompactionInterval(120000);
+                c.setMajorCompactionInterval(240000);
+                c.setCompactionThreads(3);
+                return c;
+            });
+
+        long lastMajorCompactionTime = getGCThread().lastMajorCompactionTime;
+
+        // remove ledger1 and ledger3
+        bkc.deleteLedger(lhs[0].getId());
+        bkc.deleteLedger(lhs[2].getId());
+        LOG.info("Finished deleting the ledgers contains most entries.");
+        getGCThread().enableForceGC();
+        getGCThread().triggerGC().get();
+        assertTrue(getGCThread().lastMajorCompactionTime > lastMajorCompactionTime);
+        assertFalse(getGCThread().compacting.get());
+
+        // entry logs ([0,1,2].log) should be compacted
+        for (File ledgerDirectory : bookieLedgerDirs()) {
+            assertFalse("Found entry log file ([0,1,2].log that should have not been compacted in ledgerDirectory: "
+                      + ledgerDirectory, TestUtils.hasLogFiles(ledgerDirectory, true, 0, 1, 2));
+        }
+
+        verifyLedger(lhs[1].getId(), 0, lhs[1].getLastAddConfirmed());
+    }
+
     @Test
     public void testForceMajorCompaction() throws Exception {
 
@@ -35,6 +35,7 @@ import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
@@ -64,6 +65,7 @@ import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.Lock;
 import org.apache.bookkeeper.bookie.DefaultEntryLogger.BufferedLogChannel;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
+import org.apache.bookkeeper.bookie.storage.EntryLogTransferScanner;
 import org.apache.bookkeeper.common.testing.annotations.FlakyTest;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.conf.TestBKConfiguration;
@@ -414,6 +416,55 @@ public class DefaultEntryLogTest {
         assertEquals(120, meta.getRemainingSize());
     }
 
+    @Test
+    public void testTransferEntriesInRuns() throws Exception {
+        // ledger 1 has two runs of contiguous entries, split by an entry of ledger 2
+        for (int i = 0; i < 5; i++) {
+            entryLogger.addEntry(1L, generateEntry(1, i).nioBuffer());
+        }
+        entryLogger.addEntry(2L, generateEntry(2, 0).nioBuffer());
+        for (int i = 5; i < 8; i++) {
+            entryLogger.addEntry(1L, generateEntry(1, i).nioBuffer());
+        }
+
+        EntryLogManagerBase entryLogManager = (EntryLogManagerBase) entryLogger.getEntryLogManager();
+        entryLogManager.createNewLog(DefaultEntryLogger.UNASSIGNED_LEDGERID);
+        entryLogManager.flushRotatedLogs();
+
+        List<Integer> runEntries = new ArrayList<>();
+        List<Integer> runLengths = new ArrayList<>();
+        List<Long> locations = new ArrayList<>();
+        entryLogger.transferEntries(0L, new EntryLogTransferScanner() {
+            @Override
+            public boolean accept(long ledgerId) {
+                return ledgerId == 1L;
+            }
+
+            @Override
+            public void beforeTransfer(int length, int entries) {
+                runLengths.add(length);
+                runEntries.add(entries);
+            }
+
+            @Override
+            public void process(long ledgerId, long entryId, long location, int entrySize) {
+                assertEquals(locations.size(), entryId);
+                locations.add(location);
+            }
+        });
+        entryLogger.flush();
+
+        // each run is throttled by its number of entries, not as a single entry
+        assertEquals(Lists.newArrayList(5, 3), runEntries);
+        assertEquals(Lists.newArrayList(5 * 30, 3 * 30), runLengths);
+        assertEquals(8, locations.size());
+        for (int i = 0; i < locations.size(); i++) {
+            ByteBuf entry = entryLogger.readEntry(1L, i, locations.get(i));
+            assertEquals(0, generateEntry(1, i).compareTo(entry));
+            entry.release();
+        }
+    }
+
     /**
      * Explicitly try to recover using the ledgers map index at the end of the entry log.
      */
@@ -1165,6 +1216,82 @@ public class DefaultEntryLogTest {
                         || (entryLogManager.getCacheAsMap().get(ledgerId).getEntryLogWithDirInfo() == null));
     }
 
+    /*
+     * test EntryLogManagerForLedgerLifetimeGroups writes the ledgers of a
+     * lifetime group to the same active entrylog.
+     */
+    @Test
+    public void testEntryLogManagerLifetimeGroups() throws Exception {
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setEntryLogFilePreAllocationEnabled(false);
+        conf.setEntryLogPerLedgerEnabled(true);
+        conf.setLedgerDirNames(createAndGetLedgerDirs(2));
+        conf.setEntryLogLifetimeGroups(3);
+        conf.setEntryLogLifetimeGroupMinAgeSeconds(10);
+        LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+
+        DefaultEntryLogger entryLogger = new DefaultEntryLogger(conf, ledgerDirsManager);
+        EntryLogManagerForLedgerLifetimeGroups entryLogManager =
+                (EntryLogManagerForLedgerLifetimeGroups) entryLogger.getEntryLogManager();
+
+        // the group of a ledger depends on the time since its first write
+        long firstWriteTime = 1000000L;
+        assertEquals(0, entryLogManager.lifetimeGroup(100L, firstWriteTime));
+        assertEquals(0, entryLogManager.lifetimeGroup(100L, firstWriteTime + 9999));
+        assertEquals(1, entryLogManager.lifetimeGroup(100L, firstWriteTime + 10000));
+        assertEquals(1, entryLogManager.lifetimeGroup(100L, firstWriteTime + 19999));
+        assertEquals(2, entryLogManager.lifetimeGroup(100L, firstWriteTime + 20000));
+        assertEquals(2, entryLogManager.lifetimeGroup(100L, firstWriteTime + 1000000));
+
+        // the age of a ledger is kept however many other ledgers are written, until they are deleted
+        for (long ledgerId = 1000; ledgerId < 1100; ledgerId++) {
+            assertEquals(0, entryLogManager.lifetimeGroup(ledgerId, firstWriteTime + 1000000));
+        }
+        assertEquals(2, entryLogManager.lifetimeGroup(100L, firstWriteTime + 2000000));
+        for (long ledgerId = 1000; ledgerId < 1100; ledgerId++) {
+            entryLogger.ledgerDeleted(ledgerId);
+        }
+        assertEquals(1, entryLogManager.numTrackedLedgers());
+
+        // compaction does not start the lifetime of a ledger
+        assertEquals(2, entryLogManager.compactionLifetimeGroup(200L, firstWriteTime));
+        assertEquals(2, entryLogManager.compactionLifetimeGroup(100L, firstWriteTime + 2000000));
+        assertEquals(1, entryLogManager.numTrackedLedgers());
+
+        // the new ledgers share an entrylog
+        int numLedgers = 10;
+        long[] locations = new long[numLedgers];
+        for (int i = 0; i < numLedgers; i++) {
+            locations[i] = entryLogger.addEntry((long) i, generateEntry(i, 0).nioBuffer());
+        }
+        Assert.assertEquals("Number of current active EntryLogs ", 1, entryLogManager.getCopyOfCurrentLogs().size());
+        for (int i = 0; i < numLedgers; i++) {
+            assertEquals("Entries of new ledgers should be in the same entrylog",
+                    locations[0] >> 32L, locations[i] >> 32L);
+        }
+
+        // the old ledger goes to another entrylog
+        long location = entryLogger.addEntry(100L, generateEntry(100L, 0).nioBuffer());
+        Assert.assertNotEquals(locations[0] >> 32L, location >> 32L);
+        Assert.assertEquals("Number of current active EntryLogs ", 2, entryLogManager.getCopyOfCurrentLogs().size());
+
+        // the compacted entries of a ledger not written since the restart go with the old ledgers
+        long compactedLocation = entryLogger.addCompactedEntry(200L, generateEntry(200L, 0));
+        assertEquals(location >> 32L, compactedLocation >> 32L);
+        Assert.assertEquals("Number of current active EntryLogs ", 2, entryLogManager.getCopyOfCurrentLogs().size());
+        assertEquals(numLedgers + 1, entryLogManager.numTrackedLedgers());
+
+        entryLogger.flush();
+        for (int i = 0; i < numLedgers; i++) {
+            ByteBuf value = entryLogger.readEntry(i, 0, locations[i]);
+            assertEquals(generateDataString(i, 0), value.toString(value.readerIndex() + 16,
+                    value.readableBytes() - 16, Charset.defaultCharset()));
+            value.release();
+        }
+        entryLogger.close();
+    }
+
     /*
      * tests if the maximum size of cache (maximumNumberOfActiveEntryLogs) is
      * honored in EntryLogManagerForEntryLogPerLedger's cache eviction policy.
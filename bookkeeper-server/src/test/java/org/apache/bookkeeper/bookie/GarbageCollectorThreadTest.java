@@ -33,9 +33,14 @@ import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
@@ -144,6 +149,25 @@ public class GarbageCollectorThreadTest {
         Assert.assertEquals("Incorrect number of items", items + 1, sum);
     }
 
+    @Test
+    public void testCompactionScore() {
+        final long logSize = 1024 * 1024;
+        // without disk pressure, the logs reclaiming the most space per byte rewritten come first
+        double mostlyGarbage = GarbageCollectorThread.compactionScore(logSize, logSize / 10, 0.0, logSize);
+        double halfGarbage = GarbageCollectorThread.compactionScore(logSize, logSize / 2, 0.0, logSize);
+        double smallMostlyGarbage = GarbageCollectorThread.compactionScore(logSize / 10, logSize / 100, 0.0, logSize);
+        assertTrue(mostlyGarbage > halfGarbage);
+        assertTrue(smallMostlyGarbage > halfGarbage);
+        assertEquals(0.0, GarbageCollectorThread.compactionScore(logSize, logSize, 0.0, logSize), 0.0);
+
+        // under disk pressure, the logs reclaiming the most bytes come first
+        double bigHalfGarbage = GarbageCollectorThread.compactionScore(logSize, logSize / 2, 1.0, logSize);
+        double smallAllGarbage = GarbageCollectorThread.compactionScore(logSize / 10, 0, 1.0, logSize);
+        assertTrue(bigHalfGarbage > smallAllGarbage);
+        assertTrue(GarbageCollectorThread.compactionScore(logSize / 10, 0, 0.0, logSize)
+                > GarbageCollectorThread.compactionScore(logSize, logSize / 2, 0.0, logSize));
+    }
+
     @Test
     public void testExtractMetaFromEntryLogsLegacy() throws Exception {
         File ledgerDir = tmpDirs.createNew("testExtractMeta", "ledgers");
@@ -239,6 +263,101 @@ public class GarbageCollectorThreadTest {
         assertFalse(entryLogger.logExists(logId3));
     }
 
+    @Test
+    public void testIncrementalGcEntryLogs() throws Exception {
+        File ledgerDir = tmpDirs.createNew("testIncrementalGc", "ledgers");
+        EntryLogger entryLogger = newLegacyEntryLogger(20000, ledgerDir);
+        MockLedgerStorage storage = spy(new MockLedgerStorage());
+        ServerConfiguration serverConf = TestBKConfiguration.newServerConfiguration()
+                .setGcEntryLogIncrementalCheckEnabled(true);
+
+        GarbageCollectorThread gcThread = new GarbageCollectorThread(
+                serverConf, new MockLedgerManager(),
+                newDirsManager(ledgerDir),
+                storage, entryLogger,
+                NullStatsLogger.INSTANCE);
+
+        // Ledger 1 is on the first entry log, ledger 2 on the second one
+        long loc1 = entryLogger.addEntry(1L, makeEntry(1L, 1L, 15000));
+        long loc2 = entryLogger.addEntry(2L, makeEntry(2L, 1L, 15000));
+        assertThat(logIdFromLocation(loc2), greaterThan(logIdFromLocation(loc1)));
+        entryLogger.addEntry(3L, makeEntry(3L, 1L, 15000));
+        entryLogger.flush();
+        long logId1 = logIdFromLocation(loc1);
+        long logId2 = logIdFromLocation(loc2);
+
+        storage.setMasterKey(1L, new byte[0]);
+        storage.setMasterKey(2L, new byte[0]);
+        storage.setMasterKey(3L, new byte[0]);
+
+        // the first run checks every ledger
+        final EntryLogMetadataMap entryLogMetaMap = gcThread.getEntryLogMetaMap();
+        gcThread.extractMetaFromEntryLogs();
+        gcThread.doGcEntryLogs(false);
+        verify(storage, atLeastOnce()).ledgerExists(anyLong());
+        assertTrue(entryLogMetaMap.containsKey(logId1));
+        assertTrue(entryLogMetaMap.containsKey(logId2));
+
+        // nothing was deleted, nothing is looked up
+        clearInvocations(storage);
+        gcThread.extractMetaFromEntryLogs();
+        gcThread.doGcEntryLogs(false);
+        assertTrue(entryLogMetaMap.containsKey(logId1));
+        assertTrue(entryLogMetaMap.containsKey(logId2));
+
+        // the deletion only updates the live bytes of the entry log of the ledger
+        EntryLogLiveBytes liveBytes = gcThread.getEntryLogLiveBytes();
+        long liveBytes1 = liveBytes.getLiveBytes(logId1);
+        assertThat(liveBytes.getLiveBytes(logId2), greaterThan(0L));
+        storage.deleteLedger(2L);
+        assertEquals(0L, liveBytes.getLiveBytes(logId2));
+        assertEquals(liveBytes1, liveBytes.getLiveBytes(logId1));
+
+        // the deleted ledger is removed from its entry log without looking up the others
+        gcThread.extractMetaFromEntryLogs();
+        gcThread.doGcEntryLogs(false);
+        verify(storage, never()).ledgerExists(anyLong());
+        assertTrue(entryLogMetaMap.containsKey(logId1));
+        assertFalse(entryLogMetaMap.containsKey(logId2));
+        assertFalse(entryLogger.logExists(logId2));
+
+        // a forced run checks every ledger again
+        gcThread.doGcEntryLogs(true);
+        verify(storage, atLeastOnce()).ledgerExists(anyLong());
+        assertTrue(entryLogMetaMap.containsKey(logId1));
+    }
+
+    @Test
+    public void testEntryLogLiveBytesPrunesRemovedEntryLogs() {
+        EntryLogLiveBytes liveBytes = new EntryLogLiveBytes();
+        EntryLogMetadata meta1 = new EntryLogMetadata(1L);
+        meta1.addLedgerSize(10L, 100L);
+        meta1.addLedgerSize(20L, 200L);
+        EntryLogMetadata meta2 = new EntryLogMetadata(2L);
+        meta2.addLedgerSize(10L, 1000L);
+        liveBytes.addEntryLog(meta1);
+        liveBytes.addEntryLog(meta2);
+        assertEquals(2, liveBytes.numEntryLogsOfLedger(10L));
+        assertEquals(1, liveBytes.numEntryLogsOfLedger(20L));
+        assertEquals(1300L, liveBytes.getTotalLiveBytes());
+
+        // revisiting an entry log does not index it twice
+        liveBytes.addEntryLog(meta1);
+        assertEquals(2, liveBytes.numEntryLogsOfLedger(10L));
+        assertEquals(1300L, liveBytes.getTotalLiveBytes());
+
+        // a removed entry log, e.g. once compacted, is dropped from the entry logs of its live ledgers
+        liveBytes.removeEntryLog(1L);
+        assertEquals(1, liveBytes.numEntryLogsOfLedger(10L));
+        assertEquals(0, liveBytes.numEntryLogsOfLedger(20L));
+        assertEquals(1000L, liveBytes.getTotalLiveBytes());
+
+        liveBytes.ledgerDeleted(10L);
+        assertEquals(0, liveBytes.numEntryLogsOfLedger(10L));
+        assertEquals(0L, liveBytes.getLiveBytes(2L));
+        assertTrue(liveBytes.snapshot().entryLogs.contains(2L));
+    }
+
     @Test
     public void testCompactionWithFileSizeCheck() throws Exception {
         File ledgerDir = tmpDirs.createNew("testFileSize", "ledgers");
@@ -0,0 +1,126 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link JournalGroupCommitController}.
+ */
+public class JournalGroupCommitControllerTest {
+
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long MAX_WAIT = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long INTERVAL = JournalGroupCommitController.CONTROL_INTERVAL_NANOS;
+
+    private long now = 0;
+
+    private JournalGroupCommitController newController() {
+        return new JournalGroupCommitController(TARGET, MAX_WAIT, now, NullStatsLogger.INSTANCE);
+    }
+
+    private void runInterval(JournalGroupCommitController controller, int adds, long addLatency,
+                             long forceWriteLatency, int drainedEntries) {
+        for (int i = 0; i < adds; i++) {
+            controller.recordAddLatency(addLatency);
+        }
+        controller.recordForceWriteLatency(forceWriteLatency);
+        now += INTERVAL;
+        controller.onEntriesDrained(drainedEntries, now);
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long latency : new long[] { 0, 1, 3, 4, 7, 8, 9, 1000, 123456789L }) {
+            int bucket = JournalGroupCommitController.bucketIndex(latency);
+            assertTrue(JournalGroupCommitController.bucketUpperBound(bucket) >= latency);
+            if (bucket > 0) {
+                assertTrue(JournalGroupCommitController.bucketUpperBound(bucket - 1) < latency);
+            }
+        }
+    }
+
+    @Test
+    public void testDecreaseWhenOverTarget() {
+        JournalGroupCommitController controller = newController();
+        assertEquals(MAX_WAIT, controller.getGroupWaitNanos());
+
+        runInterval(controller, 1000, TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(1), 100);
+        assertEquals(MAX_WAIT / 2, controller.getGroupWaitNanos());
+        assertTrue(controller.getObservedP99Nanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+
+        for (int i = 0; i < 20; i++) {
+            runInterval(controller, 1000, TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(1), 100);
+        }
+        assertEquals(JournalGroupCommitController.MIN_GROUP_WAIT_NANOS, controller.getGroupWaitNanos());
+    }
+
+    @Test
+    public void testIncreaseWhenBelowTarget() {
+        JournalGroupCommitController controller = newController();
+        runInterval(controller, 1000, TimeUnit.MILLISECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(1), 100);
+        long wait = controller.getGroupWaitNanos();
+        assertTrue(wait < MAX_WAIT);
+
+        // busy journal well below the target latency
+        runInterval(controller, 10000, TimeUnit.MILLISECONDS.toNanos(2), TimeUnit.MILLISECONDS.toNanos(1), 100);
+        assertTrue(controller.getGroupWaitNanos() > wait);
+
+        for (int i = 0; i < 20; i++) {
+            runInterval(controller, 10000, TimeUnit.MILLISECONDS.toNanos(2), TimeUnit.MILLISECONDS.toNanos(1), 100);
+        }
+        assertEquals(MAX_WAIT, controller.getGroupWaitNanos());
+    }
+
+    @Test
+    public void testIncreaseLimitedByForceWriteLatency() {
+        JournalGroupCommitController controller = newController();
+        for (int i = 0; i < 20; i++) {
+            runInterval(controller, 10000, TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(4), 100);
+        }
+        // the wait leaves room for the force write within the target
+        assertEquals(TARGET - TimeUnit.MILLISECONDS.toNanos(4), controller.getGroupWaitNanos());
+    }
+
+    @Test
+    public void testLightLoad() {
+        JournalGroupCommitController controller = newController();
+        // one add per interval, nothing to group with
+        runInterval(controller, 1, TimeUnit.MILLISECONDS.toNanos(1), TimeUnit.MILLISECONDS.toNanos(1), 1);
+        assertEquals(JournalGroupCommitController.MIN_GROUP_WAIT_NANOS, controller.getGroupWaitNanos());
+    }
+
+    @Test
+    public void testNoUpdateWithinInterval() {
+        JournalGroupCommitController controller = newController();
+        for (int i = 0; i < 1000; i++) {
+            controller.recordAddLatency(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        controller.onEntriesDrained(1, now + INTERVAL / 2);
+        assertEquals(MAX_WAIT, controller.getGroupWaitNanos());
+    }
+}
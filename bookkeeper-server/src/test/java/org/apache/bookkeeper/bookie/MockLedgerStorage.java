@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.PrimitiveIterator;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
 import org.apache.bookkeeper.common.util.Watcher;
@@ -58,6 +59,7 @@ public class MockLedgerStorage implements CompactableLedgerStorage {
     private final ConcurrentHashMap<Long, LedgerInfo> ledgers = new ConcurrentHashMap<>();
     private final EnumSet<StorageState> storageStateFlags = EnumSet.noneOf(StorageState.class);
     private final List<EntryLocation> entryLocations = new ArrayList<>();
+    private final List<LedgerDeletionListener> ledgerDeletionListeners = new CopyOnWriteArrayList<>();
 
     @Override
     public void initialize(ServerConfiguration conf,
@@ -243,11 +245,14 @@ public class MockLedgerStorage implements CompactableLedgerStorage {
     @Override
     public void deleteLedger(long ledgerId) throws IOException {
         ledgers.remove(ledgerId);
+        for (LedgerDeletionListener listener : ledgerDeletionListeners) {
+            listener.ledgerDeleted(ledgerId);
+        }
     }
 
     @Override
     public void registerLedgerDeletionListener(LedgerDeletionListener listener) {
-        throw new UnsupportedOperationException("Not supported in mock, implement if you need it");
+        ledgerDeletionListeners.add(listener);
     }
 
     @Override
@@ -42,7 +42,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.bookie.Bookie.NoEntryException;
 import org.apache.bookkeeper.bookie.EntryLogMetadata;
+import org.apache.bookkeeper.bookie.storage.EntryLogTransferScanner;
 import org.apache.bookkeeper.bookie.storage.EntryLogger;
 import org.apache.bookkeeper.bookie.storage.MockEntryLogIds;
 import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
@@ -517,5 +519,169 @@ public class TestDirectEntryLogger {
             assertThat(logId3, equalTo(3));
         }
     }
+
+    @Test
+    public void testTransferEntriesCopiesEntries() throws Exception {
+        File ledgerDir = tmpDirs.createNew("transferEntries", "ledgers");
+        File curDir = new File(ledgerDir, "current");
+        curDir.mkdirs();
+
+        final long ledgerId2 = 5678;
+        List<ByteBuf> expected = new ArrayList<>();
+        try (EntryLogger elog = new DirectEntryLogger(
+                     curDir, new MockEntryLogIds(),
+                     new NativeIOImpl(),
+                     ByteBufAllocator.DEFAULT,
+                     MoreExecutors.newDirectExecutorService(),
+                     MoreExecutors.newDirectExecutorService(),
+                     32 * 1024, // max file size
+                     10 * 1024 * 1024, // max sane entry size
+                     1024 * 1024, // total write buffer size
+                     1024 * 1024, // total read buffer size
+                     16 * 1024, // read buffer size
+                     1, // numReadThreads
+                     300, // max fd cache time in seconds
+                     slog, NullStatsLogger.INSTANCE)) {
+            long firstLocation = -1;
+            for (int i = 0; i < 10; i++) {
+                ByteBuf e = makeEntry(ledgerId1, i, 1000);
+                expected.add(e);
+                long location = elog.addEntry(ledgerId1, e.slice());
+                if (firstLocation < 0) {
+                    firstLocation = location;
+                }
+                ByteBuf other = makeEntry(ledgerId2, i, 1000);
+                elog.addEntry(ledgerId2, other);
+                other.release();
+            }
+            int logId = logIdFromLocation(firstLocation);
+            // roll over to the next log, so that the first one can be moved
+            long location = firstLocation;
+            while (logIdFromLocation(location) == logId) {
+                ByteBuf other = makeEntry(ledgerId2, 100, 1000);
+                location = elog.addEntry(ledgerId2, other);
+                other.release();
+            }
+            elog.flush();
+
+            // the direct entry logger moves the entries one by one, acquiring the bytes of each before writing it
+            List<Long> locations = new ArrayList<>();
+            AtomicInteger transferred = new AtomicInteger();
+            elog.transferEntries(logId, new EntryLogTransferScanner() {
+                @Override
+                public boolean accept(long ledgerId) {
+                    return ledgerId == ledgerId1;
+                }
+
+                @Override
+                public void beforeTransfer(int length, int entries) {
+                    assertThat(entries, equalTo(1));
+                    assertThat(transferred.get(), equalTo(locations.size()));
+                    transferred.incrementAndGet();
+                }
+
+                @Override
+                public void process(long ledgerId, long entryId, long location, int entrySize) {
+                    assertThat(entryId, equalTo((long) locations.size()));
+                    locations.add(location);
+                }
+            });
+            elog.flush();
+
+            assertThat(locations.size(), equalTo(expected.size()));
+            for (int i = 0; i < locations.size(); i++) {
+                assertThat(logIdFromLocation(locations.get(i)), greaterThan(logId));
+                ByteBuf e = elog.readEntry(ledgerId1, i, locations.get(i));
+                assertEntryEquals(e, expected.get(i));
+                e.release();
+            }
+        } finally {
+            expected.forEach(ReferenceCountUtil::release);
+        }
+    }
+
+    @Test
+    public void testReadEntriesCoalesced() throws Exception {
+        testReadEntries(false);
+    }
+
+    @Test
+    public void testReadEntriesMmap() throws Exception {
+        testReadEntries(true);
+    }
+
+    private void testReadEntries(boolean mmapFlushedLogs) throws Exception {
+        File ledgerDir = tmpDirs.createNew("readEntries", "ledgers");
+        File curDir = new File(ledgerDir, "current");
+        curDir.mkdirs();
+
+        final long ledgerId2 = 5678;
+        final int numEntries = 100;
+        List<ByteBuf> expected = new ArrayList<>();
+        long[] entryIds = new long[numEntries];
+        long[] locations = new long[numEntries];
+
+        try (EntryLogger elog = new DirectEntryLogger(
+                     curDir, new MockEntryLogIds(),
+                     new NativeIOImpl(),
+                     ByteBufAllocator.DEFAULT,
+                     MoreExecutors.newDirectExecutorService(),
+                     MoreExecutors.newDirectExecutorService(),
+                     32 * 1024, // max file size, so that the entries are spread over a few logs
+                     10 * 1024 * 1024, // max sane entry size
+                     1024 * 1024, // total write buffer size
+                     1024 * 1024, // total read buffer size
+                     16 * 1024, // read buffer size
+                     1, // numReadThreads
+                     300, // max fd cache time in seconds
+                     mmapFlushedLogs,
+                     slog, NullStatsLogger.INSTANCE)) {
+            for (int i = 0; i < numEntries; i++) {
+                ByteBuf e = makeEntry(ledgerId1, i, 500 + i);
+                expected.add(e);
+                entryIds[i] = i;
+                locations[i] = elog.addEntry(ledgerId1, e.slice());
+                if (i % 3 == 0) {
+                    // entries of other ledgers leave gaps between the entries of ledgerId1
+                    ByteBuf other = makeEntry(ledgerId2, i, 1000);
+                    elog.addEntry(ledgerId2, other);
+                    other.release();
+                }
+            }
+            elog.flush();
+            assertThat(logIdFromLocation(locations[numEntries - 1]), greaterThan(logIdFromLocation(locations[0])));
+
+            // ask for the entries out of order, they must come back in the requested order
+            long[] reversedIds = new long[numEntries];
+            long[] reversedLocations = new long[numEntries];
+            for (int i = 0; i < numEntries; i++) {
+                reversedIds[i] = entryIds[numEntries - 1 - i];
+                reversedLocations[i] = locations[numEntries - 1 - i];
+            }
+            ByteBuf[] entries = elog.readEntries(ledgerId1, reversedIds, reversedLocations);
+            assertThat(entries.length, equalTo(numEntries));
+            for (int i = 0; i < numEntries; i++) {
+                assertEntryEquals(entries[i], expected.get(numEntries - 1 - i));
+                ReferenceCountUtil.release(entries[i]);
+            }
+
+            // a location which doesn't match the expected entry fails the whole batch
+            long[] badIds = new long[] { 0L, 2L };
+            long[] badLocations = new long[] { locations[0], locations[1] };
+            Assertions.assertThrows(IOException.class, () -> elog.readEntries(ledgerId1, badIds, badLocations));
+
+            if (mmapFlushedLogs) {
+                // a location past the end of its log is reported for the entry it was given for
+                long[] missingIds = new long[] { 0L, 1L };
+                long[] missingLocations = new long[] {
+                    locations[0], (locations[0] & 0xFFFFFFFF00000000L) | (30 * 1024 * 1024) };
+                NoEntryException noEntry = Assertions.assertThrows(NoEntryException.class,
+                        () -> elog.readEntries(ledgerId1, missingIds, missingLocations));
+                assertThat(noEntry.getEntry(), equalTo(1L));
+            }
+        } finally {
+            expected.forEach(ReferenceCountUtil::release);
+        }
+    }
 }
 
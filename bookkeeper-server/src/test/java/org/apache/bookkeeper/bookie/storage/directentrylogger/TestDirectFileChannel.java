@@ -0,0 +1,219 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.directentrylogger;
+
+import static org.mockito.Mockito.mock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.BookieFileChannel;
+import org.apache.bookkeeper.bookie.Journal;
+import org.apache.bookkeeper.bookie.LedgerDirsManager;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.conf.TestBKConfiguration;
+import org.apache.bookkeeper.test.TmpDirs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+/**
+ * TestDirectFileChannel.
+ */
+@DisabledOnOs(OS.WINDOWS)
+public class TestDirectFileChannel {
+    private final TmpDirs tmpDirs = new TmpDirs();
+    private final Random random = new Random();
+
+    @AfterEach
+    public void cleanup() throws Exception {
+        tmpDirs.cleanup();
+    }
+
+    @Test
+    public void testAppendAndForce() throws Exception {
+        File dir = tmpDirs.createNew("appendAndForce", "journal");
+        File file = new File(dir, "test.txn");
+        ServerConfiguration conf = new ServerConfiguration().setJournalWriteBufferSizeKB(16);
+
+        byte[] expected = new byte[100000];
+        random.nextBytes(expected);
+        try (DirectFileChannelProvider provider = new DirectFileChannelProvider(new NativeIOImpl())) {
+            BookieFileChannel bookieFileChannel = provider.open(file, conf);
+            FileChannel fc = bookieFileChannel.getFileChannel(true);
+
+            int written = 0;
+            while (written < expected.length) {
+                int length = Math.min(random.nextInt(10000), expected.length - written);
+                Assertions.assertEquals(length, fc.write(ByteBuffer.wrap(expected, written, length)));
+                written += length;
+                Assertions.assertEquals(written, fc.position());
+                if (random.nextBoolean()) {
+                    // the partial block written on force must be rewritten by the next writes
+                    fc.force(false);
+                    Assertions.assertArrayEquals(Arrays.copyOf(expected, written),
+                            Arrays.copyOf(Files.readAllBytes(file.toPath()), written));
+                }
+            }
+
+            // positional reads see the buffered data
+            ByteBuffer read = ByteBuffer.allocate(1000);
+            fc.read(read, expected.length - 1000);
+            Assertions.assertArrayEquals(Arrays.copyOfRange(expected, expected.length - 1000, expected.length),
+                    read.array());
+
+            provider.close(bookieFileChannel);
+        }
+
+        byte[] onDisk = Files.readAllBytes(file.toPath());
+        Assertions.assertEquals(Buffer.nextAlignment(expected.length), onDisk.length);
+        Assertions.assertArrayEquals(expected, Arrays.copyOf(onDisk, expected.length));
+        for (int i = expected.length; i < onDisk.length; i++) {
+            Assertions.assertEquals(0, onDisk[i]);
+        }
+    }
+
+    @Test
+    public void testPreallocation() throws Exception {
+        File dir = tmpDirs.createNew("preallocation", "journal");
+        File file = new File(dir, "test.txn");
+
+        try (DirectFileChannelProvider provider = new DirectFileChannelProvider(new NativeIOImpl())) {
+            BookieFileChannel bookieFileChannel = provider.open(file, new ServerConfiguration());
+            FileChannel fc = bookieFileChannel.getFileChannel(true);
+            fc.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+            fc.write(ByteBuffer.allocate(512), (1 << 20) - 512);
+            Assertions.assertEquals(1 << 20, fc.size());
+            Assertions.assertEquals(3, fc.position());
+
+            // cannot write over the appended data
+            Assertions.assertThrows(IOException.class, () -> fc.write(ByteBuffer.allocate(512), 512));
+            provider.close(bookieFileChannel);
+        }
+
+        byte[] onDisk = Files.readAllBytes(file.toPath());
+        Assertions.assertEquals(1 << 20, onDisk.length);
+        Assertions.assertArrayEquals(new byte[] { 1, 2, 3 }, Arrays.copyOf(onDisk, 3));
+    }
+
+    @Test
+    public void testExistingFilesAreReadThroughPageCache() throws Exception {
+        File dir = tmpDirs.createNew("existing", "journal");
+        File file = new File(dir, "test.txn");
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+
+        try (DirectFileChannelProvider provider = new DirectFileChannelProvider(new NativeIOImpl())) {
+            BookieFileChannel bookieFileChannel = provider.open(file, new ServerConfiguration());
+            FileChannel fc = bookieFileChannel.getFileChannel();
+            Assertions.assertFalse(fc instanceof DirectFileChannel);
+            ByteBuffer read = ByteBuffer.allocate(3);
+            Assertions.assertEquals(3, fc.read(read));
+            Assertions.assertNotNull(bookieFileChannel.getFD());
+            provider.close(bookieFileChannel);
+        }
+    }
+
+    @Test
+    public void testExistingFilesAreNeverWrittenWithDirectIO() throws Exception {
+        File dir = tmpDirs.createNew("existingEmpty", "journal");
+        File empty = new File(dir, "empty.txn");
+        Assertions.assertTrue(empty.createNewFile());
+        File nonEmpty = new File(dir, "nonEmpty.txn");
+        Files.write(nonEmpty.toPath(), new byte[] { 1, 2, 3 });
+
+        try (DirectFileChannelProvider provider = new DirectFileChannelProvider(new NativeIOImpl())) {
+            // an empty file left by a crash is replayed, not written
+            BookieFileChannel bookieFileChannel = provider.open(empty, new ServerConfiguration());
+            FileChannel fc = bookieFileChannel.getFileChannel(false);
+            Assertions.assertFalse(fc instanceof DirectFileChannel);
+            Assertions.assertEquals(-1, fc.read(ByteBuffer.allocate(3)));
+            Assertions.assertThrows(IOException.class, () -> bookieFileChannel.getFileChannel(true));
+            provider.close(bookieFileChannel);
+
+            BookieFileChannel nonEmptyChannel = provider.open(nonEmpty, new ServerConfiguration());
+            Assertions.assertThrows(IOException.class, () -> nonEmptyChannel.getFileChannel(true));
+            provider.close(nonEmptyChannel);
+        }
+    }
+
+    @Test
+    public void testJournal() throws Exception {
+        File journalDir = tmpDirs.createNew("journal", "current");
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setJournalDirName(journalDir.getPath())
+            .setJournalChannelProvider(DirectFileChannelProvider.class.getName())
+            .setJournalRemovePagesFromCache(true)
+            .setMetadataServiceUri(null);
+
+        Journal journal = new Journal(0, journalDir, conf, mock(LedgerDirsManager.class));
+        journal.start();
+
+        final int numEntries = 200;
+        List<byte[]> written = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(numEntries);
+        for (int i = 0; i < numEntries; i++) {
+            ByteBuf entry = Unpooled.buffer();
+            entry.writeLong(1);
+            entry.writeLong(i);
+            byte[] data = new byte[random.nextInt(5000)];
+            random.nextBytes(data);
+            entry.writeBytes(data);
+            written.add(Arrays.copyOf(entry.array(), entry.readableBytes()));
+            journal.logAddEntry(entry, false, (rc, ledgerId, entryId, addr, ctx) -> {
+                Assertions.assertEquals(0, rc);
+                latch.countDown();
+            }, null);
+            if (i % 10 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        Assertions.assertTrue(latch.await(20, TimeUnit.SECONDS));
+        journal.shutdown();
+
+        List<byte[]> read = new ArrayList<>();
+        List<Long> journalIds = Journal.listJournalIds(journalDir, null);
+        Assertions.assertEquals(1, journalIds.size());
+        journal.scanJournal(journalIds.get(0), 0, (journalVersion, offset, entry) -> {
+            byte[] bytes = new byte[entry.remaining()];
+            entry.get(bytes);
+            read.add(bytes);
+        }, false);
+
+        Assertions.assertEquals(numEntries, read.size());
+        for (int i = 0; i < numEntries; i++) {
+            Assertions.assertArrayEquals(written.get(i), read.get(i));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.test.TestStatsProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link AdaptiveReadAhead}.
+ */
+public class AdaptiveReadAheadTest {
+
+    private Counter wastedBytes;
+    private AdaptiveReadAhead readAhead;
+
+    @Before
+    public void setup() {
+        TestStatsProvider.TestStatsLogger statsLogger = new TestStatsProvider().getStatsLogger("test");
+        wastedBytes = statsLogger.getCounter("wasted");
+        readAhead = new AdaptiveReadAhead(10, 80, statsLogger.getOpStatsLogger("window"), wastedBytes);
+    }
+
+    @Test
+    public void sequentialReader() {
+        assertEquals(10, readAhead.onCacheMiss(1, 0));
+        readAhead.onReadAheadCompleted(1, 11, 1000);
+
+        assertEquals(20, readAhead.onCacheMiss(1, 11));
+        readAhead.onReadAheadCompleted(1, 32, 2000);
+
+        assertEquals(40, readAhead.onCacheMiss(1, 32));
+        readAhead.onReadAheadCompleted(1, 73, 4000);
+
+        assertEquals(80, readAhead.onCacheMiss(1, 73));
+        readAhead.onReadAheadCompleted(1, 154, 8000);
+
+        // Capped to the max window
+        assertEquals(80, readAhead.onCacheMiss(1, 154));
+
+        // Reader caught up with a pending read-ahead, keep the window
+        assertEquals(80, readAhead.onCacheMiss(1, 155));
+        assertEquals(0, wastedBytes.get().longValue());
+    }
+
+    @Test
+    public void randomReader() {
+        assertEquals(10, readAhead.onCacheMiss(1, 100));
+        readAhead.onReadAheadCompleted(1, 111, 1000);
+
+        assertEquals(5, readAhead.onCacheMiss(1, 5));
+        readAhead.onReadAheadCompleted(1, 11, 500);
+        assertEquals(1000, wastedBytes.get().longValue());
+
+        assertEquals(0, readAhead.onCacheMiss(1, 500));
+        assertEquals(1500, wastedBytes.get().longValue());
+
+        assertEquals(0, readAhead.onCacheMiss(1, 50));
+        assertEquals(1500, wastedBytes.get().longValue());
+
+        // Switching back to sequential reads restarts from the initial window
+        assertEquals(10, readAhead.onCacheMiss(1, 51));
+    }
+
+    @Test
+    public void independentLedgers() {
+        assertEquals(10, readAhead.onCacheMiss(1, 0));
+        readAhead.onReadAheadCompleted(1, 11, 1000);
+        assertEquals(10, readAhead.onCacheMiss(2, 1000));
+        readAhead.onReadAheadCompleted(2, 1011, 1000);
+
+        assertEquals(20, readAhead.onCacheMiss(1, 11));
+        assertEquals(5, readAhead.onCacheMiss(2, 0));
+        assertEquals(2, readAhead.getTrackedLedgersCount());
+
+        readAhead.ledgerDeleted(2);
+        assertEquals(1, readAhead.getTrackedLedgersCount());
+        assertEquals(10, readAhead.onCacheMiss(2, 0));
+    }
+}
@@ -22,6 +22,9 @@ package org.apache.bookkeeper.bookie.storage.ldb;
 
 import static org.junit.Assert.assertArrayEquals;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import org.junit.Test;
 
 /**
@@ -107,4 +110,48 @@ public class ArraySortGroupTest {
         assertArrayEquals(expectedSorted, data);
     }
 
+    @Test
+    public void parallelSort() {
+        Random random = new Random(1);
+        for (int groups : new int[] { 0, 1, 1000, 16 * 1024, 100_000 }) {
+            long[] data = new long[groups * 4];
+            for (int i = 0; i < data.length; i += 4) {
+                // Few distinct first keys, so that the comparison often falls to the second key
+                data[i] = random.nextInt(100);
+                data[i + 1] = i;
+                data[i + 2] = random.nextLong();
+                data[i + 3] = random.nextLong();
+            }
+            // Shuffle the groups
+            for (int i = groups - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                for (int k = 0; k < 4; k++) {
+                    long tmp = data[i * 4 + k];
+                    data[i * 4 + k] = data[j * 4 + k];
+                    data[j * 4 + k] = tmp;
+                }
+            }
+
+            long[] expectedSorted = Arrays.copyOf(data, data.length);
+            ArrayGroupSort.sort(expectedSorted);
+
+            ArrayGroupSort.parallelSort(data);
+            assertArrayEquals(expectedSorted, data);
+        }
+    }
+
+    @Test
+    public void parallelSortWithOffset() {
+        Random random = new Random(2);
+        long[] data = new long[4 + 200_000 * 4 + 4];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextLong();
+        }
+
+        long[] expectedSorted = Arrays.copyOf(data, data.length);
+        ArrayGroupSort.sort(expectedSorted, 4, data.length - 8);
+
+        ArrayGroupSort.parallelSort(data, 4, data.length - 8, new long[data.length - 8]);
+        assertArrayEquals(expectedSorted, data);
+    }
 }
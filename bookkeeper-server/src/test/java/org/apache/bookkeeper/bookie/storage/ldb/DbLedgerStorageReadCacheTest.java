@@ -29,6 +29,7 @@ import static org.junit.Assert.assertTrue;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
 import java.io.File;
 import java.util.List;
 import org.apache.bookkeeper.bookie.BookieImpl;
@@ -173,6 +174,31 @@ public class DbLedgerStorageReadCacheTest {
                 cacheBatchSizeResult.getCacheMissCount() + cacheBatchSizeResult.getCacheHitCount());
     }
 
+    @Test
+    public void testBatchedReadsReadAhead() throws Exception {
+        TestDB testDB = new TestDB();
+        try {
+            setup(testDB, 16L, 100, -1);
+            addEntries(testDB.getStorage(), 0, 1, 0, 200);
+            testDB.getStorage().flush();
+
+            // the first batch misses the read cache and reads ahead past its last entry
+            List<ByteBuf> entries = testDB.getStorage().getEntries(0, 0, 10);
+            assertEquals(10, entries.size());
+            entries.forEach(ReferenceCountUtil::release);
+
+            DbLedgerStorageStats ledgerStats = testDB.getStorage().getLedgerStorageList().get(0)
+                    .getDbLedgerStorageStats();
+            long cacheMissCount = ledgerStats.getReadCacheMissCounter().get();
+            entries = testDB.getStorage().getEntries(0, 10, 10);
+            assertEquals(10, entries.size());
+            entries.forEach(ReferenceCountUtil::release);
+            assertEquals(cacheMissCount, ledgerStats.getReadCacheMissCounter().get().longValue());
+        } finally {
+            teardown(testDB.getStorage(), testDB.getTmpDir());
+        }
+    }
+
     public void setup(TestDB testDB, long readAheadCacheMaxSizeMb,
                       int readAheadCacheBatchSize, long readAheadCacheBatchBytesSize) throws Exception {
         File tmpDir = File.createTempFile("bkTest", ".dir");
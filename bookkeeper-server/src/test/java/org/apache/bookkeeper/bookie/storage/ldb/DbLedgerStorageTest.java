@@ -34,7 +34,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.Bookie.NoEntryException;
 import org.apache.bookkeeper.bookie.BookieException;
@@ -252,6 +256,71 @@ public class DbLedgerStorageTest {
         assertEquals(newEntry3, res);
     }
 
+    @Test
+    public void testConcurrentFlushAndCompactionWithRangeEncoding() throws Exception {
+        File dir = new File(tmpDir, "range-encoding");
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(dir));
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setLedgerStorageClass(DbLedgerStorage.class.getName());
+        conf.setLedgerDirNames(new String[] { dir.toString() });
+        conf.setProperty(DbLedgerStorage.ENTRY_LOCATION_INDEX_RANGE_ENCODING, true);
+        Bookie bookie = new TestBookieImpl(conf);
+        DbLedgerStorage rangeStorage = (DbLedgerStorage) bookie.getLedgerStorage();
+        SingleDirectoryDbLedgerStorage singleDirStorage = rangeStorage.getLedgerStorageList().get(0);
+        EntryLocationIndex index = singleDirStorage.getEntryLocationIndex();
+
+        long ledgerId = 1;
+        int rounds = 200;
+        int entriesPerRound = 10;
+        rangeStorage.setMasterKey(ledgerId, "key".getBytes());
+
+        AtomicLong flushedEntries = new AtomicLong();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int round = 0; round < rounds; round++) {
+                    for (int i = 0; i < entriesPerRound; i++) {
+                        ByteBuf entry = Unpooled.buffer(64);
+                        entry.writeLong(ledgerId);
+                        entry.writeLong((long) round * entriesPerRound + i);
+                        entry.writeBytes("entry".getBytes());
+                        rangeStorage.addEntry(entry);
+                    }
+                    rangeStorage.flush();
+                    flushedEntries.set((long) (round + 1) * entriesPerRound);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+
+        // Relocate the last flushed entries while the next ones are flushed, as a compaction would
+        Map<Long, Long> relocated = new HashMap<>();
+        long relocationLogId = 1000;
+        while (writer.isAlive()) {
+            long flushed = flushedEntries.get();
+            List<EntryLocation> locations = new ArrayList<>();
+            for (long entryId = Math.max(0, flushed - 15); entryId < flushed; entryId++) {
+                long location = (relocationLogId << 32) | entryId;
+                locations.add(new EntryLocation(ledgerId, entryId, location));
+                relocated.put(entryId, location);
+            }
+            singleDirStorage.updateEntriesLocations(locations);
+            relocationLogId++;
+        }
+        writer.join();
+
+        for (long entryId = 0; entryId < (long) rounds * entriesPerRound; entryId++) {
+            long location = index.getLocation(ledgerId, entryId);
+            if (relocated.containsKey(entryId)) {
+                assertEquals("entry " + entryId, (long) relocated.get(entryId), location);
+            } else {
+                assertTrue("entry " + entryId, location != 0 && (location >>> 32) < 1000);
+            }
+        }
+        bookie.shutdown();
+    }
+
     @Test
     public void doubleDirectory() throws Exception {
         int gcWaitTime = 1000;
@@ -610,6 +679,45 @@ public class DbLedgerStorageTest {
         assertFalse(storage.entryExists(ledgerId, 1));
     }
 
+    @Test
+    public void testGetEntries() throws Exception {
+        long ledgerId = 0xbeefef;
+        storage.setMasterKey(ledgerId, "foobar".getBytes());
+
+        for (long entryId = 0; entryId < 10; entryId++) {
+            ByteBuf entry = Unpooled.buffer(1024);
+            entry.writeLong(ledgerId); // ledger id
+            entry.writeLong(entryId); // entry id
+            entry.writeBytes(("entry-" + entryId).getBytes());
+            storage.addEntry(entry);
+        }
+        storage.flush();
+
+        // pull one entry into the read cache, the rest comes from the entry log
+        ReferenceCountUtil.release(storage.getEntry(ledgerId, 5));
+
+        // reading stops at the last entry of the ledger
+        List<ByteBuf> entries = storage.getEntries(ledgerId, 2, 20);
+        assertEquals(8, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            ByteBuf entry = entries.get(i);
+            assertEquals(ledgerId, entry.getLong(0));
+            assertEquals(2 + i, entry.getLong(8));
+            ReferenceCountUtil.release(entry);
+        }
+
+        entries = storage.getEntries(ledgerId, 0, 3);
+        assertEquals(3, entries.size());
+        entries.forEach(ReferenceCountUtil::release);
+
+        try {
+            storage.getEntries(ledgerId, 10, 5);
+            fail("should have failed");
+        } catch (NoEntryException e) {
+            // OK
+        }
+    }
+
     @Test
     public void testStorageStateFlags() throws Exception {
         assertTrue(storage.getStorageStateFlags().isEmpty());
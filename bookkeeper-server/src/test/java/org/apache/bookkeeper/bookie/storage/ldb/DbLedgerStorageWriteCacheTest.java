@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.bookie.storage.ldb;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import io.netty.buffer.ByteBuf;
@@ -38,6 +39,8 @@ import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.conf.TestBKConfiguration;
 import org.apache.bookkeeper.meta.LedgerManager;
 import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.test.TestStatsProvider;
+import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -76,16 +79,11 @@ public class DbLedgerStorageWriteCacheTest {
             }
 
           @Override
-          public void flush() throws IOException {
+          protected void flushWriteCacheInBackground() throws IOException {
               flushMutex.lock();
               try {
-                  // Swap the write caches and block indefinitely to simulate a slow disk
-                  WriteCache tmp = writeCacheBeingFlushed;
-                  writeCacheBeingFlushed = writeCache;
-                  writeCache = tmp;
-
-                  // since the cache is switched, we can allow flush to be triggered
-                  hasFlushBeenTriggered.set(false);
+                  // Rotate the write cache and block indefinitely to simulate a slow disk
+                  rotateWriteCache();
 
                   // Block the flushing thread
                   try {
@@ -95,6 +93,7 @@ public class DbLedgerStorageWriteCacheTest {
                       return;
                   }
               } finally {
+                  hasFlushBeenTriggered.set(false);
                   flushMutex.unlock();
               }
           }
@@ -165,4 +164,177 @@ public class DbLedgerStorageWriteCacheTest {
             // Expected
         }
     }
+
+    @Test
+    public void writeCacheRing() throws Exception {
+        File ringDir = File.createTempFile("bkTest", ".dir");
+        ringDir.delete();
+        ringDir.mkdir();
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(ringDir));
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setGcWaitTime(1000);
+        conf.setLedgerStorageClass(DbLedgerStorage.class.getName());
+        conf.setProperty(DbLedgerStorage.WRITE_CACHE_MAX_SIZE_MB, 1);
+        conf.setProperty(DbLedgerStorage.WRITE_CACHE_BUFFERS, 4);
+        conf.setLedgerDirNames(new String[] { ringDir.toString() });
+        DbLedgerStorage ringStorage = (DbLedgerStorage) new TestBookieImpl(conf).getLedgerStorage();
+
+        try {
+            ringStorage.setMasterKey(4, "key".getBytes());
+
+            // Each write cache can only hold 2 entries, so that most of them go through background flushes
+            int numEntries = 100;
+            for (int i = 0; i < numEntries; i++) {
+                ByteBuf entry = Unpooled.buffer(100 * 1024 + 3 * 8);
+                entry.writeLong(4); // ledger id
+                entry.writeLong(i); // entry id
+                entry.writeLong(i - 1); // lac
+                entry.writeZero(100 * 1024);
+                ringStorage.addEntry(entry);
+
+                // Entries are readable wherever they are in the flush pipeline
+                ByteBuf res = ringStorage.getEntry(4, i);
+                assertEquals(i, res.getLong(8));
+                res.release();
+                assertEquals(i, ringStorage.getLastEntry(4).getLong(8));
+            }
+
+            ringStorage.flush();
+            assertEquals(false, ringStorage.isFlushRequired());
+
+            for (int i = 0; i < numEntries; i++) {
+                assertTrue(ringStorage.getLocation(4, i) != 0);
+                ByteBuf res = ringStorage.getEntry(4, i);
+                assertEquals(i, res.getLong(8));
+                res.release();
+            }
+        } finally {
+            ringStorage.shutdown();
+            FileUtils.deleteDirectory(ringDir);
+        }
+    }
+
+    @Test
+    public void writeCacheFullOnlyFlushesFullShards() throws Exception {
+        File shardedDir = File.createTempFile("bkTest", ".dir");
+        shardedDir.delete();
+        shardedDir.mkdir();
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(shardedDir));
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setGcWaitTime(1000);
+        conf.setLedgerStorageClass(DbLedgerStorage.class.getName());
+        conf.setProperty(DbLedgerStorage.WRITE_CACHE_MAX_SIZE_MB, 1);
+        conf.setProperty(DbLedgerStorage.WRITE_CACHE_SHARDS, 4);
+        conf.setLedgerDirNames(new String[] { shardedDir.toString() });
+        TestStatsProvider.TestStatsLogger statsLogger = new TestStatsProvider().getStatsLogger("test");
+        DbLedgerStorage shardedStorage = (DbLedgerStorage) new TestBookieImpl(
+                new TestBookieImpl.ResourceBuilder(conf).build(statsLogger), statsLogger).getLedgerStorage();
+
+        try {
+            // Ledgers 4 and 5 are in different shards
+            shardedStorage.setMasterKey(4, "key".getBytes());
+            shardedStorage.setMasterKey(5, "key".getBytes());
+
+            ByteBuf entry = Unpooled.buffer(1024 + 3 * 8);
+            entry.writeLong(5); // ledger id
+            entry.writeLong(0); // entry id
+            entry.writeLong(-1); // lac
+            entry.writeZero(1024);
+            shardedStorage.addEntry(entry);
+
+            // Each write cache can only hold 1 entry of ledger 4, the second one fills its shard
+            for (int i = 0; i < 2; i++) {
+                entry = Unpooled.buffer(100 * 1024 + 3 * 8);
+                entry.writeLong(4); // ledger id
+                entry.writeLong(i); // entry id
+                entry.writeLong(i - 1); // lac
+                entry.writeZero(100 * 1024);
+                shardedStorage.addEntry(entry);
+            }
+
+            SingleDirectoryDbLedgerStorage storage = shardedStorage.getLedgerStorageList().get(0);
+            TestStatsProvider.TestOpStatsLogger indexStageStats = (TestStatsProvider.TestOpStatsLogger)
+                    storage.getDbLedgerStorageStats().getFlushIndexStageStats();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (indexStageStats.getSuccessCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(indexStageStats.getSuccessCount() > 0);
+
+            // The full write cache was flushed without flushing the other shards nor checkpointing
+            TestStatsProvider.TestOpStatsLogger flushStats = (TestStatsProvider.TestOpStatsLogger)
+                    storage.getDbLedgerStorageStats().getFlushStats();
+            assertEquals(0, flushStats.getSuccessCount());
+            assertTrue(storage.isFlushRequired());
+        } finally {
+            shardedStorage.shutdown();
+            FileUtils.deleteDirectory(shardedDir);
+        }
+    }
+
+    @Test
+    public void writeCacheShardFull() throws Exception {
+        File shardedDir = File.createTempFile("bkTest", ".dir");
+        shardedDir.delete();
+        shardedDir.mkdir();
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(shardedDir));
+
+        ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
+        conf.setGcWaitTime(1000);
+        conf.setLedgerStorageClass(MockedDbLedgerStorage.class.getName());
+        conf.setProperty(DbLedgerStorage.WRITE_CACHE_MAX_SIZE_MB, 1);
+        conf.setProperty(DbLedgerStorage.WRITE_CACHE_SHARDS, 4);
+        // Each background flush is stuck for 1 second before the next write cache can be rotated
+        conf.setProperty(DbLedgerStorage.MAX_THROTTLE_TIME_MILLIS, 3000);
+        conf.setLedgerDirNames(new String[] { shardedDir.toString() });
+        DbLedgerStorage shardedStorage = (DbLedgerStorage) new TestBookieImpl(conf).getLedgerStorage();
+
+        try {
+            // Ledgers 4 and 5 are in different shards
+            shardedStorage.setMasterKey(4, "key".getBytes());
+            shardedStorage.setMasterKey(5, "key".getBytes());
+
+            // Each of the 8 write caches can only hold 1 entry, fill all the free ones with ledger 4 while the
+            // flushes are stuck
+            for (int i = 0; i < 5; i++) {
+                ByteBuf entry = Unpooled.buffer(100 * 1024 + 2 * 8);
+                entry.writeLong(4); // ledger id
+                entry.writeLong(i); // entry id
+                entry.writeZero(100 * 1024);
+                shardedStorage.addEntry(entry);
+            }
+
+            ByteBuf entry = Unpooled.buffer(100 * 1024 + 2 * 8);
+            entry.writeLong(4); // ledger id
+            entry.writeLong(5); // entry id
+            entry.writeZero(100 * 1024);
+            try {
+                shardedStorage.addEntry(entry);
+                fail("Should have thrown exception");
+            } catch (OperationRejectedException e) {
+                // Expected
+            }
+
+            // Ledger 5 still has room in the write cache of its shard
+            entry = Unpooled.buffer(100 * 1024 + 2 * 8);
+            entry.writeLong(5); // ledger id
+            entry.writeLong(0); // entry id
+            entry.writeZero(100 * 1024);
+            shardedStorage.addEntry(entry);
+
+            for (int i = 0; i < 5; i++) {
+                ByteBuf res = shardedStorage.getEntry(4, i);
+                assertEquals(i, res.getLong(8));
+                res.release();
+            }
+            ByteBuf res = shardedStorage.getEntry(5, 0);
+            assertEquals(5, res.getLong(0));
+            res.release();
+        } finally {
+            shardedStorage.shutdown();
+            FileUtils.deleteDirectory(shardedDir);
+        }
+    }
 }
@@ -0,0 +1,127 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link EntryLocationCache}.
+ */
+public class EntryLocationCacheTest {
+
+    @Test
+    public void simple() {
+        EntryLocationCache cache = new EntryLocationCache(UnpooledByteBufAllocator.DEFAULT, 1024 * 1024);
+
+        assertEquals(0, cache.get(1, 0));
+        assertEquals(0, cache.count());
+
+        cache.put(1, 0, 100);
+        cache.put(1, 1, 101);
+        cache.put(2, 0, 200);
+        assertEquals(100, cache.get(1, 0));
+        assertEquals(101, cache.get(1, 1));
+        assertEquals(200, cache.get(2, 0));
+        assertEquals(0, cache.get(2, 1));
+        assertEquals(3, cache.count());
+
+        // a new location replaces the cached one
+        cache.put(1, 0, 110);
+        assertEquals(110, cache.get(1, 0));
+        assertEquals(3, cache.count());
+
+        cache.close();
+    }
+
+    @Test
+    public void putIfUnchanged() {
+        EntryLocationCache cache = new EntryLocationCache(UnpooledByteBufAllocator.DEFAULT, 1024 * 1024);
+
+        long generation = cache.generation(1, 0);
+        cache.putIfUnchanged(1, 0, 100, generation);
+        assertEquals(100, cache.get(1, 0));
+
+        // a location read from the index never replaces a cached one
+        cache.putIfUnchanged(1, 0, 90, cache.generation(1, 0));
+        assertEquals(100, cache.get(1, 0));
+
+        // the location was updated while the index was being read
+        generation = cache.generation(1, 1);
+        cache.put(1, 1, 111);
+        cache.removeLedgers(ledgerId -> ledgerId == 1);
+        cache.putIfUnchanged(1, 1, 101, generation);
+        assertEquals(0, cache.get(1, 1));
+
+        cache.close();
+    }
+
+    @Test
+    public void removeLedgers() {
+        EntryLocationCache cache = new EntryLocationCache(UnpooledByteBufAllocator.DEFAULT, 1024 * 1024);
+
+        for (long ledgerId = 1; ledgerId <= 10; ledgerId++) {
+            for (long entryId = 0; entryId < 10; entryId++) {
+                cache.put(ledgerId, entryId, ledgerId * 1000 + entryId + 1);
+            }
+        }
+        long countBefore = cache.count();
+
+        cache.removeLedgers(ledgerId -> ledgerId % 2 == 0);
+
+        long remaining = 0;
+        for (long ledgerId = 1; ledgerId <= 10; ledgerId++) {
+            for (long entryId = 0; entryId < 10; entryId++) {
+                long location = cache.get(ledgerId, entryId);
+                if (ledgerId % 2 == 0) {
+                    assertEquals(0, location);
+                } else if (location != 0) {
+                    assertEquals(ledgerId * 1000 + entryId + 1, location);
+                    remaining++;
+                }
+            }
+        }
+        assertEquals(remaining, cache.count());
+        assertTrue(cache.count() < countBefore);
+
+        cache.close();
+    }
+
+    @Test
+    public void bounded() {
+        EntryLocationCache cache = new EntryLocationCache(UnpooledByteBufAllocator.DEFAULT, 64 * 1024);
+        long capacity = cache.capacity();
+
+        for (long entryId = 0; entryId < capacity * 4; entryId++) {
+            cache.put(1, entryId, entryId + 1);
+        }
+        assertTrue(cache.count() <= capacity);
+
+        // the most recent entries are cached, with their latest location
+        long lastEntryId = capacity * 4 - 1;
+        assertEquals(lastEntryId + 1, cache.get(1, lastEntryId));
+
+        cache.close();
+    }
+}
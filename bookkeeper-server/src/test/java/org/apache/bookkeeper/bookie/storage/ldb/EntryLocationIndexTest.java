@@ -23,8 +23,17 @@ package org.apache.bookkeeper.bookie.storage.ldb;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import com.google.common.collect.Lists;
+import io.netty.buffer.UnpooledByteBufAllocator;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.bookkeeper.bookie.EntryLocation;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.NullStatsLogger;
 import org.apache.bookkeeper.test.TestStatsProvider;
@@ -79,6 +88,45 @@ public class EntryLocationIndexTest {
         idx.close();
     }
 
+    @Test
+    public void locationCacheTest() throws Exception {
+        File tmpDir = File.createTempFile("bkTest", ".dir");
+        tmpDir.delete();
+        tmpDir.mkdir();
+        tmpDir.deleteOnExit();
+
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setLedgerDirNames(new String[] { tmpDir.getAbsolutePath() });
+        conf.setProperty(DbLedgerStorage.ENTRY_LOCATION_CACHE_MAX_SIZE_MB, 1);
+        UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(true);
+        EntryLocationIndex idx = new EntryLocationIndex(conf, KeyValueStorageRocksDB.factory,
+                tmpDir.getAbsolutePath(), NullStatsLogger.INSTANCE, allocator);
+        // the cache is allocated with the allocator of the storage
+        assertTrue(allocator.metric().usedDirectMemory() > 0);
+
+        idx.addLocation(40312, 0, 1);
+        idx.addLocation(40313, 0, 2);
+        idx.addLocation(40313, 1, 3);
+        assertEquals(1, idx.getLocation(40312, 0));
+        assertEquals(2, idx.getLocation(40313, 0));
+        assertEquals(0, idx.getLocation(40313, 2));
+
+        // relocated entries are served with their new location
+        idx.updateLocations(Lists.newArrayList(new EntryLocation(40313, 0, 20)));
+        assertEquals(20, idx.getLocation(40313, 0));
+        assertEquals(3, idx.getLocation(40313, 1));
+
+        // cached locations are dropped along with the index
+        idx.delete(40313);
+        idx.removeOffsetFromDeletedLedgers();
+        assertEquals(0, idx.getLocation(40313, 0));
+        assertEquals(0, idx.getLocation(40313, 1));
+        assertEquals(1, idx.getLocation(40312, 0));
+
+        idx.close();
+        assertEquals(0, allocator.metric().usedDirectMemory());
+    }
+
     @Test
     public void deleteBatchLedgersTest() throws Exception {
         File tmpDir = File.createTempFile("bkTest", ".dir");
@@ -232,4 +280,113 @@ public class EntryLocationIndexTest {
         assertEquals(1, lookupEntryLocationOpStats.getFailureCount());
         assertEquals(1, lookupEntryLocationOpStats.getSuccessCount());
     }
+
+    @Test
+    public void rangeEncodingTest() throws Exception {
+        File tmpDir = File.createTempFile("bkTest", ".dir");
+        tmpDir.delete();
+        tmpDir.mkdir();
+        tmpDir.deleteOnExit();
+
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setProperty(DbLedgerStorage.ENTRY_LOCATION_INDEX_RANGE_ENCODING, true);
+        EntryLocationIndex idx = new EntryLocationIndex(conf, KeyValueStorageRocksDB.factory,
+                tmpDir.getAbsolutePath(), NullStatsLogger.INSTANCE);
+
+        // 1000 sequential entries, switching entry log after entry 599
+        Batch batch = idx.newBatch();
+        for (long entryId = 0; entryId < 1000; entryId++) {
+            idx.addLocation(batch, 1, entryId, location(entryId < 600 ? 1 : 2, entryId * 100));
+        }
+        idx.addLocation(batch, 2, 5, location(2, 123));
+        batch.flush();
+        batch.close();
+
+        for (long entryId = 0; entryId < 1000; entryId++) {
+            assertEquals(location(entryId < 600 ? 1 : 2, entryId * 100), idx.getLocation(1, entryId));
+        }
+        assertEquals(0, idx.getLocation(1, 1000));
+        assertEquals(0, idx.getLocation(2, 4));
+        assertEquals(location(2, 123), idx.getLocation(2, 5));
+        assertEquals(0, idx.getLocation(2, 6));
+        assertEquals(999, idx.getLastEntryInLedger(1));
+        assertEquals(5, idx.getLastEntryInLedger(2));
+
+        // Relocate some entries in the middle of the runs
+        List<EntryLocation> newLocations = Lists.newArrayList();
+        for (long entryId = 550; entryId < 650; entryId++) {
+            newLocations.add(new EntryLocation(1, entryId, location(3, entryId)));
+        }
+        idx.updateLocations(newLocations);
+
+        for (long entryId = 0; entryId < 1000; entryId++) {
+            long expected = entryId >= 550 && entryId < 650 ? location(3, entryId)
+                    : location(entryId < 600 ? 1 : 2, entryId * 100);
+            assertEquals(expected, idx.getLocation(1, entryId));
+        }
+        assertEquals(999, idx.getLastEntryInLedger(1));
+
+        // Entries written later in the same entry log are appended to the last run
+        idx.addLocation(1, 1000, location(2, 1000 * 100));
+        assertEquals(location(2, 999 * 100), idx.getLocation(1, 999));
+        assertEquals(location(2, 1000 * 100), idx.getLocation(1, 1000));
+        assertEquals(1000, idx.getLastEntryInLedger(1));
+
+        idx.delete(1);
+        idx.removeOffsetFromDeletedLedgers();
+        assertEquals(0, idx.getLocation(1, 10));
+        assertEquals(location(2, 123), idx.getLocation(2, 5));
+        idx.close();
+    }
+
+    @Test
+    public void rangeEncodingOverwriteTest() throws Exception {
+        File tmpDir = File.createTempFile("bkTest", ".dir");
+        tmpDir.delete();
+        tmpDir.mkdir();
+        tmpDir.deleteOnExit();
+
+        // Index written without the range encoding
+        EntryLocationIndex idx = new EntryLocationIndex(serverConfiguration, KeyValueStorageRocksDB.factory,
+                tmpDir.getAbsolutePath(), NullStatsLogger.INSTANCE);
+        Map<Long, Long> expected = new HashMap<>();
+        for (long entryId = 0; entryId < 100; entryId += 2) {
+            idx.addLocation(7, entryId, location(1, entryId));
+            expected.put(entryId, location(1, entryId));
+        }
+        idx.close();
+
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setProperty(DbLedgerStorage.ENTRY_LOCATION_INDEX_RANGE_ENCODING, true);
+        idx = new EntryLocationIndex(conf, KeyValueStorageRocksDB.factory,
+                tmpDir.getAbsolutePath(), NullStatsLogger.INSTANCE);
+
+        // Overlapping runs, in random order and in multiple batches
+        Random random = new Random(1);
+        for (int i = 0; i < 50; i++) {
+            Batch batch = idx.newBatch();
+            for (int j = 0; j < 5; j++) {
+                long firstEntryId = random.nextInt(300);
+                int count = 1 + random.nextInt(EntryLocationRunBatch.MAX_RUN_LENGTH + 10);
+                long logId = 2 + random.nextInt(3);
+                for (long entryId = firstEntryId; entryId < firstEntryId + count; entryId++) {
+                    long location = location(logId, random.nextInt(1 << 30));
+                    idx.addLocation(batch, 7, entryId, location);
+                    expected.put(entryId, location);
+                }
+            }
+            batch.flush();
+            batch.close();
+
+            for (long entryId = 0; entryId < 600; entryId++) {
+                assertEquals(expected.getOrDefault(entryId, 0L).longValue(), idx.getLocation(7, entryId));
+            }
+            assertEquals(Collections.max(expected.keySet()).longValue(), idx.getLastEntryInLedger(7));
+        }
+        idx.close();
+    }
+
+    private static long location(long logId, long offset) {
+        return logId << 32 | offset;
+    }
 }
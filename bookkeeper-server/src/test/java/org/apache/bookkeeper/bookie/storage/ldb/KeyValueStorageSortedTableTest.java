@@ -0,0 +1,273 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.CloseableIterator;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link KeyValueStorageSortedTable}.
+ */
+public class KeyValueStorageSortedTableTest {
+
+    private final ServerConfiguration conf = new ServerConfiguration();
+    private File tmpDir;
+
+    @Before
+    public void setup() throws Exception {
+        tmpDir = Files.createTempDirectory("junitTemporaryFolder").toFile();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    private KeyValueStorage open() throws IOException {
+        return KeyValueStorageSortedTable.factory.newKeyValueStorage(tmpDir.toString(), "db",
+                DbConfigType.Default, conf);
+    }
+
+    private static byte[] key(long n) {
+        byte[] b = new byte[8];
+        ArrayUtil.setLong(b, 0, n);
+        return b;
+    }
+
+    @Test
+    public void testMergeAndRecovery() throws Exception {
+        KeyValueStorage db = open();
+        for (long i = 0; i < 1000; i++) {
+            db.put(key(i), key(i * 10));
+        }
+        db.compact();
+
+        // Overwrite and delete keys in the sorted table
+        db.put(key(5), key(55));
+        db.delete(key(6));
+        try (Batch batch = db.newBatch()) {
+            batch.deleteRange(key(100), key(200));
+            batch.put(key(150), key(1));
+            batch.put(key(2000), key(2));
+            batch.flush();
+        }
+
+        assertArrayEquals(key(55), db.get(key(5)));
+        assertNull(db.get(key(6)));
+        assertNull(db.get(key(100)));
+        assertArrayEquals(key(1), db.get(key(150)));
+        assertArrayEquals(key(2000), db.get(key(200)));
+        assertArrayEquals(key(2), db.get(key(2000)));
+
+        // Floor and ceil skip the deleted keys
+        assertArrayEquals(key(5), db.getFloor(key(7)).getKey());
+        assertArrayEquals(key(99), db.getFloor(key(150)).getKey());
+        assertArrayEquals(key(150), db.getFloor(key(199)).getKey());
+        assertArrayEquals(key(150), db.getCeil(key(100)).getKey());
+        assertArrayEquals(key(200), db.getCeil(key(151)).getKey());
+        assertArrayEquals(key(2000), db.getCeil(key(1000)).getKey());
+        assertNull(db.getCeil(key(2001)));
+
+        // The in-memory writes are recovered from the log
+        db.close();
+        db = open();
+        assertArrayEquals(key(55), db.get(key(5)));
+        assertNull(db.get(key(6)));
+        assertNull(db.get(key(100)));
+        assertArrayEquals(key(1), db.get(key(150)));
+        assertArrayEquals(key(2), db.get(key(2000)));
+
+        // The deleted keys are only dropped when merged into the oldest run
+        db.compact();
+        assertEquals(1000 - 1 - 99 + 1, db.count());
+        try (CloseableIterator<byte[]> keys = db.keys(key(95), key(210))) {
+            for (long expected : new long[] { 95, 96, 97, 98, 99, 150, 200, 201, 202, 203, 204, 205, 206, 207, 208,
+                    209 }) {
+                assertTrue(keys.hasNext());
+                assertArrayEquals(key(expected), keys.next());
+            }
+            assertFalse(keys.hasNext());
+        }
+        db.close();
+    }
+
+    @Test
+    public void testRandomOperations() throws Exception {
+        KeyValueStorage db = open();
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        Random random = new Random(1);
+
+        for (int round = 0; round < 20; round++) {
+            try (Batch batch = db.newBatch()) {
+                for (int i = 0; i < 500; i++) {
+                    long k = random.nextInt(5000);
+                    int op = random.nextInt(10);
+                    if (op < 7) {
+                        long v = random.nextInt(Integer.MAX_VALUE);
+                        batch.put(key(k), key(v));
+                        expected.put(k, v);
+                    } else if (op < 9) {
+                        batch.remove(key(k));
+                        expected.remove(k);
+                    } else {
+                        long end = k + random.nextInt(200);
+                        batch.deleteRange(key(k), key(end));
+                        expected.subMap(k, end).clear();
+                    }
+                }
+                batch.flush();
+            }
+
+            if (round % 3 == 0) {
+                db.compact();
+            } else if (round % 5 == 0) {
+                db.close();
+                db = open();
+            }
+            verify(db, expected, random);
+        }
+        db.close();
+    }
+
+    @Test
+    public void testTieredMerges() throws Exception {
+        conf.setProperty(KeyValueStorageSortedTable.MEMTABLE_SIZE_MB, 1);
+        KeyValueStorage db = open();
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        Random random = new Random(1);
+
+        // Each round fills about one in-memory table, which is written in a new run
+        for (int round = 0; round < 3 * KeyValueStorageSortedTable.RUNS_PER_LEVEL; round++) {
+            try (Batch batch = db.newBatch()) {
+                for (int i = 0; i < 10000; i++) {
+                    long k = random.nextInt(50000);
+                    int op = random.nextInt(100);
+                    if (op < 90) {
+                        long v = random.nextInt(Integer.MAX_VALUE);
+                        batch.put(key(k), key(v));
+                        expected.put(k, v);
+                    } else if (op < 99) {
+                        batch.remove(key(k));
+                        expected.remove(k);
+                    } else {
+                        long end = k + random.nextInt(200);
+                        batch.deleteRange(key(k), key(end));
+                        expected.subMap(k, end).clear();
+                    }
+                }
+                batch.flush();
+            }
+            verify(db, expected, random);
+        }
+
+        // The runs of level 0 were merged, without merging everything in a single run
+        File[] runs = new File(tmpDir, "db").listFiles((dir, name) -> name.endsWith(".sst"));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (runs.length >= 2 * KeyValueStorageSortedTable.RUNS_PER_LEVEL
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            runs = new File(tmpDir, "db").listFiles((dir, name) -> name.endsWith(".sst"));
+        }
+        assertTrue(runs.length > 1);
+        assertTrue(runs.length < 2 * KeyValueStorageSortedTable.RUNS_PER_LEVEL);
+        verify(db, expected, random);
+
+        db.close();
+        db = open();
+        verify(db, expected, random);
+
+        db.compact();
+        assertEquals(expected.size(), db.count());
+        verify(db, expected, random);
+        db.close();
+    }
+
+    private static void verify(KeyValueStorage db, TreeMap<Long, Long> expected, Random random) throws Exception {
+        for (int i = 0; i < 500; i++) {
+            long k = random.nextInt(5200);
+            Long value = expected.get(k);
+            byte[] result = db.get(key(k));
+            if (value == null) {
+                assertNull(result);
+            } else {
+                assertArrayEquals(key(value), result);
+            }
+
+            Entry<byte[], byte[]> floor = db.getFloor(key(k));
+            Map.Entry<Long, Long> expectedFloor = expected.lowerEntry(k);
+            if (expectedFloor == null) {
+                assertNull(floor);
+            } else {
+                assertArrayEquals(key(expectedFloor.getKey()), floor.getKey());
+                assertArrayEquals(key(expectedFloor.getValue()), floor.getValue());
+            }
+
+            Entry<byte[], byte[]> ceil = db.getCeil(key(k));
+            Map.Entry<Long, Long> expectedCeil = expected.ceilingEntry(k);
+            if (expectedCeil == null) {
+                assertNull(ceil);
+            } else {
+                assertArrayEquals(key(expectedCeil.getKey()), ceil.getKey());
+            }
+        }
+
+        try (CloseableIterator<Entry<byte[], byte[]>> iterator = db.iterator()) {
+            for (Map.Entry<Long, Long> e : expected.entrySet()) {
+                assertTrue(iterator.hasNext());
+                Entry<byte[], byte[]> entry = iterator.next();
+                assertArrayEquals(key(e.getKey()), entry.getKey());
+                assertArrayEquals(key(e.getValue()), entry.getValue());
+            }
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    public void testRocksDBDirectoryRejected() throws Exception {
+        new KeyValueStorageRocksDB(tmpDir.toString(), "db", DbConfigType.Default, conf).close();
+        try {
+            open();
+            fail("Should have failed to open a RocksDB directory");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
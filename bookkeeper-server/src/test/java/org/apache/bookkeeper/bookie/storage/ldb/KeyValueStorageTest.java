@@ -52,7 +52,9 @@ public class KeyValueStorageTest {
 
     @Parameters
     public static Collection<Object[]> configs() {
-        return Arrays.asList(new Object[][] { { KeyValueStorageRocksDB.factory } });
+        return Arrays.asList(new Object[][] {
+                { KeyValueStorageRocksDB.factory },
+                { KeyValueStorageSortedTable.factory } });
     }
 
     public KeyValueStorageTest(KeyValueStorageFactory storageFactory) {
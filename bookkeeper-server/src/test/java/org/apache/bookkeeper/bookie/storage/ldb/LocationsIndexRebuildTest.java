@@ -86,6 +86,15 @@ public class LocationsIndexRebuildTest {
 
     @Test
     public void test() throws Exception {
+        testRebuild(false);
+    }
+
+    @Test
+    public void testRangeEncoding() throws Exception {
+        testRebuild(true);
+    }
+
+    private void testRebuild(boolean rangeEncoding) throws Exception {
         File tmpDir = File.createTempFile("bkTest", ".dir");
         tmpDir.delete();
         tmpDir.mkdir();
@@ -97,6 +106,7 @@ public class LocationsIndexRebuildTest {
         ServerConfiguration conf = TestBKConfiguration.newServerConfiguration();
         conf.setLedgerDirNames(new String[] { tmpDir.toString() });
         conf.setLedgerStorageClass(DbLedgerStorage.class.getName());
+        conf.setProperty(DbLedgerStorage.ENTRY_LOCATION_INDEX_RANGE_ENCODING, rangeEncoding);
         LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
                 new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
 
@@ -0,0 +1,118 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.test.TestStatsProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ReadAheadExecutor}.
+ */
+public class ReadAheadExecutorTest {
+
+    private Counter dropped;
+    private Counter deduped;
+
+    @Before
+    public void setup() {
+        TestStatsProvider.TestStatsLogger statsLogger = new TestStatsProvider().getStatsLogger("test");
+        dropped = statsLogger.getCounter("dropped");
+        deduped = statsLogger.getCounter("deduped");
+    }
+
+    @Test
+    public void dedupOverlappingRequests() throws Exception {
+        ReadAheadExecutor executor = new ReadAheadExecutor(1, 16, () -> false, dropped, deduped);
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicInteger executed = new AtomicInteger();
+
+        assertTrue(executor.submit(1, 10, 100, () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executed.incrementAndGet();
+        }));
+
+        // Covered by the pending read-ahead
+        assertFalse(executor.submit(1, 11, 100, executed::incrementAndGet));
+        assertFalse(executor.submit(1, 109, 100, executed::incrementAndGet));
+        assertEquals(2, deduped.get().longValue());
+
+        // Not overlapping, or on a different ledger
+        assertTrue(executor.submit(1, 110, 100, executed::incrementAndGet));
+        assertTrue(executor.submit(2, 11, 100, executed::incrementAndGet));
+
+        blocked.countDown();
+        executor.shutdown();
+        assertEquals(3, executed.get());
+        assertEquals(0, dropped.get().longValue());
+    }
+
+    @Test
+    public void dropWhenSaturated() throws Exception {
+        ReadAheadExecutor executor = new ReadAheadExecutor(1, 1, () -> false, dropped, deduped);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        assertTrue(executor.submit(1, 0, 10, () -> {
+            started.countDown();
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // One pending request is allowed, then requests are dropped
+        assertTrue(executor.submit(2, 0, 10, () -> {}));
+        assertFalse(executor.submit(3, 0, 10, () -> {}));
+        assertEquals(1, dropped.get().longValue());
+
+        blocked.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void dropUnderMemoryPressure() throws Exception {
+        AtomicBoolean memoryPressure = new AtomicBoolean(true);
+        ReadAheadExecutor executor = new ReadAheadExecutor(1, 16, memoryPressure::get, dropped, deduped);
+
+        assertFalse(executor.submit(1, 0, 10, () -> {}));
+        assertEquals(1, dropped.get().longValue());
+
+        memoryPressure.set(false);
+        assertTrue(executor.submit(1, 0, 10, () -> {}));
+        executor.shutdown();
+    }
+}
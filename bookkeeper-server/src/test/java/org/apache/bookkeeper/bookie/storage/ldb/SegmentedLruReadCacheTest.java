@@ -0,0 +1,191 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link SegmentedLruReadCache}.
+ */
+public class SegmentedLruReadCacheTest {
+
+    @Test
+    public void simple() {
+        SegmentedLruReadCache cache = new SegmentedLruReadCache(UnpooledByteBufAllocator.DEFAULT, 10 * 1024);
+
+        assertEquals(0, cache.count());
+        assertEquals(0, cache.size());
+        assertNull(cache.get(0, 0));
+
+        ByteBuf entry = Unpooled.wrappedBuffer(new byte[1024]);
+        cache.put(1, 0, entry);
+
+        assertEquals(1, cache.count());
+        assertEquals(1024, cache.size());
+
+        assertEquals(entry, cache.get(1, 0));
+        assertNull(cache.get(1, 1));
+
+        for (int i = 1; i < 10; i++) {
+            cache.put(1, i, entry);
+        }
+
+        assertEquals(10, cache.count());
+        assertEquals(10 * 1024, cache.size());
+
+        // Least recently used entry in probation gets evicted
+        cache.get(1, 0).release();
+        cache.put(1, 10, entry);
+        assertEquals(10, cache.count());
+        assertEquals(10 * 1024, cache.size());
+        assertFalse(cache.hasEntry(1, 1));
+        assertTrue(cache.hasEntry(1, 0));
+
+        cache.close();
+        assertEquals(0, cache.count());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void getDoesNotCopy() {
+        SegmentedLruReadCache cache = new SegmentedLruReadCache(UnpooledByteBufAllocator.DEFAULT, 10 * 1024);
+
+        ByteBuf entry = Unpooled.wrappedBuffer(new byte[1024]);
+        entry.setInt(0, 5);
+        cache.put(1, 0, entry);
+
+        ByteBuf res1 = cache.get(1, 0);
+        ByteBuf res2 = cache.get(1, 0);
+        assertEquals(5, res1.getInt(0));
+        assertEquals(5, res2.getInt(0));
+
+        // Both buffers are sharing the cached memory
+        assertEquals(3, res1.refCnt());
+        res1.release();
+        res2.release();
+
+        // Evicted entries stay valid until the readers release them
+        ByteBuf res3 = cache.get(1, 0);
+        cache.close();
+        assertEquals(1, res3.refCnt());
+        assertEquals(5, res3.getInt(0));
+        res3.release();
+        assertEquals(0, res3.refCnt());
+    }
+
+    @Test
+    public void scanResistance() {
+        SegmentedLruReadCache cache = new SegmentedLruReadCache(UnpooledByteBufAllocator.DEFAULT, 10 * 1024);
+        ByteBuf entry = Unpooled.wrappedBuffer(new byte[1024]);
+
+        // Hot entries of ledger 1, read multiple times
+        for (int i = 0; i < 5; i++) {
+            cache.put(1, i, entry);
+            cache.get(1, i).release();
+            cache.get(1, i).release();
+        }
+
+        // Catch-up reader scanning ledger 2, each entry is read once after the read-ahead
+        for (int i = 0; i < 100; i++) {
+            cache.put(2, i, entry);
+            cache.get(2, i).release();
+        }
+
+        for (int i = 0; i < 5; i++) {
+            ByteBuf res = cache.get(1, i);
+            assertNotNull(res);
+            res.release();
+        }
+
+        // The most recent entries of the scan are still available
+        assertTrue(cache.hasEntry(2, 99));
+        assertFalse(cache.hasEntry(2, 0));
+        assertEquals(10, cache.count());
+
+        cache.close();
+    }
+
+    @Test
+    public void multipleStripes() {
+        SegmentedLruReadCache cache = new SegmentedLruReadCache(UnpooledByteBufAllocator.DEFAULT,
+                16 * 1024 * 1024, 8);
+
+        for (int i = 0; i < 1000; i++) {
+            ByteBuf entry = Unpooled.wrappedBuffer(new byte[1024]);
+            entry.setInt(0, i);
+            cache.put(1, i, entry);
+        }
+
+        assertEquals(1000, cache.count());
+        assertEquals(1000 * 1024, cache.size());
+
+        for (int i = 0; i < 1000; i++) {
+            ByteBuf res = cache.get(1, i);
+            assertEquals(1024, res.readableBytes());
+            assertEquals(i, res.getInt(0));
+            res.release();
+        }
+
+        assertFalse(cache.hasEntry(2, 0));
+        cache.close();
+    }
+
+    @Test
+    public void newEntryIsNotEvicted() {
+        SegmentedLruReadCache cache = new SegmentedLruReadCache(UnpooledByteBufAllocator.DEFAULT, 10 * 1024);
+
+        // The protected segment is full and the probation segment is empty
+        for (int i = 0; i < 4; i++) {
+            cache.put(1, i, Unpooled.wrappedBuffer(new byte[2 * 1024]));
+            cache.get(1, i).release();
+            cache.get(1, i).release();
+        }
+
+        // The new entry only fits by evicting a protected entry
+        cache.put(2, 0, Unpooled.wrappedBuffer(new byte[3 * 1024]));
+        assertTrue(cache.hasEntry(2, 0));
+        assertFalse(cache.hasEntry(1, 0));
+        assertEquals(4, cache.count());
+        assertEquals(9 * 1024, cache.size());
+
+        cache.close();
+    }
+
+    @Test
+    public void entryLargerThanCache() {
+        SegmentedLruReadCache cache = new SegmentedLruReadCache(UnpooledByteBufAllocator.DEFAULT, 1024);
+
+        cache.put(1, 0, Unpooled.wrappedBuffer(new byte[2048]));
+        assertFalse(cache.hasEntry(1, 0));
+        assertEquals(0, cache.count());
+
+        cache.close();
+    }
+}
@@ -323,4 +323,36 @@ public class WriteCacheTest {
             }));
         }
     }
+
+    @Test
+    public void testForEachWithParallelSort() throws Exception {
+        // Enough entries to have the sort split across multiple threads
+        try (WriteCache cache = new WriteCache(allocator, 10 * 1024 * 1024, 1024 * 1024, true)) {
+            int numLedgers = 20;
+            int entriesPerLedger = 2000;
+            ByteBuf entry = Unpooled.buffer(64);
+            entry.writerIndex(entry.capacity());
+
+            // Interleave the ledgers so that the entries are not inserted in order
+            for (int entryId = entriesPerLedger - 1; entryId >= 0; entryId--) {
+                for (int ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+                    assertTrue(cache.put(ledgerId, entryId, entry));
+                }
+            }
+
+            AtomicLong currentLedgerId = new AtomicLong(0);
+            AtomicLong currentEntryId = new AtomicLong(0);
+
+            cache.forEach((ledgerId, entryId, e) -> {
+                assertEquals(currentLedgerId.get(), ledgerId);
+                assertEquals(currentEntryId.get(), entryId);
+
+                if (currentEntryId.incrementAndGet() == entriesPerLedger) {
+                    currentLedgerId.incrementAndGet();
+                    currentEntryId.set(0);
+                }
+            });
+            assertEquals(numLedgers, currentLedgerId.get());
+        }
+    }
 }
@@ -0,0 +1,239 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static org.apache.bookkeeper.client.RoundRobinDistributionSchedule.writeSetFromValues;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.net.BookieId;
+import org.junit.Test;
+
+/**
+ * Test the tracking of bookie read latencies.
+ */
+public class BookieReadLatencyTrackerTest {
+
+    private static final BookieId BOOKIE_0 = BookieId.parse("bookie-0:3181");
+    private static final BookieId BOOKIE_1 = BookieId.parse("bookie-1:3181");
+    private static final BookieId BOOKIE_2 = BookieId.parse("bookie-2:3181");
+    private static final List<BookieId> ENSEMBLE = Arrays.asList(BOOKIE_0, BOOKIE_1, BOOKIE_2);
+
+    private static final BookiesHealthInfo NO_PENDING_REQUESTS = new BookiesHealthInfo() {
+        @Override
+        public long getBookieFailureHistory(BookieId bookieSocketAddress) {
+            return -1L;
+        }
+
+        @Override
+        public long getBookiePendingRequests(BookieId bookieSocketAddress) {
+            return 0L;
+        }
+    };
+
+    private static void recordLatencyMillis(BookieReadLatencyTracker tracker, BookieId bookie, long millis,
+                                            int times) {
+        for (int i = 0; i < times; i++) {
+            tracker.recordLatency(bookie, TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    @Test
+    public void testFastestReplicaReadFirst() {
+        BookieReadLatencyTracker tracker = new BookieReadLatencyTracker();
+        recordLatencyMillis(tracker, BOOKIE_0, 50, 10);
+        recordLatencyMillis(tracker, BOOKIE_1, 20, 10);
+        recordLatencyMillis(tracker, BOOKIE_2, 5, 10);
+
+        DistributionSchedule.WriteSet writeSet = writeSetFromValues(0, 1, 2);
+        tracker.moveFastestReplicaFirst(ENSEMBLE, writeSet, NO_PENDING_REQUESTS);
+        assertEquals(writeSetFromValues(2, 0, 1), writeSet);
+    }
+
+    @Test
+    public void testUnmeasuredReplicaReadFirst() {
+        BookieReadLatencyTracker tracker = new BookieReadLatencyTracker();
+        recordLatencyMillis(tracker, BOOKIE_0, 5, 10);
+        recordLatencyMillis(tracker, BOOKIE_2, 5, 10);
+
+        DistributionSchedule.WriteSet writeSet = writeSetFromValues(0, 1, 2);
+        tracker.moveFastestReplicaFirst(ENSEMBLE, writeSet, NO_PENDING_REQUESTS);
+        assertEquals(writeSetFromValues(1, 0, 2), writeSet);
+    }
+
+    @Test
+    public void testFailingUnmeasuredReplicaNotReadFirst() {
+        AtomicLong clock = new AtomicLong();
+        BookieReadLatencyTracker tracker = new BookieReadLatencyTracker(clock::get);
+        recordLatencyMillis(tracker, BOOKIE_0, 50, 10);
+        recordLatencyMillis(tracker, BOOKIE_2, 5, 10);
+        // bookie-1 failed every read since the client started
+        for (int i = 0; i < 10; i++) {
+            tracker.recordError(BOOKIE_1);
+        }
+
+        DistributionSchedule.WriteSet writeSet = writeSetFromValues(1, 0, 2);
+        tracker.moveFastestReplicaFirst(ENSEMBLE, writeSet, NO_PENDING_REQUESTS);
+        assertEquals(writeSetFromValues(2, 1, 0), writeSet);
+
+        // among replicas that were never measured, the failing one is read last
+        writeSet = writeSetFromValues(0, 1);
+        tracker.moveFastestReplicaFirst(Arrays.asList(BOOKIE_1, BookieId.parse("bookie-3:3181")), writeSet,
+                NO_PENDING_REQUESTS);
+        assertEquals(writeSetFromValues(1, 0), writeSet);
+
+        // once its errors are old enough, it is tried first again to get measured
+        clock.addAndGet(10 * BookieReadLatencyTracker.ERROR_RATE_HALF_LIFE_NANOS);
+        writeSet = writeSetFromValues(0, 2, 1);
+        tracker.moveFastestReplicaFirst(ENSEMBLE, writeSet, NO_PENDING_REQUESTS);
+        assertEquals(writeSetFromValues(1, 0, 2), writeSet);
+    }
+
+    @Test
+    public void testPendingRequestsAndErrorsPenalized() {
+        BookieReadLatencyTracker tracker = new BookieReadLatencyTracker();
+        recordLatencyMillis(tracker, BOOKIE_0, 10, 10);
+        recordLatencyMillis(tracker, BOOKIE_1, 5, 10);
+        recordLatencyMillis(tracker, BOOKIE_2, 5, 10);
+        for (int i = 0; i < 10; i++) {
+            tracker.recordError(BOOKIE_2);
+        }
+        BookiesHealthInfo healthInfo = new BookiesHealthInfo() {
+            @Override
+            public long getBookieFailureHistory(BookieId bookieSocketAddress) {
+                return -1L;
+            }
+
+            @Override
+            public long getBookiePendingRequests(BookieId bookieSocketAddress) {
+                return BOOKIE_1.equals(bookieSocketAddress) ? 10L : 0L;
+            }
+        };
+
+        // bookie-1 is queued up and bookie-2 fails most of its reads
+        DistributionSchedule.WriteSet writeSet = writeSetFromValues(1, 2, 0);
+        tracker.moveFastestReplicaFirst(ENSEMBLE, writeSet, healthInfo);
+        assertEquals(writeSetFromValues(0, 1, 2), writeSet);
+    }
+
+    @Test
+    public void testSpeculativeTimeoutFollowsLatency() {
+        BookieReadLatencyTracker tracker = new BookieReadLatencyTracker();
+        assertEquals(-1L, tracker.getSpeculativeTimeoutMillis(BOOKIE_0));
+
+        recordLatencyMillis(tracker, BOOKIE_0, 10, 100);
+        recordLatencyMillis(tracker, BOOKIE_1, 10, 100);
+        recordLatencyMillis(tracker, BOOKIE_1, 40, 1);
+        recordLatencyMillis(tracker, BOOKIE_1, 10, 1);
+
+        long steadyTimeout = tracker.getSpeculativeTimeoutMillis(BOOKIE_0);
+        assertTrue("timeout " + steadyTimeout, steadyTimeout >= 10 && steadyTimeout < 12);
+        // a bookie with jittery latencies gets a longer timeout
+        assertTrue(tracker.getSpeculativeTimeoutMillis(BOOKIE_1) > steadyTimeout + 10);
+    }
+
+    @Test
+    public void testSpeculativeRequestTimeouts() {
+        BookieReadLatencyTracker tracker = new BookieReadLatencyTracker();
+        recordLatencyMillis(tracker, BOOKIE_0, 10, 100);
+        recordLatencyMillis(tracker, BOOKIE_1, 1000, 100);
+        LatencyAwareSpeculativeRequestExecutionPolicy policy =
+                new LatencyAwareSpeculativeRequestExecutionPolicy(tracker, 5, 100, 200, 2);
+
+        assertEquals(10, policy.firstRequestTimeout(targeting(BOOKIE_0)));
+        assertEquals(200, policy.firstRequestTimeout(targeting(BOOKIE_1)));
+        // unmeasured bookies fall back to the configured timeouts
+        assertEquals(100, policy.firstRequestTimeout(targeting(BOOKIE_2)));
+        assertEquals(200, policy.nextRequestTimeout(targeting(BOOKIE_2), 100));
+        assertEquals(10, policy.nextRequestTimeout(targeting(BOOKIE_0), 100));
+    }
+
+    @Test
+    public void testSpeculativeRequestTimeoutFloor() {
+        BookieReadLatencyTracker tracker = new BookieReadLatencyTracker();
+        recordLatencyMillis(tracker, BOOKIE_0, 0, 100);
+        LatencyAwareSpeculativeRequestExecutionPolicy policy =
+                new LatencyAwareSpeculativeRequestExecutionPolicy(tracker, 10, 100, 200, 2);
+
+        // a bookie answering within a millisecond does not get every read backed up right away
+        assertEquals(0L, tracker.getSpeculativeTimeoutMillis(BOOKIE_0));
+        assertEquals(10, policy.firstRequestTimeout(targeting(BOOKIE_0)));
+        assertEquals(10, policy.nextRequestTimeout(targeting(BOOKIE_0), 100));
+    }
+
+    @Test
+    public void testErrorRateDecays() {
+        AtomicLong clock = new AtomicLong();
+        BookieReadLatencyTracker tracker = new BookieReadLatencyTracker(clock::get);
+        recordLatencyMillis(tracker, BOOKIE_0, 10, 10);
+        recordLatencyMillis(tracker, BOOKIE_1, 5, 10);
+        for (int i = 0; i < 20; i++) {
+            tracker.recordError(BOOKIE_1);
+        }
+
+        DistributionSchedule.WriteSet writeSet = writeSetFromValues(1, 0);
+        tracker.moveFastestReplicaFirst(ENSEMBLE, writeSet, NO_PENDING_REQUESTS);
+        assertEquals(writeSetFromValues(0, 1), writeSet);
+
+        // once its errors are old enough, the faster bookie is tried again
+        clock.addAndGet(10 * BookieReadLatencyTracker.ERROR_RATE_HALF_LIFE_NANOS);
+        writeSet = writeSetFromValues(0, 1);
+        tracker.moveFastestReplicaFirst(ENSEMBLE, writeSet, NO_PENDING_REQUESTS);
+        assertEquals(writeSetFromValues(1, 0), writeSet);
+    }
+
+    @Test
+    public void testIdleBookiesPruned() {
+        AtomicLong clock = new AtomicLong();
+        BookieReadLatencyTracker tracker = new BookieReadLatencyTracker(clock::get);
+        recordLatencyMillis(tracker, BOOKIE_0, 10, 1);
+        recordLatencyMillis(tracker, BOOKIE_1, 10, 1);
+        assertEquals(2, tracker.getNumTrackedBookies());
+
+        clock.addAndGet(BookieReadLatencyTracker.IDLE_BOOKIE_NANOS / 2);
+        recordLatencyMillis(tracker, BOOKIE_1, 10, 1);
+        clock.addAndGet(BookieReadLatencyTracker.IDLE_BOOKIE_NANOS / 2 + 1);
+        recordLatencyMillis(tracker, BOOKIE_2, 10, 1);
+
+        assertEquals(2, tracker.getNumTrackedBookies());
+        assertEquals(-1L, tracker.getSpeculativeTimeoutMillis(BOOKIE_0));
+        assertTrue(tracker.getSpeculativeTimeoutMillis(BOOKIE_1) >= 10L);
+    }
+
+    private static SpeculativeRequestExecutor targeting(BookieId bookie) {
+        return new SpeculativeRequestExecutor() {
+            @Override
+            public ListenableFuture<Boolean> issueSpeculativeRequest() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public BookieId getLastRequestTarget() {
+                return bookie;
+            }
+        };
+    }
+}
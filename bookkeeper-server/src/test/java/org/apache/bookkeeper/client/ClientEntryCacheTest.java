@@ -0,0 +1,175 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Enumeration;
+import org.apache.bookkeeper.client.BookKeeper.DigestType;
+import org.apache.bookkeeper.client.api.LastConfirmedAndEntry;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+import org.apache.bookkeeper.conf.ClientConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.test.BookKeeperClusterTestCase;
+import org.junit.Test;
+
+/**
+ * Test the client entry cache.
+ */
+public class ClientEntryCacheTest extends BookKeeperClusterTestCase {
+
+    private static final byte[] PASSWD = "passwd".getBytes(UTF_8);
+
+    public ClientEntryCacheTest() {
+        super(3);
+    }
+
+    @Test
+    public void testEvictionReleasesPayloads() {
+        ClientEntryCache cache = new ClientEntryCache(10, NullStatsLogger.INSTANCE);
+        ByteBuf first = Unpooled.wrappedBuffer(new byte[4]);
+        ByteBuf second = Unpooled.wrappedBuffer(new byte[4]);
+        ByteBuf third = Unpooled.wrappedBuffer(new byte[4]);
+        cache.put(1L, 0L, 4L, first);
+        cache.put(1L, 1L, 8L, second);
+        cache.put(2L, 0L, 4L, third);
+
+        // the oldest entry is evicted to fit the third one
+        assertEquals(0, first.refCnt());
+        LedgerEntryImpl entry = LedgerEntryImpl.create(1L, 0L);
+        assertFalse(cache.read(1L, 0L, entry));
+        entry.close();
+
+        entry = LedgerEntryImpl.create(1L, 1L);
+        assertTrue(cache.read(1L, 1L, entry));
+        assertEquals(8L, entry.getLength());
+        assertEquals(2, second.refCnt());
+        entry.close();
+        assertEquals(1, second.refCnt());
+
+        cache.invalidate(1L);
+        assertEquals(0, second.refCnt());
+        assertEquals(1, third.refCnt());
+        cache.clear();
+        assertEquals(0, third.refCnt());
+    }
+
+    @Test
+    public void testInvalidateReleasesEntriesOfAllStripes() {
+        ClientEntryCache cache = new ClientEntryCache(4 * 1024 * 1024, NullStatsLogger.INSTANCE, 4);
+        int numEntries = 100;
+        ByteBuf[] deleted = new ByteBuf[numEntries];
+        ByteBuf[] kept = new ByteBuf[numEntries];
+        for (int i = 0; i < numEntries; i++) {
+            // replaced entries are released right away
+            ByteBuf replaced = Unpooled.wrappedBuffer(new byte[4]);
+            cache.put(1L, i, 4L * (i + 1), replaced);
+            deleted[i] = Unpooled.wrappedBuffer(new byte[4]);
+            cache.put(1L, i, 4L * (i + 1), deleted[i]);
+            assertEquals(0, replaced.refCnt());
+            kept[i] = Unpooled.wrappedBuffer(new byte[4]);
+            cache.put(2L, i, 4L * (i + 1), kept[i]);
+        }
+
+        cache.invalidate(1L);
+        for (int i = 0; i < numEntries; i++) {
+            assertEquals(0, deleted[i].refCnt());
+            LedgerEntryImpl entry = LedgerEntryImpl.create(1L, i);
+            assertFalse(cache.read(1L, i, entry));
+            entry.close();
+
+            entry = LedgerEntryImpl.create(2L, i);
+            assertTrue(cache.read(2L, i, entry));
+            assertEquals(4L * (i + 1), entry.getLength());
+            entry.close();
+        }
+
+        cache.clear();
+        for (int i = 0; i < numEntries; i++) {
+            assertEquals(0, kept[i].refCnt());
+        }
+    }
+
+    @Test
+    public void testCachedEntriesDoNotShareTheApplicationArray() throws Exception {
+        ClientConfiguration conf = new ClientConfiguration(baseClientConf)
+                .setClientEntryCacheMaxSizeBytes(1024 * 1024);
+        conf.setMetadataServiceUri(metadataServiceUri);
+        try (BookKeeper bk = new BookKeeper(conf)) {
+            LedgerHandle writer = bk.createLedger(3, 3, 2, DigestType.CRC32, PASSWD);
+            byte[] data = "entry-0".getBytes(UTF_8);
+            writer.addEntry(data);
+            // the application is free to reuse its array once the write completed
+            data[0] = 'X';
+
+            LedgerEntry entry = writer.readEntries(0, 0).nextElement();
+            assertArrayEquals("entry-0".getBytes(UTF_8), entry.getEntry());
+        }
+    }
+
+    @Test
+    public void testReadYourWritesWithoutBookies() throws Exception {
+        ClientConfiguration conf = new ClientConfiguration(baseClientConf)
+                .setClientEntryCacheMaxSizeBytes(1024 * 1024);
+        conf.setMetadataServiceUri(metadataServiceUri);
+        try (BookKeeper bk = new BookKeeper(conf)) {
+            LedgerHandle writer = bk.createLedger(3, 3, 2, DigestType.CRC32, PASSWD);
+            LedgerHandle reader = bk.openLedgerNoRecovery(writer.getId(), DigestType.CRC32, PASSWD);
+            int numEntries = 10;
+            for (int i = 0; i < numEntries; i++) {
+                writer.addEntry(("entry-" + i).getBytes(UTF_8));
+            }
+
+            // all the entries written by this client are read back from its cache
+            stopAllBookies(false);
+
+            Enumeration<LedgerEntry> entries = writer.readEntries(0, numEntries - 1);
+            int i = 0;
+            while (entries.hasMoreElements()) {
+                LedgerEntry entry = entries.nextElement();
+                assertEquals(i, entry.getEntryId());
+                assertArrayEquals(("entry-" + i).getBytes(UTF_8), entry.getEntry());
+                i++;
+            }
+            assertEquals(numEntries, i);
+
+            // the tailing reader doesn't wait on a long poll for entries written by the same client
+            try (LastConfirmedAndEntry lacAndEntry =
+                         FutureUtils.result(reader.readLastAddConfirmedAndEntryAsync(0, 1000, false))) {
+                assertTrue(lacAndEntry.hasEntry());
+                assertArrayEquals("entry-0".getBytes(UTF_8), lacAndEntry.getEntry().getEntryBytes());
+                assertTrue(lacAndEntry.getLastAddConfirmed() >= 0);
+            }
+
+            bk.getClientCtx().getEntryCache().get().invalidate(writer.getId());
+            LedgerEntryImpl entry = LedgerEntryImpl.create(writer.getId(), 0L);
+            assertFalse(bk.getClientCtx().getEntryCache().get().read(writer.getId(), 0L, entry));
+            entry.close();
+        }
+    }
+}
@@ -43,6 +43,7 @@ import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -222,6 +223,11 @@ public abstract class MockBookKeeperTestCase {
                     return clientStats;
                 }
 
+                @Override
+                public Optional<ClientEntryCache> getEntryCache() {
+                    return Optional.empty();
+                }
+
                 @Override
                 public boolean isClientClosed() {
                     return bk.isClosed();
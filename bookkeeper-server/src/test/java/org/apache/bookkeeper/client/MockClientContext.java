@@ -24,6 +24,7 @@ import static com.google.common.base.Preconditions.checkState;
 
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.Optional;
 import java.util.function.BooleanSupplier;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.OrderedScheduler;
@@ -50,6 +51,7 @@ public class MockClientContext implements ClientContext {
     private OrderedExecutor mainWorkerPool;
     private OrderedScheduler scheduler;
     private BookKeeperClientStats clientStats;
+    private Optional<ClientEntryCache> entryCache = Optional.empty();
     private BooleanSupplier isClientClosed;
     private MockRegistrationClient regClient;
     private ByteBufAllocator allocator;
@@ -94,6 +96,7 @@ public class MockClientContext implements ClientContext {
             .setMainWorkerPool(other.getMainWorkerPool())
             .setScheduler(other.getScheduler())
             .setClientStats(other.getClientStats())
+            .setEntryCache(other.getEntryCache())
             .setByteBufAllocator(other.getByteBufAllocator())
             .setIsClientClosed(other::isClientClosed);
     }
@@ -153,6 +156,11 @@ public class MockClientContext implements ClientContext {
         return this;
     }
 
+    public MockClientContext setEntryCache(Optional<ClientEntryCache> entryCache) {
+        this.entryCache = entryCache;
+        return this;
+    }
+
     public MockClientContext setIsClientClosed(BooleanSupplier isClientClosed) {
         this.isClientClosed = isClientClosed;
         return this;
@@ -216,6 +224,11 @@ public class MockClientContext implements ClientContext {
         return clientStats;
     }
 
+    @Override
+    public Optional<ClientEntryCache> getEntryCache() {
+        return entryCache;
+    }
+
     @Override
     public boolean isClientClosed() {
         return isClientClosed.getAsBoolean();
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.bookkeeper.client.api;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.bookkeeper.common.concurrent.FutureUtils.result;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.client.MockBookKeeperTestCase;
+import org.apache.bookkeeper.client.impl.BatchedWriterImpl;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests of {@link BatchedWriter}.
+ */
+public class BatchedWriterTest extends MockBookKeeperTestCase {
+
+    private static final byte[] password = "password".getBytes(UTF_8);
+
+    private WriteHandle newWriter() throws Exception {
+        return result(newCreateLedgerOp()
+                .withAckQuorumSize(1)
+                .withWriteQuorumSize(2)
+                .withEnsembleSize(3)
+                .withPassword(password)
+                .execute());
+    }
+
+    private static byte[] record(int i) {
+        return ("record-" + i).getBytes(UTF_8);
+    }
+
+    @Test
+    public void testBatchesByRecordCount() throws Exception {
+        try (WriteHandle writer = newWriter()) {
+            BatchedWriter batchedWriter = writer.newBatchedWriter(1024 * 1024, 10);
+            List<CompletableFuture<RecordPosition>> positions = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                positions.add(batchedWriter.writeAsync(record(i)));
+            }
+            assertFalse(positions.get(24).isDone());
+            batchedWriter.close();
+
+            for (int i = 0; i < 25; i++) {
+                RecordPosition position = result(positions.get(i));
+                assertEquals(i / 10, position.getEntryId());
+                assertEquals(i % 10, position.getIndex());
+            }
+            assertEquals(2, writer.getLastAddConfirmed());
+
+            List<BatchedRecord> records = result(writer.readBatchedAsync(0, 2));
+            assertEquals(25, records.size());
+            for (int i = 0; i < 25; i++) {
+                try (BatchedRecord record = records.get(i)) {
+                    assertEquals(result(positions.get(i)), record.getPosition());
+                    assertArrayEquals(record(i), record.getRecordBytes());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchesBySize() throws Exception {
+        try (WriteHandle writer = newWriter()) {
+            // a single record fills a batch: 7 bytes of header, 4 of length and 8 of payload
+            BatchedWriter batchedWriter = writer.newBatchedWriter(19, 100);
+            RecordPosition first = result(batchedWriter.writeAsync(record(0)));
+            RecordPosition second = result(batchedWriter.writeAsync(record(1)));
+            assertEquals(0, first.getEntryId());
+            assertEquals(1, second.getEntryId());
+            assertTrue(first.compareTo(second) < 0);
+            batchedWriter.close();
+        }
+    }
+
+    @Test
+    public void testBatchesByDelay() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try (WriteHandle writer = newWriter()) {
+            BatchedWriter batchedWriter = writer.newBatchedWriter(1024 * 1024, 1000, 10, scheduler);
+            CompletableFuture<RecordPosition> position = batchedWriter.writeAsync(record(0));
+            assertEquals(0, position.get(1, TimeUnit.MINUTES).getEntryId());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testWriteAfterClose() throws Exception {
+        try (WriteHandle writer = newWriter()) {
+            BatchedWriter batchedWriter = writer.newBatchedWriter(1024, 10);
+            batchedWriter.close();
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> batchedWriter.writeAsync(record(0)).get());
+            assertTrue(e.getCause() instanceof BKException);
+        }
+    }
+
+    @Test
+    public void testFlushReportsFirstFailedAppend() throws Exception {
+        WriteHandle handle = mock(WriteHandle.class);
+        IllegalStateException failure = new IllegalStateException("append failed");
+        when(handle.appendAsync(any(ByteBuf.class)))
+                .thenReturn(FutureUtils.exception(failure), FutureUtils.value(1L));
+        // each record fills a batch
+        BatchedWriter batchedWriter = new BatchedWriterImpl(handle, UnpooledByteBufAllocator.DEFAULT,
+                19, 100, 0, null);
+        CompletableFuture<RecordPosition> first = batchedWriter.writeAsync(record(0));
+        CompletableFuture<RecordPosition> second = batchedWriter.writeAsync(record(1));
+        assertTrue(first.isCompletedExceptionally());
+        assertEquals(1, result(second).getEntryId());
+
+        // the last append succeeded, the flush still reports the failed one
+        ExecutionException e = assertThrows(ExecutionException.class, () -> batchedWriter.flushAsync().get());
+        assertEquals(failure, e.getCause());
+    }
+
+    @Test
+    public void testReadNotBatchedEntry() throws Exception {
+        try (WriteHandle writer = newWriter()) {
+            writer.append(record(0));
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> writer.readBatchedAsync(0, 0).get());
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+}
@@ -35,8 +35,14 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import io.netty.buffer.Unpooled;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BKException.BKDigestMatchException;
@@ -92,6 +98,95 @@ public class BookKeeperApiTest extends MockBookKeeperTestCase {
         }
     }
 
+    @Test
+    public void testConcurrentAppends() throws Exception {
+        final int numThreads = 4;
+        final int numEntriesPerThread = 100;
+        try (WriteHandle writer = result(newCreateLedgerOp()
+                .withAckQuorumSize(1)
+                .withWriteQuorumSize(2)
+                .withEnsembleSize(3)
+                .withPassword(password)
+                .execute())) {
+
+            List<Long> acknowledged = Collections.synchronizedList(new ArrayList<>());
+            List<CompletableFuture<Long>> appends = Collections.synchronizedList(new ArrayList<>());
+            ExecutorService producers = Executors.newFixedThreadPool(numThreads);
+            try {
+                for (int i = 0; i < numThreads; i++) {
+                    producers.submit(() -> {
+                        for (int j = 0; j < numEntriesPerThread; j++) {
+                            appends.add(writer.appendAsync(Unpooled.wrappedBuffer(data))
+                                    .whenComplete((entryId, e) -> acknowledged.add(entryId)));
+                        }
+                    });
+                }
+            } finally {
+                producers.shutdown();
+                assertTrue(producers.awaitTermination(1, TimeUnit.MINUTES));
+            }
+            for (CompletableFuture<Long> append : appends) {
+                result(append);
+            }
+
+            // every entry got its own id, without gaps
+            final long numEntries = numThreads * numEntriesPerThread;
+            assertEquals(numEntries, acknowledged.size());
+            Collections.sort(acknowledged);
+            for (int i = 0; i < numEntries; i++) {
+                assertEquals(Long.valueOf(i), acknowledged.get(i));
+            }
+            assertEquals(numEntries - 1, writer.getLastAddPushed());
+            assertEquals(numEntries - 1, writer.getLastAddConfirmed());
+            assertEquals(numEntries * data.length, writer.getLength());
+        }
+    }
+
+    @Test
+    public void testConcurrentAppendsAndClose() throws Exception {
+        final int numThreads = 4;
+        final int numEntriesPerThread = 100;
+        WriteHandle writer = result(newCreateLedgerOp()
+                .withAckQuorumSize(1)
+                .withWriteQuorumSize(2)
+                .withEnsembleSize(3)
+                .withPassword(password)
+                .execute());
+
+        List<Long> acknowledged = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Long>> appends = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService producers = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (int i = 0; i < numThreads; i++) {
+                producers.submit(() -> {
+                    for (int j = 0; j < numEntriesPerThread; j++) {
+                        appends.add(writer.appendAsync(Unpooled.wrappedBuffer(data))
+                                .whenComplete((entryId, e) -> {
+                                    if (e == null) {
+                                        acknowledged.add(entryId);
+                                    }
+                                }));
+                    }
+                });
+            }
+            writer.close();
+        } finally {
+            producers.shutdown();
+            assertTrue(producers.awaitTermination(1, TimeUnit.MINUTES));
+        }
+
+        // every append completes, and the acknowledged ones are the entries of the closed ledger
+        for (CompletableFuture<Long> append : appends) {
+            append.handle((entryId, e) -> null).get(1, TimeUnit.MINUTES);
+        }
+        Collections.sort(acknowledged);
+        for (int i = 0; i < acknowledged.size(); i++) {
+            assertEquals(Long.valueOf(i), acknowledged.get(i));
+        }
+        assertEquals(acknowledged.size() - 1, writer.getLedgerMetadata().getLastEntryId());
+        assertEquals(acknowledged.size() * data.length, writer.getLedgerMetadata().getLength());
+    }
+
     @Test
     public void testWriteAdvHandle() throws Exception {
         long ledgerId = 12345;
@@ -21,6 +21,7 @@ package org.apache.bookkeeper.proto;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
@@ -89,6 +90,7 @@ public class BatchedReadEntryProcessorTest {
 
         when(bookie.readEntry(anyLong(), anyLong())).thenReturn(buffer0).thenReturn(buffer1).thenReturn(buffer2)
                 .thenReturn(buffer3).thenReturn(buffer4);
+        when(bookie.readEntries(anyLong(), anyLong(), anyInt())).thenCallRealMethod();
     }
 
     @Test
@@ -0,0 +1,64 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+/**
+ * Test the sharing of the channel autoread flag.
+ */
+public class ChannelReadPausesTest {
+
+    @Test
+    public void testChannelReadsOnceAllPausesResumed() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+
+        ChannelReadPauses.pause(channel);
+        ChannelReadPauses.pause(channel);
+        assertFalse(channel.config().isAutoRead());
+
+        ChannelReadPauses.resume(channel);
+        assertFalse(channel.config().isAutoRead());
+        // a paused channel isn't restored
+        ChannelReadPauses.restore(channel);
+        assertFalse(channel.config().isAutoRead());
+
+        ChannelReadPauses.resume(channel);
+        assertTrue(channel.config().isAutoRead());
+
+        // an extra resume doesn't cancel the next pause
+        ChannelReadPauses.resume(channel);
+        ChannelReadPauses.pause(channel);
+        assertFalse(channel.config().isAutoRead());
+    }
+
+    @Test
+    public void testRestore() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        channel.config().setAutoRead(false);
+        ChannelReadPauses.restore(channel);
+        assertTrue(channel.config().isAutoRead());
+    }
+}
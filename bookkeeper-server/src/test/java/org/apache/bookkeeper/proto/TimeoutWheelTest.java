@@ -0,0 +1,137 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TimeoutWheel}.
+ */
+public class TimeoutWheelTest {
+
+    private static final long TICK = TimeUnit.SECONDS.toNanos(1);
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+
+    static class Op {
+        long deadline;
+
+        Op(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    @Test
+    public void testExpireOnlyPassedDeadlines() {
+        long start = MathUtils.nowInNano();
+        TimeoutWheel<Op> wheel = new TimeoutWheel<>(TICK, TIMEOUT, op -> op.deadline);
+        Op early = new Op(start + 2 * TICK);
+        Op late = new Op(start + TIMEOUT);
+        wheel.schedule(early);
+        wheel.schedule(late);
+
+        List<Op> expired = new ArrayList<>();
+        assertEquals(0, wheel.expire(start + TICK, expired::add));
+        assertEquals(1, wheel.expire(start + 3 * TICK, expired::add));
+        assertEquals(early, expired.get(0));
+        assertEquals(1, wheel.expire(start + TIMEOUT + 2 * TICK, expired::add));
+        assertEquals(late, expired.get(1));
+        assertEquals(0, wheel.expire(start + TIMEOUT + 10 * TICK, expired::add));
+    }
+
+    @Test
+    public void testCompletedOperationsAreNotCounted() {
+        long start = MathUtils.nowInNano();
+        TimeoutWheel<Op> wheel = new TimeoutWheel<>(TICK, TIMEOUT, op -> op.deadline);
+        Set<Op> pending = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            Op op = new Op(start + TICK);
+            wheel.schedule(op);
+            if (i % 2 == 0) {
+                pending.add(op);
+            }
+        }
+        assertEquals(5, wheel.expire(start + 3 * TICK, pending::remove));
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    public void testRescheduleWhenDeadlineMoved() {
+        long start = MathUtils.nowInNano();
+        TimeoutWheel<Op> wheel = new TimeoutWheel<>(TICK, TIMEOUT, op -> op.deadline);
+        Op op = new Op(start + TICK);
+        wheel.schedule(op);
+        // the operation was recycled before its first deadline
+        op.deadline = start + 4 * TICK;
+
+        List<Op> expired = new ArrayList<>();
+        assertEquals(0, wheel.expire(start + 2 * TICK, expired::add));
+        assertEquals(1, wheel.expire(start + 5 * TICK, expired::add));
+        assertEquals(op, expired.get(0));
+    }
+
+    @Test
+    public void testCancelledOperationsAreDropped() {
+        long start = MathUtils.nowInNano();
+        TimeoutWheel<Op> wheel = new TimeoutWheel<>(TICK, TIMEOUT, op -> op.deadline);
+        Op op = new Op(start + TICK);
+        wheel.schedule(op).cancel();
+
+        List<Op> expired = new ArrayList<>();
+        assertEquals(0, wheel.expire(start + 3 * TICK, expired::add));
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    public void testRecycledOperationIsQueuedOnce() {
+        long start = MathUtils.nowInNano();
+        TimeoutWheel<Op> wheel = new TimeoutWheel<>(TICK, TIMEOUT, op -> op.deadline);
+        Op op = new Op(start + TICK);
+        // completed and recycled before its deadline, then reissued
+        wheel.schedule(op).cancel();
+        op.deadline = start + 2 * TICK;
+        wheel.schedule(op);
+
+        List<Op> expired = new ArrayList<>();
+        assertEquals(1, wheel.expire(start + 10 * TICK, expired::add));
+        assertEquals(1, expired.size());
+        assertEquals(0, wheel.expire(start + 20 * TICK, expired::add));
+    }
+
+    @Test
+    public void testExpireAfterStall() {
+        long start = MathUtils.nowInNano();
+        TimeoutWheel<Op> wheel = new TimeoutWheel<>(TICK, TIMEOUT, op -> op.deadline);
+        for (int i = 1; i <= 5; i++) {
+            wheel.schedule(new Op(start + i * TICK));
+        }
+        List<Op> expired = new ArrayList<>();
+        assertEquals(5, wheel.expire(start + 100 * TICK, expired::add));
+    }
+}
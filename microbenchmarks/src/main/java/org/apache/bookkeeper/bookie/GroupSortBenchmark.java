@@ -31,6 +31,7 @@ import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -83,6 +84,41 @@ public class GroupSortBenchmark {
         }
     }
 
+    /**
+     * Arrays as large as the ones sorted when flushing a write cache of a few GB.
+     */
+    @State(Scope.Benchmark)
+    public static class LargeTestState {
+
+        @Param({"1000000", "10000000"})
+        private int groups;
+
+        private long[] randomItems;
+        private long[] buffer;
+
+        private long[] items;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            Random r = ThreadLocalRandom.current();
+            randomItems = new long[groups * 4];
+            for (int i = 0; i < randomItems.length; i += 4) {
+                // Entries of a write cache: few ledgers with many entries each
+                randomItems[i] = r.nextInt(1000);
+                randomItems[i + 1] = r.nextInt(1_000_000);
+                randomItems[i + 2] = r.nextLong();
+                randomItems[i + 3] = r.nextLong();
+            }
+            buffer = new long[randomItems.length];
+            items = new long[randomItems.length];
+        }
+
+        @Setup(Level.Invocation)
+        public void setupInvocation() {
+            System.arraycopy(randomItems, 0, items, 0, randomItems.length);
+        }
+    }
+
     @Benchmark
     public void randomGroupSort(GroupSortBenchmark.TestState s) {
         ArrayGroupSort.sort(s.items);
@@ -116,4 +152,14 @@ public class GroupSortBenchmark {
     public void reverseSortedArraySort(GroupSortBenchmark.TestState s) {
         Arrays.sort(s.reverseSortedItems);
     }
+
+    @Benchmark
+    public void largeRandomGroupSort(GroupSortBenchmark.LargeTestState s) {
+        ArrayGroupSort.sort(s.items);
+    }
+
+    @Benchmark
+    public void largeRandomParallelGroupSort(GroupSortBenchmark.LargeTestState s) {
+        ArrayGroupSort.parallelSort(s.items, 0, s.items.length, s.buffer);
+    }
 }
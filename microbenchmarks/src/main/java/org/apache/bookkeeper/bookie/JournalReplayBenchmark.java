@@ -0,0 +1,182 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.Journal.JournalScanner;
+import org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorage;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measure the time to replay a journal backlog into the ledger storage on bookie startup, with the serial and
+ * the parallel replay.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.SingleShotTime)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+public class JournalReplayBenchmark {
+
+    private static final int LEDGERS = 100;
+    private static final int ENTRY_SIZE = 1024;
+    private static final byte[] MASTER_KEY = "journal-replay-benchmark".getBytes();
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+
+        @Param({ "100000", "1000000" })
+        private int entries;
+
+        @Param({ "1", "4", "8" })
+        private int replayThreads;
+
+        private File journalDir;
+        private Journal journal;
+        private long journalId;
+
+        private File ledgerDir;
+        private LedgerStorage storage;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            journalDir = Files.createTempDirectory("journal-replay-benchmark").toFile();
+            BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(journalDir));
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setJournalDirName(journalDir.getPath());
+            conf.setMaxJournalSizeMB(64 * 1024);
+
+            // Write the backlog, as left by an unclean shutdown
+            LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                    new DiskChecker(0.99f, 0.99f));
+            Journal writer = new Journal(0, BookieImpl.getCurrentDirectory(journalDir), conf, ledgerDirsManager);
+            writer.start();
+            CountDownLatch latch = new CountDownLatch(LEDGERS + entries);
+            for (long ledgerId = 0; ledgerId < LEDGERS; ledgerId++) {
+                ByteBuf key = Unpooled.buffer();
+                key.writeLong(ledgerId);
+                key.writeLong(BookieImpl.METAENTRY_ID_LEDGER_KEY);
+                key.writeInt(MASTER_KEY.length);
+                key.writeBytes(MASTER_KEY);
+                writer.logAddEntry(key, false, (rc, ledgerId1, entryId1, addr, ctx) -> latch.countDown(), null);
+            }
+            for (int i = 0; i < entries; i++) {
+                ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+                entry.writeLong(i % LEDGERS);
+                entry.writeLong(i / LEDGERS);
+                entry.writerIndex(ENTRY_SIZE);
+                writer.logAddEntry(entry, false, (rc, ledgerId1, entryId1, addr, ctx) -> latch.countDown(), null);
+            }
+            latch.await();
+            writer.shutdown();
+
+            journal = new Journal(0, BookieImpl.getCurrentDirectory(journalDir), conf, ledgerDirsManager);
+            List<Long> journalIds = Journal.listJournalIds(journal.getJournalDirectory(), null);
+            journalId = journalIds.get(journalIds.size() - 1);
+        }
+
+        @Setup(Level.Invocation)
+        public void createStorage() throws Exception {
+            ledgerDir = Files.createTempDirectory("journal-replay-benchmark-ledgers").toFile();
+            BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(ledgerDir));
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setLedgerDirNames(new String[] { ledgerDir.getPath() });
+            LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                    new DiskChecker(0.99f, 0.99f));
+            storage = new DbLedgerStorage();
+            storage.initialize(conf, null, ledgerDirsManager, ledgerDirsManager, NullStatsLogger.INSTANCE,
+                    UnpooledByteBufAllocator.DEFAULT);
+            storage.setCheckpointSource(CheckpointSource.DEFAULT);
+            storage.start();
+        }
+
+        @TearDown(Level.Invocation)
+        public void deleteStorage() throws Exception {
+            storage.shutdown();
+            FileUtils.deleteDirectory(ledgerDir);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            FileUtils.deleteDirectory(journalDir);
+        }
+
+        private void apply(ByteBuffer record) throws IOException {
+            long ledgerId = record.getLong();
+            long entryId = record.getLong();
+            try {
+                if (entryId == BookieImpl.METAENTRY_ID_LEDGER_KEY) {
+                    byte[] key = new byte[record.getInt()];
+                    record.get(key);
+                    storage.setMasterKey(ledgerId, key);
+                } else {
+                    record.rewind();
+                    storage.addEntry(Unpooled.wrappedBuffer(record));
+                }
+            } catch (BookieException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    @Benchmark
+    public void replay(TestState s) throws Exception {
+        JournalScanner scanner = (journalVersion, offset, record) -> s.apply(record);
+        if (s.replayThreads > 1) {
+            try (ParallelJournalScanner parallelScanner = new ParallelJournalScanner(scanner, s.replayThreads)) {
+                s.journal.scanJournal(s.journalId, 0, parallelScanner, false);
+                parallelScanner.waitForPendingRecords();
+            }
+        } else {
+            s.journal.scanJournal(s.journalId, 0, scanner, false);
+        }
+        s.storage.flush();
+    }
+}
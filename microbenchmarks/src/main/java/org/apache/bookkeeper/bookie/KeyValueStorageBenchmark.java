@@ -0,0 +1,133 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageFactory.DbConfigType;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageRocksDB;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageSortedTable;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the key-value storage engines used by the DbLedgerStorage indexes, with keys and values shaped like
+ * the ones of the entry location index.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class KeyValueStorageBenchmark {
+
+    private static final int LEDGERS = 100;
+    private static final int ENTRIES_PER_LEDGER = 10_000;
+
+    @State(Scope.Benchmark)
+    public static class TestState {
+
+        @Param({ "RocksDB", "SortedTable" })
+        private String engine;
+
+        private File dir;
+        private KeyValueStorage db;
+        private long nextEntryId = ENTRIES_PER_LEDGER;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            dir = Files.createTempDirectory("kv-storage-benchmark").toFile();
+            ServerConfiguration conf = new ServerConfiguration();
+            if ("RocksDB".equals(engine)) {
+                db = new KeyValueStorageRocksDB(dir.toString(), "locations", DbConfigType.EntryLocation, conf);
+            } else {
+                db = new KeyValueStorageSortedTable(dir.toString(), "locations", DbConfigType.EntryLocation, conf);
+            }
+
+            for (long ledgerId = 0; ledgerId < LEDGERS; ledgerId++) {
+                try (KeyValueStorage.Batch batch = db.newBatch()) {
+                    for (long entryId = 0; entryId < ENTRIES_PER_LEDGER; entryId++) {
+                        batch.put(key(ledgerId, entryId), value(entryId));
+                    }
+                    batch.flush();
+                }
+            }
+            db.compact();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            db.close();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private static byte[] key(long ledgerId, long entryId) {
+        return ByteBuffer.allocate(16).putLong(ledgerId).putLong(entryId).array();
+    }
+
+    private static byte[] value(long location) {
+        return ByteBuffer.allocate(8).putLong(location).array();
+    }
+
+    @Benchmark
+    public byte[] get(TestState s) throws Exception {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        return s.db.get(key(r.nextInt(LEDGERS), r.nextInt(ENTRIES_PER_LEDGER)));
+    }
+
+    @Benchmark
+    public Object getFloor(TestState s) throws Exception {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        return s.db.getFloor(key(r.nextInt(LEDGERS), r.nextInt(ENTRIES_PER_LEDGER)));
+    }
+
+    @Benchmark
+    public void batchPut(TestState s) throws Exception {
+        long ledgerId = ThreadLocalRandom.current().nextInt(LEDGERS);
+        long firstEntryId;
+        synchronized (s) {
+            firstEntryId = s.nextEntryId;
+            s.nextEntryId += 100;
+        }
+        try (KeyValueStorage.Batch batch = s.db.newBatch()) {
+            for (long entryId = firstEntryId; entryId < firstEntryId + 100; entryId++) {
+                batch.put(key(ledgerId, entryId), value(entryId));
+            }
+            batch.flush();
+        }
+    }
+}
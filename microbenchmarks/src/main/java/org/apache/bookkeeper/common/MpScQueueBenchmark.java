@@ -25,6 +25,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import lombok.SneakyThrows;
 import org.apache.bookkeeper.common.collections.BatchedArrayBlockingQueue;
+import org.apache.bookkeeper.common.collections.BlockingConsumerMpscQueue;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
@@ -63,6 +64,8 @@ public class MpScQueueBenchmark {
 
         private BatchedArrayBlockingQueue batchedArrayBlockingQueue = new BatchedArrayBlockingQueue<>(QUEUE_SIZE);
 
+        private BlockingConsumerMpscQueue blockingConsumerMpscQueue = new BlockingConsumerMpscQueue<>(QUEUE_SIZE);
+
         private final Integer[] batchArray = new Integer[1000];
 
         private final ExecutorService executor = Executors.newCachedThreadPool();
@@ -75,6 +78,7 @@ public class MpScQueueBenchmark {
 
             executor.execute(this::consumeABQ);
             executor.execute(this::consumeBAABQ);
+            executor.execute(this::consumeBCMQ);
         }
 
         @SneakyThrows
@@ -105,6 +109,18 @@ public class MpScQueueBenchmark {
             }
         }
 
+        @SneakyThrows
+        private void consumeBCMQ() {
+            Integer[] localArray = new Integer[20_000];
+
+            try {
+                while (true) {
+                    blockingConsumerMpscQueue.takeAll(localArray);
+                }
+            } catch (InterruptedException ie) {
+            }
+        }
+
         @TearDown(Level.Trial)
         public void teardown() {
             executor.shutdownNow();
@@ -131,4 +147,15 @@ public class MpScQueueBenchmark {
     public void batchAwareArrayBlockingQueueBatch(TestState s) throws Exception {
         s.batchedArrayBlockingQueue.putAll(s.batchArray, 0, 1000);
     }
+
+    @Benchmark
+    public void blockingConsumerMpscQueueSingleEnqueue(TestState s) throws Exception {
+        s.blockingConsumerMpscQueue.put(1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public void blockingConsumerMpscQueueBatch(TestState s) throws Exception {
+        s.blockingConsumerMpscQueue.putAll(s.batchArray, 0, 1000);
+    }
 }